@@ -0,0 +1,283 @@
+import utils.Calendar;
+import utils.CountMinSketch;
+import utils.QuantileSketch;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.*;
+
+/**
+ * Approximate planning statistics of very large plans, from a single streaming pass in fixed memory
+ *
+ * Employees and projects are added one by one, from a PPS, an OffHeapPlan or any other source:
+ * - the quantiles of the hourly wages and of the manpower budgets are estimated by quantile sketches,
+ * - the numbers of assigned projects per employee are estimated by a count-min sketch,
+ * - the cumulative monthly spends are estimated from a uniform reservoir sample of the projects,
+ *   with a 95% confidence bound of every estimate.
+ * Counts, sums and averages are exact, as they need no memory per entity.
+ */
+public class ApproximateStatistics {
+
+    /**
+     * an estimated value with the bound of its error
+     */
+    public static class Estimate {
+        private final double value;
+        private final double errorBound;
+
+        Estimate(double value, double errorBound) {
+            this.value = value;
+            this.errorBound = errorBound;
+        }
+
+        public double getValue() { return value; }
+
+        public double getErrorBound() { return errorBound; }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f ± %.0f", this.value, this.errorBound);
+        }
+    }
+
+    public static final int DEFAULT_SKETCH_SIZE = 256;
+    public static final int DEFAULT_SAMPLE_SIZE = 4096;
+    private static final int COUNT_MIN_WIDTH = 2048;
+    private static final int COUNT_MIN_DEPTH = 5;
+    private static final double Z_95 = 1.96;    // the normal quantile of a two-sided 95% confidence interval
+    private static final int N_MONTHS = Month.values().length;
+
+    private final QuantileSketch wages;
+    private final QuantileSketch budgets;
+    private final CountMinSketch assignments;
+    private long numEmployees;
+    private long wageSum;
+    private long numProjects;
+    private long budgetSum;
+
+    // the reservoir sample of the projects
+    private final SplittableRandom random;
+    private final int sampleSize;
+    private final int[] sampleStarts;           // as epoch days
+    private final int[] sampleEnds;
+    private final long[] sampleRates;
+    private int numSampled;
+    private long numSampleable;                 // the number of projects with a period
+
+    public ApproximateStatistics() {
+        this(DEFAULT_SKETCH_SIZE, DEFAULT_SAMPLE_SIZE, 0);
+    }
+
+    /**
+     * @param sketchSize the capacity of every level of the quantile sketches, an even number
+     * @param sampleSize the number of projects in the sample of the monthly spends
+     * @param seed       the seed of all random choices
+     */
+    public ApproximateStatistics(int sketchSize, int sampleSize, long seed) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+        }
+        this.wages = new QuantileSketch(sketchSize, seed);
+        this.budgets = new QuantileSketch(sketchSize, seed + 1);
+        this.assignments = new CountMinSketch(COUNT_MIN_WIDTH, COUNT_MIN_DEPTH, seed + 2);
+        this.random = new SplittableRandom(seed + 3);
+        this.sampleSize = sampleSize;
+        this.sampleStarts = new int[sampleSize];
+        this.sampleEnds = new int[sampleSize];
+        this.sampleRates = new long[sampleSize];
+    }
+
+    /**
+     * @param pps a snapshot of a plan, if the plan is changed concurrently
+     * @return the statistics of the plan, with the default sizes
+     */
+    public static ApproximateStatistics of(PPS pps) {
+        return new ApproximateStatistics().addPlan(pps);
+    }
+
+    /**
+     * @param plan
+     * @return the statistics of an off-heap plan, with the default sizes
+     */
+    public static ApproximateStatistics of(OffHeapPlan plan) {
+        return new ApproximateStatistics().addPlan(plan);
+    }
+
+    /**
+     * streams all employees and projects of a plan
+     * @param pps a snapshot of a plan, if the plan is changed concurrently
+     * @return
+     */
+    public ApproximateStatistics addPlan(PPS pps) {
+        pps.getEmployees().forEach(employee -> this.addEmployee(
+                employee.getNumber(), employee.getHourlyWage(), employee.getAssignedProjectsLength()));
+        pps.getProjects().forEach(project -> this.addProject(
+                project.getStartDate(), project.getEndDate(), project.getDailyCostRate()));
+        return this;
+    }
+
+    /**
+     * streams all employees and projects of an off-heap plan
+     * @param plan
+     * @return
+     */
+    public ApproximateStatistics addPlan(OffHeapPlan plan) {
+        plan.forEachEmployee(employee -> this.addEmployee(
+                employee.getNumber(), employee.getHourlyWage(), employee.getAssignedProjectsLength()));
+        plan.forEachProject(project -> this.addProject(
+                project.getStartDate(), project.getEndDate(), project.getDailyCostRate()));
+        return this;
+    }
+
+    /**
+     * adds an employee to the statistics
+     * @param number
+     * @param hourlyWage
+     * @param numAssignedProjects
+     */
+    public void addEmployee(int number, int hourlyWage, int numAssignedProjects) {
+        this.numEmployees++;
+        this.wageSum += hourlyWage;
+        this.wages.add(hourlyWage);
+        this.assignments.add(number, numAssignedProjects);
+    }
+
+    /**
+     * adds a project to the statistics
+     * @param startDate     the first working day, null if not known
+     * @param endDate       the last working day, null if not known
+     * @param dailyCostRate the manpower cost of a working day of the project
+     */
+    public void addProject(LocalDate startDate, LocalDate endDate, long dailyCostRate) {
+        boolean hasPeriod = (startDate != null && endDate != null);
+        long budget = (hasPeriod ? dailyCostRate * Calendar.getNumWorkingDays(startDate, endDate) : 0);
+        this.numProjects++;
+        this.budgetSum += budget;
+        this.budgets.add(budget);
+        if (!hasPeriod) {
+            return;
+        }
+
+        // algorithm R: keep every project with a probability of sampleSize / number of projects so far
+        this.numSampleable++;
+        int slot;
+        if (this.numSampled < this.sampleSize) {
+            slot = this.numSampled++;
+        } else {
+            long pick = this.random.nextLong(this.numSampleable);
+            if (pick >= this.sampleSize) {
+                return;
+            }
+            slot = (int) pick;
+        }
+        this.sampleStarts[slot] = (int) startDate.toEpochDay();
+        this.sampleEnds[slot] = (int) endDate.toEpochDay();
+        this.sampleRates[slot] = dailyCostRate;
+    }
+
+    public long getNumEmployees() {
+        return numEmployees;
+    }
+
+    public long getNumProjects() {
+        return numProjects;
+    }
+
+    /**
+     * @return the exact average hourly wage
+     */
+    public double getAverageHourlyWage() {
+        return (double) this.wageSum / this.numEmployees;
+    }
+
+    /**
+     * @return the exact total manpower budget
+     */
+    public long getTotalManpowerBudget() {
+        return budgetSum;
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return the estimated hourly wage at the fraction of all employees
+     */
+    public double getWageQuantile(double fraction) {
+        return this.wages.getQuantile(fraction);
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return the estimated manpower budget at the fraction of all projects
+     */
+    public double getBudgetQuantile(double fraction) {
+        return this.budgets.getQuantile(fraction);
+    }
+
+    /**
+     * @return the maximum expected error of the fraction of any quantile of wages or budgets
+     */
+    public double getQuantileRankErrorBound() {
+        return Math.max(this.wages.getRankErrorBound(), this.budgets.getRankErrorBound());
+    }
+
+    /**
+     * @param employeeNumber
+     * @return the estimated number of projects of the employee, which is never too low,
+     *          and too high by at most the error bound with a probability of 99%
+     */
+    public Estimate estimateAssignedProjects(int employeeNumber) {
+        return new Estimate(this.assignments.estimate(employeeNumber), this.assignments.getErrorBound());
+    }
+
+    /**
+     * estimates the total spends by month across all projects, combining the months of different years,
+     * by scaling up the spends of the sampled projects
+     * @return the estimated spend with its 95% confidence bound by month, for all months with a sampled spend
+     */
+    public Map<Month, Estimate> estimateCumulativeMonthlySpends() {
+        double[] sums = new double[N_MONTHS];
+        double[] squares = new double[N_MONTHS];
+        boolean[] active = new boolean[N_MONTHS];
+        long[] spends = new long[N_MONTHS];
+        for (int s = 0; s < this.numSampled; s++) {
+            Arrays.fill(spends, 0);
+            LocalDate start = LocalDate.ofEpochDay(this.sampleStarts[s]);
+            LocalDate end = LocalDate.ofEpochDay(this.sampleEnds[s]);
+            for (LocalDate month = start.withDayOfMonth(1); !month.isAfter(end); month = month.plusMonths(1)) {
+                LocalDate from = (month.isBefore(start) ? start : month);
+                LocalDate monthEnd = month.plusMonths(1).minusDays(1);
+                int days = Calendar.getNumWorkingDays(from, monthEnd.isAfter(end) ? end : monthEnd);
+                if (days > 0) {
+                    spends[month.getMonthValue() - 1] += days * this.sampleRates[s];
+                    active[month.getMonthValue() - 1] = true;
+                }
+            }
+            for (int m = 0; m < N_MONTHS; m++) {
+                sums[m] += spends[m];
+                squares[m] += (double) spends[m] * spends[m];
+            }
+        }
+
+        // the expansion estimator of a simple random sample, with its finite population correction
+        Map<Month, Estimate> estimates = new TreeMap<>();
+        double n = this.numSampled;
+        double populationSize = this.numSampleable;
+        for (Month month : Month.values()) {
+            int m = month.ordinal();
+            if (!active[m]) {
+                continue;
+            }
+            double mean = sums[m] / n;
+            double variance = (n > 1 ? Math.max(0, (squares[m] - n * mean * mean) / (n - 1)) : 0);
+            double standardError = populationSize * Math.sqrt((1 - n / populationSize) * variance / n);
+            estimates.put(month, new Estimate(populationSize * mean, Z_95 * standardError));
+        }
+        return estimates;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ApproximateStatistics(%d employees, %d projects, %d sampled)",
+                this.numEmployees, this.numProjects, this.numSampled);
+    }
+}
@@ -0,0 +1,219 @@
+import utils.Calendar;
+import utils.SegmentTree;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Index of the committed hours of every employee on every working day of the planning calendar
+ *
+ * Every employee with commitments has a segment tree over the working days of the calendar,
+ * holding the total committed hours per day across all projects.
+ * A commitment adds its hours to the range of working days of its project in O(log days),
+ * and the maximum load of an employee within any period is found in O(log days).
+ * The index follows all changes of the plan, including direct commitments, reschedules and removals.
+ *
+ * The calendar spans the planning year and the periods of all projects at construction;
+ * later project periods are clipped to that calendar.
+ */
+public class AvailabilityIndex implements AutoCloseable {
+    private final PPS pps;
+    private final LocalDate origin;             // the first working day of the calendar
+    private final int numDays;                  // the number of working days in the calendar
+    private final Map<Integer, Employee> employees = new TreeMap<>();
+    private final Map<Integer, SegmentTree> loads = new HashMap<>();
+    private final Map<String, int[]> projectDays = new HashMap<>();     // first and last day index per project
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Consumer<PlanChange> listener = this::onChange;
+
+    /**
+     * builds the index from the current commitments of the plan and starts following its changes
+     * @param pps
+     */
+    public AvailabilityIndex(PPS pps) {
+        this.pps = pps;
+        synchronized (pps) {
+            LocalDate first = LocalDate.of(pps.getPlanningYear(), 1, 1);
+            LocalDate last = LocalDate.of(pps.getPlanningYear(), 12, 31);
+            for (Project project : pps.getProjects()) {
+                if (project.getStartDate() != null && project.getStartDate().isBefore(first)) {
+                    first = project.getStartDate();
+                }
+                if (project.getEndDate() != null && project.getEndDate().isAfter(last)) {
+                    last = project.getEndDate();
+                }
+            }
+            this.origin = Calendar.firstWorkingDayFrom(first);
+            this.numDays = Math.max(1, Calendar.getNumWorkingDays(this.origin, last));
+
+            pps.getEmployees().forEach(employee -> this.employees.put(employee.getNumber(), employee));
+            for (Project project : pps.getProjects()) {
+                this.registerProject(project.getCode(), project.getStartDate(), project.getEndDate());
+                project.getCommittedHoursPerDay().forEach((employee, hours) ->
+                        this.addLoad(project.getCode(), employee.getNumber(), hours));
+            }
+            pps.addChangeListener(this.listener);
+        }
+    }
+
+    /**
+     * stops following the changes of the plan
+     */
+    @Override
+    public void close() {
+        this.pps.removeChangeListener(this.listener);
+    }
+
+    public LocalDate getFirstDay() {
+        return this.origin;
+    }
+
+    public int getNumWorkingDays() {
+        return this.numDays;
+    }
+
+    /**
+     * finds all employees who have at least minFreeHours uncommitted hours on every working day
+     * between from and to, both inclusive
+     * @param minFreeHours
+     * @param from
+     * @param to
+     * @return the matching employees, by number
+     */
+    public List<Employee> findAvailableEmployees(int minFreeHours, LocalDate from, LocalDate to) {
+        int maxLoad = Calendar.WORKING_HOURS_PER_DAY - minFreeHours;
+        List<Employee> available = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            int[] days = this.clip(from, to);
+            for (Employee employee : this.employees.values()) {
+                if (this.maxLoad(employee.getNumber(), days) <= maxLoad) {
+                    available.add(employee);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return available;
+    }
+
+    /**
+     * calculates the hours that the employee is still available on every working day between from and to
+     * @param employeeNr
+     * @param from
+     * @param to
+     * @return the uncommitted hours on the busiest day in the period, negative in case of overtime
+     */
+    public int getFreeHours(int employeeNr, LocalDate from, LocalDate to) {
+        this.lock.readLock().lock();
+        try {
+            return Calendar.WORKING_HOURS_PER_DAY - this.maxLoad(employeeNr, this.clip(from, to));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * calculates the highest number of hours per day that the employee has been committed on any day
+     * between the working day indices days[0] and days[1]
+     */
+    private int maxLoad(int employeeNr, int[] days) {
+        SegmentTree load = this.loads.get(employeeNr);
+        if (load == null || days[0] > days[1]) {
+            return 0;
+        }
+        return load.max(days[0], days[1]);
+    }
+
+    /**
+     * provides an independent copy of the daily load of the employee, for what-if calculations
+     * @param employeeNr
+     * @return
+     */
+    SegmentTree copyLoad(int employeeNr) {
+        this.lock.readLock().lock();
+        try {
+            SegmentTree load = this.loads.get(employeeNr);
+            return (load != null ? new SegmentTree(load) : new SegmentTree(this.numDays));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the first and last working day index within the calendar of the period from..to
+     */
+    int[] clip(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            return new int[] { 0, -1 };
+        }
+        int first = Calendar.workingDayIndex(this.origin, Calendar.firstWorkingDayFrom(from));
+        int last = Calendar.workingDayIndex(this.origin, to);
+        return new int[] { Math.max(first, 0), Math.min(last, this.numDays - 1) };
+    }
+
+    private void registerProject(String code, LocalDate startDate, LocalDate endDate) {
+        this.projectDays.put(code, this.clip(startDate, endDate));
+    }
+
+    private void addLoad(String projectCode, int employeeNr, int hoursPerDay) {
+        this.addLoad(this.projectDays.get(projectCode), employeeNr, hoursPerDay);
+    }
+
+    private void addLoad(int[] days, int employeeNr, int hoursPerDay) {
+        if (days == null || days[0] > days[1]) {
+            return;
+        }
+        this.loads.computeIfAbsent(employeeNr, number -> new SegmentTree(this.numDays))
+                .add(days[0], days[1], hoursPerDay);
+    }
+
+    /**
+     * moves the loads of all commitments of a project to its new period
+     * the project still has its commitments, as the index is notified while the plan is being changed
+     */
+    private void reschedule(String projectCode, LocalDate startDate, LocalDate endDate) {
+        int[] previousDays = this.projectDays.get(projectCode);
+        int[] days = this.clip(startDate, endDate);
+        this.projectDays.put(projectCode, days);
+        Project project = this.pps.findProject(projectCode);
+        if (project != null) {
+            project.getCommittedHoursPerDay().forEach((employee, hours) -> {
+                this.addLoad(previousDays, employee.getNumber(), -hours);
+                this.addLoad(days, employee.getNumber(), hours);
+            });
+        }
+    }
+
+    private void onChange(PlanChange change) {
+        this.lock.writeLock().lock();
+        try {
+            if (change instanceof PlanChange.ProjectAdded) {
+                PlanChange.ProjectAdded added = (PlanChange.ProjectAdded) change;
+                this.registerProject(added.getProjectCode(), added.getStartDate(), added.getEndDate());
+            } else if (change instanceof PlanChange.ProjectRemoved) {
+                // the loads of its commitments have been removed by the preceding commitment changes
+                this.projectDays.remove(((PlanChange.ProjectRemoved) change).getProjectCode());
+            } else if (change instanceof PlanChange.ProjectRescheduled) {
+                PlanChange.ProjectRescheduled rescheduled = (PlanChange.ProjectRescheduled) change;
+                this.reschedule(rescheduled.getProjectCode(), rescheduled.getStartDate(), rescheduled.getEndDate());
+            } else if (change instanceof PlanChange.EmployeeAdded) {
+                Employee employee = this.pps.findEmployee(((PlanChange.EmployeeAdded) change).getEmployeeNr());
+                if (employee != null) {
+                    this.employees.put(employee.getNumber(), employee);
+                }
+            } else if (change instanceof PlanChange.EmployeeRemoved) {
+                // its commitments remain, but it is no longer available for new ones
+                this.employees.remove(((PlanChange.EmployeeRemoved) change).getEmployeeNr());
+            } else if (change instanceof PlanChange.CommitmentChanged) {
+                PlanChange.CommitmentChanged changed = (PlanChange.CommitmentChanged) change;
+                this.addLoad(changed.getProjectCode(), changed.getEmployeeNr(), changed.getHoursPerDayDelta());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
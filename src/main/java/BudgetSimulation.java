@@ -0,0 +1,305 @@
+import utils.Calendar;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo simulation of the manpower budget risk of a plan
+ *
+ * Every run perturbs the end date of every project by a number of working days
+ * and the committed hours of every commitment by a factor, both drawn from configurable distributions,
+ * and calculates the total and monthly manpower budget of the perturbed plan.
+ * The plan is flattened once into primitive arrays of project spans and commitments,
+ * which all runs share; runs are split into chunks that run on all cores,
+ * each with its own SplittableRandom and its own scratch array, so runs allocate nothing.
+ * The results of a seed do not depend on the number of cores.
+ */
+public class BudgetSimulation {
+
+    /**
+     * a distribution to draw perturbations from
+     */
+    @FunctionalInterface
+    public interface Perturbation {
+        double sample(SplittableRandom random);
+
+        static Perturbation fixed(double value) {
+            return random -> value;
+        }
+
+        static Perturbation uniform(double min, double max) {
+            return random -> min + (max - min) * random.nextDouble();
+        }
+
+        static Perturbation normal(double mean, double standardDeviation) {
+            return random -> {
+                // Box-Muller transform
+                double u = 1.0 - random.nextDouble();
+                double v = random.nextDouble();
+                return mean + standardDeviation * Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+            };
+        }
+
+        /**
+         * @throws IllegalArgumentException unless min <= mode <= max
+         */
+        static Perturbation triangular(double min, double mode, double max) {
+            if (!(min <= mode && mode <= max)) {
+                throw new IllegalArgumentException("Invalid triangular distribution " + min + ", " + mode + ", " + max);
+            }
+            if (min == max) {
+                return fixed(min);
+            }
+            double split = (mode - min) / (max - min);
+            return random -> {
+                double u = random.nextDouble();
+                return (u < split ? min + Math.sqrt(u * (max - min) * (mode - min))
+                        : max - Math.sqrt((1 - u) * (max - min) * (max - mode)));
+            };
+        }
+    }
+
+    /**
+     * the budgets of all runs of a simulation
+     */
+    public static class Result {
+        private final int runs;
+        private final double[] totals;              // sorted total budgets of all runs
+        private final double[][] monthlyBudgets;    // sorted budgets of all runs by month, null if never spent
+
+        Result(int runs, double[] totals, double[][] monthlyBudgets) {
+            this.runs = runs;
+            this.totals = totals;
+            this.monthlyBudgets = monthlyBudgets;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public double getMeanTotalBudget() {
+            return Arrays.stream(this.totals).average().orElse(0);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the total manpower budget at the percentile of all runs
+         */
+        public double getTotalBudgetPercentile(double percentile) {
+            return percentile(this.totals, percentile);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the manpower budget at the percentile of all runs by month,
+         *          as in PPS.calculateCumulativeMonthlySpends, for all months with any spend
+         */
+        public Map<Month, Double> getMonthlyBudgetPercentiles(double percentile) {
+            Map<Month, Double> percentiles = new TreeMap<>();
+            for (Month month : Month.values()) {
+                if (this.monthlyBudgets[month.ordinal()] != null) {
+                    percentiles.put(month, percentile(this.monthlyBudgets[month.ordinal()], percentile));
+                }
+            }
+            return percentiles;
+        }
+
+        private static double percentile(double[] sorted, double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile out of range: " + percentile);
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result(%d runs: P50 %.0f, P90 %.0f)",
+                    this.runs, this.getTotalBudgetPercentile(50), this.getTotalBudgetPercentile(90));
+        }
+    }
+
+    private static final int N_MONTHS = Month.values().length;
+    private static final int MAX_DELAY_DAYS = 2 * 261;  // the maximum delay of any end date, in working days
+
+    // the projects and their commitments as flat arrays in CSR layout
+    private final int numProjects;
+    private final int[] projectStarts;          // the working day index of the first day of every project
+    private final int[] projectDays;            // the number of working days of every project
+    private final long[] projectRates;          // the daily cost rate of every project
+    private final int[] commitmentOffsets;      // the first commitment of every project, and the end
+    private final int[] commitmentHours;
+    private final int[] commitmentWages;
+
+    // the calendar months of the working days from the first start until the last end plus the maximum delay
+    private final int horizon;                  // the number of working days
+    private final int[] monthOfDay;             // the number of the calendar month of every working day
+    private final int[] monthStarts;            // the first working day index of every calendar month, and the end
+    private final int[] monthOrdinals;          // the Month.ordinal of every calendar month
+
+    private Perturbation endDateDelay;          // in working days, null for no delay
+    private Perturbation hoursFactor;           // a factor of the committed hours, null for no change
+
+    public BudgetSimulation(PPS pps) {
+        List<Project> projects = new ArrayList<>();
+        int numCommitments = 0;
+        LocalDate first = null, last = null;
+        for (Project project : pps.getSnapshot().getProjects()) {
+            if (project.getStartDate() == null || project.getEndDate() == null || project.getNumWorkingDays() == 0) {
+                continue;
+            }
+            projects.add(project);
+            numCommitments += project.getCommittedHoursPerDay().size();
+            first = (first == null || project.getStartDate().isBefore(first) ? project.getStartDate() : first);
+            last = (last == null || project.getEndDate().isAfter(last) ? project.getEndDate() : last);
+        }
+
+        this.numProjects = projects.size();
+        this.projectStarts = new int[this.numProjects];
+        this.projectDays = new int[this.numProjects];
+        this.projectRates = new long[this.numProjects];
+        this.commitmentOffsets = new int[this.numProjects + 1];
+        this.commitmentHours = new int[numCommitments];
+        this.commitmentWages = new int[numCommitments];
+        LocalDate origin = (first != null ? Calendar.firstWorkingDayFrom(first) : LocalDate.of(2000, 1, 3));
+        int c = 0;
+        for (int p = 0; p < this.numProjects; p++) {
+            Project project = projects.get(p);
+            this.projectStarts[p] = Calendar.workingDayIndex(origin, project.getStartDate());
+            this.projectDays[p] = project.getNumWorkingDays();
+            this.projectRates[p] = project.getDailyCostRate();
+            this.commitmentOffsets[p] = c;
+            for (Map.Entry<Employee, Integer> commitment : project.getCommittedHoursPerDay().entrySet()) {
+                this.commitmentHours[c] = commitment.getValue();
+                this.commitmentWages[c] = commitment.getKey().getHourlyWage();
+                c++;
+            }
+        }
+        this.commitmentOffsets[this.numProjects] = c;
+
+        this.horizon = (last != null ? Calendar.getNumWorkingDays(origin, last) : 0) + MAX_DELAY_DAYS;
+        this.monthOfDay = new int[this.horizon];
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ordinals = new ArrayList<>();
+        LocalDate date = origin;
+        YearMonth current = null;
+        for (int day = 0; day < this.horizon; day++) {
+            if (!YearMonth.from(date).equals(current)) {
+                current = YearMonth.from(date);
+                starts.add(day);
+                ordinals.add(date.getMonth().ordinal());
+            }
+            this.monthOfDay[day] = starts.size() - 1;
+            date = Calendar.firstWorkingDayFrom(date.plusDays(1));
+        }
+        starts.add(this.horizon);
+        this.monthStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        this.monthOrdinals = ordinals.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * perturbs the end date of every project by a number of working days drawn from the distribution;
+     * every project keeps at least one working day
+     * @param delay
+     * @return
+     */
+    public BudgetSimulation setEndDateDelay(Perturbation delay) {
+        this.endDateDelay = delay;
+        return this;
+    }
+
+    /**
+     * perturbs the committed hours of every commitment by a factor drawn from the distribution;
+     * negative hours are taken as 0
+     * @param factor
+     * @return
+     */
+    public BudgetSimulation setHoursFactor(Perturbation factor) {
+        this.hoursFactor = factor;
+        return this;
+    }
+
+    /**
+     * runs the simulation on all cores
+     * @param runs
+     * @param seed the seed of all random draws
+     * @return
+     */
+    public Result run(int runs, long seed) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("Number of runs must be positive: " + runs);
+        }
+        double[] totals = new double[runs];
+        double[] monthly = new double[runs * N_MONTHS];
+
+        // split the runs into a fixed number of chunks, each with its own generator, independent of the cores
+        int numChunks = Math.min(runs, 64);
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[numChunks];
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            randoms[chunk] = root.split();
+        }
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            double[] months = new double[N_MONTHS];
+            for (int run = (int) ((long) runs * chunk / numChunks); run < (long) runs * (chunk + 1) / numChunks; run++) {
+                totals[run] = this.simulate(randoms[chunk], months);
+                System.arraycopy(months, 0, monthly, run * N_MONTHS, N_MONTHS);
+            }
+        });
+
+        Arrays.sort(totals);
+        double[][] monthlyBudgets = new double[N_MONTHS][];
+        for (int month = 0; month < N_MONTHS; month++) {
+            double[] budgets = new double[runs];
+            boolean spent = false;
+            for (int run = 0; run < runs; run++) {
+                budgets[run] = monthly[run * N_MONTHS + month];
+                spent |= (budgets[run] != 0);
+            }
+            if (spent) {
+                Arrays.sort(budgets);
+                monthlyBudgets[month] = budgets;
+            }
+        }
+        return new Result(runs, totals, monthlyBudgets);
+    }
+
+    /**
+     * simulates a single run
+     * @param random
+     * @param months receives the budget by Month.ordinal
+     * @return the total budget
+     */
+    private double simulate(SplittableRandom random, double[] months) {
+        Arrays.fill(months, 0);
+        double total = 0;
+        for (int p = 0; p < this.numProjects; p++) {
+            double rate = this.projectRates[p];
+            if (this.hoursFactor != null) {
+                rate = 0;
+                for (int c = this.commitmentOffsets[p]; c < this.commitmentOffsets[p + 1]; c++) {
+                    rate += Math.max(0, this.commitmentHours[c] * this.hoursFactor.sample(random)) * this.commitmentWages[c];
+                }
+            }
+            int start = this.projectStarts[p];
+            int days = this.projectDays[p];
+            if (this.endDateDelay != null) {
+                days += (int) Math.round(this.endDateDelay.sample(random));
+                days = Math.max(1, Math.min(days, this.horizon - start));
+            }
+            total += rate * days;
+
+            // spread the spend over the calendar months of the working days
+            int end = start + days;
+            for (int day = start, month = this.monthOfDay[start]; day < end; month++) {
+                int next = Math.min(end, this.monthStarts[month + 1]);
+                months[this.monthOrdinals[month]] += rate * (next - day);
+                day = next;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,35 @@
+import java.util.*;
+
+/**
+ * Immutable index of the projects that every employee is committed to, by employee number
+ * Employees from outside of the plan are indexed as well, such that all projects that commit
+ * an employee are found without visiting any other project
+ */
+public class CommitmentIndex {
+    private final Map<Integer, List<Project>> committedProjects = new HashMap<>();
+
+    public CommitmentIndex(Collection<Project> projects) {
+        for (Project project : projects) {
+            for (Employee employee : project.getCommittedHoursPerDay().keySet()) {
+                this.committedProjects.computeIfAbsent(employee.getNumber(), number -> new ArrayList<>()).add(project);
+            }
+        }
+    }
+
+    /**
+     * @return the number of employees with any commitment
+     */
+    public int size() {
+        return this.committedProjects.size();
+    }
+
+    /**
+     * finds all projects that commit the employee with the given number
+     * @param employeeNr
+     * @return the projects, in the order of the plan
+     */
+    public List<Project> findCommittedProjects(int employeeNr) {
+        List<Project> projects = this.committedProjects.get(employeeNr);
+        return (projects != null ? Collections.unmodifiableList(projects) : List.of());
+    }
+}
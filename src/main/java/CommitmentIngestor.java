@@ -0,0 +1,216 @@
+import utils.SLF4J;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects commitment updates from many producer threads concurrently
+ * and applies them in batches to a PPS through its single-writer update API.
+ *
+ * Every (project, employee) pair has its own atomic counter of the hours that have not been applied yet,
+ * so producers never block each other while adding hours to different pairs, and every counter is linearizable.
+ * Producers queue the counters that they touch, so an application only visits the counters that have been touched
+ * since the previous application and the pending ones, and releases every counter that it has applied completely.
+ * Applying to the PPS only transfers the hours that have been added since the previous application,
+ * so no update is lost if producers keep adding while a batch is being applied.
+ * Commitments for projects or employees that are not in the PPS remain pending for a limited number of applications,
+ * and only up to a maximum number of pending commitments; the oldest pending commitments beyond these limits are dropped.
+ */
+public class CommitmentIngestor {
+
+    public static final int DEFAULT_MAX_PENDING = 10000;
+    public static final int DEFAULT_MAX_PENDING_APPLICATIONS = 100;
+
+    private static class Counter {
+        final String projectCode;
+        final int employeeNr;
+        final AtomicInteger unapplied = new AtomicInteger();    // the hours that have not been applied yet
+        final AtomicBoolean queued = new AtomicBoolean();       // whether the counter is queued as touched
+        long pendingSince = -1;                 // the first application that found the commitment pending, if any
+                                                // only accessed by the writer in applyTo
+
+        Counter(String projectCode, int employeeNr) {
+            this.projectCode = projectCode;
+            this.employeeNr = employeeNr;
+        }
+    }
+
+    private final ConcurrentMap<String, ConcurrentMap<Integer, Counter>> counters = new ConcurrentHashMap<>();
+    private final Queue<Counter> touched = new ConcurrentLinkedQueue<>();
+    private List<Counter> pending = new ArrayList<>();     // only accessed by the writer in applyTo
+    private final int maxPending;
+    private final int maxPendingApplications;
+    private long applications;                  // the number of calls of applyTo so far
+    private volatile int numPending;
+    private volatile long numDropped;
+
+    public CommitmentIngestor() {
+        this(DEFAULT_MAX_PENDING, DEFAULT_MAX_PENDING_APPLICATIONS);
+    }
+
+    /**
+     * @param maxPending             the maximum number of commitments that remain pending after an application
+     * @param maxPendingApplications the number of applications that find a commitment pending before it is dropped
+     */
+    public CommitmentIngestor(int maxPending, int maxPendingApplications) {
+        if (maxPending < 0 || maxPendingApplications < 1) {
+            throw new IllegalArgumentException("Invalid pending limits " + maxPending + ", " + maxPendingApplications);
+        }
+        this.maxPending = maxPending;
+        this.maxPendingApplications = maxPendingApplications;
+    }
+
+    /**
+     * adds hoursPerDay to the commitment of employee employeeNr on project projectCode
+     * can be called from any number of threads simultaneously
+     *
+     * @param projectCode
+     * @param employeeNr
+     * @param hoursPerDay
+     * @return the total hours per day ingested for this employee on this project that have not been applied yet,
+     *          including these
+     */
+    public int addCommitment(String projectCode, int employeeNr, int hoursPerDay) {
+        Counter counter = this.counters
+                .computeIfAbsent(projectCode, code -> new ConcurrentHashMap<>())
+                .computeIfAbsent(employeeNr, number -> new Counter(projectCode, number));
+        int total = counter.unapplied.addAndGet(hoursPerDay);
+        if (counter.queued.compareAndSet(false, true)) {
+            this.touched.add(counter);
+        }
+        return total;
+    }
+
+    /**
+     * provides the total hours per day ingested for the employee on the project that have not been applied yet
+     *
+     * @param projectCode
+     * @param employeeNr
+     * @return
+     */
+    public int getCommittedHours(String projectCode, int employeeNr) {
+        Map<Integer, Counter> projectCounters = this.counters.get(projectCode);
+        Counter counter = (projectCounters != null ? projectCounters.get(employeeNr) : null);
+        return (counter != null ? counter.unapplied.get() : 0);
+    }
+
+    /**
+     * @return the number of commitments that remained pending after the last application
+     */
+    public int getNumPending() {
+        return this.numPending;
+    }
+
+    /**
+     * @return the number of pending commitments that have been dropped so far
+     */
+    public long getNumDropped() {
+        return this.numDropped;
+    }
+
+    /**
+     * applies all hours that have been ingested since the previous call to the commitments of the pps
+     * commitments for unknown projects or employees remain pending until these have been added to the pps,
+     * within the limits of the ingestor
+     * hours that are added to a commitment while it is being dropped may be dropped with it
+     *
+     * @param pps
+     * @return the snapshot that has been published by the pps after applying the commitments
+     */
+    public synchronized PPS applyTo(PPS pps) {
+        long application = ++this.applications;
+        // the pending commitments are retried together with all counters that have been touched
+        List<Counter> batch = new ArrayList<>(this.pending);
+        Counter touched;
+        while ((touched = this.touched.poll()) != null) {
+            // hours that are added from here on queue the counter again
+            touched.queued.set(false);
+            if (touched.pendingSince < 0) {
+                batch.add(touched);
+            }
+        }
+        List<Counter> pending = new ArrayList<>();
+        int[] numVisited = { 0 };
+        try {
+            return pps.applyUpdate(builder -> {
+                PPS plan = builder.build();
+                for (Counter counter : batch) {
+                    Project project = plan.findProject(counter.projectCode);
+                    Employee employee = plan.findEmployee(counter.employeeNr);
+                    if (project == null || employee == null) {
+                        if (counter.pendingSince < 0) {
+                            counter.pendingSince = application;
+                        }
+                        pending.add(counter);
+                    } else {
+                        counter.pendingSince = -1;
+                        int hours = counter.unapplied.get();
+                        if (hours != 0) {
+                            builder.addCommitment(project, employee, hours);
+                            counter.unapplied.addAndGet(-hours);
+                        }
+                        this.release(counter);
+                    }
+                    numVisited[0]++;
+                }
+            });
+        } finally {
+            // the counters that have not been visited by a failed update are retried by the next application
+            for (Counter counter : batch.subList(numVisited[0], batch.size())) {
+                if (counter.pendingSince >= 0) {
+                    pending.add(counter);
+                } else if (counter.queued.compareAndSet(false, true)) {
+                    this.touched.add(counter);
+                }
+            }
+            this.dropPending(pending, application);
+        }
+    }
+
+    /**
+     * removes the counter of a commitment that has been applied completely
+     * hours that are added to the counter meanwhile have queued it again, and are applied with it
+     */
+    private void release(Counter counter) {
+        if (counter.unapplied.get() == 0) {
+            ConcurrentMap<Integer, Counter> projectCounters = this.counters.get(counter.projectCode);
+            if (projectCounters != null && projectCounters.remove(counter.employeeNr, counter)
+                    && projectCounters.isEmpty()) {
+                this.counters.remove(counter.projectCode, projectCounters);
+            }
+        }
+    }
+
+    /**
+     * drops the commitments that have been pending for too many applications,
+     * and the oldest ones beyond the maximum number of pending commitments
+     */
+    private void dropPending(List<Counter> pending, long application) {
+        pending.sort(Comparator.comparingLong(counter -> counter.pendingSince));
+        int numDropped = 0;
+        for (Counter counter : pending) {
+            if (application - counter.pendingSince + 1 < this.maxPendingApplications
+                    && pending.size() - numDropped <= this.maxPending) {
+                break;
+            }
+            counter.unapplied.set(0);
+            counter.pendingSince = -1;
+            this.release(counter);
+            numDropped++;
+        }
+        if (numDropped > 0) {
+            SLF4J.LOGGER.warn(String.format("Dropped %d pending commitments of unknown projects or employees", numDropped));
+            this.numDropped += numDropped;
+        }
+        this.pending = new ArrayList<>(pending.subList(numDropped, pending.size()));
+        this.numPending = this.pending.size();
+    }
+}
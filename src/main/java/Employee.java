@@ -4,6 +4,8 @@ import utils.XMLParser;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class Employee implements Comparable<Employee> {
     public static final int MAX_JUNIOR_WAGE = 30;
@@ -16,33 +18,299 @@ public class Employee implements Comparable<Employee> {
     private String name;
     private int hourlyWage;                 // hourly charge rate of an Employee
                                             // used to calculate cost of project manpower
-    private Set<Project> managedProjects;   // the projects that are managed by this employee
-    private Set<Project> assignedProjects;  // the projects that this employee is working on
+    private volatile Set<Project> managedProjects;  // the projects that are managed by this employee
+    private volatile Set<Project> assignedProjects; // the projects that this employee is working on
                                             // (the project manager is also assigned to his/her project)
+                                            // both sets are only allocated with their first project
+    private volatile PPS plan;              // the plan that tracks the changes of this employee, if any
+    private State state;                    // the captured state of a frozen employee of a published snapshot,
+                                            // null for a live employee
+    private PPS snapshot;                   // the snapshot that resolves the projects of a frozen employee
+    private int managedBudget;              // cached total budget of the managed projects
+    private volatile long managedBudgetVersion = -1;
+                                            // the budget version of the plan at which the budget was calculated
 
     public Employee(int number) {
-        this.number = number;
-        this.name = Names.nextFullNameWithMI(number);
-        lastNumber = Math.max(number, lastNumber);
-        this.hourlyWage = 16 + randomizer.nextInt(MAX_WAGE -15);
-        this.managedProjects = new HashSet<>();
-        this.assignedProjects = new HashSet<>();
+        this(number, 16 + randomizer.nextInt(MAX_WAGE -15));
     }
 
     public Employee(int number, int hourlyWage) {
-        this(number);
-        this.hourlyWage = hourlyWage;
+        this(number, Names.nextFullNameWithMI(number), hourlyWage);
     }
 
+    /**
+     * creates an employee with the given attributes only, without any generated name or wage
+     * and without any project sets, as used for bulk loading
+     * @param number
+     * @param name
+     * @param hourlyWage
+     */
     public Employee(int number, String name, int hourlyWage) {
-        this(number, hourlyWage);
+        this.number = number;
         this.name = name;
+        this.hourlyWage = hourlyWage;
+        lastNumber = Math.max(number, lastNumber);
     }
 
     public Employee() {
         this(lastNumber + 1 + randomizer.nextInt(8));
     }
 
+    /**
+     * creates a placeholder for an employee that is referred to by number only,
+     * which is to be replaced by the complete employee
+     * @param number
+     * @return
+     */
+    static Employee reference(int number) {
+        return new Employee(number, null, 0);
+    }
+
+    /**
+     * creates a frozen employee of a published snapshot from its captured state
+     * its projects are resolved through the snapshot when they are first needed
+     * @param state
+     * @param snapshot
+     */
+    Employee(State state, PPS snapshot) {
+        this.number = state.number;
+        this.name = state.name;
+        this.hourlyWage = state.hourlyWage;
+        this.state = state;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * The immutable state of an employee, as captured in a published snapshot
+     * The projects are captured by their codes, which are resolved through the snapshot.
+     * Projects that are not part of the plan are captured along, by their attributes only.
+     */
+    static final class State {
+        private static final String[] NO_CODES = {};
+
+        final int number;
+        final String name;
+        final int hourlyWage;
+        final String[] managedCodes;
+        final String[] assignedCodes;
+        final Map<String, Project.State> outsiders;     // the projects that are not part of the plan, by code
+
+        private State(Employee employee, String[] managedCodes, String[] assignedCodes,
+                      Map<String, Project.State> outsiders) {
+            this.number = employee.number;
+            this.name = employee.name;
+            this.hourlyWage = employee.hourlyWage;
+            this.managedCodes = managedCodes;
+            this.assignedCodes = assignedCodes;
+            this.outsiders = outsiders;
+        }
+    }
+
+    /**
+     * captures the current state of this employee as a member of the plan
+     * @param plan
+     * @return
+     */
+    State capture(PPS plan) {
+        Map<String, Project.State> outsiders = new HashMap<>();
+        String[] managedCodes = captureCodes(this.managedProjects(), plan, outsiders);
+        String[] assignedCodes = captureCodes(this.assignedProjects(), plan, outsiders);
+        return new State(this, managedCodes, assignedCodes,
+                (outsiders.isEmpty() ? Collections.emptyMap() : outsiders));
+    }
+
+    /**
+     * captures the attributes of this employee only, as a commitment of a project to an employee outside of the plan
+     * @return
+     */
+    State captureAttributes() {
+        return new State(this, State.NO_CODES, State.NO_CODES, Collections.emptyMap());
+    }
+
+    private static String[] captureCodes(Set<Project> projects, PPS plan, Map<String, Project.State> outsiders) {
+        if (projects == null || projects.isEmpty()) {
+            return State.NO_CODES;
+        }
+        String[] codes = new String[projects.size()];
+        int i = 0;
+        for (Project project : projects) {
+            codes[i++] = project.getCode();
+            if (plan.findProject(project.getCode()) == null) {
+                outsiders.putIfAbsent(project.getCode(), project.captureAttributes());
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * resolves the projects of a frozen employee through its snapshot
+     */
+    private Set<Project> resolveProjects(String[] codes) {
+        Set<Project> projects = new HashSet<>(codes.length * 4 / 3 + 1);
+        for (String code : codes) {
+            Project project = this.snapshot.findProject(code);
+            projects.add(project != null ? project : new Project(this.state.outsiders.get(code), this.snapshot));
+        }
+        return Collections.unmodifiableSet(projects);
+    }
+
+    PPS getPlan() {
+        return this.plan;
+    }
+
+    /**
+     * attaches this employee to the plan that tracks its changes, or detaches it with null
+     * an employee tracks the last plan that it has been added to
+     * @param plan
+     */
+    void setPlan(PPS plan) {
+        if (this.state == null) {
+            this.plan = plan;
+            this.managedBudgetVersion = -1;
+        }
+    }
+
+    /**
+     * @return the budget version of the plan until which the cached budget remains valid,
+     *          0 for a frozen employee, of which the budget never changes, or -1 if the budget cannot be cached
+     */
+    private long budgetVersion() {
+        if (this.state != null) {
+            return 0;
+        }
+        PPS plan = this.plan;
+        return (plan != null ? plan.getBudgetVersion() : -1);
+    }
+
+    /**
+     * @return the lock that serialises the changes of this employee with the publication of snapshots of its plan
+     */
+    private Object lock() {
+        PPS plan = this.plan;
+        return (plan != null ? plan : this);
+    }
+
+    /**
+     * reports a change of this employee to its plan
+     */
+    private void changed() {
+        PPS plan = this.plan;
+        if (plan != null) {
+            plan.changed(this);
+        }
+    }
+
+    /**
+     * reports a change of this employee to its plan, which notifies its listeners of it
+     * @param change
+     */
+    private void changed(Supplier<PlanChange> change) {
+        PPS plan = this.plan;
+        if (plan != null) {
+            plan.changed(this, change);
+        }
+    }
+
+    /**
+     * @param codes
+     * @return whether this employee manages or is assigned to any of the projects
+     */
+    boolean refersToAny(Set<String> codes) {
+        Set<Project> managedProjects = this.managedProjects();
+        Set<Project> assignedProjects = this.assignedProjects();
+        return (managedProjects != null && managedProjects.stream().anyMatch(project -> codes.contains(project.getCode())))
+                || (assignedProjects != null && assignedProjects.stream().anyMatch(project -> codes.contains(project.getCode())));
+    }
+
+    /**
+     * A set of projects that reports every change to its employee
+     * It wraps a HashSet, rather than extending it, since it is not meant to be serialised with its employee.
+     */
+    private static class ProjectSet extends AbstractSet<Project> {
+        private final Employee employee;
+        private final boolean managed;          // whether these are the managed projects, or the assigned ones
+        private final Set<Project> projects;
+
+        ProjectSet(Employee employee, boolean managed, int initialCapacity) {
+            this.employee = employee;
+            this.managed = managed;
+            this.projects = new HashSet<>(initialCapacity);
+        }
+
+        private void changed(Project project, boolean added) {
+            this.employee.changed(() -> new PlanChange.AssignmentChanged(this.employee, project, this.managed, added));
+        }
+
+        @Override
+        public int size() {
+            return this.projects.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.projects.contains(o);
+        }
+
+        @Override
+        public boolean add(Project project) {
+            synchronized (this.employee.lock()) {
+                boolean added = this.projects.add(project);
+                if (added) {
+                    this.changed(project, true);
+                }
+                return added;
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            synchronized (this.employee.lock()) {
+                boolean removed = this.projects.remove(o);
+                if (removed) {
+                    this.changed((Project) o, false);
+                }
+                return removed;
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (this.employee.lock()) {
+                List<Project> removed = new ArrayList<>(this.projects);
+                this.projects.clear();
+                this.employee.changed();
+                removed.forEach(project -> this.changed(project, false));
+            }
+        }
+
+        @Override
+        public Iterator<Project> iterator() {
+            Iterator<Project> iterator = this.projects.iterator();
+            return new Iterator<Project>() {
+                Project current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Project next() {
+                    this.current = iterator.next();
+                    return this.current;
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (employee.lock()) {
+                        iterator.remove();
+                        ProjectSet.this.changed(this.current, false);
+                    }
+                }
+            };
+        }
+    }
+
     @Override
     public int compareTo(Employee o) {
         return this.number - o.number;
@@ -70,13 +338,19 @@ public class Employee implements Comparable<Employee> {
      * Calculates the total budget of all committed manpower
      * across all projects that this employee is managing
      * this is a.k.a. the total budget responsibility of the employee
+     * the budget is cached until anything in the plan of the employee changes
      * @return
      */
     public int calculateManagedBudget() {
-        return this.managedProjects
-                .stream()
-                .mapToInt(x->x.calculateManpowerBudget())
-                .sum();
+        long version = this.budgetVersion();
+        if (version < 0 || this.managedBudgetVersion != version) {
+            this.managedBudget = (this.getManagedProjectsLength() == 0 ? 0 : this.getManagedProjects()
+                    .stream()
+                    .mapToInt(x->x.calculateManpowerBudget())
+                    .sum());
+            this.managedBudgetVersion = version;
+        }
+        return this.managedBudget;
     }
 
     public int getNumber() {
@@ -91,16 +365,89 @@ public class Employee implements Comparable<Employee> {
         return hourlyWage;
     }
 
+    /**
+     * changes the hourly wage, which invalidates all cached budgets of the plan of the employee
+     * and of the plans of its assigned projects
+     * @param hourlyWage
+     */
+    public void setHourlyWage(int hourlyWage) {
+        if (this.state != null) {
+            throw new UnsupportedOperationException("Cannot change the wage of " + this + " in a snapshot");
+        }
+        List<Project> assignedProjects;
+        int previousWage;
+        synchronized (this.lock()) {
+            previousWage = this.hourlyWage;
+            this.hourlyWage = hourlyWage;
+            assignedProjects = (this.getAssignedProjectsLength() > 0
+                    ? new ArrayList<>(this.assignedProjects) : Collections.emptyList());
+            PPS plan = this.plan;
+            this.changed(() -> new PlanChange.WageChanged(this, previousWage, assignedProjects.stream()
+                    .filter(project -> project.getPlan() == plan)
+                    .collect(Collectors.toList())));
+        }
+        // projects of other plans commit this employee from outside of their plan
+        for (Project project : assignedProjects) {
+            PPS plan = project.getPlan();
+            if (plan != null && plan != this.plan) {
+                plan.changed(project, () -> new PlanChange.WageChanged(this, previousWage, List.of(project)));
+            }
+        }
+    }
+
     public Set<Project> getManagedProjects() {
-        return managedProjects;
+        Set<Project> projects = this.managedProjects();
+        if (projects == null) {
+            projects = new ProjectSet(this, true, 16);
+            this.managedProjects = projects;
+        }
+        return projects;
     }
 
     public Set<Project> getAssignedProjects() {
-        return assignedProjects;
+        Set<Project> projects = this.assignedProjects();
+        if (projects == null) {
+            projects = new ProjectSet(this, false, 16);
+            this.assignedProjects = projects;
+        }
+        return projects;
+    }
+
+    /**
+     * @return the managed projects, which are resolved first if this employee is frozen, or null if not allocated
+     */
+    private Set<Project> managedProjects() {
+        Set<Project> projects = this.managedProjects;
+        if (projects == null && this.state != null) {
+            projects = this.resolveProjects(this.state.managedCodes);
+            this.managedProjects = projects;
+        }
+        return projects;
+    }
+
+    private Set<Project> assignedProjects() {
+        Set<Project> projects = this.assignedProjects;
+        if (projects == null && this.state != null) {
+            projects = this.resolveProjects(this.state.assignedCodes);
+            this.assignedProjects = projects;
+        }
+        return projects;
+    }
+
+    public int getManagedProjectsLength() {
+        if (this.state != null) {
+            return this.state.managedCodes.length;
+        }
+        Set<Project> projects = this.managedProjects;
+        return (projects != null ? projects.size() : 0);
     }
 
     public int getAssignedProjectsLength() {
-        return assignedProjects.size();
+        if (this.state != null) {
+            return this.state.assignedCodes.length;
+        }
+        Set<Project> projects = this.assignedProjects;
+        return (projects != null ? projects.size() : 0);
     }
 
     // Below are helper attributes and methods for sample generation
@@ -112,7 +459,8 @@ public class Employee implements Comparable<Employee> {
             xmlParser.nextTag();
             if (employees != null) {
                 Employee employee;
-                while ((employee = importFromXML(xmlParser, projects)) != null) {
+                List<Project> references = new ArrayList<>();
+                while ((employee = importFromXML(xmlParser, projects, references)) != null) {
                     employees.add(employee);
                 }
             }
@@ -122,6 +470,15 @@ public class Employee implements Comparable<Employee> {
     }
 
     public static Employee importFromXML(XMLParser xmlParser, Set<Project> projects) throws XMLStreamException {
+        return importFromXML(xmlParser, projects, new ArrayList<>());
+    }
+
+    /**
+     * imports an employee with project sets that are sized to its references, if any
+     * @param references a scratch list to collect the references, which can be reused for the next employee
+     */
+    private static Employee importFromXML(XMLParser xmlParser, Set<Project> projects,
+                                          List<Project> references) throws XMLStreamException {
         if (xmlParser.nextBeginTag("employee")) {
             int number = xmlParser.getIntegerAttributeValue(null, "number", 0);
             xmlParser.nextTag();
@@ -141,25 +498,11 @@ public class Employee implements Comparable<Employee> {
             Employee employee = new Employee(number, name, hourlyRate);
 
             if (xmlParser.nextBeginTag("managedProjects")) {
-                xmlParser.nextTag();
-                Project project;
-                while ((project = Project.importReferenceFromXML(xmlParser, projects)) != null) {
-                    employee.managedProjects.add(project);
-
-                    // replace the placeholder references in the project, if any
-                    project.updateReferences(employee);
-                }
+                employee.managedProjects = importReferencesFromXML(xmlParser, projects, employee, true, references);
                 xmlParser.findAndAcceptEndTag("managedProjects");
             }
             if (xmlParser.nextBeginTag("allocatedProjects")) {
-                xmlParser.nextTag();
-                Project project;
-                while ((project = Project.importReferenceFromXML(xmlParser, projects)) != null) {
-                    employee.assignedProjects.add(project);
-
-                    // replace the placeholder references in the project, if any
-                    project.updateReferences(employee);
-                }
+                employee.assignedProjects = importReferencesFromXML(xmlParser, projects, employee, false, references);
                 xmlParser.findAndAcceptEndTag("allocatedProjects");
             }
 
@@ -169,13 +512,39 @@ public class Employee implements Comparable<Employee> {
         return null;
     }
 
+    /**
+     * imports a list of project references
+     * @return a set of the referenced projects that is sized to the number of references, or null if there are none
+     */
+    private static Set<Project> importReferencesFromXML(XMLParser xmlParser, Set<Project> projects,
+                                                        Employee employee, boolean managed,
+                                                        List<Project> references) throws XMLStreamException {
+        xmlParser.nextTag();
+        references.clear();
+        Project project;
+        while ((project = Project.importReferenceFromXML(xmlParser, projects)) != null) {
+            references.add(project);
+
+            // replace the placeholder references in the project, if any
+            project.updateReferences(employee);
+        }
+        if (references.isEmpty()) {
+            return null;
+        }
+        Set<Project> referencedProjects = new ProjectSet(employee, managed, references.size() * 4 / 3 + 1);
+        referencedProjects.addAll(references);
+        return referencedProjects;
+    }
+
     public void updateReferences(Project project) {
         // replace the employee's references to project
-        if (this.managedProjects.removeIf(p -> p.equals(project))) {
-            this.managedProjects.add(project);
+        Set<Project> managedProjects = this.managedProjects;
+        Set<Project> assignedProjects = this.assignedProjects;
+        if (managedProjects != null && managedProjects.removeIf(p -> p.equals(project))) {
+            managedProjects.add(project);
         }
-        if (this.assignedProjects.removeIf(p -> p.equals(project))) {
-            this.assignedProjects.add(project);
+        if (assignedProjects != null && assignedProjects.removeIf(p -> p.equals(project))) {
+            assignedProjects.add(project);
         }
     }
 }
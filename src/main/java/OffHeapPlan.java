@@ -0,0 +1,866 @@
+import utils.Calendar;
+import utils.SLF4J;
+import utils.XMLParser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A read-only project planning that is stored outside of the Java heap
+ *
+ * Employees, projects, commitments and managed project references are stored as fixed-width records
+ * in direct or memory-mapped byte buffers, and all names, codes and titles in a separate area of UTF-8 bytes.
+ * Employees are found by number and projects by code through open-addressing hash tables,
+ * which are stored off-heap as well.
+ * The plan is imported from XML in a single streaming pass, followed by a pass over the records
+ * that calculates the daily cost rates of the projects and the managed budgets of the employees.
+ * Employees and projects are exposed as flyweight views on their records,
+ * such that import and statistics run with a small, constant heap footprint, whatever the size of the plan.
+ * The statistics are the same as those of PPS.
+ */
+public class OffHeapPlan implements Closeable {
+
+    /**
+     * where the records are stored
+     */
+    public enum Storage {
+        DIRECT,     // direct byte buffers, in native memory
+        MAPPED      // memory-mapped temporary files, paged in and out by the operating system
+    }
+
+    // the record layouts, as byte offsets of the fields
+    private static final int E_NUMBER = 0, E_WAGE = 4, E_NAME = 8, E_ASSIGNED = 16, E_MANAGED = 20,
+            E_MANAGED_BUDGET = 24, EMPLOYEE_BYTES = 32;
+    private static final int P_CODE = 0, P_TITLE = 8, P_CODE_HASH = 16, P_START = 20, P_END = 24,
+            P_WORKING_DAYS = 28, P_FIRST_COMMITMENT = 32, P_NUM_COMMITMENTS = 40, P_RATE = 48, PROJECT_BYTES = 56;
+    private static final int C_EMPLOYEE = 0, C_HOURS = 4, COMMITMENT_BYTES = 8;
+    private static final int R_EMPLOYEE = 0, R_PROJECT = 4, REFERENCE_BYTES = 8;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;  // the epoch day of a date that has not been specified
+
+    private final String name;
+    private final int planningYear;
+    private final Storage storage;
+    private final Path directory;               // the directory of the mapped files, if any
+
+    private final Area employees;
+    private final Area projects;
+    private final Area commitments;             // the commitments of every project, contiguously
+    private final Area managedReferences;       // the projects managed by every employee
+    private final Area strings;                 // [length][UTF-8 bytes] of all names, codes and titles
+    private HashIndex employeeIndex;            // employee records by number
+    private HashIndex projectIndex;             // project records by code
+
+    private OffHeapPlan(String name, int planningYear, Storage storage, Path directory) throws IOException {
+        this.name = name;
+        this.planningYear = planningYear;
+        this.storage = storage;
+        this.directory = directory;
+        this.employees = this.newArea(EMPLOYEE_BYTES);
+        this.projects = this.newArea(PROJECT_BYTES);
+        this.commitments = this.newArea(COMMITMENT_BYTES);
+        this.managedReferences = this.newArea(REFERENCE_BYTES);
+        this.strings = this.newArea(1);
+        this.employeeIndex = new HashIndex(this.newArea(Integer.BYTES), 1024);
+        this.projectIndex = new HashIndex(this.newArea(Integer.BYTES), 1024);
+    }
+
+    private Area newArea(int recordBytes) throws IOException {
+        return new Area(recordBytes, this.storage == Storage.MAPPED
+                ? Files.createTempFile(this.directory, "pps-", ".area") : null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPlanningYear() {
+        return planningYear;
+    }
+
+    public long getNumEmployees() {
+        return this.employees.size;
+    }
+
+    public long getNumProjects() {
+        return this.projects.size;
+    }
+
+    public long getNumCommitments() {
+        return this.commitments.size;
+    }
+
+    /**
+     * @return the number of bytes of all records, strings and hash tables outside of the heap
+     */
+    public long getOffHeapBytes() {
+        return this.employees.capacityBytes() + this.projects.capacityBytes() + this.commitments.capacityBytes()
+                + this.managedReferences.capacityBytes() + this.strings.capacityBytes()
+                + this.employeeIndex.slots.capacityBytes() + this.projectIndex.slots.capacityBytes();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OffHeapPlan_e%d_p%d_c%d", this.getNumEmployees(), this.getNumProjects(), this.getNumCommitments());
+    }
+
+    @Override
+    public void close() {
+        this.employees.close();
+        this.projects.close();
+        this.commitments.close();
+        this.managedReferences.close();
+        this.strings.close();
+        this.employeeIndex.slots.close();
+        this.projectIndex.slots.close();
+    }
+
+    /**
+     * A flyweight view on an employee record
+     */
+    public class EmployeeView {
+        private long record;
+
+        EmployeeView(long record) {
+            this.record = record;
+        }
+
+        public int getNumber() {
+            return employees.getInt(this.record, E_NUMBER);
+        }
+
+        public String getName() {
+            return readString(employees.getLong(this.record, E_NAME));
+        }
+
+        public int getHourlyWage() {
+            return employees.getInt(this.record, E_WAGE);
+        }
+
+        public int getAssignedProjectsLength() {
+            return employees.getInt(this.record, E_ASSIGNED);
+        }
+
+        public int getManagedProjectsLength() {
+            return employees.getInt(this.record, E_MANAGED);
+        }
+
+        /**
+         * @return the total manpower budget of all projects that are managed by this employee
+         */
+        public long calculateManagedBudget() {
+            return employees.getLong(this.record, E_MANAGED_BUDGET);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%d)", this.getName(), this.getNumber());
+        }
+    }
+
+    /**
+     * A flyweight view on a project record
+     */
+    public class ProjectView {
+        private long record;
+
+        ProjectView(long record) {
+            this.record = record;
+        }
+
+        public String getCode() {
+            return readString(projects.getLong(this.record, P_CODE));
+        }
+
+        public String getTitle() {
+            return readString(projects.getLong(this.record, P_TITLE));
+        }
+
+        /**
+         * @return the start date, or null if not specified
+         */
+        public LocalDate getStartDate() {
+            return toDate(projects.getInt(this.record, P_START));
+        }
+
+        /**
+         * @return the end date, or null if not specified
+         */
+        public LocalDate getEndDate() {
+            return toDate(projects.getInt(this.record, P_END));
+        }
+
+        public int getNumWorkingDays() {
+            return projects.getInt(this.record, P_WORKING_DAYS);
+        }
+
+        public long getDailyCostRate() {
+            return projects.getLong(this.record, P_RATE);
+        }
+
+        public long calculateManpowerBudget() {
+            return this.getDailyCostRate() * this.getNumWorkingDays();
+        }
+
+        public int getNumCommitments() {
+            return projects.getInt(this.record, P_NUM_COMMITMENTS);
+        }
+
+        /**
+         * @param employeeNr
+         * @return the committed hours per day of the employee on this project, or 0
+         */
+        public int getCommittedHoursPerDay(int employeeNr) {
+            long first = projects.getLong(this.record, P_FIRST_COMMITMENT);
+            int hours = 0;
+            for (long c = first; c < first + this.getNumCommitments(); c++) {
+                if (commitments.getInt(c, C_EMPLOYEE) == employeeNr) {
+                    hours += commitments.getInt(c, C_HOURS);
+                }
+            }
+            return hours;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", this.getTitle(), this.getCode());
+        }
+    }
+
+    /**
+     * visits all employees with a single flyweight view, which must not be retained by the action
+     * @param action
+     */
+    public void forEachEmployee(Consumer<EmployeeView> action) {
+        EmployeeView view = new EmployeeView(0);
+        for (view.record = 0; view.record < this.employees.size; view.record++) {
+            action.accept(view);
+        }
+    }
+
+    /**
+     * visits all projects with a single flyweight view, which must not be retained by the action
+     * @param action
+     */
+    public void forEachProject(Consumer<ProjectView> action) {
+        ProjectView view = new ProjectView(0);
+        for (view.record = 0; view.record < this.projects.size; view.record++) {
+            action.accept(view);
+        }
+    }
+
+    /**
+     * @param number
+     * @return a view on the employee with the number, or null if the number is not known
+     */
+    public EmployeeView findEmployee(int number) {
+        long record = this.findEmployeeRecord(number);
+        return (record >= 0 ? new EmployeeView(record) : null);
+    }
+
+    /**
+     * @param code
+     * @return a view on the project with the code, or null if the code is not known
+     */
+    public ProjectView findProject(String code) {
+        long record = this.findProjectRecord(code.getBytes(StandardCharsets.UTF_8));
+        return (record >= 0 ? new ProjectView(record) : null);
+    }
+
+    private long findEmployeeRecord(int number) {
+        for (long slot = this.employeeIndex.home(number); ; slot = this.employeeIndex.next(slot)) {
+            long record = this.employeeIndex.get(slot);
+            if (record < 0 || this.employees.getInt(record, E_NUMBER) == number) {
+                return record;
+            }
+        }
+    }
+
+    private long findProjectRecord(byte[] code) {
+        int hash = Arrays.hashCode(code);
+        for (long slot = this.projectIndex.home(hash); ; slot = this.projectIndex.next(slot)) {
+            long record = this.projectIndex.get(slot);
+            if (record < 0 || this.projects.getInt(record, P_CODE_HASH) == hash
+                    && this.stringEquals(this.projects.getLong(record, P_CODE), code)) {
+                return record;
+            }
+        }
+    }
+
+    // Below are the statistics of PPS, calculated in a single pass over the records
+
+    /**
+     * calculates the average hourly wage of all employees
+     * @return
+     */
+    public double calculateAverageHourlyWage() {
+        long totalWage = 0;
+        for (long e = 0; e < this.employees.size; e++) {
+            totalWage += this.employees.getInt(e, E_WAGE);
+        }
+        return (double) totalWage / this.employees.size;
+    }
+
+    /**
+     * finds the project with the highest number of available working days
+     * @return a view on the project, or null if there are no projects
+     */
+    public ProjectView calculateLongestProject() {
+        long longest = -1;
+        for (long p = 0; p < this.projects.size; p++) {
+            if (longest < 0 || this.projects.getInt(p, P_WORKING_DAYS) > this.projects.getInt(longest, P_WORKING_DAYS)) {
+                longest = p;
+            }
+        }
+        return (longest >= 0 ? new ProjectView(longest) : null);
+    }
+
+    /**
+     * calculates the total budget for assigned employees across all projects
+     * @return
+     */
+    public long calculateTotalManpowerBudget() {
+        long budget = 0;
+        for (long p = 0; p < this.projects.size; p++) {
+            budget += this.projects.getLong(p, P_RATE) * this.projects.getInt(p, P_WORKING_DAYS);
+        }
+        return budget;
+    }
+
+    /**
+     * finds the employees that are assigned to the highest number of different projects
+     * @return the numbers of these employees
+     */
+    public Set<Integer> calculateMostInvolvedEmployees() {
+        Set<Integer> numbers = new TreeSet<>();
+        int most = 0;
+        for (long e = 0; e < this.employees.size; e++) {
+            int assigned = this.employees.getInt(e, E_ASSIGNED);
+            if (assigned > most) {
+                numbers.clear();
+                most = assigned;
+            }
+            if (assigned == most) {
+                numbers.add(this.employees.getInt(e, E_NUMBER));
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * calculates the total managed budget per employee with minWage <= hourly wage <= maxWage
+     * @param minWage
+     * @param maxWage
+     * @return the managed budgets by employee number
+     */
+    public Map<Integer, Long> calculateManagedBudgetOverview(int minWage, int maxWage) {
+        Map<Integer, Long> overview = new TreeMap<>();
+        for (long e = 0; e < this.employees.size; e++) {
+            int wage = this.employees.getInt(e, E_WAGE);
+            if (wage >= minWage && wage <= maxWage) {
+                overview.put(this.employees.getInt(e, E_NUMBER), this.employees.getLong(e, E_MANAGED_BUDGET));
+            }
+        }
+        return overview;
+    }
+
+    /**
+     * calculates the total spends by month across all projects, combining the months of different years
+     * @return
+     */
+    public Map<Month, Long> calculateCumulativeMonthlySpends() {
+        long[] spends = new long[Month.values().length];
+        boolean[] active = new boolean[Month.values().length];
+        for (long p = 0; p < this.projects.size; p++) {
+            LocalDate start = toDate(this.projects.getInt(p, P_START));
+            LocalDate end = toDate(this.projects.getInt(p, P_END));
+            if (start == null || end == null) {
+                continue;
+            }
+            long rate = this.projects.getLong(p, P_RATE);
+            for (LocalDate month = start.withDayOfMonth(1); !month.isAfter(end); month = month.plusMonths(1)) {
+                LocalDate from = (month.isBefore(start) ? start : month);
+                LocalDate monthEnd = month.plusMonths(1).minusDays(1);
+                int days = Calendar.getNumWorkingDays(from, monthEnd.isAfter(end) ? end : monthEnd);
+                if (days > 0) {
+                    spends[month.getMonthValue() - 1] += days * rate;
+                    active[month.getMonthValue() - 1] = true;
+                }
+            }
+        }
+        Map<Month, Long> monthlySpends = new TreeMap<>();
+        for (Month month : Month.values()) {
+            if (active[month.ordinal()]) {
+                monthlySpends.put(month, spends[month.ordinal()]);
+            }
+        }
+        return monthlySpends;
+    }
+
+    // Below are the streaming import from XML and the storage of records
+
+    /**
+     * Loads a complete planning from an XML file in the resources folder into off-heap storage
+     * @param resourceName
+     * @param storage
+     * @return the plan, or null if it could not be loaded
+     */
+    public static OffHeapPlan importFromXML(String resourceName, Storage storage) {
+        InputStream input = OffHeapPlan.class.getClassLoader().getResourceAsStream(resourceName);
+        if (input == null) {
+            SLF4J.LOGGER.error("Cannot find resource '{}'", resourceName);
+            return null;
+        }
+        return importFromXML(resourceName, input, storage, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Loads a complete planning from an XML stream into off-heap storage
+     * @param name      the name of the plan
+     * @param input     the XML content, which is closed after the import
+     * @param storage
+     * @param directory the directory for the mapped files of MAPPED storage
+     * @return the plan, or null if it could not be loaded
+     */
+    public static OffHeapPlan importFromXML(String name, InputStream input, Storage storage, Path directory) {
+        OffHeapPlan plan = null;
+        try (InputStream content = input) {
+            XMLParser xmlParser = new XMLParser(content);
+            xmlParser.nextTag();
+            xmlParser.require(XMLStreamConstants.START_ELEMENT, null, "projectPlanning");
+            int year = xmlParser.getIntegerAttributeValue(null, "year", 2000);
+            xmlParser.nextTag();
+
+            plan = new OffHeapPlan(name, year, storage, directory);
+            if (xmlParser.nextBeginTag("projects")) {
+                xmlParser.nextTag();
+                while (plan.importProject(xmlParser)) {
+                }
+                xmlParser.findAndAcceptEndTag("projects");
+            }
+            if (xmlParser.nextBeginTag("employees")) {
+                xmlParser.nextTag();
+                while (plan.importEmployee(xmlParser)) {
+                }
+                xmlParser.findAndAcceptEndTag("employees");
+            }
+            plan.calculateBudgets();
+            return plan;
+
+        } catch (Exception ex) {
+            SLF4J.logException("XML error in '" + name + "'", ex);
+            if (plan != null) {
+                plan.close();
+            }
+        }
+        return null;
+    }
+
+    private boolean importProject(XMLParser xmlParser) throws XMLStreamException {
+        if (!xmlParser.nextBeginTag("project")) {
+            return false;
+        }
+        byte[] code = xmlParser.getAttributeValue(null, "code").getBytes(StandardCharsets.UTF_8);
+        xmlParser.nextTag();
+
+        String title = "";
+        if (xmlParser.nextBeginTag("title")) {
+            title = xmlParser.getElementText();
+            xmlParser.findAndAcceptEndTag("title");
+        }
+        LocalDate startDate = null;
+        if (xmlParser.nextBeginTag("startDate")) {
+            startDate = Calendar.firstWorkingDayFrom(LocalDate.parse(xmlParser.getElementText()));
+            xmlParser.findAndAcceptEndTag("startDate");
+        }
+        LocalDate endDate = null;
+        if (xmlParser.nextBeginTag("endDate")) {
+            endDate = Calendar.lastWorkingDayUntil(LocalDate.parse(xmlParser.getElementText()));
+            xmlParser.findAndAcceptEndTag("endDate");
+        }
+
+        // a duplicate project is parsed but not stored, as PPS keeps the first one
+        boolean duplicate = (this.findProjectRecord(code) >= 0);
+        long record = (duplicate ? -1 : this.projects.append());
+        long firstCommitment = this.commitments.size;
+        if (xmlParser.nextBeginTag("commitments")) {
+            xmlParser.nextTag();
+            while (xmlParser.nextBeginTag("hoursPerDay")) {
+                int number = xmlParser.getIntegerAttributeValue(null, "employee", 0);
+                int hoursPerDay = Integer.parseInt(xmlParser.getElementText());
+                if (!duplicate) {
+                    long commitment = this.commitments.append();
+                    this.commitments.putInt(commitment, C_EMPLOYEE, number);
+                    this.commitments.putInt(commitment, C_HOURS, hoursPerDay);
+                }
+                xmlParser.findAndAcceptEndTag("hoursPerDay");
+            }
+            xmlParser.findAndAcceptEndTag("commitments");
+        }
+        xmlParser.findAndAcceptEndTag("project");
+        if (duplicate) {
+            return true;
+        }
+
+        this.projects.putLong(record, P_CODE, this.writeString(code));
+        this.projects.putLong(record, P_TITLE, this.writeString(title.getBytes(StandardCharsets.UTF_8)));
+        this.projects.putInt(record, P_CODE_HASH, Arrays.hashCode(code));
+        // a project without dates is kept, as PPS does, without any working days
+        this.projects.putInt(record, P_START, (startDate != null ? (int) startDate.toEpochDay() : NO_DATE));
+        this.projects.putInt(record, P_END, (endDate != null ? (int) endDate.toEpochDay() : NO_DATE));
+        this.projects.putInt(record, P_WORKING_DAYS,
+                (startDate != null && endDate != null ? Calendar.getNumWorkingDays(startDate, endDate) : 0));
+        this.projects.putLong(record, P_FIRST_COMMITMENT, firstCommitment);
+        this.projects.putInt(record, P_NUM_COMMITMENTS, (int) (this.commitments.size - firstCommitment));
+        this.projectIndex = this.projectIndex.add(record, Arrays.hashCode(code), this.projects, P_CODE_HASH);
+        return true;
+    }
+
+    private boolean importEmployee(XMLParser xmlParser) throws XMLStreamException {
+        if (!xmlParser.nextBeginTag("employee")) {
+            return false;
+        }
+        int number = xmlParser.getIntegerAttributeValue(null, "number", 0);
+        xmlParser.nextTag();
+
+        String name = "";
+        if (xmlParser.nextBeginTag("name")) {
+            name = xmlParser.getElementText();
+            xmlParser.findAndAcceptEndTag("name");
+        }
+        int hourlyRate = 1;
+        if (xmlParser.nextBeginTag("hourlyWage")) {
+            hourlyRate = Integer.parseInt(xmlParser.getElementText());
+            xmlParser.findAndAcceptEndTag("hourlyWage");
+        }
+
+        // a duplicate employee is parsed but not stored, as PPS keeps the first one
+        boolean duplicate = (this.findEmployeeRecord(number) >= 0);
+        long record = (duplicate ? -1 : this.employees.append());
+        // repeated references count once, as the project sets of PPS hold every project once
+        Set<Long> referenced = new HashSet<>();
+        int managed = 0, assigned = 0;
+        if (xmlParser.nextBeginTag("managedProjects")) {
+            xmlParser.nextTag();
+            long project;
+            while ((project = this.importProjectReference(xmlParser)) != -2) {
+                if (project >= 0 && !duplicate && referenced.add(project)) {
+                    long reference = this.managedReferences.append();
+                    this.managedReferences.putInt(reference, R_EMPLOYEE, (int) record);
+                    this.managedReferences.putInt(reference, R_PROJECT, (int) project);
+                    managed++;
+                }
+            }
+            xmlParser.findAndAcceptEndTag("managedProjects");
+        }
+        referenced.clear();
+        if (xmlParser.nextBeginTag("allocatedProjects")) {
+            xmlParser.nextTag();
+            long project;
+            while ((project = this.importProjectReference(xmlParser)) != -2) {
+                if (project >= 0 && referenced.add(project)) {
+                    assigned++;
+                }
+            }
+            xmlParser.findAndAcceptEndTag("allocatedProjects");
+        }
+        xmlParser.findAndAcceptEndTag("employee");
+        if (duplicate) {
+            return true;
+        }
+
+        this.employees.putInt(record, E_NUMBER, number);
+        this.employees.putInt(record, E_WAGE, hourlyRate);
+        this.employees.putLong(record, E_NAME, this.writeString(name.getBytes(StandardCharsets.UTF_8)));
+        this.employees.putInt(record, E_ASSIGNED, assigned);
+        this.employees.putInt(record, E_MANAGED, managed);
+        this.employeeIndex = this.employeeIndex.add(record, number, this.employees, E_NUMBER);
+        return true;
+    }
+
+    /**
+     * @return the record of the referenced project, -1 if the project is not known, -2 if there is no reference
+     */
+    private long importProjectReference(XMLParser xmlParser) throws XMLStreamException {
+        if (!xmlParser.nextBeginTag("project")) {
+            return -2;
+        }
+        long record = this.findProjectRecord(xmlParser.getAttributeValue(null, "code").getBytes(StandardCharsets.UTF_8));
+        xmlParser.findAndAcceptEndTag("project");
+        return Math.max(record, -1);
+    }
+
+    /**
+     * calculates the daily cost rates of all projects from the wages of the committed employees,
+     * and the managed budgets of all employees from the budgets of their projects
+     */
+    private void calculateBudgets() {
+        for (long p = 0; p < this.projects.size; p++) {
+            long first = this.projects.getLong(p, P_FIRST_COMMITMENT);
+            long rate = 0;
+            for (long c = first; c < first + this.projects.getInt(p, P_NUM_COMMITMENTS); c++) {
+                long employee = this.findEmployeeRecord(this.commitments.getInt(c, C_EMPLOYEE));
+                if (employee >= 0) {
+                    rate += (long) this.commitments.getInt(c, C_HOURS) * this.employees.getInt(employee, E_WAGE);
+                }
+            }
+            this.projects.putLong(p, P_RATE, rate);
+        }
+        for (long r = 0; r < this.managedReferences.size; r++) {
+            int employee = this.managedReferences.getInt(r, R_EMPLOYEE);
+            int project = this.managedReferences.getInt(r, R_PROJECT);
+            this.employees.putLong(employee, E_MANAGED_BUDGET, this.employees.getLong(employee, E_MANAGED_BUDGET)
+                    + this.projects.getLong(project, P_RATE) * this.projects.getInt(project, P_WORKING_DAYS));
+        }
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return (epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null);
+    }
+
+    private long writeString(byte[] bytes) {
+        long offset = this.strings.appendBytes(Integer.BYTES + bytes.length);
+        this.strings.putInt(offset, 0, bytes.length);
+        this.strings.putBytes(offset + Integer.BYTES, bytes);
+        return offset;
+    }
+
+    private String readString(long offset) {
+        byte[] bytes = new byte[this.strings.getInt(offset, 0)];
+        this.strings.getBytes(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(long offset, byte[] bytes) {
+        if (this.strings.getInt(offset, 0) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (this.strings.getByte(offset + Integer.BYTES + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An open-addressing hash table with linear probing of record numbers, stored in an area of int slots
+     * A table is replaced by a table of twice the size when it becomes more than half full.
+     */
+    private class HashIndex {
+        private final Area slots;       // record + 1 in every slot, 0 for an empty slot
+        private final long capacity;    // a power of 2
+        private long size;
+
+        HashIndex(Area slots, long capacity) {
+            this.slots = slots;
+            this.capacity = capacity;
+            slots.ensureSize(capacity);
+        }
+
+        long home(int hash) {
+            int mixed = hash * 0x9E3779B9;
+            return (mixed ^ (mixed >>> 16)) & (this.capacity - 1);
+        }
+
+        long next(long slot) {
+            return (slot + 1) & (this.capacity - 1);
+        }
+
+        /**
+         * @return the record in the slot, or -1 if the slot is empty
+         */
+        long get(long slot) {
+            return (this.slots.getInt(slot, 0) & 0xFFFFFFFFL) - 1;
+        }
+
+        /**
+         * adds a record with the hash, which is stored at hashField of the records
+         * @return this index, or the larger index that replaces it
+         */
+        HashIndex add(long record, int hash, Area records, int hashField) {
+            HashIndex index = this;
+            if (2 * (this.size + 1) > this.capacity) {
+                try {
+                    index = new HashIndex(newArea(Integer.BYTES), 2 * this.capacity);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Cannot grow the index of " + name, ex);
+                }
+                for (long slot = 0; slot < this.capacity; slot++) {
+                    long existing = this.get(slot);
+                    if (existing >= 0) {
+                        index.insert(existing, records.getInt(existing, hashField));
+                    }
+                }
+                this.slots.close();
+            }
+            index.insert(record, hash);
+            return index;
+        }
+
+        private void insert(long record, int hash) {
+            long slot = this.home(hash);
+            while (this.get(slot) >= 0) {
+                slot = this.next(slot);
+            }
+            this.slots.putInt(slot, 0, (int) (record + 1));
+            this.size++;
+        }
+    }
+
+    /**
+     * A growable array of fixed-width records in segments of direct or mapped byte buffers
+     * All segments except the last one hold MAX_SEGMENT_BYTES; the last segment doubles until it is full.
+     */
+    private static class Area implements Closeable {
+        private static final int MAX_SEGMENT_BYTES = 1 << 30;
+        private static final int MIN_SEGMENT_BYTES = 1 << 12;
+
+        private final int recordBytes;
+        private final int segmentShift;             // log2 of the number of records in a full segment
+        private final long segmentMask;
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private final Path file;                    // the mapped file, null for direct buffers
+        private final FileChannel channel;
+        private long size;                          // the number of records
+
+        Area(int recordBytes, Path file) throws IOException {
+            this.recordBytes = recordBytes;
+            this.segmentShift = Integer.numberOfTrailingZeros(Integer.highestOneBit(MAX_SEGMENT_BYTES / recordBytes));
+            this.segmentMask = (1L << this.segmentShift) - 1;
+            this.file = file;
+            this.channel = (file != null ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE) : null);
+        }
+
+        long capacityBytes() {
+            return this.segments.stream().mapToLong(ByteBuffer::capacity).sum();
+        }
+
+        /**
+         * @return the number of a new record
+         */
+        long append() {
+            this.ensureSize(this.size + 1);
+            return this.size++;
+        }
+
+        /**
+         * appends a range of single byte records that does not cross a segment
+         * @return the number of the first record of the range
+         */
+        long appendBytes(int length) {
+            long first = this.size;
+            if ((first & this.segmentMask) + length > this.segmentMask + 1) {
+                first = (first | this.segmentMask) + 1;
+            }
+            this.ensureSize(first + length);
+            this.size = first + length;
+            return first;
+        }
+
+        /**
+         * provides room for at least size records, with zero bytes in all new records
+         */
+        void ensureSize(long size) {
+            if (size > this.size) {
+                long lastSegment = (size - 1) >>> this.segmentShift;
+                while (this.segments.size() <= lastSegment) {
+                    if (!this.segments.isEmpty()) {
+                        this.resize(this.segments.size() - 1, 1L << this.segmentShift);
+                    }
+                    this.segments.add(null);
+                }
+                this.resize((int) lastSegment, ((size - 1) & this.segmentMask) + 1);
+            }
+        }
+
+        private void resize(int segment, long records) {
+            ByteBuffer current = this.segments.get(segment);
+            long bytes = records * this.recordBytes;
+            if (current != null && current.capacity() >= bytes) {
+                return;
+            }
+            int capacity = (int) Math.min((long) MAX_SEGMENT_BYTES,
+                    Math.max(Long.highestOneBit(bytes - 1) << 1, MIN_SEGMENT_BYTES));
+            ByteBuffer buffer;
+            try {
+                if (this.channel != null) {
+                    // the file is extended by the mapping, and the existing content remains in place
+                    buffer = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                            ((long) segment << this.segmentShift) * this.recordBytes, capacity);
+                } else {
+                    buffer = ByteBuffer.allocateDirect(capacity);
+                    if (current != null) {
+                        buffer.put(current.duplicate().clear());
+                    }
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot map " + this.file, ex);
+            }
+            this.segments.set(segment, buffer.order(ByteOrder.nativeOrder()));
+        }
+
+        private ByteBuffer segment(long record) {
+            return this.segments.get((int) (record >>> this.segmentShift));
+        }
+
+        private int position(long record, int field) {
+            return (int) (record & this.segmentMask) * this.recordBytes + field;
+        }
+
+        int getInt(long record, int field) {
+            return this.segment(record).getInt(this.position(record, field));
+        }
+
+        void putInt(long record, int field, int value) {
+            this.segment(record).putInt(this.position(record, field), value);
+        }
+
+        long getLong(long record, int field) {
+            return this.segment(record).getLong(this.position(record, field));
+        }
+
+        void putLong(long record, int field, long value) {
+            this.segment(record).putLong(this.position(record, field), value);
+        }
+
+        byte getByte(long record) {
+            return this.segment(record).get(this.position(record, 0));
+        }
+
+        void getBytes(long record, byte[] bytes) {
+            this.segment(record).duplicate().position(this.position(record, 0)).get(bytes);
+        }
+
+        void putBytes(long record, byte[] bytes) {
+            this.segment(record).duplicate().position(this.position(record, 0)).put(bytes);
+        }
+
+        @Override
+        public void close() {
+            this.segments.clear();
+            if (this.channel != null) {
+                try {
+                    this.channel.close();
+                    Files.deleteIfExists(this.file);
+                } catch (IOException ex) {
+                    SLF4J.logException("Cannot remove " + this.file, ex);
+                }
+            }
+        }
+    }
+}
@@ -1,35 +1,154 @@
 import utils.Calendar;
+import utils.DenseSet;
+import utils.PersistentArray;
 import utils.SLF4J;
+import utils.TopK;
 import utils.XMLParser;
 import utils.XMLWriter;
 
 import javax.xml.stream.XMLStreamConstants;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class PPS {
 
     private static Random randomizer = new Random();
+    private static final int PARALLEL_THRESHOLD = 10000;    // minimum collection size for parallel statistics
 
     private String name;                // the name of the planning system refers to its xml source file
     private int planningYear;                   // the year indicates the period of start and end dates of the projects
-    private Set<Employee> employees;
-    private Set<Project> projects;
+    private volatile DenseSet<Employee> employees;  // interned to dense ids, iterated by employee number
+    private volatile DenseSet<Project> projects;    // interned to dense ids, iterated by project code
+                                                // the sets of a snapshot are created from its states when first read
+    private boolean frozen;                     // a frozen PPS is an immutable snapshot of another PPS
+    private PersistentArray<Employee.State> employeeStates;    // the captured states of a snapshot by id
+    private PersistentArray<Project.State> projectStates;
+    private volatile PPS snapshot;              // the last snapshot that has been published by the writer
+    private volatile boolean stale;             // whether the plan has changed since the snapshot was published
+    private boolean updating;                   // whether the writer is applying an update, which publishes at its end
+    private final Changes changes;              // the changes since the snapshot was published, null in a snapshot
+    private final List<Consumer<PlanChange>> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile WageIndex wageIndex;       // lazily built indices, discarded at every change
+    private volatile SpendTimeline spendTimeline;
+    private volatile CommitmentIndex commitmentIndex;
+    private volatile PlanCube cube;
+    private volatile PlanFootprint footprint;
+    private volatile long indexVersion = -1;    // the budget version at which the indices were built
+    private volatile long budgetVersion;        // incremented at every change, which invalidates all cached budgets
+
+    /**
+     * The changes of a plan since its last published snapshot
+     * The next snapshot captures the changed employees and projects only, and shares the states of all others
+     * with the last snapshot. Employees and projects that refer to removed ones are captured again as well,
+     * such that they capture the removed ones as outside of the plan.
+     */
+    private static class Changes {
+        final Set<Employee> employees = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Project> projects = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Integer> removedNumbers = new HashSet<>();
+        final Set<String> removedCodes = new HashSet<>();
+        boolean all;                            // whether all employees and projects have to be captured again
+
+        void clear() {
+            this.employees.clear();
+            this.projects.clear();
+            this.removedNumbers.clear();
+            this.removedCodes.clear();
+            this.all = false;
+        }
+    }
 
     @Override
     public String toString() {
-        return String.format("PPS_e%d_p%d", this.employees.size(), this.projects.size());
+        return String.format("PPS_e%d_p%d", this.employees().size(), this.projects().size());
     }
 
     private PPS() {
         this.name = "none";
         this.planningYear = 2000;
-        this.projects = new TreeSet<>();
-        this.employees = new TreeSet<>();
+        this.changes = new Changes();
+        this.projects = new Members<Project>() {
+            @Override
+            void attach(Project project, PPS plan) {
+                project.setPlan(plan);
+            }
+
+            @Override
+            PPS planOf(Project project) {
+                return project.getPlan();
+            }
+
+            @Override
+            void touched(Project project) {
+                changes.projects.add(project);
+            }
+
+            @Override
+            void removed(Project project) {
+                changes.removedCodes.add(project.getCode());
+            }
+
+            @Override
+            void fireAdded(Project project) {
+                if (hasChangeListeners()) {
+                    fireChange(() -> new PlanChange.ProjectAdded(project));
+                    project.getCommittedHoursPerDay().forEach((employee, hoursPerDay) ->
+                            fireChange(() -> new PlanChange.CommitmentChanged(project, employee, hoursPerDay)));
+                }
+            }
+
+            @Override
+            void fireRemoved(Project project) {
+                if (hasChangeListeners()) {
+                    project.getCommittedHoursPerDay().forEach((employee, hoursPerDay) ->
+                            fireChange(() -> new PlanChange.CommitmentChanged(project, employee, -hoursPerDay)));
+                    fireChange(() -> new PlanChange.ProjectRemoved(project));
+                }
+            }
+        };
+        this.employees = new Members<Employee>() {
+            @Override
+            void attach(Employee employee, PPS plan) {
+                employee.setPlan(plan);
+            }
+
+            @Override
+            PPS planOf(Employee employee) {
+                return employee.getPlan();
+            }
+
+            @Override
+            void touched(Employee employee) {
+                changes.employees.add(employee);
+            }
+
+            @Override
+            void removed(Employee employee) {
+                changes.removedNumbers.add(employee.getNumber());
+            }
+
+            @Override
+            void fireAdded(Employee employee) {
+                fireChange(() -> new PlanChange.EmployeeAdded(employee));
+            }
+
+            @Override
+            void fireRemoved(Employee employee) {
+                fireChange(() -> new PlanChange.EmployeeRemoved(employee));
+            }
+        };
     }
 
     private PPS(String resourceName, int year) {
@@ -39,43 +158,34 @@ public class PPS {
     }
 
     /**
-     * Reports the statistics of the project planning year
+     * creates a snapshot from the captured states of all employees and projects
      */
-    public void printPlanningStatistics() {
-        System.out.printf("\nProject Statistics of '%s' in the year %d\n",
-                this.name, this.planningYear);
-        if (this.employees == null || this.projects == null ||
-                this.employees.size() == 0 || this.projects.size() == 0) {
-            System.out.println("No employees or projects have been set up...");
-            return;
-        }
-
-        System.out.printf("%d employees have been assigned to %d projects:\n\n",
-                this.employees.size(), this.projects.size());
-
-        // Average wage of all the employees.
-        System.out.printf("1.The average hourly wage of all employees is %.2f\n", this.calculateAverageHourlyWage());
-
-        // The project that has the most working days.
-        System.out.printf("2.The longest project is '%s' with %d available working days.\n",
-                this.calculateLongestProject().getTitle(), this.calculateLongestProject().getNumWorkingDays());
-
-        // The project with the most people assigned to it.
-        int mostProjectAssigned = this.employees.stream().mapToInt(Employee::getAssignedProjectsLength).max().orElse(1);
-        System.out.printf("3.The follow employees have the broadest assignment in no less than %d different projects: \n%s\n",
-                mostProjectAssigned, this.calculateMostInvolvedEmployees());
-
-        // Total manpower of all projects combined
-        System.out.printf("4. The total budget of committed project manpower is %d\n",
-                this.calculateTotalManpowerBudget());
+    private PPS(String name, int year,
+                PersistentArray<Employee.State> employeeStates, PersistentArray<Project.State> projectStates) {
+        this.name = name;
+        this.planningYear = year;
+        this.employeeStates = employeeStates;
+        this.projectStates = projectStates;
+        this.frozen = true;
+        this.changes = null;
+    }
 
-        // List of all the junior employees
-        System.out.printf("5. Below is an overview of total managed budget by junior employees (hourly wage <= 30): \n%s\n",
-                this.calculateManagedBudgetOverview(employee -> employee.getHourlyWage() <= 30));
+    /**
+     * creates an empty planning system
+     *
+     * @param name
+     * @param year
+     * @return
+     */
+    static PPS newPlan(String name, int year) {
+        return new PPS(name, year);
+    }
 
-        // The cumulative monthly spend.
-        System.out.printf("6. Below is an overview of cumulative monthly project spends: \n%s\n",
-                this.calculateCumulativeMonthlySpends());
+    /**
+     * Reports the statistics of the project planning year
+     */
+    public void printPlanningStatistics() {
+        new PlanReport(this).writeTo(System.out);
     }
 
     /**
@@ -84,11 +194,11 @@ public class PPS {
      * @return
      */
     public double calculateAverageHourlyWage() {
-        double totalWage = this.employees
+        double totalWage = this.employees()
                 .stream()
                 .mapToDouble(Employee::getHourlyWage)
                 .sum();
-        return totalWage / this.employees.size();
+        return totalWage / this.employees().size();
     }
 
     /**
@@ -98,7 +208,7 @@ public class PPS {
      * @return
      */
     public Project calculateLongestProject() {
-        return this.projects
+        return this.projects()
                 .stream()
                 .max(Comparator.comparing(Project::getNumWorkingDays))
                 .get();
@@ -113,13 +223,9 @@ public class PPS {
      * @return
      */
     public int calculateTotalManpowerBudget() {
-        return this.projects
+        return this.projects()
                 .stream()
-                .mapToInt(p -> p.getNumWorkingDays() * (p.getCommittedHoursPerDay()
-                        .entrySet()
-                        .stream()
-                        .mapToInt(m -> m.getKey().getHourlyWage() * m.getValue()))
-                        .sum())
+                .mapToInt(Project::calculateManpowerBudget)
                 .sum();
     }
 
@@ -131,15 +237,57 @@ public class PPS {
      * @return
      */
     public Set<Employee> calculateMostInvolvedEmployees() {
-        return this.employees
-                .stream()
-                .collect(Collectors.groupingBy(
-                        Employee::getAssignedProjectsLength,
-                        TreeMap::new,
-                        Collectors.toSet()
-                ))
-                .lastEntry()
-                .getValue();
+        return new HashSet<>(this.calculateBusiestEmployees(1));
+    }
+
+    /**
+     * finds the k employees that are assigned to the highest numbers of different projects
+     * (employees that are assigned to as many projects as the k-th employee are included as well)
+     *
+     * @param k
+     * @return the employees, busiest first
+     */
+    public List<Employee> calculateBusiestEmployees(int k) {
+        return topK(this.employees(), k, Comparator.comparingInt(Employee::getAssignedProjectsLength));
+    }
+
+    /**
+     * finds the k projects with the highest manpower budgets, including ties
+     *
+     * @param k
+     * @return the projects, most expensive first
+     */
+    public List<Project> calculateMostExpensiveProjects(int k) {
+        return topK(this.projects(), k, Comparator.comparingInt(Project::calculateManpowerBudget));
+    }
+
+    /**
+     * finds the k projects with the highest numbers of available working days, including ties
+     *
+     * @param k
+     * @return the projects, longest first
+     */
+    public List<Project> calculateLongestProjects(int k) {
+        return topK(this.projects(), k, Comparator.comparingInt(Project::getNumWorkingDays));
+    }
+
+    /**
+     * finds the k employees with the highest total managed budgets, including ties
+     *
+     * @param k
+     * @return the employees, largest budget first
+     */
+    public List<Employee> calculateLargestManagers(int k) {
+        return topK(this.employees(), k, Comparator.comparingInt(Employee::calculateManagedBudget));
+    }
+
+    /**
+     * collects the k greatest elements by a single pass with a bounded heap,
+     * in parallel chunks for large collections
+     */
+    private static <T> List<T> topK(Collection<T> elements, int k, Comparator<? super T> comparator) {
+        Stream<T> stream = (elements.size() >= PARALLEL_THRESHOLD ? elements.parallelStream() : elements.stream());
+        return stream.collect(TopK.greatest(k, comparator));
     }
 
     /**
@@ -151,13 +299,180 @@ public class PPS {
      * @return
      */
     public Map<Employee, Integer> calculateManagedBudgetOverview(Predicate<Employee> filter) {
-        return this.employees
+        return this.employees()
                 .stream()
                 .filter(filter)
                 .collect(Collectors.toMap(employee -> employee,
                         Employee::calculateManagedBudget));
     }
 
+    /**
+     * Calculates an overview of total managed budget per employee with minWage <= hourly wage <= maxWage
+     * The matching employees are found from the wage index, without inspecting any other employee
+     *
+     * @param minWage
+     * @param maxWage
+     * @return
+     */
+    public Map<Employee, Integer> calculateManagedBudgetOverview(int minWage, int maxWage) {
+        Map<Employee, Integer> overview = new HashMap<>();
+        for (Employee employee : this.getWageIndex().findByWage(minWage, maxWage)) {
+            overview.put(employee, employee.calculateManagedBudget());
+        }
+        return overview;
+    }
+
+    /**
+     * calculates the median hourly wage of all known employees in this system
+     *
+     * @return
+     */
+    public double calculateMedianHourlyWage() {
+        return this.getWageIndex().getMedianWage();
+    }
+
+    /**
+     * calculates the hourly wage at the given percentile (0-100) of all known employees in this system
+     *
+     * @param percentile
+     * @return
+     */
+    public int calculateHourlyWagePercentile(double percentile) {
+        return this.getWageIndex().getWagePercentile(percentile);
+    }
+
+    /**
+     * provides the index of all employees by hourly wage and number of assigned projects
+     * the index is rebuilt after any change through the builder methods
+     *
+     * @return
+     */
+    public WageIndex getWageIndex() {
+        this.validateIndices();
+        WageIndex index = this.wageIndex;
+        if (index == null) {
+            index = new WageIndex(this.employees());
+            this.wageIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * provides the timeline of daily spends of all projects, for range totals and bucketed series
+     * the timeline is rebuilt after any change of commitments, wages or project dates
+     *
+     * @return
+     */
+    public SpendTimeline getSpendTimeline() {
+        this.validateIndices();
+        SpendTimeline timeline = this.spendTimeline;
+        if (timeline == null) {
+            timeline = new SpendTimeline(this.projects());
+            this.spendTimeline = timeline;
+        }
+        return timeline;
+    }
+
+    /**
+     * provides the index of the projects that every employee is committed to
+     * the index is rebuilt after any change of commitments
+     *
+     * @return
+     */
+    public CommitmentIndex getCommitmentIndex() {
+        this.validateIndices();
+        CommitmentIndex index = this.commitmentIndex;
+        if (index == null) {
+            index = new CommitmentIndex(this.projects());
+            this.commitmentIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * provides the cube of manpower aggregates by subject, location, floor and month of all projects
+     * the cube is rebuilt after any change of commitments, wages or project dates
+     *
+     * @return
+     */
+    public PlanCube getCube() {
+        this.validateIndices();
+        PlanCube cube = this.cube;
+        if (cube == null) {
+            cube = new PlanCube(this.projects());
+            this.cube = cube;
+        }
+        return cube;
+    }
+
+    /**
+     * finds the employee with the given number
+     *
+     * @param number
+     * @return the employee, or null if the number is not known in this system
+     */
+    Employee findEmployee(int number) {
+        return this.employees().find(Integer.hashCode(number), employee -> employee.getNumber() == number);
+    }
+
+    /**
+     * finds the project with the given code
+     *
+     * @param code
+     * @return the project, or null if the code is not known in this system
+     */
+    Project findProject(String code) {
+        return this.projects().find(code.hashCode(), project -> project.getCode().equals(code));
+    }
+
+    /**
+     * provides the dense id of an employee, which remains the same until an employee is removed
+     *
+     * @param number
+     * @return the id between 0 and the number of employees, or -1 if the number is not known in this system
+     */
+    int getEmployeeId(int number) {
+        return this.employees().idOf(this.findEmployee(number));
+    }
+
+    Employee getEmployeeById(int id) {
+        return this.employees().get(id);
+    }
+
+    /**
+     * provides the dense id of a project, which remains the same until a project is removed
+     *
+     * @param code
+     * @return the id between 0 and the number of projects, or -1 if the code is not known in this system
+     */
+    int getProjectId(String code) {
+        return this.projects().idOf(this.findProject(code));
+    }
+
+    Project getProjectById(int id) {
+        return this.projects().get(id);
+    }
+
+    /**
+     * discards the indices if any budget, wage or assignment may have changed since they were built
+     * the indices of a snapshot remain valid forever
+     */
+    private void validateIndices() {
+        long version = this.budgetVersion;
+        if (!this.frozen && this.indexVersion != version) {
+            this.discardIndices();
+            this.indexVersion = version;
+        }
+    }
+
+    private void discardIndices() {
+        this.wageIndex = null;
+        this.spendTimeline = null;
+        this.commitmentIndex = null;
+        this.cube = null;
+        this.footprint = null;
+    }
+
     /**
      * Calculates and overview of total monthly spends across all projects in the system
      * The monthly spend of a single project is the accumulated manpower cost of all employees assigned to the
@@ -167,24 +482,368 @@ public class PPS {
      */
     public Map<Month, Integer> calculateCumulativeMonthlySpends() {
         Map<Month, Integer> mainMap = new TreeMap<>();
-        for (Project project : this.projects) {
-            int totalWage = 0;
-            for (Map.Entry<Employee, Integer> employeeWage : project.getCommittedHoursPerDay().entrySet()) {
-                totalWage += employeeWage.getValue() * employeeWage.getKey().getHourlyWage();
+        this.getSpendTimeline().getSpends(SpendTimeline.Granularity.MONTH).forEach((month, spend) ->
+                mainMap.merge(month.getMonth(), (int) (long) spend, Integer::sum));
+        return mainMap;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPlanningYear() {
+        return planningYear;
+    }
+
+    /**
+     * estimates the heap bytes that are retained by this planning system, by component,
+     * from its numbers of entities and relations and the known object layouts
+     * the estimate is calculated once per snapshot, and again after any change of a live plan
+     * @return
+     */
+    public PlanFootprint getFootprint() {
+        this.validateIndices();
+        PlanFootprint footprint = this.footprint;
+        if (footprint == null) {
+            footprint = new PlanFootprint(this);
+            this.footprint = footprint;
+        }
+        return footprint;
+    }
+
+    /**
+     * provides the most recently published immutable snapshot of this planning system
+     * readers can run all statistics on the snapshot without any locking,
+     * while the writer keeps applying updates through applyUpdate
+     * a snapshot never changes after it has been published
+     * changes that have been made outside of applyUpdate, via the mutators of the plan, its employees and projects,
+     * are published by the next call of getSnapshot
+     *
+     * @return
+     */
+    public PPS getSnapshot() {
+        if (this.frozen) {
+            return this;
+        }
+        boolean stale = this.stale;
+        PPS current = this.snapshot;
+        if (current == null || stale) {
+            synchronized (this) {
+                current = (this.snapshot == null || this.stale ? this.publishSnapshot() : this.snapshot);
             }
-            for (LocalDate date : project.getWorkingDays()) {
-                // Old Method
-                // mainMap.put(date.getMonth(), mainMap.getOrDefault(date.getMonth(), 0) + totalWage);
+        }
+        return current;
+    }
 
-                // New Method
-                mainMap.merge(date.getMonth(), totalWage, Integer::sum);
+    /**
+     * applies a batch of mutations to this planning system on behalf of the single writer
+     * and atomically publishes a new snapshot once all mutations of the batch have been applied
+     * concurrent writers are serialised; readers of getSnapshot never observe a half-applied batch
+     * if the update fails, the mutations that it has applied are published by the next call of getSnapshot
+     *
+     * @param update the mutations to be applied via the builder methods
+     * @return the newly published snapshot
+     */
+    public synchronized PPS applyUpdate(Consumer<Builder> update) {
+        if (this.frozen) {
+            throw new IllegalStateException("Cannot update snapshot " + this);
+        }
+        boolean applied = false;
+        this.updating = true;
+        try {
+            update.accept(new Builder(this));
+            applied = true;
+        } finally {
+            this.updating = false;
+            if (!applied) {
+                this.stale = true;
             }
         }
-        return mainMap;
+        return this.publishSnapshot();
     }
 
-    public String getName() {
-        return name;
+    /**
+     * registers a listener that is notified synchronously of every change of this plan,
+     * whether it is applied through the builder methods or through the mutators of the plan, its employees and projects
+     * listeners are called by the writer while it holds the lock of this PPS, so they should be quick
+     *
+     * @param listener
+     */
+    public void addChangeListener(Consumer<PlanChange> listener) {
+        this.changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Consumer<PlanChange> listener) {
+        this.changeListeners.remove(listener);
+    }
+
+    private boolean hasChangeListeners() {
+        return !this.changeListeners.isEmpty();
+    }
+
+    private void fireChange(Supplier<PlanChange> change) {
+        if (this.hasChangeListeners()) {
+            PlanChange planChange = change.get();
+            this.changeListeners.forEach(listener -> listener.accept(planChange));
+        }
+    }
+
+    /**
+     * registers a change of an employee of this plan, which is captured by the next snapshot
+     * @param employee
+     */
+    synchronized void changed(Employee employee) {
+        if (this.snapshot != null) {
+            this.changes.employees.add(employee);
+        }
+        this.changed();
+    }
+
+    /**
+     * registers a change of an employee of this plan and notifies the change listeners of it
+     * @param employee
+     * @param change provides the change, only if there are listeners
+     */
+    synchronized void changed(Employee employee, Supplier<PlanChange> change) {
+        this.changed(employee);
+        this.fireChange(change);
+    }
+
+    /**
+     * registers a change of a project of this plan, which is captured by the next snapshot
+     * @param project
+     */
+    synchronized void changed(Project project) {
+        if (this.snapshot != null) {
+            this.changes.projects.add(project);
+        }
+        this.changed();
+    }
+
+    /**
+     * registers a change of a project of this plan and notifies the change listeners of it
+     * @param project
+     * @param change provides the change, only if there are listeners
+     */
+    synchronized void changed(Project project, Supplier<PlanChange> change) {
+        this.changed(project);
+        this.fireChange(change);
+    }
+
+    /**
+     * provides the version of all budgets, wages and assignments in this plan
+     * cached budgets and indices remain valid while the version does not change
+     *
+     * @return
+     */
+    long getBudgetVersion() {
+        return this.budgetVersion;
+    }
+
+    /**
+     * invalidates all cached budgets and indices and marks the snapshot as stale, unless the change is part of
+     * an update that publishes a new snapshot at its end anyway
+     */
+    private void changed() {
+        this.budgetVersion++;
+        if (!this.updating) {
+            this.stale = true;
+        }
+    }
+
+    /**
+     * publishes a new snapshot that shares the captured states of all unchanged employees and projects
+     * with the last snapshot, by capturing the changed ones only
+     * the first snapshot captures all employees and projects
+     *
+     * @return
+     */
+    private PPS publishSnapshot() {
+        PPS previous = this.snapshot;
+        DenseSet<Employee> employees = this.employees;
+        DenseSet<Project> projects = this.projects;
+        PersistentArray.Editor<Employee.State> employeeStates;
+        PersistentArray.Editor<Project.State> projectStates;
+        if (previous == null || this.changes.all) {
+            employeeStates = PersistentArray.<Employee.State>empty().edit().resize(employees.size());
+            for (int id = 0; id < employees.size(); id++) {
+                employeeStates.set(id, employees.get(id).capture(this));
+            }
+            projectStates = PersistentArray.<Project.State>empty().edit().resize(projects.size());
+            for (int id = 0; id < projects.size(); id++) {
+                projectStates.set(id, projects.get(id).capture(this));
+            }
+        } else {
+            this.touchReferrersOfRemoved();
+            employeeStates = previous.employeeStates.edit().resize(employees.size());
+            for (Employee employee : this.changes.employees) {
+                int id = employees.idOf(employee);
+                if (id >= 0) {
+                    employeeStates.set(id, employees.get(id).capture(this));
+                }
+            }
+            projectStates = previous.projectStates.edit().resize(projects.size());
+            for (Project project : this.changes.projects) {
+                int id = projects.idOf(project);
+                if (id >= 0) {
+                    projectStates.set(id, projects.get(id).capture(this));
+                }
+            }
+        }
+        this.changes.clear();
+
+        PPS copy = new PPS(this.name, this.planningYear, employeeStates.done(), projectStates.done());
+        this.snapshot = copy;
+        this.stale = false;
+        return copy;
+    }
+
+    /**
+     * registers the employees that refer to removed projects and the projects that commit removed employees as changed
+     */
+    private void touchReferrersOfRemoved() {
+        Changes changes = this.changes;
+        changes.removedCodes.removeIf(code -> this.findProject(code) != null);
+        changes.removedNumbers.removeIf(number -> this.findEmployee(number) != null);
+        if (!changes.removedCodes.isEmpty()) {
+            for (int id = 0; id < this.employees.size(); id++) {
+                Employee employee = this.employees.get(id);
+                if (employee.refersToAny(changes.removedCodes)) {
+                    changes.employees.add(employee);
+                }
+            }
+        }
+        if (!changes.removedNumbers.isEmpty()) {
+            for (int id = 0; id < this.projects.size(); id++) {
+                Project project = this.projects.get(id);
+                if (project.refersToAny(changes.removedNumbers)) {
+                    changes.projects.add(project);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the employees, which are created from their captured states when first read in a snapshot
+     */
+    private DenseSet<Employee> employees() {
+        DenseSet<Employee> employees = this.employees;
+        if (employees == null) {
+            synchronized (this) {
+                employees = this.employees;
+                if (employees == null) {
+                    employees = new DenseSet<>(this.employeeStates.size());
+                    for (int id = 0; id < this.employeeStates.size(); id++) {
+                        employees.add(new Employee(this.employeeStates.get(id), this));
+                    }
+                    employees.freeze();
+                    this.employees = employees;
+                }
+            }
+        }
+        return employees;
+    }
+
+    /**
+     * @return the projects, which are created from their captured states when first read in a snapshot
+     */
+    private DenseSet<Project> projects() {
+        DenseSet<Project> projects = this.projects;
+        if (projects == null) {
+            synchronized (this) {
+                projects = this.projects;
+                if (projects == null) {
+                    projects = new DenseSet<>(this.projectStates.size());
+                    for (int id = 0; id < this.projectStates.size(); id++) {
+                        projects.add(new Project(this.projectStates.get(id), this));
+                    }
+                    projects.freeze();
+                    this.projects = projects;
+                }
+            }
+        }
+        return projects;
+    }
+
+    /**
+     * The set of all employees or all projects of a live plan
+     * It attaches the elements to the plan, such that their changes are registered with the plan,
+     * and registers the additions and removals of elements as changes as well, of which it notifies the listeners.
+     * Since a removal moves the last element to the id of the removed one, the moved element has changed too.
+     *
+     * @param <T>
+     */
+    private abstract class Members<T extends Comparable<? super T>> extends DenseSet<T> {
+
+        abstract void attach(T element, PPS plan);
+
+        abstract PPS planOf(T element);
+
+        abstract void touched(T element);
+
+        abstract void removed(T element);
+
+        abstract void fireAdded(T element);
+
+        abstract void fireRemoved(T element);
+
+        @Override
+        public boolean add(T element) {
+            synchronized (PPS.this) {
+                if (!super.add(element)) {
+                    return false;
+                }
+                this.attach(element, PPS.this);
+                if (snapshot != null) {
+                    this.touched(element);
+                }
+                PPS.this.changed();
+                this.fireAdded(element);
+                return true;
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            synchronized (PPS.this) {
+                int id = this.idOf(o);
+                if (id < 0) {
+                    return false;
+                }
+                T element = this.get(id);
+                T last = this.get(this.size() - 1);
+                super.remove(element);
+                if (this.planOf(element) == PPS.this) {
+                    this.attach(element, null);
+                }
+                if (snapshot != null) {
+                    this.removed(element);
+                    if (last != element) {
+                        this.touched(last);
+                    }
+                }
+                PPS.this.changed();
+                this.fireRemoved(element);
+                return true;
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (PPS.this) {
+                List<T> removed = (hasChangeListeners() ? new ArrayList<>(this) : Collections.emptyList());
+                for (int id = 0; id < this.size(); id++) {
+                    T element = this.get(id);
+                    if (this.planOf(element) == PPS.this) {
+                        this.attach(element, null);
+                    }
+                }
+                super.clear();
+                changes.all = true;
+                PPS.this.changed();
+                removed.forEach(this::fireRemoved);
+            }
+        }
     }
 
     /**
@@ -197,6 +856,10 @@ public class PPS {
             this.pps = new PPS();
         }
 
+        Builder(PPS pps) {
+            this.pps = pps;
+        }
+
         /**
          * Add another employee to the PPS being build
          *
@@ -204,7 +867,7 @@ public class PPS {
          * @return
          */
         public Builder addEmployee(Employee employee) {
-            build().employees.add(employee);
+            build().employees().add(employee);
             return this;
         }
 
@@ -218,18 +881,16 @@ public class PPS {
          */
         public Builder addProject(Project project, Employee manager) {
             Employee currentEmployee = manager;
-            build().projects.add(project);
+            build().projects().add(project);
 
-            if (build().employees.contains(manager)) {
-                currentEmployee = build().employees.stream()
-                        .filter(employee -> employee.equals(manager))
-                        .findFirst()
-                        .get();
+            int managerId = build().employees().idOf(manager);
+            if (managerId >= 0) {
+                currentEmployee = build().employees().get(managerId);
             }
 
             currentEmployee.getAssignedProjects().add(project);
             currentEmployee.getManagedProjects().add(project);
-            build().employees.add(manager);
+            build().employees().add(manager);
 
             return this;
         }
@@ -246,14 +907,27 @@ public class PPS {
          * @return
          */
         public Builder addCommitment(String projectCode, int employeeNr, int hoursPerDay) {
-            build().projects.forEach(project -> {
-                if (project.getCode().equals(projectCode)) {
-                    Employee currentEmployee = build().employees.stream().
-                            filter(employee -> employee.getNumber() == employeeNr).
-                            findFirst().get();
-                    project.addCommitment(currentEmployee, hoursPerDay);
+            Project project = build().findProject(projectCode);
+            if (project != null) {
+                Employee currentEmployee = build().findEmployee(employeeNr);
+                if (currentEmployee == null) {
+                    throw new NoSuchElementException("Unknown employee " + employeeNr);
                 }
-            });
+                this.addCommitment(project, currentEmployee, hoursPerDay);
+            }
+            return this;
+        }
+
+        /**
+         * Add a commitment to work hoursPerDay on a project of the PPS for an employee of the PPS
+         *
+         * @param project
+         * @param employee
+         * @param hoursPerDay
+         * @return
+         */
+        Builder addCommitment(Project project, Employee employee, int hoursPerDay) {
+            project.addCommitment(employee, hoursPerDay);
             return this;
         }
 
@@ -268,11 +942,11 @@ public class PPS {
     }
 
     public Set<Project> getProjects() {
-        return this.projects;
+        return this.projects();
     }
 
     public Set<Employee> getEmployees() {
-        return this.employees;
+        return this.employees();
     }
 
     /**
@@ -282,15 +956,44 @@ public class PPS {
      * @return
      */
     public static PPS importFromXML(String resourceName) {
-        XMLParser xmlParser = new XMLParser(resourceName);
+        return importFromXML(resourceName, new XMLParser(resourceName));
+    }
+
+    /**
+     * imports a planning system from a file
+     * the name of the planning system is the name of the file
+     *
+     * @param file
+     * @return the planning system, or null if the file cannot be read or is not a valid plan
+     */
+    public static PPS importFromXML(Path file) {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            return importFromXML(file.getFileName().toString(), input);
+        } catch (IOException ex) {
+            SLF4J.logException("Cannot read '" + file + "'", ex);
+        }
+        return null;
+    }
+
+    /**
+     * imports a planning system from a stream, which is not closed
+     *
+     * @param name  the name of the planning system
+     * @param input
+     * @return the planning system, or null if the stream is not a valid plan
+     */
+    public static PPS importFromXML(String name, InputStream input) {
+        return importFromXML(name, new XMLParser(input));
+    }
 
+    private static PPS importFromXML(String name, XMLParser xmlParser) {
         try {
             xmlParser.nextTag();
             xmlParser.require(XMLStreamConstants.START_ELEMENT, null, "projectPlanning");
             int year = xmlParser.getIntegerAttributeValue(null, "year", 2000);
             xmlParser.nextTag();
 
-            PPS pps = new PPS(resourceName, year);
+            PPS pps = new PPS(name, year);
 
             Project.importProjectsFromXML(xmlParser, pps.projects);
             Employee.importEmployeesFromXML(xmlParser, pps.employees, pps.projects);
@@ -298,7 +1001,7 @@ public class PPS {
             return pps;
 
         } catch (Exception ex) {
-            SLF4J.logException("XML error in '" + resourceName + "'", ex);
+            SLF4J.logException("XML error in '" + name + "'", ex);
         }
 
         return null;
@@ -0,0 +1,262 @@
+import utils.Calendar;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A single change that has been applied to a PPS, through its builder methods
+ * or through the mutators of the plan, its employees and projects
+ * Changes are immutable and only refer to entities by their identifiers,
+ * such that they can be handed over to other threads safely
+ */
+public abstract class PlanChange {
+
+    /**
+     * a new project has been added to the plan
+     * the commitments that the project has already got follow as separate commitment changes
+     */
+    public static class ProjectAdded extends PlanChange {
+        private final String projectCode;
+        private final String title;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+
+        ProjectAdded(Project project) {
+            this.projectCode = project.getCode();
+            this.title = project.getTitle();
+            this.startDate = project.getStartDate();
+            this.endDate = project.getEndDate();
+        }
+
+        public String getProjectCode() { return projectCode; }
+        public String getTitle() { return title; }
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+
+        @Override
+        public String toString() {
+            return String.format("ProjectAdded(%s)", this.projectCode);
+        }
+    }
+
+    /**
+     * a project has been removed from the plan
+     * the removal of its commitments precedes it as separate commitment changes
+     */
+    public static class ProjectRemoved extends PlanChange {
+        private final String projectCode;
+
+        ProjectRemoved(Project project) {
+            this.projectCode = project.getCode();
+        }
+
+        public String getProjectCode() { return projectCode; }
+
+        @Override
+        public String toString() {
+            return String.format("ProjectRemoved(%s)", this.projectCode);
+        }
+    }
+
+    /**
+     * a project has been moved to a new period
+     * the budget deltas express the resulting change of manpower budget per month
+     */
+    public static class ProjectRescheduled extends PlanChange {
+        private final String projectCode;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final Map<Month, Long> monthlyBudgetDeltas;
+
+        ProjectRescheduled(Project project, LocalDate previousStartDate, LocalDate previousEndDate) {
+            this.projectCode = project.getCode();
+            this.startDate = project.getStartDate();
+            this.endDate = project.getEndDate();
+            long dailyCost = project.getDailyCostRate();
+            Map<Month, Long> deltas = monthlyDeltas(this.startDate, this.endDate, dailyCost);
+            monthlyDeltas(previousStartDate, previousEndDate, -dailyCost)
+                    .forEach((month, delta) -> deltas.merge(month, delta, Long::sum));
+            this.monthlyBudgetDeltas = Collections.unmodifiableMap(deltas);
+        }
+
+        public String getProjectCode() { return projectCode; }
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public Map<Month, Long> getMonthlyBudgetDeltas() { return monthlyBudgetDeltas; }
+
+        @Override
+        public String toString() {
+            return String.format("ProjectRescheduled(%s, %s..%s)", this.projectCode, this.startDate, this.endDate);
+        }
+    }
+
+    /**
+     * a new employee has been added to the plan
+     */
+    public static class EmployeeAdded extends PlanChange {
+        private final int employeeNr;
+        private final int hourlyWage;
+
+        EmployeeAdded(Employee employee) {
+            this.employeeNr = employee.getNumber();
+            this.hourlyWage = employee.getHourlyWage();
+        }
+
+        public int getEmployeeNr() { return employeeNr; }
+        public int getHourlyWage() { return hourlyWage; }
+
+        @Override
+        public String toString() {
+            return String.format("EmployeeAdded(%d, wage=%d)", this.employeeNr, this.hourlyWage);
+        }
+    }
+
+    /**
+     * an employee has been removed from the plan
+     * its commitments remain, as commitments of an employee from outside of the plan
+     */
+    public static class EmployeeRemoved extends PlanChange {
+        private final int employeeNr;
+
+        EmployeeRemoved(Employee employee) {
+            this.employeeNr = employee.getNumber();
+        }
+
+        public int getEmployeeNr() { return employeeNr; }
+
+        @Override
+        public String toString() {
+            return String.format("EmployeeRemoved(%d)", this.employeeNr);
+        }
+    }
+
+    /**
+     * the hourly wage of an employee who is committed to projects of the plan has changed
+     * the budget deltas express the resulting change of manpower budget per month
+     */
+    public static class WageChanged extends PlanChange {
+        private final int employeeNr;
+        private final int hourlyWage;
+        private final Map<Month, Long> monthlyBudgetDeltas;
+
+        /**
+         * @param employee
+         * @param previousWage
+         * @param projects the projects of the plan that may commit the employee
+         */
+        WageChanged(Employee employee, int previousWage, Collection<Project> projects) {
+            this.employeeNr = employee.getNumber();
+            this.hourlyWage = employee.getHourlyWage();
+            Map<Month, Long> deltas = new EnumMap<>(Month.class);
+            for (Project project : projects) {
+                Integer hoursPerDay = project.getCommittedHoursPerDay().get(employee);
+                if (hoursPerDay != null) {
+                    monthlyDeltas(project.getStartDate(), project.getEndDate(),
+                            (long) hoursPerDay * (this.hourlyWage - previousWage))
+                            .forEach((month, delta) -> deltas.merge(month, delta, Long::sum));
+                }
+            }
+            this.monthlyBudgetDeltas = Collections.unmodifiableMap(deltas);
+        }
+
+        public int getEmployeeNr() { return employeeNr; }
+        public int getHourlyWage() { return hourlyWage; }
+        public Map<Month, Long> getMonthlyBudgetDeltas() { return monthlyBudgetDeltas; }
+
+        @Override
+        public String toString() {
+            return String.format("WageChanged(%d, wage=%d)", this.employeeNr, this.hourlyWage);
+        }
+    }
+
+    /**
+     * a project has been added to or removed from the managed or assigned projects of an employee of the plan
+     */
+    public static class AssignmentChanged extends PlanChange {
+        private final int employeeNr;
+        private final String projectCode;
+        private final boolean managed;
+        private final boolean added;
+
+        AssignmentChanged(Employee employee, Project project, boolean managed, boolean added) {
+            this.employeeNr = employee.getNumber();
+            this.projectCode = project.getCode();
+            this.managed = managed;
+            this.added = added;
+        }
+
+        public int getEmployeeNr() { return employeeNr; }
+        public String getProjectCode() { return projectCode; }
+
+        /**
+         * @return whether the managed projects have changed, rather than the assigned projects
+         */
+        public boolean isManaged() { return managed; }
+
+        /**
+         * @return whether the project has been added, rather than removed
+         */
+        public boolean isAdded() { return added; }
+
+        @Override
+        public String toString() {
+            return String.format("AssignmentChanged(%d, %s%s %s)", this.employeeNr, (this.added ? "+" : "-"),
+                    this.projectCode, (this.managed ? "managed" : "assigned"));
+        }
+    }
+
+    /**
+     * the committed hours per day of an employee on a project have changed
+     * the budget deltas express the resulting change of manpower budget per month
+     */
+    public static class CommitmentChanged extends PlanChange {
+        private final String projectCode;
+        private final int employeeNr;
+        private final int hoursPerDayDelta;
+        private final Map<Month, Long> monthlyBudgetDeltas;
+
+        CommitmentChanged(String projectCode, int employeeNr, int hoursPerDayDelta, Map<Month, Long> monthlyBudgetDeltas) {
+            this.projectCode = projectCode;
+            this.employeeNr = employeeNr;
+            this.hoursPerDayDelta = hoursPerDayDelta;
+            this.monthlyBudgetDeltas = Collections.unmodifiableMap(monthlyBudgetDeltas);
+        }
+
+        CommitmentChanged(Project project, Employee employee, int hoursPerDayDelta) {
+            this(project.getCode(), employee.getNumber(), hoursPerDayDelta, monthlyDeltas(project.getStartDate(),
+                    project.getEndDate(), (long) hoursPerDayDelta * employee.getHourlyWage()));
+        }
+
+        public String getProjectCode() { return projectCode; }
+        public int getEmployeeNr() { return employeeNr; }
+        public int getHoursPerDayDelta() { return hoursPerDayDelta; }
+        public Map<Month, Long> getMonthlyBudgetDeltas() { return monthlyBudgetDeltas; }
+
+        public long getBudgetDelta() {
+            return this.monthlyBudgetDeltas.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CommitmentChanged(%s, %d, %+d h/day, budget %+d)",
+                    this.projectCode, this.employeeNr, this.hoursPerDayDelta, this.getBudgetDelta());
+        }
+    }
+
+    /**
+     * @return the daily delta summed per month over the working days of the period, none if the period is not known
+     */
+    private static Map<Month, Long> monthlyDeltas(LocalDate startDate, LocalDate endDate, long dailyDelta) {
+        Map<Month, Long> deltas = new EnumMap<>(Month.class);
+        if (startDate != null && endDate != null) {
+            for (LocalDate date : Calendar.getWorkingDays(startDate, endDate)) {
+                deltas.merge(date.getMonth(), dailyDelta, Long::sum);
+            }
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,160 @@
+import java.time.Month;
+import java.util.*;
+
+/**
+ * A coalesced batch of plan changes, as delivered by the PlanChangeFeed
+ *
+ * All commitment changes of the same employee on the same project are merged into one change
+ * and all budget deltas are summed per month, including those of rescheduled projects and changed wages.
+ * If a subscriber fell too far behind, the added projects and employees and the individual commitment changes
+ * are dropped and the batch is marked as overflown; the budget deltas remain exact.
+ */
+public class PlanChangeBatch {
+    private final List<PlanChange.ProjectAdded> addedProjects;
+    private final List<PlanChange.EmployeeAdded> addedEmployees;
+    private final List<PlanChange.CommitmentChanged> commitmentChanges;
+    private final Map<Month, Long> monthlyBudgetDeltas;
+    private final int numChanges;
+    private final boolean overflow;
+
+    private PlanChangeBatch(Accumulator accumulator) {
+        this.addedProjects = List.copyOf(accumulator.addedProjects.values());
+        this.addedEmployees = List.copyOf(accumulator.addedEmployees.values());
+        List<PlanChange.CommitmentChanged> commitments = new ArrayList<>();
+        accumulator.commitments.forEach((code, employees) -> employees.forEach((number, change) ->
+                commitments.add(new PlanChange.CommitmentChanged(code, number, change.hoursPerDay, change.budget))));
+        this.commitmentChanges = Collections.unmodifiableList(commitments);
+        this.monthlyBudgetDeltas = Collections.unmodifiableMap(new EnumMap<>(accumulator.monthlyBudgetDeltas));
+        this.numChanges = accumulator.numChanges;
+        this.overflow = accumulator.overflow;
+    }
+
+    public List<PlanChange.ProjectAdded> getAddedProjects() { return addedProjects; }
+    public List<PlanChange.EmployeeAdded> getAddedEmployees() { return addedEmployees; }
+    public List<PlanChange.CommitmentChanged> getCommitmentChanges() { return commitmentChanges; }
+    public Map<Month, Long> getMonthlyBudgetDeltas() { return monthlyBudgetDeltas; }
+
+    /**
+     * @return the number of individual changes that have been coalesced into this batch
+     */
+    public int getNumChanges() { return numChanges; }
+
+    /**
+     * @return whether added projects and employees and individual commitment changes have been dropped from this batch
+     */
+    public boolean isOverflow() { return overflow; }
+
+    public long getTotalBudgetDelta() {
+        return this.monthlyBudgetDeltas.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlanChangeBatch(%d changes, %d projects, %d employees, %d commitments%s, budget %+d)",
+                this.numChanges, this.addedProjects.size(), this.addedEmployees.size(),
+                this.commitmentChanges.size(), (this.overflow ? " overflown" : ""), this.getTotalBudgetDelta());
+    }
+
+    /**
+     * coalesces changes until these are taken as a batch
+     * not thread-safe; callers synchronise
+     */
+    static class Accumulator {
+        private static class CommitmentDelta {
+            int hoursPerDay;
+            final Map<Month, Long> budget = new EnumMap<>(Month.class);
+        }
+
+        private final int maxEntries;
+        private final Map<String, PlanChange.ProjectAdded> addedProjects = new LinkedHashMap<>();
+        private final Map<Integer, PlanChange.EmployeeAdded> addedEmployees = new LinkedHashMap<>();
+        private final Map<String, Map<Integer, CommitmentDelta>> commitments = new TreeMap<>();
+        private final Map<Month, Long> monthlyBudgetDeltas = new EnumMap<>(Month.class);
+        private int numEntries = 0;             // the number of added projects, added employees and commitments
+        private int numChanges = 0;
+        private boolean overflow = false;
+
+        /**
+         * @param maxEntries the maximum number of added projects, added employees and distinct commitments retained
+         */
+        Accumulator(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        void add(PlanChange change) {
+            this.numChanges++;
+            if (change instanceof PlanChange.ProjectAdded) {
+                PlanChange.ProjectAdded added = (PlanChange.ProjectAdded) change;
+                if (!this.overflow && !this.addedProjects.containsKey(added.getProjectCode()) && this.retain()) {
+                    this.addedProjects.put(added.getProjectCode(), added);
+                }
+            } else if (change instanceof PlanChange.EmployeeAdded) {
+                PlanChange.EmployeeAdded added = (PlanChange.EmployeeAdded) change;
+                if (!this.overflow && !this.addedEmployees.containsKey(added.getEmployeeNr()) && this.retain()) {
+                    this.addedEmployees.put(added.getEmployeeNr(), added);
+                }
+            } else if (change instanceof PlanChange.ProjectRescheduled) {
+                this.addBudgetDeltas(((PlanChange.ProjectRescheduled) change).getMonthlyBudgetDeltas());
+            } else if (change instanceof PlanChange.WageChanged) {
+                this.addBudgetDeltas(((PlanChange.WageChanged) change).getMonthlyBudgetDeltas());
+            } else if (change instanceof PlanChange.CommitmentChanged) {
+                PlanChange.CommitmentChanged changed = (PlanChange.CommitmentChanged) change;
+                this.addBudgetDeltas(changed.getMonthlyBudgetDeltas());
+                if (!this.overflow) {
+                    CommitmentDelta delta = this.commitments
+                            .computeIfAbsent(changed.getProjectCode(), code -> new TreeMap<>())
+                            .get(changed.getEmployeeNr());
+                    if (delta == null) {
+                        if (!this.retain()) {
+                            return;
+                        }
+                        delta = new CommitmentDelta();
+                        this.commitments.get(changed.getProjectCode()).put(changed.getEmployeeNr(), delta);
+                    }
+                    delta.hoursPerDay += changed.getHoursPerDayDelta();
+                    for (Map.Entry<Month, Long> budget : changed.getMonthlyBudgetDeltas().entrySet()) {
+                        delta.budget.merge(budget.getKey(), budget.getValue(), Long::sum);
+                    }
+                }
+            }
+        }
+
+        private void addBudgetDeltas(Map<Month, Long> deltas) {
+            deltas.forEach((month, delta) -> this.monthlyBudgetDeltas.merge(month, delta, Long::sum));
+        }
+
+        /**
+         * counts another retained entry, or stops retaining any entries of this subscriber beyond the maximum
+         * @return whether the entry can be retained
+         */
+        private boolean retain() {
+            if (++this.numEntries > this.maxEntries) {
+                this.overflow = true;
+                this.addedProjects.clear();
+                this.addedEmployees.clear();
+                this.commitments.clear();
+                return false;
+            }
+            return true;
+        }
+
+        boolean isEmpty() {
+            return this.numChanges == 0;
+        }
+
+        /**
+         * @return the coalesced batch of all changes so far, after which the accumulator is empty again
+         */
+        PlanChangeBatch take() {
+            PlanChangeBatch batch = new PlanChangeBatch(this);
+            this.addedProjects.clear();
+            this.addedEmployees.clear();
+            this.commitments.clear();
+            this.monthlyBudgetDeltas.clear();
+            this.numEntries = 0;
+            this.numChanges = 0;
+            this.overflow = false;
+            return batch;
+        }
+    }
+}
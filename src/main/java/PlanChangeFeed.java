@@ -0,0 +1,216 @@
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the changes of a PPS to subscribers as coalesced batches at a fixed interval
+ *
+ * Every subscriber has its own accumulator that coalesces all changes since its previous batch.
+ * A batch is only delivered when the subscriber has requested it and its previous batch has been processed,
+ * as all signals of a subscription are emitted by a single drain loop at a time,
+ * so a slow subscriber simply receives fewer, larger batches and never holds up the writer or other subscribers.
+ * The memory held for a lagging subscriber is bounded by maxPendingChanges added projects, added employees
+ * and distinct commitments, beyond which only its budget deltas are retained and its next batch is marked as overflown.
+ * A subscriber that subscribes after the feed has been closed is completed immediately.
+ */
+public class PlanChangeFeed implements Flow.Publisher<PlanChangeBatch>, Closeable {
+    public static final int DEFAULT_MAX_PENDING_CHANGES = 10000;
+
+    private class Subscription implements Flow.Subscription {
+        final Flow.Subscriber<? super PlanChangeBatch> subscriber;
+        final PlanChangeBatch.Accumulator accumulator = new PlanChangeBatch.Accumulator(maxPendingChanges);
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger drains = new AtomicInteger();   // the number of drain requests that have not been handled
+        final AtomicBoolean due = new AtomicBoolean();      // the interval has passed since the previous drain
+        volatile boolean cancelled = false;
+        volatile boolean completing = false;
+        volatile Throwable error;
+
+        Subscription(Flow.Subscriber<? super PlanChangeBatch> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Non-positive request " + n);
+                this.drain();
+                return;
+            }
+            this.demand.accumulateAndGet(n, (current, more) -> (current + more < 0 ? Long.MAX_VALUE : current + more));
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        synchronized void add(PlanChange change) {
+            this.accumulator.add(change);
+        }
+
+        void tick() {
+            this.due.set(true);
+            this.drain();
+        }
+
+        void complete() {
+            this.completing = true;
+            this.drain();
+        }
+
+        /**
+         * runs the drain loop on the delivery executor, unless it is running already,
+         * in which case the loop drains once more before it ends
+         */
+        void drain() {
+            if (this.drains.getAndIncrement() == 0) {
+                try {
+                    deliveryExecutor.execute(this::drainLoop);
+                } catch (RejectedExecutionException ex) {
+                    // the feed has been closed, and this subscription has been completed already
+                }
+            }
+        }
+
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                if (!this.cancelled) {
+                    this.emit();
+                }
+                missed = this.drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * signals the subscriber, only from within the drain loop, so all signals are serialized
+         * a terminal signal follows the last batch that has been delivered
+         */
+        private void emit() {
+            if (this.error != null) {
+                this.cancel();
+                this.subscriber.onError(this.error);
+                return;
+            }
+            boolean completing = this.completing;
+            if ((this.due.getAndSet(false) || completing) && this.demand.get() > 0) {
+                PlanChangeBatch batch;
+                synchronized (this) {
+                    batch = (this.accumulator.isEmpty() ? null : this.accumulator.take());
+                }
+                if (batch != null) {
+                    this.demand.decrementAndGet();
+                    try {
+                        this.subscriber.onNext(batch);
+                    } catch (RuntimeException ex) {
+                        this.cancel();
+                        this.subscriber.onError(ex);
+                        return;
+                    }
+                }
+            }
+            if (completing) {
+                this.cancel();
+                this.subscriber.onComplete();
+            }
+        }
+    }
+
+    private final PPS pps;
+    private final int maxPendingChanges;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Consumer<PlanChange> listener = this::onChange;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService deliveryExecutor;
+    private boolean closed = false;             // guarded by this feed
+
+    public PlanChangeFeed(PPS pps, Duration interval) {
+        this(pps, interval, DEFAULT_MAX_PENDING_CHANGES);
+    }
+
+    /**
+     * @param pps                   the plan whose changes are published
+     * @param interval              the interval at which coalesced batches are delivered
+     * @param maxPendingChanges     the maximum number of added entities and distinct commitment changes retained
+     *                              per subscriber
+     */
+    public PlanChangeFeed(PPS pps, Duration interval, int maxPendingChanges) {
+        this.pps = pps;
+        this.maxPendingChanges = maxPendingChanges;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(daemon("PlanChangeFeed-ticker"));
+        this.deliveryExecutor = Executors.newCachedThreadPool(daemon("PlanChangeFeed-delivery"));
+        this.ticker.scheduleAtFixedRate(this::tick, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        pps.addChangeListener(this.listener);
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PlanChangeBatch> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        boolean open;
+        synchronized (this) {
+            open = !this.closed;
+            if (open) {
+                this.subscriptions.add(subscription);
+            }
+        }
+        subscriber.onSubscribe(subscription);
+        if (!open) {
+            subscription.cancelled = true;
+            subscriber.onComplete();
+        }
+    }
+
+    private void onChange(PlanChange change) {
+        for (Subscription subscription : this.subscriptions) {
+            subscription.add(change);
+        }
+    }
+
+    private void tick() {
+        for (Subscription subscription : this.subscriptions) {
+            subscription.tick();
+        }
+    }
+
+    /**
+     * stops publishing and completes all subscriptions
+     * the changes that have not been delivered yet are delivered as a last batch if it has been requested,
+     * and are discarded otherwise
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        this.pps.removeChangeListener(this.listener);
+        this.ticker.shutdownNow();
+        for (Subscription subscription : this.subscriptions) {
+            subscription.complete();
+        }
+        this.deliveryExecutor.shutdown();
+    }
+}
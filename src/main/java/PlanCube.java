@@ -0,0 +1,168 @@
+import utils.Calendar;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated cube of the manpower of all projects by subject, location, floor and month
+ *
+ * Projects are classified by the subject, location and floor in their title (see Project.getSubject).
+ * Every dimension has an additional 'all' coordinate, and every project is aggregated into
+ * all 16 combinations of its own and the 'all' coordinates, such that every drill-down
+ * or roll-up query is answered from a single precomputed cell.
+ * Projects with unclassified titles are counted in the 'all' coordinates only.
+ * As in PPS.calculateCumulativeMonthlySpends, months of different years are combined.
+ */
+public class PlanCube {
+
+    /**
+     * the aggregates of a single cell of the cube
+     */
+    public static class Cell {
+        private final long budget;
+        private final long workingDays;
+        private final long headcount;
+
+        Cell(long budget, long workingDays, long headcount) {
+            this.budget = budget;
+            this.workingDays = workingDays;
+            this.headcount = headcount;
+        }
+
+        /**
+         * @return the manpower budget spent on the working days within the cell
+         */
+        public long getBudget() { return budget; }
+
+        /**
+         * @return the total number of project working days within the cell
+         */
+        public long getWorkingDays() { return workingDays; }
+
+        /**
+         * @return the number of staff commitments on the projects that are active in the cell;
+         *          an employee who works on two projects counts twice
+         */
+        public long getHeadcount() { return headcount; }
+
+        @Override
+        public String toString() {
+            return String.format("Cell(budget=%d, workingDays=%d, headcount=%d)", this.budget, this.workingDays, this.headcount);
+        }
+    }
+
+    private static final int N_MONTHS = 12;
+
+    private final int nSubjects = Project.getSubjects().size() + 1;     // the last coordinate is 'all'
+    private final int nLocations = Project.getLocations().size() + 1;
+    private final int nFloors = Project.getNumFloors() + 1;
+    private final int nMonths = N_MONTHS + 1;
+    private final long[] budgets;
+    private final long[] workingDays;
+    private final long[] headcounts;
+
+    public PlanCube(Collection<Project> projects) {
+        int size = this.nSubjects * this.nLocations * this.nFloors * this.nMonths;
+        this.budgets = new long[size];
+        this.workingDays = new long[size];
+        this.headcounts = new long[size];
+        for (Project project : projects) {
+            this.add(project);
+        }
+    }
+
+    private void add(Project project) {
+        if (project.getStartDate() == null || project.getEndDate() == null) {
+            return;
+        }
+        int[] subjects = { coordinate(project.getSubjectIndex(), this.nSubjects), this.nSubjects - 1 };
+        int[] locations = { coordinate(project.getLocationIndex(), this.nLocations), this.nLocations - 1 };
+        int[] floors = { coordinate(project.getFloor(), this.nFloors), this.nFloors - 1 };
+        int staff = project.getCommittedHoursPerDay().size();
+
+        // visit the project month by month, without expanding its working days
+        // the staff is counted once per month and once for all months, however long the project is active
+        boolean[] staffed = new boolean[this.nMonths];
+        LocalDate monthStart = project.getStartDate().withDayOfMonth(1);
+        while (!monthStart.isAfter(project.getEndDate())) {
+            LocalDate from = (monthStart.isBefore(project.getStartDate()) ? project.getStartDate() : monthStart);
+            LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
+            LocalDate to = (monthEnd.isAfter(project.getEndDate()) ? project.getEndDate() : monthEnd);
+            int days = Calendar.getNumWorkingDays(from, to);
+            if (days > 0) {
+                int[] months = { monthStart.getMonthValue() - 1, N_MONTHS };
+                long budget = (long) days * project.getDailyCostRate();
+                for (int m : months) {
+                    int headcount = (staffed[m] ? 0 : staff);
+                    staffed[m] = true;
+                    for (int s : subjects) {
+                        for (int l : locations) {
+                            for (int f : floors) {
+                                if (s < 0 || l < 0 || f < 0) {
+                                    continue;
+                                }
+                                int cell = this.index(s, l, f, m);
+                                this.budgets[cell] += budget;
+                                this.workingDays[cell] += days;
+                                this.headcounts[cell] += headcount;
+                            }
+                        }
+                    }
+                }
+            }
+            monthStart = monthStart.plusMonths(1);
+        }
+    }
+
+    /**
+     * @return the coordinate of a classified index, or -1 for an unclassified project
+     */
+    private static int coordinate(int index, int size) {
+        return (index >= 0 && index < size - 1 ? index : -1);
+    }
+
+    private int index(int subject, int location, int floor, int month) {
+        return ((subject * this.nLocations + location) * this.nFloors + floor) * this.nMonths + month;
+    }
+
+    /**
+     * provides the aggregates of a cell; a null (or -1 floor) coordinate selects all values of that dimension
+     * @param subject  a subject of Project.getSubject, or null
+     * @param location a location of Project.getLocation, or null
+     * @param floor    a floor number, or -1
+     * @param month    a month, or null
+     * @return the aggregates, or an empty cell if a coordinate is unknown
+     */
+    public Cell query(String subject, String location, int floor, Month month) {
+        int s = (subject == null ? this.nSubjects - 1 : Project.getSubjects().indexOf(subject));
+        int l = (location == null ? this.nLocations - 1 : Project.getLocations().indexOf(location));
+        int f = (floor < 0 ? this.nFloors - 1 : (floor < this.nFloors - 1 ? floor : -1));
+        int m = (month == null ? N_MONTHS : month.getValue() - 1);
+        if (s < 0 || l < 0 || f < 0) {
+            return new Cell(0, 0, 0);
+        }
+        int cell = this.index(s, l, f, m);
+        return new Cell(this.budgets[cell], this.workingDays[cell], this.headcounts[cell]);
+    }
+
+    /**
+     * provides the aggregates of a slice per month, leaving out months without any project activity
+     * @param subject  a subject, or null for all subjects
+     * @param location a location, or null for all locations
+     * @param floor    a floor, or -1 for all floors
+     * @return
+     */
+    public Map<Month, Cell> queryByMonth(String subject, String location, int floor) {
+        Map<Month, Cell> cells = new EnumMap<>(Month.class);
+        for (Month month : Month.values()) {
+            Cell cell = this.query(subject, location, floor, month);
+            if (cell.getWorkingDays() > 0) {
+                cells.put(month, cell);
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,305 @@
+import java.time.Month;
+import java.util.*;
+
+/**
+ * Structural differences between two plans, such as two revisions of a plan or the plans of two years
+ *
+ * The projects and the employees of both plans are iterated in their natural order and merged in a single linear pass,
+ * which matches projects by code and employees by number.
+ * The commitments of matching projects are compared through their hash maps, so the whole diff takes
+ * linear time in the numbers of projects, employees and commitments.
+ */
+public class PlanDiff {
+
+    /**
+     * a difference in the committed hours per day of an employee on a project
+     */
+    public static class CommitmentChange {
+        private final String projectCode;
+        private final int employeeNumber;
+        private final int hoursBefore;      // 0 if the commitment has been added
+        private final int hoursAfter;       // 0 if the commitment has been removed
+
+        CommitmentChange(String projectCode, int employeeNumber, int hoursBefore, int hoursAfter) {
+            this.projectCode = projectCode;
+            this.employeeNumber = employeeNumber;
+            this.hoursBefore = hoursBefore;
+            this.hoursAfter = hoursAfter;
+        }
+
+        public String getProjectCode() { return projectCode; }
+
+        public int getEmployeeNumber() { return employeeNumber; }
+
+        public int getHoursBefore() { return hoursBefore; }
+
+        public int getHoursAfter() { return hoursAfter; }
+
+        @Override
+        public String toString() {
+            return String.format("%s/%d: %d -> %d", this.projectCode, this.employeeNumber, this.hoursBefore, this.hoursAfter);
+        }
+    }
+
+    /**
+     * a project that is in both plans with a different title, period or commitments
+     */
+    public static class ProjectChange {
+        private final Project before;
+        private final Project after;
+        private final List<CommitmentChange> commitmentChanges;
+
+        ProjectChange(Project before, Project after, List<CommitmentChange> commitmentChanges) {
+            this.before = before;
+            this.after = after;
+            this.commitmentChanges = Collections.unmodifiableList(commitmentChanges);
+        }
+
+        public Project getBefore() { return before; }
+
+        public Project getAfter() { return after; }
+
+        public boolean isRetitled() {
+            return !Objects.equals(this.before.getTitle(), this.after.getTitle());
+        }
+
+        public boolean isRescheduled() {
+            return !Objects.equals(this.before.getStartDate(), this.after.getStartDate())
+                    || !Objects.equals(this.before.getEndDate(), this.after.getEndDate());
+        }
+
+        /**
+         * @return the changed commitments of the project, in order of employee number
+         */
+        public List<CommitmentChange> getCommitmentChanges() { return commitmentChanges; }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s%s%d commitments)", this.after.getCode(),
+                    this.isRetitled() ? "retitled, " : "", this.isRescheduled() ? "rescheduled, " : "",
+                    this.commitmentChanges.size());
+        }
+    }
+
+    /**
+     * an employee that is in both plans with a different name or wage
+     */
+    public static class EmployeeChange {
+        private final Employee before;
+        private final Employee after;
+
+        EmployeeChange(Employee before, Employee after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public Employee getBefore() { return before; }
+
+        public Employee getAfter() { return after; }
+
+        public boolean isRenamed() {
+            return !Objects.equals(this.before.getName(), this.after.getName());
+        }
+
+        public int getWageDelta() {
+            return this.after.getHourlyWage() - this.before.getHourlyWage();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d(%s%+d wage)", this.after.getNumber(), this.isRenamed() ? "renamed, " : "",
+                    this.getWageDelta());
+        }
+    }
+
+    private final List<Project> addedProjects = new ArrayList<>();
+    private final List<Project> removedProjects = new ArrayList<>();
+    private final List<ProjectChange> changedProjects = new ArrayList<>();
+    private final List<Employee> addedEmployees = new ArrayList<>();
+    private final List<Employee> removedEmployees = new ArrayList<>();
+    private final List<EmployeeChange> changedEmployees = new ArrayList<>();
+    private final Map<String, Long> projectBudgetDeltas = new TreeMap<>();
+    private final Map<Month, Long> monthlyBudgetDeltas = new TreeMap<>();
+    private long totalBudgetDelta;
+
+    /**
+     * compares the published snapshots of two plans
+     * @param before
+     * @param after
+     */
+    public PlanDiff(PPS before, PPS after) {
+        before = before.getSnapshot();
+        after = after.getSnapshot();
+
+        Iterator<Project> beforeProjects = before.getProjects().iterator();
+        Iterator<Project> afterProjects = after.getProjects().iterator();
+        Project b = next(beforeProjects), a = next(afterProjects);
+        while (b != null || a != null) {
+            int order = (b == null ? 1 : a == null ? -1 : b.compareTo(a));
+            if (order < 0) {
+                this.removedProjects.add(b);
+                this.addBudgetDelta(b.getCode(), -b.calculateManpowerBudget());
+                b = next(beforeProjects);
+            } else if (order > 0) {
+                this.addedProjects.add(a);
+                this.addBudgetDelta(a.getCode(), a.calculateManpowerBudget());
+                a = next(afterProjects);
+            } else {
+                this.compareProjects(b, a);
+                b = next(beforeProjects);
+                a = next(afterProjects);
+            }
+        }
+
+        Iterator<Employee> beforeEmployees = before.getEmployees().iterator();
+        Iterator<Employee> afterEmployees = after.getEmployees().iterator();
+        Employee be = next(beforeEmployees), ae = next(afterEmployees);
+        while (be != null || ae != null) {
+            int order = (be == null ? 1 : ae == null ? -1 : be.compareTo(ae));
+            if (order < 0) {
+                this.removedEmployees.add(be);
+                be = next(beforeEmployees);
+            } else if (order > 0) {
+                this.addedEmployees.add(ae);
+                ae = next(afterEmployees);
+            } else {
+                if (be.getHourlyWage() != ae.getHourlyWage() || !Objects.equals(be.getName(), ae.getName())) {
+                    this.changedEmployees.add(new EmployeeChange(be, ae));
+                }
+                be = next(beforeEmployees);
+                ae = next(afterEmployees);
+            }
+        }
+
+        before.getSpendTimeline().getSpends(SpendTimeline.Granularity.MONTH).forEach((month, spend) ->
+                this.monthlyBudgetDeltas.merge(month.getMonth(), -spend, Long::sum));
+        after.getSpendTimeline().getSpends(SpendTimeline.Granularity.MONTH).forEach((month, spend) ->
+                this.monthlyBudgetDeltas.merge(month.getMonth(), spend, Long::sum));
+        this.monthlyBudgetDeltas.values().removeIf(delta -> delta == 0);
+    }
+
+    private static <T> T next(Iterator<T> iterator) {
+        return (iterator.hasNext() ? iterator.next() : null);
+    }
+
+    private void addBudgetDelta(String code, long delta) {
+        if (delta != 0) {
+            this.projectBudgetDeltas.merge(code, delta, Long::sum);
+            this.totalBudgetDelta += delta;
+        }
+    }
+
+    private void compareProjects(Project before, Project after) {
+        List<CommitmentChange> changes = new ArrayList<>();
+        Map<Employee, Integer> hoursBefore = before.getCommittedHoursPerDay();
+        Map<Employee, Integer> hoursAfter = after.getCommittedHoursPerDay();
+        hoursBefore.forEach((employee, hours) -> {
+            int other = hoursAfter.getOrDefault(employee, 0);
+            if (other != hours) {
+                changes.add(new CommitmentChange(after.getCode(), employee.getNumber(), hours, other));
+            }
+        });
+        hoursAfter.forEach((employee, hours) -> {
+            if (!hoursBefore.containsKey(employee)) {
+                changes.add(new CommitmentChange(after.getCode(), employee.getNumber(), 0, hours));
+            }
+        });
+        changes.sort(Comparator.comparingInt(CommitmentChange::getEmployeeNumber));
+
+        ProjectChange change = new ProjectChange(before, after, changes);
+        if (!changes.isEmpty() || change.isRetitled() || change.isRescheduled()) {
+            this.changedProjects.add(change);
+        }
+        // wage changes also change the budget of projects that have not changed themselves
+        this.addBudgetDelta(after.getCode(), (long) after.calculateManpowerBudget() - before.calculateManpowerBudget());
+    }
+
+    /**
+     * @return the projects of the new plan that are not in the old plan, in order of code
+     */
+    public List<Project> getAddedProjects() {
+        return Collections.unmodifiableList(addedProjects);
+    }
+
+    /**
+     * @return the projects of the old plan that are not in the new plan, in order of code
+     */
+    public List<Project> getRemovedProjects() {
+        return Collections.unmodifiableList(removedProjects);
+    }
+
+    /**
+     * @return the projects in both plans with a different title, period or commitments, in order of code
+     */
+    public List<ProjectChange> getChangedProjects() {
+        return Collections.unmodifiableList(changedProjects);
+    }
+
+    /**
+     * @return all changed commitments of the projects in both plans, in order of project code and employee number
+     */
+    public List<CommitmentChange> getCommitmentChanges() {
+        List<CommitmentChange> changes = new ArrayList<>();
+        this.changedProjects.forEach(change -> changes.addAll(change.getCommitmentChanges()));
+        return changes;
+    }
+
+    /**
+     * @return the employees of the new plan that are not in the old plan, in order of number
+     */
+    public List<Employee> getAddedEmployees() {
+        return Collections.unmodifiableList(addedEmployees);
+    }
+
+    /**
+     * @return the employees of the old plan that are not in the new plan, in order of number
+     */
+    public List<Employee> getRemovedEmployees() {
+        return Collections.unmodifiableList(removedEmployees);
+    }
+
+    /**
+     * @return the employees in both plans with a different name or wage, in order of number
+     */
+    public List<EmployeeChange> getChangedEmployees() {
+        return Collections.unmodifiableList(changedEmployees);
+    }
+
+    /**
+     * @return the change of the manpower budget of every project with a changed budget, by code
+     */
+    public Map<String, Long> getProjectBudgetDeltas() {
+        return Collections.unmodifiableMap(projectBudgetDeltas);
+    }
+
+    /**
+     * @return the change of the cumulative monthly spends, as in PPS.calculateCumulativeMonthlySpends,
+     *          for every month with a changed spend
+     */
+    public Map<Month, Long> getMonthlyBudgetDeltas() {
+        return Collections.unmodifiableMap(monthlyBudgetDeltas);
+    }
+
+    /**
+     * @return the change of the total manpower budget
+     */
+    public long getTotalBudgetDelta() {
+        return totalBudgetDelta;
+    }
+
+    /**
+     * @return whether the plans have the same projects, employees, wages and commitments
+     */
+    public boolean isEmpty() {
+        return this.addedProjects.isEmpty() && this.removedProjects.isEmpty() && this.changedProjects.isEmpty()
+                && this.addedEmployees.isEmpty() && this.removedEmployees.isEmpty() && this.changedEmployees.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlanDiff(projects +%d -%d ~%d, employees +%d -%d ~%d, budget %+d)",
+                this.addedProjects.size(), this.removedProjects.size(), this.changedProjects.size(),
+                this.addedEmployees.size(), this.removedEmployees.size(), this.changedEmployees.size(),
+                this.totalBudgetDelta);
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An estimate of the heap bytes that are retained by a plan, by component
+ *
+ * The estimate is calculated in a single pass over the employees and projects, from the numbers of
+ * entities, references and characters and the known object layouts of a 64-bit JVM with compressed references:
+ * 12 byte object headers, 16 byte array headers, 4 byte references and 8 byte alignment.
+ * Caches and indices that are rebuilt on demand are not included.
+ */
+public class PlanFootprint {
+
+    public enum Component {
+        EMPLOYEES,          // the employee objects
+        PROJECTS,           // the project objects
+        DATES,              // the start and end dates of the projects
+        STRINGS,            // the names of employees, and the codes and titles of projects
+        ASSIGNMENT_SETS,    // the sets of managed and assigned projects of the employees
+        COMMITMENT_MAPS,    // the commitments of the projects
+        REGISTRY            // the sets of all employees and projects of the plan
+    }
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    // the shallow sizes of the objects of a plan, from their fields
+    private static final long EMPLOYEE_BYTES = align(OBJECT_HEADER + 3 * Integer.BYTES + 6 * REFERENCE + Long.BYTES);
+    private static final long PROJECT_BYTES = align(OBJECT_HEADER + 5 * Integer.BYTES + 9 * REFERENCE + Long.BYTES);
+    private static final long LOCAL_DATE_BYTES = align(OBJECT_HEADER + Integer.BYTES + 2 * Short.BYTES);
+    private static final long STRING_BYTES = align(OBJECT_HEADER + REFERENCE + Integer.BYTES + 2);
+    private static final long UNMODIFIABLE_MAP_BYTES = align(OBJECT_HEADER + 4 * REFERENCE);
+    private static final long UNMODIFIABLE_SET_BYTES = align(OBJECT_HEADER + 2 * REFERENCE);
+    private static final long OBJECT_INT_MAP_BYTES = align(OBJECT_HEADER + 4 * REFERENCE + 2 * Integer.BYTES);
+    private static final long HASH_SET_BYTES = align(OBJECT_HEADER + REFERENCE);
+    private static final long HASH_MAP_BYTES = align(OBJECT_HEADER + 5 * REFERENCE + 3 * Integer.BYTES + Float.BYTES);
+    private static final long HASH_MAP_NODE_BYTES = align(OBJECT_HEADER + Integer.BYTES + 3 * REFERENCE);
+    private static final long DENSE_SET_BYTES = align(OBJECT_HEADER + 3 * REFERENCE + 2 * Integer.BYTES + 1);
+
+    private final String planName;
+    private final Map<Component, Long> bytes = new EnumMap<>(Component.class);
+    private final int numEmployees;
+    private final int numProjects;
+    private final long numCommitments;
+    private long employeeBytes;         // all bytes that are retained by the employees only
+    private long projectBytes;          // all bytes that are retained by the projects only
+
+    public PlanFootprint(PPS pps) {
+        this.planName = pps.getName();
+        this.numEmployees = pps.getEmployees().size();
+        this.numProjects = pps.getProjects().size();
+        for (Component component : Component.values()) {
+            this.bytes.put(component, 0L);
+        }
+
+        long commitments = 0;
+        for (Project project : pps.getProjects()) {
+            int numCommitted = project.getCommittedHoursPerDay().size();
+            long commitmentBytes = UNMODIFIABLE_MAP_BYTES + OBJECT_INT_MAP_BYTES;
+            if (numCommitted > 0) {
+                // the key and value arrays of the ObjectIntMap
+                commitmentBytes += 2 * align(ARRAY_HEADER + (long) capacity(numCommitted, 4) * REFERENCE);
+            }
+            commitments += numCommitted;
+            long dateBytes = (project.getStartDate() != null ? LOCAL_DATE_BYTES : 0)
+                    + (project.getEndDate() != null ? LOCAL_DATE_BYTES : 0);
+            long stringBytes = stringBytes(project.getCode()) + stringBytes(project.getTitle());
+            this.add(Component.PROJECTS, PROJECT_BYTES);
+            this.add(Component.DATES, dateBytes);
+            this.add(Component.STRINGS, stringBytes);
+            this.add(Component.COMMITMENT_MAPS, commitmentBytes);
+            this.projectBytes += PROJECT_BYTES + dateBytes + stringBytes + commitmentBytes;
+        }
+        this.numCommitments = commitments;
+
+        for (Employee employee : pps.getEmployees()) {
+            long stringBytes = stringBytes(employee.getName());
+            long setBytes = setBytes(employee.getManagedProjectsLength()) + setBytes(employee.getAssignedProjectsLength());
+            this.add(Component.EMPLOYEES, EMPLOYEE_BYTES);
+            this.add(Component.STRINGS, stringBytes);
+            this.add(Component.ASSIGNMENT_SETS, setBytes);
+            this.employeeBytes += EMPLOYEE_BYTES + stringBytes + setBytes;
+        }
+
+        this.add(Component.REGISTRY, denseSetBytes(this.numEmployees) + denseSetBytes(this.numProjects));
+    }
+
+    private void add(Component component, long bytes) {
+        this.bytes.merge(component, bytes, Long::sum);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * @return the smallest power of two of at least minimum slots that holds size entries at a load factor of 3/4
+     */
+    private static int capacity(int size, int minimum) {
+        int capacity = minimum;
+        while (capacity * 3L < size * 4L) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static long stringBytes(String text) {
+        if (text == null) {
+            return 0;
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) < 256;
+        }
+        return STRING_BYTES + align(ARRAY_HEADER + (latin1 ? 1L : 2L) * text.length());
+    }
+
+    /**
+     * @return the size of an unmodifiable HashSet of size elements, which has a table of at least 16 buckets
+     */
+    private static long setBytes(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        return UNMODIFIABLE_SET_BYTES + HASH_SET_BYTES + HASH_MAP_BYTES
+                + align(ARRAY_HEADER + (long) capacity(size, 16) * REFERENCE) + size * HASH_MAP_NODE_BYTES;
+    }
+
+    /**
+     * @return the size of a DenseSet of size elements, with its array of elements, its table of ids and its sorted copy
+     */
+    private static long denseSetBytes(int size) {
+        return DENSE_SET_BYTES + 2 * align(ARRAY_HEADER + (long) Math.max(size, 1) * REFERENCE)
+                + align(ARRAY_HEADER + (long) capacity(size + 1, 4) * Integer.BYTES);
+    }
+
+    public String getPlanName() {
+        return planName;
+    }
+
+    /**
+     * @param component
+     * @return the estimated bytes of the component
+     */
+    public long getBytes(Component component) {
+        return this.bytes.get(component);
+    }
+
+    /**
+     * @return the estimated bytes of all components
+     */
+    public long getTotalBytes() {
+        return this.bytes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return the average bytes of an employee, including its name and sets of projects
+     */
+    public double getBytesPerEmployee() {
+        return (this.numEmployees > 0 ? (double) this.employeeBytes / this.numEmployees : 0);
+    }
+
+    /**
+     * @return the average bytes of a project, including its code, title, dates and commitments
+     */
+    public double getBytesPerProject() {
+        return (this.numProjects > 0 ? (double) this.projectBytes / this.numProjects : 0);
+    }
+
+    /**
+     * @return the average bytes of the commitment maps per commitment
+     */
+    public double getBytesPerCommitment() {
+        return (this.numCommitments > 0 ? (double) this.getBytes(Component.COMMITMENT_MAPS) / this.numCommitments : 0);
+    }
+
+    /**
+     * provides all estimates by metric name
+     * @return
+     */
+    public Map<String, Number> toMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        String prefix = "plan." + this.planName + ".footprint.";
+        for (Component component : Component.values()) {
+            metrics.put(prefix + component.name().toLowerCase(), this.getBytes(component));
+        }
+        metrics.put(prefix + "totalBytes", this.getTotalBytes());
+        metrics.put(prefix + "bytesPerEmployee", this.getBytesPerEmployee());
+        metrics.put(prefix + "bytesPerProject", this.getBytesPerProject());
+        metrics.put(prefix + "bytesPerCommitment", this.getBytesPerCommitment());
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return this.toMetrics().toString();
+    }
+}
@@ -0,0 +1,812 @@
+import utils.SLF4J;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only journal of all changes of a PPS
+ *
+ * The journal follows the changes of the plan as a change listener, and appends every change as a binary record.
+ * The changes of an update are applied to the plan by its single writer and committed together.
+ * Changes that are made directly on the plan, its employees or projects, such as Project.addCommitment
+ * or Employee.setHourlyWage, are journaled as they happen and become durable with the next commit,
+ * at the latest when a later update has become durable.
+ * A background thread group-commits all records that are queued at the same time with a single fsync.
+ * Every snapshotInterval records a binary snapshot of the published plan is written,
+ * and the journal segments that are covered by the snapshot are deleted,
+ * so recovery only has to load the last snapshot and replay the records that followed it.
+ *
+ * Files in the journal directory:
+ *   snapshot.bin              the last complete snapshot, replaced atomically
+ *   journal-{firstSeq}.bin    journal segments, each record framed as [length][crc32][seq type fields]
+ */
+public class PlanJournal implements Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x50505353;   // "PPSS"
+    private static final int JOURNAL_MAGIC = 0x5050534A;    // "PPSJ"
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final byte EMPLOYEE = 1;
+    private static final byte PROJECT = 2;
+    private static final byte COMMITMENT = 3;
+    private static final byte EMPLOYEE_REMOVED = 4;
+    private static final byte PROJECT_REMOVED = 5;
+    private static final byte RESCHEDULE = 6;
+    private static final byte WAGE = 7;
+    private static final byte ASSIGNMENT = 8;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int MAX_RECORD_BYTES = 1 << 24;
+
+    /**
+     * a batch of encoded records that becomes durable with a single commit
+     */
+    private static class Batch {
+        final List<byte[]> records;
+        final long lastSeq;
+        final boolean checkpoint;               // requests a snapshot after committing the batch
+        final boolean closing;                  // the last batch, which stops the committer
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Batch(List<byte[]> records, long lastSeq, boolean checkpoint, boolean closing) {
+            this.records = records;
+            this.lastSeq = lastSeq;
+            this.checkpoint = checkpoint;
+            this.closing = closing;
+        }
+    }
+
+    /**
+     * a published snapshot of the plan together with the last record that it includes
+     */
+    private static class SnapshotPoint {
+        final PPS snapshot;
+        final long seq;
+
+        SnapshotPoint(PPS snapshot, long seq) {
+            this.snapshot = snapshot;
+            this.seq = seq;
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final Path directory;
+    private final PPS pps;
+    private final int snapshotInterval;
+
+    private long sequence;                      // last sequence number that has been assigned, guarded by pps
+    private List<byte[]> recording;             // the records of the update that is being applied, guarded by pps
+    private volatile SnapshotPoint latest;      // the most recently published snapshot of the plan
+    private final Consumer<PlanChange> listener = this::onChange;
+
+    private final BlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean closed = false;    // set and checked while holding the writer lock on pps,
+                                                // together with enqueuing, so no batch follows the closing batch
+
+    // state below is only accessed by the committer thread
+    private FileChannel segment;
+    private DataOutputStream segmentOut;
+    private final TreeMap<Long, Long> segmentLastSeqs = new TreeMap<>();    // first seq -> last seq per segment
+    private long recordsSinceSnapshot = 0;
+    private long snapshotSeq;
+
+    private PlanJournal(Path directory, PPS pps, long sequence, int snapshotInterval) {
+        this.directory = directory;
+        this.pps = pps;
+        this.sequence = sequence;
+        this.snapshotSeq = sequence;
+        this.snapshotInterval = snapshotInterval;
+        this.committer = new Thread(this::commitLoop, "PlanJournal-" + directory.getFileName());
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * opens the journal in the directory and recovers the plan from its last snapshot and journal records
+     * if the directory holds no snapshot, the initial plan is used as the base of a new journal
+     *
+     * @param directory
+     * @param initialPlan provides the base plan of a new journal
+     * @param snapshotInterval the number of records after which a new snapshot is written
+     * @return
+     * @throws IOException
+     */
+    public static PlanJournal open(Path directory, Supplier<PPS> initialPlan, int snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        PPS pps;
+        long seq = 0;
+        if (Files.exists(snapshotFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a plan snapshot: " + snapshotFile);
+                }
+                seq = in.readLong();
+                pps = readSnapshot(in);
+            }
+        } else {
+            pps = initialPlan.get();
+        }
+
+        long snapshotSeq = seq;
+        List<Path> segments = listSegments(directory);
+        for (Path segment : segments) {
+            seq = Math.max(seq, replaySegment(segment, pps, snapshotSeq));
+        }
+        SLF4J.LOGGER.info(String.format("Recovered plan '%s' from %s up to record %d (snapshot at %d)",
+                pps.getName(), directory, seq, snapshotSeq));
+
+        PlanJournal journal = new PlanJournal(directory, pps, seq, snapshotInterval);
+        journal.latest = new SnapshotPoint(pps.getSnapshot(), seq);
+        // start with a fresh snapshot, such that the base plan and replayed segments are no longer needed
+        journal.writeSnapshot(journal.latest.snapshot, seq);
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        journal.openSegment(seq + 1);
+        journal.committer.start();
+        pps.addChangeListener(journal.listener);
+        return journal;
+    }
+
+    /**
+     * @return the live plan that is maintained by this journal
+     */
+    public PPS getPlan() {
+        return this.pps;
+    }
+
+    /**
+     * applies the update to the plan through its single writer, journals all its changes
+     * and waits until these have become durable, together with all changes that have been journaled before
+     *
+     * @param update
+     * @return the snapshot that has been published by the plan after the update
+     * @throws UncheckedIOException if the records could not be made durable;
+     *          the update remains applied to the plan in memory
+     */
+    public PPS applyUpdate(Consumer<PPS.Builder> update) {
+        try {
+            return this.applyUpdateAsync(update).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) ex.getCause());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * applies the update to the plan and journals its changes without waiting for durability
+     *
+     * @param update
+     * @return completes with the published snapshot when the mutations have become durable
+     */
+    public CompletableFuture<PPS> applyUpdateAsync(Consumer<PPS.Builder> update) {
+        Batch batch;
+        PPS snapshot;
+        synchronized (this.pps) {
+            this.checkNotClosed();
+            this.recording = new ArrayList<>();
+            try {
+                snapshot = this.pps.applyUpdate(update);
+                this.latest = new SnapshotPoint(snapshot, this.sequence);
+            } finally {
+                // also journal the changes that have been applied before an update failed
+                // enqueue while holding the writer lock, so records are committed in sequence order
+                batch = new Batch(this.recording, this.sequence, false, false);
+                this.recording = null;
+                this.queue.add(batch);
+            }
+        }
+        return batch.durable.thenApply(done -> snapshot);
+    }
+
+    /**
+     * writes a snapshot of the current plan and discards all journal segments that it covers
+     * waits until the snapshot has been written
+     */
+    public void checkpoint() {
+        Batch marker = new Batch(List.of(), -1, true, false);
+        synchronized (this.pps) {
+            this.checkNotClosed();
+            // include the changes that have been made directly since the last update
+            this.latest = new SnapshotPoint(this.pps.getSnapshot(), this.sequence);
+            this.queue.add(marker);
+        }
+        marker.durable.join();
+    }
+
+    /**
+     * journals a change of the plan, as part of the update that is being applied, or on its own
+     * called by the plan while it holds its lock
+     * @param change
+     */
+    private void onChange(PlanChange change) {
+        if (this.closed) {
+            return;
+        }
+        byte[] record = this.encode(change);
+        if (record == null) {
+            return;
+        }
+        if (this.recording != null) {
+            this.recording.add(record);
+        } else {
+            this.queue.add(new Batch(List.of(record), this.sequence, false, false));
+        }
+    }
+
+    private void checkNotClosed() {
+        if (this.closed) {
+            throw new IllegalStateException("Journal has been closed");
+        }
+    }
+
+    /**
+     * commits all pending records, writes a final snapshot and stops the journal
+     * @throws IOException if the final snapshot could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        Batch marker = null;
+        synchronized (this.pps) {
+            if (!this.closed) {
+                this.pps.removeChangeListener(this.listener);
+                this.latest = new SnapshotPoint(this.pps.getSnapshot(), this.sequence);
+                marker = new Batch(List.of(), -1, true, true);
+                this.queue.add(marker);
+                this.closed = true;
+            }
+        }
+        try {
+            this.committer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        this.segmentOut.close();
+        if (marker != null && marker.durable.isCompletedExceptionally()) {
+            try {
+                marker.durable.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private void commitLoop() {
+        List<Batch> batches = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batches.add(this.queue.take());
+            } catch (InterruptedException ex) {
+                SLF4J.LOGGER.warn("Journal committer of " + this.directory + " has been interrupted");
+                Thread.currentThread().interrupt();
+                break;
+            }
+            this.queue.drainTo(batches);
+            closing = batches.stream().anyMatch(batch -> batch.closing);
+            boolean checkpoint = batches.stream().anyMatch(batch -> batch.checkpoint);
+            try {
+                long lastSeq = -1;
+                int numRecords = 0;
+                for (Batch batch : batches) {
+                    for (byte[] record : batch.records) {
+                        this.segmentOut.write(record);
+                        numRecords++;
+                    }
+                    lastSeq = Math.max(lastSeq, batch.lastSeq);
+                }
+                if (numRecords > 0) {
+                    this.segmentOut.flush();
+                    this.segment.force(false);
+                    this.segmentLastSeqs.put(this.segmentLastSeqs.lastKey(), lastSeq);
+                    this.recordsSinceSnapshot += numRecords;
+                }
+                if (checkpoint || this.recordsSinceSnapshot >= this.snapshotInterval) {
+                    this.rollSnapshot();
+                }
+                batches.forEach(batch -> batch.durable.complete(null));
+            } catch (IOException ex) {
+                SLF4J.logException("Cannot commit journal records in " + this.directory, ex);
+                batches.forEach(batch -> batch.durable.completeExceptionally(ex));
+            }
+            batches.clear();
+        }
+        // after an interrupt, reject all updates that are still queued or are being enqueued
+        synchronized (this.pps) {
+            this.pps.removeChangeListener(this.listener);
+            this.closed = true;
+        }
+        Batch batch;
+        while ((batch = this.queue.poll()) != null) {
+            batch.durable.completeExceptionally(new IllegalStateException("Journal has been closed"));
+        }
+    }
+
+    /**
+     * starts a new segment, writes the latest published snapshot
+     * and deletes all segments that are fully covered by the snapshot
+     * @throws IOException
+     */
+    private void rollSnapshot() throws IOException {
+        SnapshotPoint latest = this.latest;
+        long seq = latest.seq;
+        PPS snapshot = latest.snapshot;
+        if (seq == this.snapshotSeq) {
+            this.recordsSinceSnapshot = 0;
+            return;
+        }
+        this.segmentOut.close();
+        this.openSegment(this.sequenceAfterCommitted());
+        this.writeSnapshot(snapshot, seq);
+
+        Iterator<Map.Entry<Long, Long>> segments = this.segmentLastSeqs.entrySet().iterator();
+        while (segments.hasNext()) {
+            Map.Entry<Long, Long> segment = segments.next();
+            if (segment.getValue() <= seq && segment.getKey() != this.segmentLastSeqs.lastKey()) {
+                Files.deleteIfExists(this.segmentPath(segment.getKey()));
+                segments.remove();
+            }
+        }
+        this.snapshotSeq = seq;
+        this.recordsSinceSnapshot = 0;
+    }
+
+    private long sequenceAfterCommitted() {
+        return this.segmentLastSeqs.lastEntry().getValue() + 1;
+    }
+
+    private Path segmentPath(long firstSeq) {
+        return this.directory.resolve(String.format("%s%019d.bin", SEGMENT_PREFIX, firstSeq));
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        this.segment = FileChannel.open(this.segmentPath(firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segmentOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.segment), 1 << 16));
+        this.segmentOut.writeInt(JOURNAL_MAGIC);
+        this.segmentLastSeqs.put(firstSeq, firstSeq - 1);
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * replays all intact records of the segment that follow the snapshot
+     * a torn record at the end of the segment ends the replay,
+     * as does a record with a corrupt length or checksum
+     * @return the last sequence number that has been found in the segment
+     */
+    private static long replaySegment(Path segment, PPS pps, long snapshotSeq) throws IOException {
+        long lastSeq = 0;
+        long remaining = Files.size(segment);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            if (in.readInt() != JOURNAL_MAGIC) {
+                throw new IOException("Not a plan journal: " + segment);
+            }
+            remaining -= 4;
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    remaining -= 8;
+                    if (length < 0 || length > MAX_RECORD_BYTES || length > remaining) {
+                        SLF4J.LOGGER.warn("Ignoring torn record after " + lastSeq + " in " + segment);
+                        break;
+                    }
+                    payload = in.readNBytes(length);
+                    remaining -= length;
+                    if (payload.length < length || crc != checksum(payload)) {
+                        SLF4J.LOGGER.warn("Ignoring torn record after " + lastSeq + " in " + segment);
+                        break;
+                    }
+                } catch (EOFException ex) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long seq = record.readLong();
+                lastSeq = seq;
+                if (seq <= snapshotSeq) {
+                    continue;
+                }
+                if (!replay(record, pps)) {
+                    throw new IOException("Unknown record type in " + segment);
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    /**
+     * applies a record to the plan, directly on the plan, its employees and projects, as the change was made
+     * @return whether the record is of a known type
+     */
+    private static boolean replay(DataInputStream record, PPS pps) throws IOException {
+        switch (record.readByte()) {
+            case EMPLOYEE: {
+                Employee employee = readEmployee(record);
+                readProjects(record, pps, employee.getManagedProjects());
+                readProjects(record, pps, employee.getAssignedProjects());
+                pps.getEmployees().add(employee);
+                // projects may have committed the employee before it was added
+                for (Project project : employee.getAssignedProjects()) {
+                    project.updateReferences(employee);
+                }
+                return true;
+            }
+            case EMPLOYEE_REMOVED: {
+                Employee employee = pps.findEmployee(record.readInt());
+                if (employee != null) {
+                    pps.getEmployees().remove(employee);
+                }
+                return true;
+            }
+            case PROJECT:
+                pps.getProjects().add(readProject(record));
+                return true;
+            case PROJECT_REMOVED: {
+                Project project = pps.findProject(record.readUTF());
+                if (project != null) {
+                    pps.getProjects().remove(project);
+                }
+                return true;
+            }
+            case RESCHEDULE:
+                pps.findProject(record.readUTF()).reschedule(readDate(record), readDate(record));
+                return true;
+            case WAGE: {
+                int number = record.readInt();
+                int hourlyWage = record.readInt();
+                Employee employee = pps.findEmployee(number);
+                if (employee != null) {
+                    employee.setHourlyWage(hourlyWage);
+                } else {
+                    // an employee from outside of the plan, who is committed separately to every project
+                    for (Project project : pps.getProjects()) {
+                        Employee committed = project.getCommittedEmployee(number);
+                        if (committed != null) {
+                            committed.setHourlyWage(hourlyWage);
+                        }
+                    }
+                }
+                return true;
+            }
+            case ASSIGNMENT: {
+                Employee employee = pps.findEmployee(record.readInt());
+                Set<Project> projects = (record.readBoolean() ? employee.getManagedProjects() : employee.getAssignedProjects());
+                if (record.readBoolean()) {
+                    Project project = readProject(record);
+                    Project current = pps.findProject(project.getCode());
+                    projects.add(current != null ? current : project);
+                } else {
+                    String code = record.readUTF();
+                    projects.removeIf(project -> project.getCode().equals(code));
+                }
+                return true;
+            }
+            case COMMITMENT: {
+                Project project = pps.findProject(record.readUTF());
+                Employee employee = readEmployee(record);
+                Employee current = pps.findEmployee(employee.getNumber());
+                if (current != null) {
+                    employee = current;
+                }
+                int hoursPerDay = project.getCommittedHoursPerDay().getOrDefault(employee, 0) + record.readInt();
+                // commit the employee as it was at the change, also when it replaces another employee of that number
+                project.updateReferences(employee);
+                project.putCommitment(employee, hoursPerDay);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * encodes a change as a record with the next sequence number, with the entities as they are in the plan
+     * @return the record, or null if the change does not concern the plan itself
+     */
+    private byte[] encode(PlanChange change) {
+        if (change instanceof PlanChange.CommitmentChanged) {
+            PlanChange.CommitmentChanged changed = (PlanChange.CommitmentChanged) change;
+            Project project = this.pps.findProject(changed.getProjectCode());
+            if (project == null) {
+                // the commitments of a removed project are removed along with it
+                return null;
+            }
+            Employee employee = this.pps.findEmployee(changed.getEmployeeNr());
+            if (employee == null) {
+                employee = project.getCommittedEmployee(changed.getEmployeeNr());
+            }
+            Employee committed = (employee != null ? employee : Employee.reference(changed.getEmployeeNr()));
+            return encode(++this.sequence, COMMITMENT, out -> {
+                out.writeUTF(project.getCode());
+                writeEmployee(out, committed);
+                out.writeInt(changed.getHoursPerDayDelta());
+            });
+        } else if (change instanceof PlanChange.ProjectAdded) {
+            Project project = this.pps.findProject(((PlanChange.ProjectAdded) change).getProjectCode());
+            return (project != null ? encode(++this.sequence, PROJECT, out -> writeProject(out, project)) : null);
+        } else if (change instanceof PlanChange.ProjectRemoved) {
+            String code = ((PlanChange.ProjectRemoved) change).getProjectCode();
+            return encode(++this.sequence, PROJECT_REMOVED, out -> out.writeUTF(code));
+        } else if (change instanceof PlanChange.ProjectRescheduled) {
+            PlanChange.ProjectRescheduled rescheduled = (PlanChange.ProjectRescheduled) change;
+            return encode(++this.sequence, RESCHEDULE, out -> {
+                out.writeUTF(rescheduled.getProjectCode());
+                writeDate(out, rescheduled.getStartDate());
+                writeDate(out, rescheduled.getEndDate());
+            });
+        } else if (change instanceof PlanChange.EmployeeAdded) {
+            Employee employee = this.pps.findEmployee(((PlanChange.EmployeeAdded) change).getEmployeeNr());
+            return (employee != null ? encode(++this.sequence, EMPLOYEE, out -> {
+                writeEmployee(out, employee);
+                writeProjects(out, employee.getManagedProjects());
+                writeProjects(out, employee.getAssignedProjects());
+            }) : null);
+        } else if (change instanceof PlanChange.EmployeeRemoved) {
+            int number = ((PlanChange.EmployeeRemoved) change).getEmployeeNr();
+            return encode(++this.sequence, EMPLOYEE_REMOVED, out -> out.writeInt(number));
+        } else if (change instanceof PlanChange.WageChanged) {
+            PlanChange.WageChanged changed = (PlanChange.WageChanged) change;
+            return encode(++this.sequence, WAGE, out -> {
+                out.writeInt(changed.getEmployeeNr());
+                out.writeInt(changed.getHourlyWage());
+            });
+        } else if (change instanceof PlanChange.AssignmentChanged) {
+            PlanChange.AssignmentChanged changed = (PlanChange.AssignmentChanged) change;
+            Employee employee = this.pps.findEmployee(changed.getEmployeeNr());
+            if (employee == null) {
+                return null;
+            }
+            Set<Project> projects = (changed.isManaged() ? employee.getManagedProjects() : employee.getAssignedProjects());
+            Project project = (changed.isAdded() ? findProject(this.pps, projects, changed.getProjectCode()) : null);
+            return encode(++this.sequence, ASSIGNMENT, out -> {
+                out.writeInt(employee.getNumber());
+                out.writeBoolean(changed.isManaged());
+                out.writeBoolean(changed.isAdded());
+                if (changed.isAdded()) {
+                    writeProject(out, project);
+                } else {
+                    out.writeUTF(changed.getProjectCode());
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * @return the project of the plan with the code, or else the project of the set, which may be outside of the plan
+     */
+    private static Project findProject(PPS pps, Set<Project> projects, String code) {
+        Project project = pps.findProject(code);
+        if (project == null) {
+            project = projects.stream()
+                    .filter(candidate -> candidate.getCode().equals(code))
+                    .findAny()
+                    .orElse(new Project(code, null, null, null));
+        }
+        return project;
+    }
+
+    private static byte[] encode(long seq, byte type, RecordWriter fields) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(seq);
+            out.writeByte(type);
+            fields.write(out);
+            byte[] payload = bytes.toByteArray();
+
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(payload.length + 8);
+            DataOutputStream frame = new DataOutputStream(framed);
+            frame.writeInt(payload.length);
+            frame.writeInt(checksum(payload));
+            frame.write(payload);
+            return framed.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private void writeSnapshot(PPS snapshot, long seq) throws IOException {
+        Path target = this.directory.resolve(SNAPSHOT_FILE);
+        Path temp = this.directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            writeSnapshot(out, snapshot);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SLF4J.LOGGER.debug("Written snapshot of '" + snapshot.getName() + "' at record " + seq);
+    }
+
+    private static void writeSnapshot(DataOutputStream out, PPS pps) throws IOException {
+        out.writeUTF(pps.getName());
+        out.writeInt(pps.getPlanningYear());
+
+        // include the referenced entities that are not registered in the plan itself
+        Set<Project> projects = new TreeSet<>(pps.getProjects());
+        for (Employee employee : pps.getEmployees()) {
+            projects.addAll(employee.getManagedProjects());
+            projects.addAll(employee.getAssignedProjects());
+        }
+        Set<Employee> employees = new TreeSet<>(pps.getEmployees());
+        for (Project project : projects) {
+            employees.addAll(project.getCommittedHoursPerDay().keySet());
+        }
+        out.writeInt(employees.size());
+        for (Employee employee : employees) {
+            writeEmployee(out, employee);
+            out.writeBoolean(pps.getEmployees().contains(employee));
+        }
+        out.writeInt(projects.size());
+        for (Project project : projects) {
+            writeProject(out, project);
+            out.writeBoolean(pps.getProjects().contains(project));
+            out.writeInt(project.getCommittedHoursPerDay().size());
+            for (Map.Entry<Employee, Integer> commitment : project.getCommittedHoursPerDay().entrySet()) {
+                out.writeInt(commitment.getKey().getNumber());
+                out.writeInt(commitment.getValue());
+            }
+        }
+        for (Employee employee : pps.getEmployees()) {
+            out.writeInt(employee.getNumber());
+            writeCodes(out, employee.getManagedProjects());
+            writeCodes(out, employee.getAssignedProjects());
+        }
+        out.writeInt(-1);
+    }
+
+    private static PPS readSnapshot(DataInputStream in) throws IOException {
+        PPS pps = PPS.newPlan(in.readUTF(), in.readInt());
+
+        Map<Integer, Employee> employees = new HashMap<>();
+        int numEmployees = in.readInt();
+        for (int i = 0; i < numEmployees; i++) {
+            Employee employee = readEmployee(in);
+            employees.put(employee.getNumber(), employee);
+            if (in.readBoolean()) {
+                pps.getEmployees().add(employee);
+            }
+        }
+        Map<String, Project> projects = new HashMap<>();
+        int numProjects = in.readInt();
+        for (int i = 0; i < numProjects; i++) {
+            Project project = readProject(in);
+            projects.put(project.getCode(), project);
+            if (in.readBoolean()) {
+                pps.getProjects().add(project);
+            }
+            int numCommitments = in.readInt();
+            for (int c = 0; c < numCommitments; c++) {
+                project.putCommitment(employees.get(in.readInt()), in.readInt());
+            }
+        }
+        int number;
+        while ((number = in.readInt()) >= 0) {
+            Employee employee = employees.get(number);
+            readCodes(in, projects, employee.getManagedProjects());
+            readCodes(in, projects, employee.getAssignedProjects());
+        }
+        return pps;
+    }
+
+    private static void writeEmployee(DataOutputStream out, Employee employee) throws IOException {
+        out.writeInt(employee.getNumber());
+        writeText(out, employee.getName());
+        out.writeInt(employee.getHourlyWage());
+    }
+
+    private static Employee readEmployee(DataInputStream in) throws IOException {
+        return new Employee(in.readInt(), readText(in), in.readInt());
+    }
+
+    private static void writeProject(DataOutputStream out, Project project) throws IOException {
+        out.writeUTF(project.getCode());
+        writeText(out, project.getTitle());
+        writeDate(out, project.getStartDate());
+        writeDate(out, project.getEndDate());
+    }
+
+    private static Project readProject(DataInputStream in) throws IOException {
+        return new Project(in.readUTF(), readText(in), readDate(in), readDate(in));
+    }
+
+    /**
+     * writes the attributes of every project, as these may be outside of the plan
+     */
+    private static void writeProjects(DataOutputStream out, Set<Project> projects) throws IOException {
+        out.writeInt(projects.size());
+        for (Project project : projects) {
+            writeProject(out, project);
+        }
+    }
+
+    /**
+     * reads projects into the target, resolving them to the projects of the plan where possible
+     */
+    private static void readProjects(DataInputStream in, PPS pps, Set<Project> target) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Project project = readProject(in);
+            Project current = pps.findProject(project.getCode());
+            target.add(current != null ? current : project);
+        }
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date != null ? date.toEpochDay() : NO_DATE);
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        long day = in.readLong();
+        return (day != NO_DATE ? LocalDate.ofEpochDay(day) : null);
+    }
+
+    /**
+     * writes a text that may be null, such as the name of a placeholder employee that is referred to by number only
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) {
+            out.writeUTF(text);
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        return (in.readBoolean() ? in.readUTF() : null);
+    }
+
+    private static void writeCodes(DataOutputStream out, Set<Project> projects) throws IOException {
+        out.writeInt(projects.size());
+        for (Project project : projects) {
+            out.writeUTF(project.getCode());
+        }
+    }
+
+    private static void readCodes(DataInputStream in, Map<String, Project> projects, Set<Project> target) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            target.add(projects.get(in.readUTF()));
+        }
+    }
+}
@@ -0,0 +1,390 @@
+import utils.SLF4J;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Holds many plans in memory, keyed by their name, within a configurable heap budget
+ *
+ * Plans are loaded on demand, by default through PPS.importFromXML.
+ * Concurrent requests for a plan that is being loaded share the same load.
+ * A plan that failed to load is not loaded again until the retry interval has passed,
+ * such that repeated requests for an unknown plan are answered from the registry.
+ * When the estimated size of all cached plans exceeds the budget,
+ * the least recently used plans are evicted.
+ * A plan that has changed since it was weighed is weighed again when it is requested.
+ * Removal listeners are notified of every plan that leaves the registry, such that anything that is kept
+ * for a cached plan can be released with it.
+ */
+public class PlanRegistry {
+
+    /**
+     * a point-in-time copy of the counters of the registry
+     */
+    public static class Statistics {
+        private final long hits, misses, loads, sharedLoads, loadFailures, failureHits, evictions;
+        private final int numPlans;
+        private final long retainedBytes;
+
+        private Statistics(long hits, long misses, long loads, long sharedLoads, long loadFailures,
+                           long failureHits, long evictions, int numPlans, long retainedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.sharedLoads = sharedLoads;
+            this.loadFailures = loadFailures;
+            this.failureHits = failureHits;
+            this.evictions = evictions;
+            this.numPlans = numPlans;
+            this.retainedBytes = retainedBytes;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getLoads() { return loads; }
+        public long getSharedLoads() { return sharedLoads; }
+        public long getLoadFailures() { return loadFailures; }
+
+        /**
+         * @return the number of requests for plans that failed to load within the retry interval,
+         *          which have not been loaded again
+         */
+        public long getFailureHits() { return failureHits; }
+        public long getEvictions() { return evictions; }
+        public int getNumPlans() { return numPlans; }
+        public long getRetainedBytes() { return retainedBytes; }
+
+        public double getHitRatio() {
+            return (hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        }
+
+        /**
+         * provides all counters by metric name
+         * @return
+         */
+        public Map<String, Number> toMetrics() {
+            Map<String, Number> metrics = new LinkedHashMap<>();
+            metrics.put("registry.hits", this.hits);
+            metrics.put("registry.misses", this.misses);
+            metrics.put("registry.hitRatio", this.getHitRatio());
+            metrics.put("registry.loads", this.loads);
+            metrics.put("registry.sharedLoads", this.sharedLoads);
+            metrics.put("registry.loadFailures", this.loadFailures);
+            metrics.put("registry.failureHits", this.failureHits);
+            metrics.put("registry.evictions", this.evictions);
+            metrics.put("registry.plans", this.numPlans);
+            metrics.put("registry.retainedBytes", this.retainedBytes);
+            return metrics;
+        }
+
+        @Override
+        public String toString() {
+            return this.toMetrics().toString();
+        }
+    }
+
+    private static class Entry {
+        final PPS pps;
+        final long bytes;
+        final long version;     // the budget version of the plan when it was weighed
+
+        Entry(PPS pps, long bytes, long version) {
+            this.pps = pps;
+            this.bytes = bytes;
+            this.version = version;
+        }
+    }
+
+    public static final long DEFAULT_RETRY_MILLIS = 60000;
+    public static final int MAX_FAILED_NAMES = 1000;
+
+    private final long heapBudget;
+    private final Function<String, PPS> loader;
+    private final ToLongFunction<PPS> weigher;
+    private final long retryNanos;
+
+    // access ordered, such that iteration starts at the least recently used plan
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes = 0;
+    private final Map<String, CompletableFuture<PPS>> loading = new ConcurrentHashMap<>();
+    // the time of the last failed load by plan name, from least to most recently failed, up to MAX_FAILED_NAMES
+    private final LinkedHashMap<String, Long> failures = new LinkedHashMap<>();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong sharedLoads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong failureHits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PlanRegistry(long heapBudget) {
+        this(heapBudget, PlanRegistry::loadResource, PlanRegistry::estimateBytes);
+    }
+
+    /**
+     * @param heapBudget the maximum total estimated size of all cached plans in bytes
+     * @param loader     loads a plan by its name, or returns null if the plan cannot be loaded
+     * @param weigher    estimates the retained heap size of a plan in bytes
+     */
+    public PlanRegistry(long heapBudget, Function<String, PPS> loader, ToLongFunction<PPS> weigher) {
+        this(heapBudget, loader, weigher, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * @param heapBudget  the maximum total estimated size of all cached plans in bytes
+     * @param loader      loads a plan by its name, or returns null if the plan cannot be loaded
+     * @param weigher     estimates the retained heap size of a plan in bytes
+     * @param retryMillis the interval after a failed load of a plan, during which it is not loaded again
+     */
+    public PlanRegistry(long heapBudget, Function<String, PPS> loader, ToLongFunction<PPS> weigher, long retryMillis) {
+        this.heapBudget = heapBudget;
+        this.loader = loader;
+        this.weigher = weigher;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+    }
+
+    /**
+     * loads a plan from an XML resource, without attempting to import a resource that does not exist
+     * @param name
+     * @return the plan, or null if there is no valid plan resource of that name
+     */
+    public static PPS loadResource(String name) {
+        if (PlanRegistry.class.getClassLoader().getResource(name) == null) {
+            SLF4J.LOGGER.debug("No plan resource '" + name + "'");
+            return null;
+        }
+        return PPS.importFromXML(name);
+    }
+
+    /**
+     * the estimated retained size of a plan, from its footprint
+     * snapshots share the captured states of the plan and are not weighed separately,
+     * nor are they published by weighing
+     * @param pps
+     * @return
+     */
+    public static long estimateBytes(PPS pps) {
+        synchronized (pps) {
+            return pps.getFootprint().getTotalBytes();
+        }
+    }
+
+    /**
+     * registers a listener that is notified with the name of every plan that is evicted, invalidated or replaced
+     * listeners are called after the registry has released its lock
+     * @param listener
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        this.removalListeners.add(listener);
+    }
+
+    private void notifyRemoved(List<String> names) {
+        for (String name : names) {
+            this.removalListeners.forEach(listener -> listener.accept(name));
+        }
+    }
+
+    /**
+     * provides the plan with the given name, loading it if it is not cached
+     * @param name
+     * @return the plan, or null if it cannot be loaded
+     */
+    public PPS get(String name) {
+        Entry reweighed = null;
+        synchronized (this) {
+            Entry entry = this.cache.get(name);
+            if (entry != null) {
+                this.hits.incrementAndGet();
+                if (entry.version != entry.pps.getBudgetVersion()) {
+                    reweighed = entry;
+                } else {
+                    return entry.pps;
+                }
+            }
+            Long failedAt = this.failures.get(name);
+            if (failedAt != null) {
+                if (System.nanoTime() - failedAt < this.retryNanos) {
+                    this.failureHits.incrementAndGet();
+                    return null;
+                }
+                this.failures.remove(name);
+            }
+        }
+        if (reweighed != null) {
+            this.reweigh(name, reweighed);
+            return reweighed.pps;
+        }
+        this.misses.incrementAndGet();
+
+        CompletableFuture<PPS> load = new CompletableFuture<>();
+        CompletableFuture<PPS> running = this.loading.putIfAbsent(name, load);
+        if (running != null) {
+            // another thread is loading this plan already
+            this.sharedLoads.incrementAndGet();
+            return running.join();
+        }
+
+        PPS pps = null;
+        try {
+            synchronized (this) {
+                // the plan may have been loaded just before this load was registered
+                Entry entry = this.cache.get(name);
+                if (entry != null) {
+                    pps = entry.pps;
+                    return pps;
+                }
+            }
+            this.loads.incrementAndGet();
+            pps = this.loader.apply(name);
+            if (pps == null) {
+                this.failed(name);
+            } else {
+                this.put(name, pps);
+            }
+        } catch (RuntimeException ex) {
+            this.failed(name);
+            SLF4J.logException("Cannot load plan '" + name + "'", ex);
+        } finally {
+            this.loading.remove(name);
+            load.complete(pps);
+        }
+        return pps;
+    }
+
+    /**
+     * remembers the failed load of a plan, forgetting the oldest failures beyond MAX_FAILED_NAMES
+     * @param name
+     */
+    private synchronized void failed(String name) {
+        this.loadFailures.incrementAndGet();
+        this.failures.remove(name);
+        this.failures.put(name, System.nanoTime());
+        Iterator<String> oldest = this.failures.keySet().iterator();
+        while (this.failures.size() > MAX_FAILED_NAMES) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * adds or replaces a plan in the registry under its name
+     * @param pps
+     */
+    public void put(PPS pps) {
+        this.put(pps.getName(), pps);
+    }
+
+    private void put(String name, PPS pps) {
+        // a change during weighing is weighed again by the next request
+        long version = pps.getBudgetVersion();
+        long bytes = this.weigher.applyAsLong(pps);
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            this.failures.remove(name);
+            Entry previous = this.cache.put(name, new Entry(pps, bytes, version));
+            if (previous != null) {
+                this.retainedBytes -= previous.bytes;
+                removed.add(name);
+            }
+            this.retainedBytes += bytes;
+            this.evict(name, removed);
+        }
+        this.notifyRemoved(removed);
+    }
+
+    /**
+     * weighs a changed plan again, without holding the lock of the registry while weighing,
+     * and evicts other plans if it has grown beyond the budget
+     * @param name
+     * @param entry the cached entry of the plan
+     */
+    private void reweigh(String name, Entry entry) {
+        long version = entry.pps.getBudgetVersion();
+        long bytes = this.weigher.applyAsLong(entry.pps);
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            // unless the plan has been replaced or removed meanwhile
+            if (this.cache.get(name) == entry) {
+                this.cache.put(name, new Entry(entry.pps, bytes, version));
+                this.retainedBytes += bytes - entry.bytes;
+                this.evict(name, removed);
+            }
+        }
+        this.notifyRemoved(removed);
+    }
+
+    /**
+     * evicts least recently used plans until the budget is met,
+     * but always retains the plan that has been added most recently
+     * @param keep
+     * @param evicted collects the names of the evicted plans
+     */
+    private void evict(String keep, List<String> evicted) {
+        Iterator<Map.Entry<String, Entry>> lru = this.cache.entrySet().iterator();
+        while (this.retainedBytes > this.heapBudget && lru.hasNext()) {
+            Map.Entry<String, Entry> eldest = lru.next();
+            if (!eldest.getKey().equals(keep)) {
+                this.retainedBytes -= eldest.getValue().bytes;
+                lru.remove();
+                this.evictions.incrementAndGet();
+                evicted.add(eldest.getKey());
+                SLF4J.LOGGER.debug("Evicted plan '" + eldest.getKey() + "'");
+            }
+        }
+    }
+
+    /**
+     * removes a plan from the registry, such that it is loaded again by the next request,
+     * also if its last load failed
+     * @param name
+     * @return whether the plan was cached
+     */
+    public boolean invalidate(String name) {
+        Entry entry;
+        synchronized (this) {
+            this.failures.remove(name);
+            entry = this.cache.remove(name);
+            if (entry != null) {
+                this.retainedBytes -= entry.bytes;
+            }
+        }
+        if (entry != null) {
+            this.notifyRemoved(List.of(name));
+        }
+        return entry != null;
+    }
+
+    /**
+     * @param name
+     * @return whether the plan is currently cached, without affecting its recency
+     */
+    public synchronized boolean contains(String name) {
+        return this.cache.containsKey(name);
+    }
+
+    /**
+     * @return the names of all cached plans, from least to most recently used
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(this.cache.keySet());
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(this.hits.get(), this.misses.get(), this.loads.get(), this.sharedLoads.get(),
+                this.loadFailures.get(), this.failureHits.get(), this.evictions.get(),
+                this.cache.size(), this.retainedBytes);
+    }
+}
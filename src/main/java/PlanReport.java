@@ -0,0 +1,263 @@
+import utils.JSONWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.util.*;
+
+/**
+ * Renders the planning statistics of a plan as text, CSV or JSON
+ *
+ * The report is streamed entry by entry to any Appendable, such as a Writer or a StringBuilder,
+ * so no string of a whole section is ever built up in memory.
+ * The lists of employees in the report can be paginated by an offset and a limit.
+ */
+public class PlanReport {
+
+    public enum Format {
+        TEXT,   // the human readable report of PPS.printPlanningStatistics
+        CSV,    // a row per statistic: statistic,key,value
+        JSON    // a single object, as served by the PlanningServer
+    }
+
+    private final PPS pps;
+    private Format format = Format.TEXT;
+    private int offset = 0;
+    private int limit = Integer.MAX_VALUE;
+
+    public PlanReport(PPS pps) {
+        this.pps = pps;
+    }
+
+    public PlanReport setFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * limits every list of employees in the report to a page
+     * @param offset the number of leading entries to skip
+     * @param limit  the maximum number of entries to report
+     * @return
+     */
+    public PlanReport setPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid page " + offset + ", " + limit);
+        }
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    private boolean isPaginated() {
+        return this.offset > 0 || this.limit < Integer.MAX_VALUE;
+    }
+
+    /**
+     * writes the report to a stream through a buffer, without closing the stream
+     * @param out
+     */
+    public void writeTo(OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.render(writer);
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * renders the report
+     * @param out
+     * @throws UncheckedIOException if the output fails
+     */
+    public void render(Appendable out) {
+        switch (this.format) {
+            case TEXT: this.renderText(out); break;
+            case CSV: this.renderCSV(out); break;
+            case JSON: this.renderJSON(out); break;
+            default: throw new IllegalArgumentException("Unknown format " + this.format);
+        }
+    }
+
+    /**
+     * @return the report as a string
+     */
+    public String render() {
+        StringBuilder report = new StringBuilder();
+        this.render(report);
+        return report.toString();
+    }
+
+    private boolean hasStatistics() {
+        return !this.pps.getEmployees().isEmpty() && !this.pps.getProjects().isEmpty();
+    }
+
+    private List<Employee> mostInvolvedEmployees() {
+        List<Employee> employees = new ArrayList<>(this.pps.calculateMostInvolvedEmployees());
+        Collections.sort(employees);
+        return employees;
+    }
+
+    private List<Map.Entry<Employee, Integer>> juniorManagedBudgets() {
+        List<Map.Entry<Employee, Integer>> budgets =
+                new ArrayList<>(this.pps.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE).entrySet());
+        budgets.sort(Map.Entry.comparingByKey());
+        return budgets;
+    }
+
+    /**
+     * @return the entries of the page
+     */
+    private <T> List<T> page(List<T> entries) {
+        int from = Math.min(this.offset, entries.size());
+        return entries.subList(from, (int) Math.min(entries.size(), (long) from + this.limit));
+    }
+
+    private void renderText(Appendable out) {
+        append(out, String.format("\nProject Statistics of '%s' in the year %d\n",
+                this.pps.getName(), this.pps.getPlanningYear()));
+        if (!this.hasStatistics()) {
+            append(out, "No employees or projects have been set up...\n");
+            return;
+        }
+        append(out, String.format("%d employees have been assigned to %d projects:\n\n",
+                this.pps.getEmployees().size(), this.pps.getProjects().size()));
+        append(out, String.format("1.The average hourly wage of all employees is %.2f\n",
+                this.pps.calculateAverageHourlyWage()));
+        Project longestProject = this.pps.calculateLongestProject();
+        append(out, String.format("2.The longest project is '%s' with %d available working days.\n",
+                longestProject.getTitle(), longestProject.getNumWorkingDays()));
+
+        int mostProjectsAssigned = this.pps.getEmployees().stream()
+                .mapToInt(Employee::getAssignedProjectsLength).max().orElse(1);
+        append(out, String.format("3.The follow employees have the broadest assignment in no less than %d different projects: \n",
+                mostProjectsAssigned));
+        List<Employee> employees = this.mostInvolvedEmployees();
+        append(out, "[");
+        String separator = "";
+        for (Employee employee : this.page(employees)) {
+            append(out, separator);
+            append(out, employee.toString());
+            separator = ", ";
+        }
+        append(out, "]");
+        this.appendPageOf(out, employees.size());
+
+        append(out, String.format("4. The total budget of committed project manpower is %d\n",
+                this.pps.calculateTotalManpowerBudget()));
+
+        append(out, "5. Below is an overview of total managed budget by junior employees (hourly wage <= 30): \n");
+        List<Map.Entry<Employee, Integer>> budgets = this.juniorManagedBudgets();
+        append(out, "{");
+        separator = "";
+        for (Map.Entry<Employee, Integer> budget : this.page(budgets)) {
+            append(out, separator);
+            append(out, budget.getKey().toString());
+            append(out, "=");
+            append(out, budget.getValue().toString());
+            separator = ", ";
+        }
+        append(out, "}");
+        this.appendPageOf(out, budgets.size());
+
+        append(out, "6. Below is an overview of cumulative monthly project spends: \n");
+        append(out, this.pps.calculateCumulativeMonthlySpends().toString());
+        append(out, "\n");
+    }
+
+    private void appendPageOf(Appendable out, int size) {
+        if (this.isPaginated()) {
+            int from = Math.min(this.offset, size);
+            long to = Math.min(size, (long) from + this.limit);
+            append(out, String.format(" (%d-%d of %d)", from + 1, to, size));
+        }
+        append(out, "\n");
+    }
+
+    private void renderCSV(Appendable out) {
+        append(out, "statistic,key,value\n");
+        csv(out, "name", "", this.pps.getName());
+        csv(out, "planningYear", "", this.pps.getPlanningYear());
+        csv(out, "numEmployees", "", this.pps.getEmployees().size());
+        csv(out, "numProjects", "", this.pps.getProjects().size());
+        if (!this.hasStatistics()) {
+            return;
+        }
+        csv(out, "averageHourlyWage", "", this.pps.calculateAverageHourlyWage());
+        Project longestProject = this.pps.calculateLongestProject();
+        csv(out, "longestProject", "code", longestProject.getCode());
+        csv(out, "longestProject", "title", longestProject.getTitle());
+        csv(out, "longestProject", "numWorkingDays", longestProject.getNumWorkingDays());
+        csv(out, "totalManpowerBudget", "", this.pps.calculateTotalManpowerBudget());
+        for (Employee employee : this.page(this.mostInvolvedEmployees())) {
+            csv(out, "mostInvolvedEmployee", employee.getNumber(), employee.getAssignedProjectsLength());
+        }
+        for (Map.Entry<Employee, Integer> budget : this.page(this.juniorManagedBudgets())) {
+            csv(out, "juniorManagedBudget", budget.getKey().getNumber(), budget.getValue());
+        }
+        for (Map.Entry<Month, Integer> spend : this.pps.calculateCumulativeMonthlySpends().entrySet()) {
+            csv(out, "cumulativeMonthlySpend", spend.getKey(), spend.getValue());
+        }
+    }
+
+    private static void csv(Appendable out, String statistic, Object key, Object value) {
+        append(out, statistic);
+        append(out, ",");
+        append(out, csvField(String.valueOf(key)));
+        append(out, ",");
+        append(out, csvField(value instanceof Double ? String.format(Locale.ROOT, "%.2f", value) : String.valueOf(value)));
+        append(out, "\n");
+    }
+
+    private static String csvField(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private void renderJSON(Appendable out) {
+        JSONWriter writer = new JSONWriter(out).beginObject()
+                .member("name", this.pps.getName())
+                .member("planningYear", this.pps.getPlanningYear())
+                .member("numEmployees", this.pps.getEmployees().size())
+                .member("numProjects", this.pps.getProjects().size());
+        if (this.hasStatistics()) {
+            Project longestProject = this.pps.calculateLongestProject();
+            writer.member("averageHourlyWage", this.pps.calculateAverageHourlyWage())
+                    .name("longestProject").beginObject()
+                    .member("code", longestProject.getCode())
+                    .member("title", longestProject.getTitle())
+                    .member("numWorkingDays", longestProject.getNumWorkingDays())
+                    .endObject()
+                    .member("totalManpowerBudget", this.pps.calculateTotalManpowerBudget());
+            if (this.isPaginated()) {
+                writer.name("page").beginObject()
+                        .member("offset", this.offset)
+                        .member("limit", this.limit)
+                        .endObject();
+            }
+            writer.name("mostInvolvedEmployees").beginArray();
+            this.page(this.mostInvolvedEmployees()).forEach(employee -> writer.value(employee.getNumber()));
+            writer.endArray();
+            writer.name("juniorManagedBudgets").beginObject();
+            this.page(this.juniorManagedBudgets()).forEach(budget ->
+                    writer.member(Integer.toString(budget.getKey().getNumber()), budget.getValue()));
+            writer.endObject();
+            writer.name("cumulativeMonthlySpends").beginObject();
+            this.pps.calculateCumulativeMonthlySpends().forEach((month, spend) -> writer.member(month.name(), spend));
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    private static void append(Appendable out, CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+import utils.Calendar;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Period;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A what-if scenario on top of an immutable snapshot of a plan
+ *
+ * The scenario records only the projects that it changes, as overlays of their dates and commitments,
+ * and the hourly wages that it changes. The base snapshot is shared by all scenarios and never copied.
+ * Statistics of the scenario are calculated as the aggregates of the base
+ * (from its spend timeline, which is built once per snapshot)
+ * plus the differences of the affected projects only.
+ * Many scenarios can be evaluated in parallel, since evaluation does not modify anything.
+ */
+public class PlanScenario {
+
+    /**
+     * the statistics of a scenario
+     */
+    public static class Outcome {
+        private final String scenarioName;
+        private final long totalManpowerBudget;
+        private final long budgetDelta;
+        private final Map<Month, Long> monthlySpends;
+        private final Map<String, Long> projectBudgets;
+
+        Outcome(String scenarioName, long totalManpowerBudget, long budgetDelta,
+                Map<Month, Long> monthlySpends, Map<String, Long> projectBudgets) {
+            this.scenarioName = scenarioName;
+            this.totalManpowerBudget = totalManpowerBudget;
+            this.budgetDelta = budgetDelta;
+            this.monthlySpends = Collections.unmodifiableMap(monthlySpends);
+            this.projectBudgets = Collections.unmodifiableMap(projectBudgets);
+        }
+
+        public String getScenarioName() { return scenarioName; }
+
+        /**
+         * @return the total manpower budget of all projects in the scenario
+         */
+        public long getTotalManpowerBudget() { return totalManpowerBudget; }
+
+        /**
+         * @return the difference between the total manpower budget of the scenario and of the base plan
+         */
+        public long getBudgetDelta() { return budgetDelta; }
+
+        /**
+         * @return the cumulative monthly spends in the scenario, as in PPS.calculateCumulativeMonthlySpends
+         */
+        public Map<Month, Long> getMonthlySpends() { return monthlySpends; }
+
+        /**
+         * @return the manpower budgets of the projects that are affected by the scenario, by project code
+         */
+        public Map<String, Long> getProjectBudgets() { return projectBudgets; }
+
+        @Override
+        public String toString() {
+            return String.format("Outcome(%s: budget %d, delta %+d)",
+                    this.scenarioName, this.totalManpowerBudget, this.budgetDelta);
+        }
+    }
+
+    /**
+     * the changed dates and/or commitments of a single project
+     */
+    private static class ProjectOverlay {
+        private final Project base;
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private Map<Integer, Integer> commitments;  // hours per day by employee number, null if not changed
+        private Map<Integer, Employee> employees;   // the committed employees by number, null if not changed
+
+        ProjectOverlay(Project base) {
+            this.base = base;
+            this.startDate = base.getStartDate();
+            this.endDate = base.getEndDate();
+        }
+
+        Map<Integer, Integer> getCommitments() {
+            if (this.commitments == null) {
+                // the committed employees are kept, since employees from outside of the plan cannot be found again
+                this.commitments = new HashMap<>();
+                this.employees = new HashMap<>();
+                this.base.getCommittedHoursPerDay().forEach((employee, hours) -> {
+                    this.commitments.put(employee.getNumber(), hours);
+                    this.employees.put(employee.getNumber(), employee);
+                });
+            }
+            return this.commitments;
+        }
+
+        void addCommitment(Employee employee, int hoursPerDay) {
+            Integer previous = this.getCommitments().put(employee.getNumber(), hoursPerDay);
+            if (previous != null) {
+                this.commitments.put(employee.getNumber(), previous + hoursPerDay);
+            } else {
+                this.employees.put(employee.getNumber(), employee);
+            }
+        }
+    }
+
+    private final PPS base;
+    private final String name;
+    private final Map<String, ProjectOverlay> projectOverlays = new HashMap<>();
+    private final Map<Integer, Integer> wageOverlays = new HashMap<>();
+
+    /**
+     * creates an empty scenario on top of the current snapshot of the plan
+     * @param pps
+     * @param name
+     */
+    public PlanScenario(PPS pps, String name) {
+        this.base = pps.getSnapshot();
+        this.name = name;
+    }
+
+    public PPS getBase() {
+        return this.base;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * moves the project by the period, keeping its start and end on working days
+     * @param projectCode
+     * @param shift
+     * @return
+     */
+    public PlanScenario shiftProject(String projectCode, Period shift) {
+        ProjectOverlay overlay = this.overlay(projectCode);
+        return this.reschedule(projectCode, overlay.startDate.plus(shift), overlay.endDate.plus(shift));
+    }
+
+    /**
+     * moves the project to a new period, as Project.reschedule
+     * @param projectCode
+     * @param startDate
+     * @param endDate
+     * @return
+     */
+    public PlanScenario reschedule(String projectCode, LocalDate startDate, LocalDate endDate) {
+        ProjectOverlay overlay = this.overlay(projectCode);
+        overlay.startDate = Calendar.firstWorkingDayFrom(startDate);
+        overlay.endDate = Calendar.lastWorkingDayUntil(endDate);
+        return this;
+    }
+
+    /**
+     * replaces the commitment of an employee on a project; 0 hours removes the commitment
+     * @param projectCode
+     * @param employeeNr
+     * @param hoursPerDay
+     * @return
+     */
+    public PlanScenario setCommitment(String projectCode, int employeeNr, int hoursPerDay) {
+        Employee employee = this.employee(employeeNr);
+        ProjectOverlay overlay = this.overlay(projectCode);
+        overlay.getCommitments().remove(employeeNr);
+        if (hoursPerDay > 0) {
+            overlay.addCommitment(employee, hoursPerDay);
+        }
+        return this;
+    }
+
+    /**
+     * moves all commitments of one employee to another employee,
+     * adding them to any commitments of the other employee on the same projects
+     * @param employeeNr
+     * @param replacementNr
+     * @return
+     */
+    public PlanScenario swapEmployee(int employeeNr, int replacementNr) {
+        this.employee(employeeNr);
+        Employee replacement = this.employee(replacementNr);
+        for (String code : this.findCommittedProjects(employeeNr)) {
+            ProjectOverlay overlay = this.overlay(code);
+            Integer hoursPerDay = overlay.getCommitments().remove(employeeNr);
+            if (hoursPerDay != null) {
+                overlay.addCommitment(replacement, hoursPerDay);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * changes the hourly wage of an employee, which affects all projects of the employee
+     * @param employeeNr
+     * @param hourlyWage
+     * @return
+     */
+    public PlanScenario setHourlyWage(int employeeNr, int hourlyWage) {
+        this.employee(employeeNr);
+        this.wageOverlays.put(employeeNr, hourlyWage);
+        return this;
+    }
+
+    private ProjectOverlay overlay(String projectCode) {
+        ProjectOverlay overlay = this.projectOverlays.get(projectCode);
+        if (overlay == null) {
+            Project project = this.base.findProject(projectCode);
+            if (project == null || project.getStartDate() == null) {
+                throw new IllegalArgumentException("Unknown project " + projectCode);
+            }
+            overlay = new ProjectOverlay(project);
+            this.projectOverlays.put(projectCode, overlay);
+        }
+        return overlay;
+    }
+
+    private Employee employee(int employeeNr) {
+        Employee employee = this.base.findEmployee(employeeNr);
+        if (employee == null) {
+            throw new IllegalArgumentException("Unknown employee " + employeeNr);
+        }
+        return employee;
+    }
+
+    /**
+     * @return the codes of all projects that commit the employee in this scenario,
+     * from the commitment index of the base and the changed commitments of the overlays
+     */
+    private Set<String> findCommittedProjects(int employeeNr) {
+        Set<String> projectCodes = new HashSet<>();
+        this.base.getCommitmentIndex().findCommittedProjects(employeeNr).forEach(project -> {
+            ProjectOverlay overlay = this.projectOverlays.get(project.getCode());
+            if (overlay == null || overlay.commitments == null) {
+                projectCodes.add(project.getCode());
+            }
+        });
+        this.projectOverlays.forEach((code, overlay) -> {
+            if (overlay.commitments != null && overlay.commitments.containsKey(employeeNr)) {
+                projectCodes.add(code);
+            }
+        });
+        return projectCodes;
+    }
+
+    /**
+     * @param employee a committed employee, which may be from outside of the plan
+     * @return the hourly wage of the employee in this scenario
+     */
+    private int getHourlyWage(Employee employee) {
+        Integer wage = this.wageOverlays.get(employee.getNumber());
+        return (wage != null ? wage : employee.getHourlyWage());
+    }
+
+    /**
+     * calculates the statistics of the scenario from the base aggregates and the differences
+     * of the projects with changed dates or commitments and the projects that employees with changed wages
+     * are assigned or committed to
+     * @return
+     */
+    public Outcome evaluate() {
+        Map<String, Project> affected = new HashMap<>();
+        this.projectOverlays.forEach((code, overlay) -> affected.put(code, overlay.base));
+        if (!this.wageOverlays.isEmpty()) {
+            // employees may be committed to projects that they are not assigned to
+            CommitmentIndex commitmentIndex = this.base.getCommitmentIndex();
+            this.wageOverlays.keySet().forEach(employeeNr -> {
+                this.base.findEmployee(employeeNr).getAssignedProjects()
+                        .forEach(project -> affected.put(project.getCode(), project));
+                commitmentIndex.findCommittedProjects(employeeNr)
+                        .forEach(project -> affected.putIfAbsent(project.getCode(), project));
+            });
+        }
+
+        long[] monthlyDeltas = new long[Month.values().length];
+        boolean[] activeMonths = new boolean[Month.values().length];
+        Map<String, Long> projectBudgets = new TreeMap<>();
+        long budgetDelta = 0;
+        for (Project project : affected.values()) {
+            if (project.getStartDate() == null || project.getEndDate() == null) {
+                continue;
+            }
+            ProjectOverlay overlay = this.projectOverlays.get(project.getCode());
+            LocalDate startDate = (overlay != null ? overlay.startDate : project.getStartDate());
+            LocalDate endDate = (overlay != null ? overlay.endDate : project.getEndDate());
+
+            long dailyCostRate = 0;
+            if (overlay != null && overlay.commitments != null) {
+                for (Map.Entry<Integer, Integer> commitment : overlay.commitments.entrySet()) {
+                    dailyCostRate += (long) commitment.getValue()
+                            * this.getHourlyWage(overlay.employees.get(commitment.getKey()));
+                }
+            } else {
+                for (Map.Entry<Employee, Integer> commitment : project.getCommittedHoursPerDay().entrySet()) {
+                    dailyCostRate += (long) commitment.getValue() * this.getHourlyWage(commitment.getKey());
+                }
+            }
+
+            long budget = dailyCostRate * Calendar.getNumWorkingDays(startDate, endDate);
+            projectBudgets.put(project.getCode(), budget);
+            budgetDelta += budget - project.calculateManpowerBudget();
+            addMonthlySpends(monthlyDeltas, null, project.getStartDate(), project.getEndDate(),
+                    -project.getDailyCostRate());
+            addMonthlySpends(monthlyDeltas, activeMonths, startDate, endDate, dailyCostRate);
+        }
+
+        Map<Month, Long> monthlySpends = new TreeMap<>();
+        this.base.calculateCumulativeMonthlySpends().forEach((month, spend) -> monthlySpends.put(month, (long) spend));
+        boolean[] unaffectedMonths = null;
+        for (Month month : Month.values()) {
+            long delta = monthlyDeltas[month.ordinal()];
+            if (delta != 0 || (activeMonths[month.ordinal()] && !monthlySpends.containsKey(month))) {
+                long spend = monthlySpends.merge(month, delta, Long::sum);
+                if (spend == 0 && !activeMonths[month.ordinal()]) {
+                    // the month only remains if any project that is not affected by the scenario is active in it
+                    if (unaffectedMonths == null) {
+                        unaffectedMonths = this.activeMonthsExcept(affected.keySet());
+                    }
+                    if (!unaffectedMonths[month.ordinal()]) {
+                        monthlySpends.remove(month);
+                    }
+                }
+            }
+        }
+
+        long baseBudget = this.base.getSpendTimeline().getTotalSpend();
+        return new Outcome(this.name, baseBudget + budgetDelta, budgetDelta, monthlySpends, projectBudgets);
+    }
+
+    /**
+     * @return the months in which any project of the base is active, except the excluded projects
+     * from the numbers of active projects per month of the spend timeline, less those of the excluded projects
+     */
+    private boolean[] activeMonthsExcept(Set<String> excludedCodes) {
+        SpendTimeline timeline = this.base.getSpendTimeline();
+        int[] numActive = new int[Month.values().length];
+        for (Month month : Month.values()) {
+            numActive[month.ordinal()] = timeline.getNumActiveProjects(month);
+        }
+        for (String code : excludedCodes) {
+            Project project = this.base.findProject(code);
+            if (project.getStartDate() != null && project.getEndDate() != null) {
+                SpendTimeline.activeMonths(project.getStartDate(), project.getEndDate())
+                        .forEach(month -> numActive[month.ordinal()]--);
+            }
+        }
+        boolean[] activeMonths = new boolean[Month.values().length];
+        for (Month month : Month.values()) {
+            activeMonths[month.ordinal()] = numActive[month.ordinal()] > 0;
+        }
+        return activeMonths;
+    }
+
+    /**
+     * adds the daily cost rate for every working day between startDate and endDate to the spends of their months
+     * and marks these months as active, if activeMonths is given
+     * visiting the period month by month, without expanding its working days
+     */
+    private static void addMonthlySpends(long[] spends, boolean[] activeMonths,
+                                         LocalDate startDate, LocalDate endDate, long dailyCostRate) {
+        LocalDate monthStart = startDate.withDayOfMonth(1);
+        while (!monthStart.isAfter(endDate)) {
+            LocalDate from = (monthStart.isBefore(startDate) ? startDate : monthStart);
+            LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
+            LocalDate to = (monthEnd.isAfter(endDate) ? endDate : monthEnd);
+            int days = Calendar.getNumWorkingDays(from, to);
+            if (days > 0) {
+                spends[monthStart.getMonthValue() - 1] += days * dailyCostRate;
+                if (activeMonths != null) {
+                    activeMonths[monthStart.getMonthValue() - 1] = true;
+                }
+            }
+            monthStart = monthStart.plusMonths(1);
+        }
+    }
+
+    /**
+     * evaluates all scenarios in parallel
+     * @param scenarios
+     * @return the outcomes, in the order of the scenarios
+     */
+    public static List<Outcome> evaluateAll(List<PlanScenario> scenarios) {
+        return scenarios.parallelStream()
+                .map(PlanScenario::evaluate)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlanScenario(%s: %d projects, %d wages changed)",
+                this.name, this.projectOverlays.size(), this.wageOverlays.size());
+    }
+}
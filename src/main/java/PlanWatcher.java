@@ -0,0 +1,186 @@
+import utils.SLF4J;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the plans of a directory of plan XML files up to date while the files change
+ *
+ * A WatchService reports every created or modified XML file of the directory.
+ * A file is re-imported in the background once it has not changed for the debounce period,
+ * so partially written files are not imported; a file that cannot be imported keeps its previous plan.
+ * Every successfully imported plan replaces the previous plan of its file in a single atomic step,
+ * so readers are never blocked and always see either the old or the new plan.
+ * Reload listeners, such as PlanningServer::addPlan, are notified of every new plan.
+ * Deleted files keep their last plan.
+ */
+public class PlanWatcher implements AutoCloseable {
+    private final Path directory;
+    private final long debounceMillis;
+    private final Map<String, PPS> plans = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> pendingReloads = new ConcurrentHashMap<>();
+    private final List<Consumer<PPS>> reloadListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private WatchService watchService;
+    private Thread watcherThread;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param directory      the directory of the plan files
+     * @param debounceMillis the time that a file must be unchanged before it is imported
+     */
+    public PlanWatcher(Path directory, long debounceMillis) {
+        this.directory = directory;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * registers a listener that is notified from the background thread of every newly imported plan
+     * @param listener
+     */
+    public void addReloadListener(Consumer<PPS> listener) {
+        this.reloadListeners.add(listener);
+    }
+
+    /**
+     * imports all plan files of the directory and starts watching it for changes
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (this.watchService != null) {
+            throw new IllegalStateException("Watcher of " + this.directory + " has already been started");
+        }
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        this.directory.register(this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plan-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reloadAll();
+
+        this.watcherThread = new Thread(this::watch, "plan-watcher");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+        SLF4J.LOGGER.info("Watching plans in " + this.directory);
+    }
+
+    private void reloadAll() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*.xml")) {
+            for (Path file : files) {
+                this.reload(file.getFileName().toString());
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // changes have been lost, so reconsider all files
+                        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*.xml")) {
+                            files.forEach(file -> this.scheduleReload(file.getFileName().toString()));
+                        }
+                    } else if (event.context().toString().endsWith(".xml")) {
+                        this.scheduleReload(event.context().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    SLF4J.LOGGER.warn("Directory " + this.directory + " can no longer be watched");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException ex) {
+            // the watcher has been closed
+        } catch (IOException ex) {
+            SLF4J.logException("Failed to watch " + this.directory, ex);
+        }
+    }
+
+    /**
+     * (re)starts the debounce period of a file
+     */
+    private void scheduleReload(String fileName) {
+        this.pendingReloads.compute(fileName, (name, pending) -> {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            // a cancelled task does nothing when the scheduler runs it
+            FutureTask<?>[] task = new FutureTask<?>[1];
+            task[0] = new FutureTask<>(() -> {
+                // only forget this reload, not a newer one that has been scheduled meanwhile
+                this.pendingReloads.remove(name, task[0]);
+                this.reload(name);
+            }, null);
+            this.scheduler.schedule(task[0], this.debounceMillis, TimeUnit.MILLISECONDS);
+            return task[0];
+        });
+    }
+
+    private void reload(String fileName) {
+        PPS pps = PPS.importFromXML(this.directory.resolve(fileName));
+        if (pps == null) {
+            this.failures.incrementAndGet();
+            SLF4J.LOGGER.warn("Keeping the previous plan of " + fileName);
+            return;
+        }
+        this.plans.put(fileName, pps);
+        SLF4J.LOGGER.info("Loaded plan " + fileName);
+        for (Consumer<PPS> listener : this.reloadListeners) {
+            try {
+                listener.accept(pps);
+            } catch (RuntimeException ex) {
+                SLF4J.logException("Reload listener failed on " + fileName, ex);
+            }
+        }
+        // counted after the listeners have been notified, such that a reader of the counter sees their effects
+        this.reloads.incrementAndGet();
+    }
+
+    /**
+     * @param fileName
+     * @return the most recently imported plan of the file, or null if the file has never been imported
+     */
+    public PPS getPlan(String fileName) {
+        return this.plans.get(fileName);
+    }
+
+    /**
+     * @return the names of all files with a plan
+     */
+    public Set<String> getNames() {
+        return new TreeSet<>(this.plans.keySet());
+    }
+
+    /**
+     * @return the number of successful imports
+     */
+    public long getReloads() {
+        return this.reloads.get();
+    }
+
+    /**
+     * @return the number of imports that failed
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.watchService == null) {
+            return;
+        }
+        this.watchService.close();
+        this.watcherThread.interrupt();
+        this.scheduler.shutdownNow();
+    }
+}
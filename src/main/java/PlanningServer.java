@@ -0,0 +1,316 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import utils.JSONWriter;
+import utils.SLF4J;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP service that answers planning statistics and lookups of loaded plans as JSON
+ *
+ * GET /plans                                   names of all loaded plans
+ * GET /plans/{name}/statistics                 results of the PPS.calculate* statistics
+ * GET /plans/{name}/projects/{code}            a single project with its commitments
+ * GET /plans/{name}/employees/{number}         a single employee with its projects
+ * GET /metrics                                 heap footprints of the added plans and counters of the plan registry
+ *
+ * Plans are either added explicitly or loaded on demand from a PlanRegistry.
+ * The server only listens on the loopback interface, unless another address is given explicitly.
+ *
+ * All requests are served from the published snapshot of a plan.
+ * The rendered statistics are cached per snapshot,
+ * so concurrent readers never recompute anything until the writer publishes a new snapshot.
+ * The cached views of plans from the registry are dropped when the registry removes their plans.
+ */
+public class PlanningServer {
+
+    /**
+     * cached views on a single published snapshot
+     */
+    private static class PlanView {
+        final PPS snapshot;
+        final String statistics;
+
+        PlanView(PPS snapshot) {
+            this.snapshot = snapshot;
+            this.statistics = renderStatistics(snapshot);
+        }
+    }
+
+    private final Map<String, PPS> plans = new ConcurrentHashMap<>();
+    private final Map<String, PlanView> views = new ConcurrentHashMap<>();
+    private final PlanRegistry registry;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    public PlanningServer(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * creates a server on the loopback interface
+     * @param port
+     * @param registry provides the plans that have not been added explicitly, may be null
+     * @throws IOException
+     */
+    public PlanningServer(int port, PlanRegistry registry) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), registry);
+    }
+
+    /**
+     * @param address  the address to listen on, such as the wildcard address to listen on all interfaces
+     * @param registry provides the plans that have not been added explicitly, may be null
+     * @throws IOException
+     */
+    public PlanningServer(InetSocketAddress address, PlanRegistry registry) throws IOException {
+        this.registry = registry;
+        if (registry != null) {
+            registry.addRemovalListener(this.views::remove);
+        }
+        this.httpServer = HttpServer.create(address, 0);
+        this.executor = createExecutor();
+        this.httpServer.setExecutor(this.executor);
+        this.httpServer.createContext("/plans", this::handle);
+        this.httpServer.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * uses a virtual thread per request if the JDK supports it,
+     * otherwise a fixed pool of platform threads
+     * @return
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * adds a plan to be served, or replaces the plan with the same name
+     * @param pps
+     */
+    public void addPlan(PPS pps) {
+        this.plans.put(pps.getName(), pps);
+    }
+
+    public void start() {
+        this.httpServer.start();
+        SLF4J.LOGGER.info("Planning server listening on " + this.httpServer.getAddress());
+    }
+
+    public void stop() {
+        this.httpServer.stop(0);
+        this.executor.shutdown();
+    }
+
+    public int getPort() {
+        return this.httpServer.getAddress().getPort();
+    }
+
+    private PlanView viewOf(String name) {
+        PPS pps = this.plans.get(name);
+        if (pps == null && this.registry != null) {
+            pps = this.registry.get(name);
+        }
+        if (pps == null) {
+            return null;
+        }
+        PPS snapshot = pps.getSnapshot();
+        PlanView view = this.views.get(name);
+        if (view != null && view.snapshot == snapshot) {
+            return view;
+        }
+        // build the view without holding any lock of the map; a concurrent reader may build the same view
+        PlanView fresh = new PlanView(snapshot);
+        if (view == null) {
+            this.views.putIfAbsent(name, fresh);
+        } else {
+            this.views.replace(name, view, fresh);
+        }
+        if (!this.plans.containsKey(name) && (this.registry == null || !this.registry.contains(name))) {
+            // the registry has removed the plan meanwhile, and will not notify of it again
+            this.views.remove(name, fresh);
+        }
+        return fresh;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path[0] is empty, path[1] must be "plans", as the context also matches any path that starts with /plans
+            if (path.length < 2 || !path[1].equals("plans")) {
+                respond(exchange, 404, error("Unknown resource " + exchange.getRequestURI().getPath()));
+                return;
+            }
+            if (path.length == 2) {
+                StringBuilder json = new StringBuilder();
+                JSONWriter writer = new JSONWriter(json).beginArray();
+                Set<String> names = new TreeSet<>(this.plans.keySet());
+                if (this.registry != null) {
+                    names.addAll(this.registry.getNames());
+                }
+                names.forEach(writer::value);
+                writer.endArray();
+                respond(exchange, 200, json.toString());
+                return;
+            }
+            PlanView view = this.viewOf(path[2]);
+            if (view == null) {
+                respond(exchange, 404, error("Unknown plan " + path[2]));
+            } else if (path.length == 4 && path[3].equals("statistics")) {
+                respond(exchange, 200, view.statistics);
+            } else if (path.length == 5 && path[3].equals("projects")) {
+                Project project = view.snapshot.findProject(path[4]);
+                respond(exchange, project != null ? 200 : 404,
+                        project != null ? renderProject(project) : error("Unknown project " + path[4]));
+            } else if (path.length == 5 && path[3].equals("employees")) {
+                Integer number = parseNumber(path[4]);
+                Employee employee = (number != null ? view.snapshot.findEmployee(number) : null);
+                respond(exchange, employee != null ? 200 : 404,
+                        employee != null ? renderEmployee(employee) : error("Unknown employee " + path[4]));
+            } else {
+                respond(exchange, 404, error("Unknown resource " + exchange.getRequestURI().getPath()));
+            }
+        } catch (RuntimeException ex) {
+            SLF4J.logException("Failed to serve " + exchange.getRequestURI(), ex);
+            respond(exchange, 500, error(ex.getClass().getSimpleName()));
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Method not allowed"));
+                return;
+            }
+            if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+                respond(exchange, 404, error("Unknown resource " + exchange.getRequestURI().getPath()));
+                return;
+            }
+            StringBuilder json = new StringBuilder();
+            JSONWriter writer = new JSONWriter(json).beginObject();
+            writer.member("server.plans", this.plans.size());
+            for (String name : new TreeSet<>(this.plans.keySet())) {
+                PPS pps = this.plans.get(name);
+                if (pps != null) {
+                    // from the published snapshot, which is safe to read while the writer changes the plan,
+                    // without rendering the statistics of a view
+                    pps.getSnapshot().getFootprint().toMetrics()
+                            .forEach((metric, value) -> writer.name(metric).value(value));
+                }
+            }
+            if (this.registry != null) {
+                this.registry.getStatistics().toMetrics()
+                        .forEach((name, value) -> writer.name(name).value(value));
+            }
+            writer.endObject();
+            respond(exchange, 200, json.toString());
+        } catch (RuntimeException ex) {
+            SLF4J.logException("Failed to serve " + exchange.getRequestURI(), ex);
+            respond(exchange, 500, error(ex.getClass().getSimpleName()));
+        }
+    }
+
+    private static Integer parseNumber(String text) {
+        try {
+            return Integer.valueOf(text);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder();
+        new JSONWriter(json).beginObject().member("error", message).endObject();
+        return json.toString();
+    }
+
+    private static String renderStatistics(PPS pps) {
+        return new PlanReport(pps).setFormat(PlanReport.Format.JSON).render();
+    }
+
+    private static String renderProject(Project project) {
+        StringBuilder json = new StringBuilder();
+        JSONWriter writer = new JSONWriter(json).beginObject()
+                .member("code", project.getCode())
+                .member("title", project.getTitle())
+                .member("startDate", String.valueOf(project.getStartDate()))
+                .member("endDate", String.valueOf(project.getEndDate()))
+                .member("numWorkingDays", project.getNumWorkingDays())
+                .member("manpowerBudget", project.calculateManpowerBudget());
+        writer.name("commitments").beginArray();
+        project.getCommittedHoursPerDay().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(commitment -> writer.beginObject()
+                        .member("employee", commitment.getKey().getNumber())
+                        .member("name", commitment.getKey().getName())
+                        .member("hoursPerDay", commitment.getValue())
+                        .endObject());
+        writer.endArray().endObject();
+        return json.toString();
+    }
+
+    private static String renderEmployee(Employee employee) {
+        StringBuilder json = new StringBuilder();
+        JSONWriter writer = new JSONWriter(json).beginObject()
+                .member("number", employee.getNumber())
+                .member("name", employee.getName())
+                .member("hourlyWage", employee.getHourlyWage())
+                .member("managedBudget", employee.calculateManagedBudget());
+        writer.name("managedProjects").beginArray();
+        employee.getManagedProjects().stream().sorted().forEach(project -> writer.value(project.getCode()));
+        writer.endArray();
+        writer.name("assignedProjects").beginArray();
+        employee.getAssignedProjects().stream().sorted().forEach(project -> writer.value(project.getCode()));
+        writer.endArray().endObject();
+        return json.toString();
+    }
+
+    /**
+     * starts the server
+     * @param args the port followed by the resource names of the plans to be preloaded
+     *             other plans in the resources are loaded on demand
+     *             the heap budget of the registry is set by -Dpps.registry.budget (bytes)
+     *             the server listens on the loopback interface, or on the host of -Dpps.server.host
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+        String host = System.getProperty("pps.server.host");
+        InetSocketAddress address = (host != null ? new InetSocketAddress(host, port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        PlanRegistry registry = new PlanRegistry(Long.getLong("pps.registry.budget", 256L << 20));
+        PlanningServer server = new PlanningServer(address, registry);
+        for (int i = 1; i < args.length; i++) {
+            registry.get(args[i]);
+        }
+        server.start();
+    }
+}
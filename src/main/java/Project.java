@@ -1,4 +1,6 @@
 import utils.Calendar;
+import utils.DenseSet;
+import utils.ObjectIntMap;
 import utils.XMLParser;
 
 import javax.xml.stream.XMLStreamException;
@@ -6,27 +8,46 @@ import javax.xml.stream.XMLStreamWriter;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class Project implements Comparable<Project> {
     private static Random randomizer = new Random();
     private String code;                // unique identifier of a project
     private String title;
+    private int subjectIndex = -1;      // classification of the title by subject, location and floor
+    private int locationIndex = -1;     // following the scheme of calculateTitle, -1 if not classified
+    private int floor = -1;
     private LocalDate startDate;        // the first working day of the project;
     private LocalDate endDate;          // the last working day of the project;
-    private Map<Employee,Integer> committedHoursPerDay;
-                                        // daily committed work hours on the project by employee
+    private ObjectIntMap<Employee> committedHoursPerDay;
+                                        // daily committed work hours on the project by employee, without boxing
                                         // one employee may work on multiple different projects each day
                                         // employees will no overtime if more than 8 hours per day are committed
+    private volatile Map<Employee,Integer> committedHoursView;
+                                        // read-only view on the commitments, which only change via this class
+    private volatile PPS plan;          // the plan that tracks the changes of this project, if any
+    private State state;                // the captured state of a frozen project of a published snapshot,
+                                        // null for a live project
+    private PPS snapshot;               // the snapshot that resolves the commitments of a frozen project
+
+    private int numWorkingDays = -1;    // cached number of working days, -1 if not known
+    private int dailyCostRate;          // cached manpower cost per working day
+    private volatile long dailyCostVersion = -1;
+                                        // the budget version of the plan at which the daily cost rate was calculated
+
+    private Project(String code, String title) {
+        this.code = code;
+        this.setTitle(title);
+        this.committedHoursPerDay = new ObjectIntMap<>();
+        this.committedHoursView = Collections.unmodifiableMap(this.committedHoursPerDay);
+    }
 
     public Project(String projectCode) {
-        this.code = projectCode;
-        this.title = "Project " + projectCode;
-        this.committedHoursPerDay = new HashMap<>();
+        this(projectCode, "Project " + projectCode);
     }
 
     public Project(int projectNr) {
-        this("P" + projectNr);
-        this.title = calculateTitle(projectNr);
+        this("P" + projectNr, calculateTitle(projectNr));
     }
 
     public Project() {
@@ -39,12 +60,204 @@ public class Project implements Comparable<Project> {
         this.endDate = Calendar.lastWorkingDayUntil(endDate);
     }
 
+    /**
+     * creates a project with the given attributes only, without any generated title, as used for bulk loading
+     * @param code
+     * @param title
+     * @param startDate may be null if not specified
+     * @param endDate   may be null if not specified
+     */
     public Project(String code, String title,
                    LocalDate startDate, LocalDate endDate) {
-        this(code);
-        this.title = title;
-        this.startDate = Calendar.firstWorkingDayFrom(startDate);
-        this.endDate = Calendar.lastWorkingDayUntil(endDate);
+        this(code, title);
+        this.startDate = (startDate != null ? Calendar.firstWorkingDayFrom(startDate) : null);
+        this.endDate = (endDate != null ? Calendar.lastWorkingDayUntil(endDate) : null);
+    }
+
+    /**
+     * creates a frozen project of a published snapshot from its captured state
+     * its commitments are resolved through the snapshot when they are first needed
+     * @param state
+     * @param snapshot
+     */
+    Project(State state, PPS snapshot) {
+        this.code = state.code;
+        this.title = state.title;
+        this.subjectIndex = state.subjectIndex;
+        this.locationIndex = state.locationIndex;
+        this.floor = state.floor;
+        this.startDate = state.startDate;
+        this.endDate = state.endDate;
+        this.state = state;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * The immutable state of a project, as captured in a published snapshot
+     * The commitments are captured by employee number, which is resolved through the snapshot.
+     * Committed employees that are not part of the plan are captured along, by their attributes only.
+     */
+    static final class State {
+        private static final int[] NO_COMMITMENTS = {};
+
+        final String code;
+        final String title;
+        final int subjectIndex;
+        final int locationIndex;
+        final int floor;
+        final LocalDate startDate;
+        final LocalDate endDate;
+        final int[] employeeNumbers;    // the committed employees
+        final int[] hoursPerDay;        // the committed hours by index of employeeNumbers
+        final Map<Integer, Employee.State> outsiders;   // the employees that are not part of the plan, by number
+
+        private State(Project project, int[] employeeNumbers, int[] hoursPerDay,
+                      Map<Integer, Employee.State> outsiders) {
+            this.code = project.code;
+            this.title = project.title;
+            this.subjectIndex = project.subjectIndex;
+            this.locationIndex = project.locationIndex;
+            this.floor = project.floor;
+            this.startDate = project.startDate;
+            this.endDate = project.endDate;
+            this.employeeNumbers = employeeNumbers;
+            this.hoursPerDay = hoursPerDay;
+            this.outsiders = outsiders;
+        }
+    }
+
+    /**
+     * captures the current state of this project as a member of the plan
+     * @param plan
+     * @return
+     */
+    State capture(PPS plan) {
+        ObjectIntMap<Employee> commitments = this.commitments();
+        int[] employeeNumbers = new int[commitments.size()];
+        int[] hoursPerDay = new int[commitments.size()];
+        Map<Integer, Employee.State> outsiders = new HashMap<>();
+        int i = 0;
+        for (int slot = 0; slot < commitments.capacity(); slot++) {
+            Employee employee = commitments.keyAt(slot);
+            if (employee != null) {
+                employeeNumbers[i] = employee.getNumber();
+                hoursPerDay[i++] = commitments.valueAt(slot);
+                if (plan.findEmployee(employee.getNumber()) == null) {
+                    outsiders.putIfAbsent(employee.getNumber(), employee.captureAttributes());
+                }
+            }
+        }
+        return new State(this, employeeNumbers, hoursPerDay,
+                (outsiders.isEmpty() ? Collections.emptyMap() : outsiders));
+    }
+
+    /**
+     * captures the attributes of this project only, as a reference of an employee to a project outside of the plan
+     * @return
+     */
+    State captureAttributes() {
+        return new State(this, State.NO_COMMITMENTS, State.NO_COMMITMENTS, Collections.emptyMap());
+    }
+
+    /**
+     * @return the commitments, which are resolved through the snapshot first if this project is frozen
+     */
+    private ObjectIntMap<Employee> commitments() {
+        if (this.committedHoursView == null) {
+            State state = this.state;
+            ObjectIntMap<Employee> commitments = new ObjectIntMap<>(state.employeeNumbers.length);
+            for (int i = 0; i < state.employeeNumbers.length; i++) {
+                Employee employee = this.snapshot.findEmployee(state.employeeNumbers[i]);
+                if (employee == null) {
+                    employee = new Employee(state.outsiders.get(state.employeeNumbers[i]), this.snapshot);
+                }
+                commitments.putInt(employee, state.hoursPerDay[i]);
+            }
+            this.committedHoursPerDay = commitments;
+            this.committedHoursView = Collections.unmodifiableMap(commitments);
+        }
+        return this.committedHoursPerDay;
+    }
+
+    PPS getPlan() {
+        return this.plan;
+    }
+
+    /**
+     * attaches this project to the plan that tracks its changes, or detaches it with null
+     * a project tracks the last plan that it has been added to
+     * @param plan
+     */
+    void setPlan(PPS plan) {
+        if (this.state == null) {
+            this.plan = plan;
+            this.dailyCostVersion = -1;
+        }
+    }
+
+    /**
+     * @return the budget version of the plan until which the cached budgets remain valid,
+     *          0 for a frozen project, of which the budgets never change, or -1 if the budgets cannot be cached
+     */
+    private long budgetVersion() {
+        if (this.state != null) {
+            return 0;
+        }
+        PPS plan = this.plan;
+        return (plan != null ? plan.getBudgetVersion() : -1);
+    }
+
+    /**
+     * @return the lock that serialises the changes of this project with the publication of snapshots of its plan
+     */
+    private Object lock() {
+        PPS plan = this.plan;
+        return (plan != null ? plan : this);
+    }
+
+    /**
+     * reports a change of this project to its plan
+     */
+    private void changed() {
+        PPS plan = this.plan;
+        if (plan != null) {
+            plan.changed(this);
+        }
+    }
+
+    /**
+     * reports a change of this project to its plan, which notifies its listeners of it
+     * @param change
+     */
+    private void changed(Supplier<PlanChange> change) {
+        PPS plan = this.plan;
+        if (plan != null) {
+            plan.changed(this, change);
+        }
+    }
+
+    /**
+     * @param employeeNumbers
+     * @return whether any of the employees is committed to this project
+     */
+    boolean refersToAny(Set<Integer> employeeNumbers) {
+        ObjectIntMap<Employee> commitments = this.commitments();
+        for (int slot = 0; slot < commitments.capacity(); slot++) {
+            Employee employee = commitments.keyAt(slot);
+            if (employee != null && employeeNumbers.contains(employee.getNumber())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param employeeNr
+     * @return the employee by which the commitment of that number is registered,
+     *          which may be an employee from outside of the plan, or null if that employee is not committed
+     */
+    Employee getCommittedEmployee(int employeeNr) {
+        return this.commitments().getKey(Employee.reference(employeeNr));
     }
 
     @Override
@@ -58,7 +271,37 @@ public class Project implements Comparable<Project> {
      * @return
      */
     public int getNumWorkingDays() {
-        return utils.Calendar.getNumWorkingDays(this.startDate, this.endDate);
+        int days = this.numWorkingDays;
+        if (days < 0) {
+            // a project without dates has no working days
+            days = (this.startDate != null && this.endDate != null
+                    ? utils.Calendar.getNumWorkingDays(this.startDate, this.endDate) : 0);
+            this.numWorkingDays = days;
+        }
+        return days;
+    }
+
+    /**
+     * moves the project to a new period
+     * @param startDate
+     * @param endDate
+     */
+    public void reschedule(LocalDate startDate, LocalDate endDate) {
+        this.checkNotFrozen();
+        synchronized (this.lock()) {
+            LocalDate previousStartDate = this.startDate;
+            LocalDate previousEndDate = this.endDate;
+            this.startDate = Calendar.firstWorkingDayFrom(startDate);
+            this.endDate = Calendar.lastWorkingDayUntil(endDate);
+            this.numWorkingDays = -1;
+            this.changed(() -> new PlanChange.ProjectRescheduled(this, previousStartDate, previousEndDate));
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (this.state != null) {
+            throw new UnsupportedOperationException("Cannot change " + this + " of a snapshot");
+        }
     }
 
     /**
@@ -101,17 +344,32 @@ public class Project implements Comparable<Project> {
      * @param hoursPerDay
      */
     public void addCommitment(Employee employee, int hoursPerDay) {
-        // also register this project assignment for this employee,
-        // in case that had not been done before
-        if(employee.getAssignedProjects().contains(this)) {
-            if(this.committedHoursPerDay.containsKey(employee)) {
-                this.committedHoursPerDay.put(employee, this.committedHoursPerDay.get(employee) + hoursPerDay);
+        this.checkNotFrozen();
+        synchronized (this.lock()) {
+            // also register this project assignment for this employee,
+            // in case that had not been done before
+            employee.getAssignedProjects().add(this);
+            this.committedHoursPerDay.addInt(employee, hoursPerDay);
+            this.changed(() -> new PlanChange.CommitmentChanged(this, employee, hoursPerDay));
+        }
+    }
+
+    /**
+     * registers the hoursPerDay commitment of the employee, replacing any existing commitment,
+     * without registering the project assignment
+     * @param employee
+     * @param hoursPerDay
+     */
+    void putCommitment(Employee employee, int hoursPerDay) {
+        this.checkNotFrozen();
+        synchronized (this.lock()) {
+            int delta = hoursPerDay - this.committedHoursPerDay.getInt(employee, 0);
+            this.committedHoursPerDay.putInt(employee, hoursPerDay);
+            if (delta != 0) {
+                this.changed(() -> new PlanChange.CommitmentChanged(this, employee, delta));
             } else {
-                this.committedHoursPerDay.put(employee, hoursPerDay);
+                this.changed();
             }
-        } else {
-            employee.getAssignedProjects().add(this);
-            this.committedHoursPerDay.put(employee, hoursPerDay);
         }
     }
 
@@ -122,10 +380,30 @@ public class Project implements Comparable<Project> {
      * @return
      */
     public int calculateManpowerBudget() {
-        return this.getCommittedHoursPerDay().entrySet()
-                .stream()
-                .mapToInt(a -> a.getValue() * a.getKey().getHourlyWage() * getNumWorkingDays())
-                .sum();
+        return this.getDailyCostRate() * this.getNumWorkingDays();
+    }
+
+    /**
+     * provides the manpower cost of a single working day of the project,
+     * from the committed hours per employee and the hourlyRate per employee
+     * the rate is cached until any commitment or wage in the plan of the project changes
+     * @return
+     */
+    public int getDailyCostRate() {
+        long version = this.budgetVersion();
+        if (version < 0 || this.dailyCostVersion != version) {
+            ObjectIntMap<Employee> commitments = this.commitments();
+            int rate = 0;
+            for (int slot = 0; slot < commitments.capacity(); slot++) {
+                Employee employee = commitments.keyAt(slot);
+                if (employee != null) {
+                    rate += commitments.valueAt(slot) * employee.getHourlyWage();
+                }
+            }
+            this.dailyCostRate = rate;
+            this.dailyCostVersion = version;
+        }
+        return this.dailyCostRate;
     }
 
     public String getCode() {
@@ -145,7 +423,8 @@ public class Project implements Comparable<Project> {
     }
 
     public Map<Employee, Integer> getCommittedHoursPerDay() {
-        return committedHoursPerDay;
+        this.commitments();
+        return committedHoursView;
     }
 
     // Below are helper attributes and methods for sample generation
@@ -161,6 +440,77 @@ public class Project implements Comparable<Project> {
         return  subjects[subjectIdx] + " - " + locations[locationIdx] + "-0" + floor;
     }
 
+    private void setTitle(String title) {
+        this.title = title;
+        this.classifyTitle();
+    }
+
+    /**
+     * classifies the project by the subject, location and floor in its title,
+     * if the title follows the scheme 'subject - location-0floor' of calculateTitle
+     */
+    private void classifyTitle() {
+        this.subjectIndex = this.locationIndex = this.floor = -1;
+        int separator = (this.title != null ? this.title.lastIndexOf(" - ") : -1);
+        int floorSeparator = (this.title != null ? this.title.lastIndexOf('-') : -1);
+        if (separator < 0 || floorSeparator <= separator + 3) {
+            return;
+        }
+        int subject = Arrays.asList(subjects).indexOf(this.title.substring(0, separator));
+        int location = Arrays.asList(locations).indexOf(this.title.substring(separator + 3, floorSeparator));
+        try {
+            int floor = Integer.parseInt(this.title.substring(floorSeparator + 1));
+            if (subject >= 0 && location >= 0 && floor >= 0 && floor < N_FLOORS) {
+                this.subjectIndex = subject;
+                this.locationIndex = location;
+                this.floor = floor;
+            }
+        } catch (NumberFormatException ex) {
+            // not a classified title
+        }
+    }
+
+    /**
+     * @return the subject of the project according to its title, or null if the title is not classified
+     */
+    public String getSubject() {
+        return (this.subjectIndex >= 0 ? subjects[this.subjectIndex] : null);
+    }
+
+    /**
+     * @return the location of the project according to its title, or null if the title is not classified
+     */
+    public String getLocation() {
+        return (this.locationIndex >= 0 ? locations[this.locationIndex] : null);
+    }
+
+    /**
+     * @return the floor of the project according to its title, or -1 if the title is not classified
+     */
+    public int getFloor() {
+        return this.floor;
+    }
+
+    int getSubjectIndex() {
+        return this.subjectIndex;
+    }
+
+    int getLocationIndex() {
+        return this.locationIndex;
+    }
+
+    static List<String> getSubjects() {
+        return List.of(subjects);
+    }
+
+    static List<String> getLocations() {
+        return List.of(locations);
+    }
+
+    static int getNumFloors() {
+        return N_FLOORS;
+    }
+
     private final static String[] subjects = {
             "WIFI network upgrade",
             "WIFI network installation",
@@ -189,9 +539,15 @@ public class Project implements Comparable<Project> {
 
     public void updateReferences(Employee employee) {
         // replace the employee key of the commitment
-        Integer hoursPerDay;
-        if ((hoursPerDay = this.getCommittedHoursPerDay().remove(employee)) != null) {
-            this.getCommittedHoursPerDay().put(employee,hoursPerDay);
+        this.checkNotFrozen();
+        synchronized (this.lock()) {
+            Employee previous = this.committedHoursPerDay.getKey(employee);
+            if (previous != null && previous != employee) {
+                // the budget changes with the wage of the replacing employee
+                int hoursPerDay = this.committedHoursPerDay.remove(previous);
+                this.changed(() -> new PlanChange.CommitmentChanged(this, previous, -hoursPerDay));
+                this.putCommitment(employee, hoursPerDay);
+            }
         }
     }
 
@@ -244,7 +600,7 @@ public class Project implements Comparable<Project> {
 
                     // use an incomplete employee object to register the commitment
                     // will be refreshed by employee import
-                    project.committedHoursPerDay.put(new Employee(number), hoursPerDay);
+                    project.putCommitment(Employee.reference(number), hoursPerDay);
                     xmlParser.findAndAcceptEndTag("hoursPerDay");
                 }
                 xmlParser.findAndAcceptEndTag("commitments");
@@ -258,10 +614,18 @@ public class Project implements Comparable<Project> {
     public static Project importReferenceFromXML(XMLParser xmlParser, Set<Project> projects) throws XMLStreamException {
         if (xmlParser.nextBeginTag("project")) {
             String code = xmlParser.getAttributeValue(null, "code");
-            Project project = projects.stream()
-                    .filter(p -> p.code.equals(code))
-                    .findAny()
-                    .orElse(new Project(code));
+            Project project;
+            if (projects instanceof DenseSet) {
+                project = ((DenseSet<Project>) projects).find(code.hashCode(), p -> p.code.equals(code));
+            } else {
+                project = projects.stream()
+                        .filter(p -> p.code.equals(code))
+                        .findAny()
+                        .orElse(null);
+            }
+            if (project == null) {
+                project = new Project(code);
+            }
             xmlParser.findAndAcceptEndTag("project");
             return project;
         }
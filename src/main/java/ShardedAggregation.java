@@ -0,0 +1,354 @@
+import utils.DenseSet;
+import utils.SLF4J;
+import utils.XMLParser;
+
+import javax.xml.stream.XMLStreamConstants;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Aggregation of the planning statistics of a plan file by several local worker processes
+ *
+ * The projects of the plan are partitioned into shards by their code, and the employees by their number.
+ * Every worker streams the whole file, but only keeps the projects of its own shard,
+ * and reports partial aggregates of its projects and employees on its standard output, a line per value:
+ *
+ *   employees {count} {wage sum}
+ *   involved {number of projects} {employee number} {wage} {name}    one line per most involved employee
+ *   longest {working days} {code} {start date} {end date} {title}      dates that are not known as -
+ *   budget {total manpower budget}
+ *   spend {year-month} {spend}
+ *   managed {employee number} {wage} {managed budget} {name}         one line per employee in the wage range
+ *   end
+ *
+ * The coordinator merges the partial aggregates into exactly the results of the PPS.calculate* statistics
+ * of the whole plan, including the int overflows of the budgets,
+ * provided that the employee numbers and project codes of the plan are unique.
+ * A worker is started as: java ShardedAggregation {file} {shard} {number of shards} {min wage} {max wage}
+ */
+public class ShardedAggregation {
+    private static final String NO_DATE = "-";          // the marker of a date that is not known
+
+
+    private final String name;
+    private final int numShards;
+    private int numEmployees;
+    private long wageSum;
+    private int mostProjectsAssigned = -1;
+    private final Set<Employee> mostInvolvedEmployees = new HashSet<>();
+    private Project longestProject;
+    private int totalManpowerBudget;
+    private final SortedMap<YearMonth, Long> spends = new TreeMap<>();
+    private final Map<Employee, Integer> managedBudgets = new HashMap<>();
+
+    private ShardedAggregation(String name, int numShards) {
+        this.name = name;
+        this.numShards = numShards;
+    }
+
+    /**
+     * aggregates a plan file by worker processes, which run on the class path of this JVM
+     * @param file
+     * @param numShards the number of worker processes
+     * @param minWage   the wage range of the managed budget overview
+     * @param maxWage
+     * @return
+     * @throws IOException if a worker cannot be started or fails
+     */
+    public static ShardedAggregation aggregate(Path file, int numShards, int minWage, int maxWage) throws IOException {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + numShards);
+        }
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < numShards; shard++) {
+                workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        ShardedAggregation.class.getName(), file.toString(), Integer.toString(shard),
+                        Integer.toString(numShards), Integer.toString(minWage), Integer.toString(maxWage))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            ShardedAggregation aggregation = new ShardedAggregation(file.getFileName().toString(), numShards);
+            for (int shard = 0; shard < numShards; shard++) {
+                Process worker = workers.get(shard);
+                try (BufferedReader output = new BufferedReader(
+                        new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8))) {
+                    aggregation.merge(output, shard);
+                }
+                if (worker.waitFor() != 0) {
+                    throw new IOException("Worker of shard " + shard + " failed with exit code " + worker.exitValue());
+                }
+            }
+            return aggregation;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Aggregation of " + file + " has been interrupted");
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+
+    /**
+     * merges the partial aggregates of a worker
+     */
+    private void merge(BufferedReader output, int shard) throws IOException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            String[] fields = line.split(" ", 6);
+            switch (fields[0]) {
+                case "employees":
+                    this.numEmployees += Integer.parseInt(fields[1]);
+                    this.wageSum += Long.parseLong(fields[2]);
+                    break;
+                case "involved":
+                    int numProjects = Integer.parseInt(fields[1]);
+                    if (numProjects > this.mostProjectsAssigned) {
+                        this.mostProjectsAssigned = numProjects;
+                        this.mostInvolvedEmployees.clear();
+                    }
+                    if (numProjects == this.mostProjectsAssigned) {
+                        this.mostInvolvedEmployees.add(employee(line.split(" ", 5), 2));
+                    }
+                    break;
+                case "longest":
+                    Project project = new Project(fields[2], fields.length > 5 ? fields[5] : "",
+                            parseDate(fields[3]), parseDate(fields[4]));
+                    // the first project in order of code among the longest projects, as PPS.calculateLongestProject
+                    if (this.longestProject == null
+                            || project.getNumWorkingDays() > this.longestProject.getNumWorkingDays()
+                            || (project.getNumWorkingDays() == this.longestProject.getNumWorkingDays()
+                                && project.compareTo(this.longestProject) < 0)) {
+                        this.longestProject = project;
+                    }
+                    break;
+                case "budget":
+                    this.totalManpowerBudget += Integer.parseInt(fields[1]);
+                    break;
+                case "spend":
+                    this.spends.merge(YearMonth.parse(fields[1]), Long.parseLong(fields[2]), Long::sum);
+                    break;
+                case "managed":
+                    this.managedBudgets.merge(employee(line.split(" ", 5), 1),
+                            Integer.parseInt(fields[3]), Integer::sum);
+                    break;
+                case "end":
+                    return;
+                default:
+                    throw new IOException("Unexpected output of shard " + shard + ": " + line);
+            }
+        }
+        throw new IOException("Incomplete output of shard " + shard);
+    }
+
+    /**
+     * @return the employee of a line with its number and wage from the offset and its name as fifth field
+     */
+    private static Employee employee(String[] fields, int offset) {
+        int number = Integer.parseInt(fields[offset]);
+        int wage = Integer.parseInt(fields[offset + 1]);
+        return new Employee(number, (fields.length == 5 ? fields[4] : ""), wage);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    /**
+     * @return as PPS.calculateAverageHourlyWage
+     */
+    public double calculateAverageHourlyWage() {
+        return (double) this.wageSum / this.numEmployees;
+    }
+
+    /**
+     * @return as PPS.calculateLongestProject, without commitments
+     */
+    public Project calculateLongestProject() {
+        if (this.longestProject == null) {
+            throw new NoSuchElementException("No projects in " + this.name);
+        }
+        return this.longestProject;
+    }
+
+    /**
+     * @return as PPS.calculateTotalManpowerBudget
+     */
+    public int calculateTotalManpowerBudget() {
+        return this.totalManpowerBudget;
+    }
+
+    /**
+     * @return as PPS.calculateMostInvolvedEmployees, without projects
+     */
+    public Set<Employee> calculateMostInvolvedEmployees() {
+        return Collections.unmodifiableSet(this.mostInvolvedEmployees);
+    }
+
+    /**
+     * @return as PPS.calculateManagedBudgetOverview for the wage range of the aggregation, without projects
+     */
+    public Map<Employee, Integer> calculateManagedBudgetOverview() {
+        return Collections.unmodifiableMap(this.managedBudgets);
+    }
+
+    /**
+     * @return as PPS.calculateCumulativeMonthlySpends
+     */
+    public Map<Month, Integer> calculateCumulativeMonthlySpends() {
+        Map<Month, Integer> monthlySpends = new TreeMap<>();
+        this.spends.forEach((month, spend) -> monthlySpends.merge(month.getMonth(), (int) (long) spend, Integer::sum));
+        return monthlySpends;
+    }
+
+    private static int shardOf(String code, int numShards) {
+        return Math.floorMod(code.hashCode(), numShards);
+    }
+
+    private static int shardOf(int number, int numShards) {
+        return Math.floorMod(Integer.hashCode(number), numShards);
+    }
+
+    /**
+     * calculates and writes the partial aggregates of a shard of a plan file
+     * @param file
+     * @param shard
+     * @param numShards
+     * @param minWage
+     * @param maxWage
+     * @param out
+     * @throws Exception if the file cannot be read
+     */
+    static void aggregateShard(Path file, int shard, int numShards, int minWage, int maxWage,
+                               PrintStream out) throws Exception {
+        Set<Project> projects = new DenseSet<>();
+        int numEmployees = 0;
+        long wageSum = 0;
+        int mostProjectsAssigned = -1;
+        List<Employee> mostInvolvedEmployees = new ArrayList<>();
+        Map<Employee, Set<Project>> managedProjects = new HashMap<>();  // the managers in the wage range
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            XMLParser xmlParser = new XMLParser(input);
+            xmlParser.nextTag();
+            xmlParser.require(XMLStreamConstants.START_ELEMENT, null, "projectPlanning");
+            xmlParser.nextTag();
+
+            if (xmlParser.nextBeginTag("projects")) {
+                xmlParser.nextTag();
+                Project project;
+                while ((project = Project.importFromXML(xmlParser)) != null) {
+                    if (shardOf(project.getCode(), numShards) == shard) {
+                        projects.add(project);
+                    }
+                }
+                xmlParser.findAndAcceptEndTag("projects");
+            }
+
+            if (xmlParser.nextBeginTag("employees")) {
+                xmlParser.nextTag();
+                Employee employee;
+                while ((employee = Employee.importFromXML(xmlParser, projects)) != null) {
+                    // the import has resolved the commitments of the employee in the projects of the shard,
+                    // which only need to keep its wage
+                    Employee committed = new Employee(employee.getNumber(), null, employee.getHourlyWage());
+                    Set<Project> managed = new HashSet<>();
+                    for (Project project : employee.getManagedProjects()) {
+                        if (shardOf(project.getCode(), numShards) == shard) {
+                            project.updateReferences(committed);
+                            managed.add(project);
+                        }
+                    }
+                    for (Project project : employee.getAssignedProjects()) {
+                        if (shardOf(project.getCode(), numShards) == shard) {
+                            project.updateReferences(committed);
+                        }
+                    }
+
+                    boolean inRange = employee.getHourlyWage() >= minWage && employee.getHourlyWage() <= maxWage;
+                    boolean ownEmployee = (shardOf(employee.getNumber(), numShards) == shard);
+                    if (ownEmployee) {
+                        numEmployees++;
+                        wageSum += employee.getHourlyWage();
+                        int numProjects = employee.getAssignedProjectsLength();
+                        if (numProjects > mostProjectsAssigned) {
+                            mostProjectsAssigned = numProjects;
+                            mostInvolvedEmployees.clear();
+                        }
+                        if (numProjects == mostProjectsAssigned) {
+                            mostInvolvedEmployees.add(new Employee(employee.getNumber(), employee.getName(),
+                                    employee.getHourlyWage()));
+                        }
+                    }
+                    // every employee in the range is reported by its own shard, also without managed projects
+                    if (inRange && (ownEmployee || !managed.isEmpty())) {
+                        managedProjects.put(new Employee(employee.getNumber(), employee.getName(),
+                                employee.getHourlyWage()), managed);
+                    }
+                }
+                xmlParser.findAndAcceptEndTag("employees");
+            }
+        }
+
+        out.printf("employees %d %d\n", numEmployees, wageSum);
+        for (Employee employee : mostInvolvedEmployees) {
+            out.printf("involved %d %d %d %s\n", mostProjectsAssigned, employee.getNumber(),
+                    employee.getHourlyWage(), line(employee.getName()));
+        }
+        Project longestProject = projects.stream().max(Comparator.comparing(Project::getNumWorkingDays)).orElse(null);
+        if (longestProject != null) {
+            out.printf("longest %d %s %s %s %s\n", longestProject.getNumWorkingDays(), longestProject.getCode(),
+                    date(longestProject.getStartDate()), date(longestProject.getEndDate()),
+                    line(longestProject.getTitle()));
+        }
+        out.printf("budget %d\n", projects.stream().mapToInt(Project::calculateManpowerBudget).sum());
+        new SpendTimeline(projects).getSpends(SpendTimeline.Granularity.MONTH).forEach((month, spend) ->
+                out.printf("spend %s %d\n", YearMonth.from(month), spend));
+        managedProjects.forEach((employee, managed) ->
+                out.printf("managed %d %d %d %s\n", employee.getNumber(), employee.getHourlyWage(),
+                        managed.stream().mapToInt(Project::calculateManpowerBudget).sum(), line(employee.getName())));
+        out.println("end");
+        out.flush();
+    }
+
+    private static String line(String text) {
+        return (text == null ? "" : text.replace('\n', ' ').replace('\r', ' '));
+    }
+
+    private static String date(LocalDate date) {
+        return (date == null ? NO_DATE : date.toString());
+    }
+
+    private static LocalDate parseDate(String text) {
+        return (NO_DATE.equals(text) ? null : LocalDate.parse(text));
+    }
+
+    /**
+     * runs a worker
+     * @param args file, shard, number of shards, minimum wage and maximum wage
+     */
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.err.println("Usage: ShardedAggregation file shard numShards minWage maxWage");
+            System.exit(2);
+        }
+        try {
+            PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false, StandardCharsets.UTF_8);
+            aggregateShard(Path.of(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), out);
+        } catch (Exception ex) {
+            SLF4J.logException("Failed to aggregate shard " + args[1] + " of " + args[0], ex);
+            System.exit(1);
+        }
+    }
+}
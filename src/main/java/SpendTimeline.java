@@ -0,0 +1,200 @@
+import utils.Calendar;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * The manpower spend of all projects of a plan on every working day, as a prefix-sum array
+ *
+ * The timeline is built once in O(projects + working days) from the daily cost rate of every project,
+ * without expanding the working days of each project.
+ * Thereafter the total spend between any two dates is found in O(1),
+ * and the spend per bucket of any granularity in O(buckets).
+ * The number of active projects per month of the year supports the months of any subset of projects.
+ */
+public class SpendTimeline {
+
+    public enum Granularity {
+        DAY, WEEK, MONTH, QUARTER, YEAR;
+
+        /**
+         * @return the first date of the bucket that contains date
+         */
+        public LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case DAY: return date;
+                case WEEK: return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH: return date.withDayOfMonth(1);
+                case QUARTER: return LocalDate.of(date.getYear(), 1 + 3 * ((date.getMonthValue() - 1) / 3), 1);
+                default: return date.withDayOfYear(1);
+            }
+        }
+
+        /**
+         * @return the first date of the bucket following the bucket that starts at bucketStart
+         */
+        public LocalDate nextBucket(LocalDate bucketStart) {
+            switch (this) {
+                case DAY: return bucketStart.plusDays(1);
+                case WEEK: return bucketStart.plusWeeks(1);
+                case MONTH: return bucketStart.plusMonths(1);
+                case QUARTER: return bucketStart.plusMonths(3);
+                default: return bucketStart.plusYears(1);
+            }
+        }
+    }
+
+    private final LocalDate origin;         // the first working day of the timeline
+    private final int numDays;              // the number of working days in the timeline
+    private final long[] cumulativeSpend;   // the total spend of the working days before each index
+    private final int[] cumulativeActive;   // the number of working days with any active project before each index
+    private final int[] monthlyActive;      // the number of projects with any working day in each month of the year
+
+    public SpendTimeline(Collection<Project> projects) {
+        LocalDate first = null, last = null;
+        for (Project project : projects) {
+            if (project.getStartDate() == null || project.getEndDate() == null) {
+                continue;
+            }
+            if (first == null || project.getStartDate().isBefore(first)) {
+                first = project.getStartDate();
+            }
+            if (last == null || project.getEndDate().isAfter(last)) {
+                last = project.getEndDate();
+            }
+        }
+        this.origin = (first != null ? Calendar.firstWorkingDayFrom(first) : LocalDate.of(2000, 1, 3));
+        this.numDays = (first != null ? Math.max(0, Calendar.getNumWorkingDays(this.origin, last)) : 0);
+
+        // difference arrays of the daily spend and of the number of active projects
+        long[] spendDelta = new long[this.numDays + 1];
+        int[] activeDelta = new int[this.numDays + 1];
+        for (Project project : projects) {
+            if (project.getStartDate() == null || project.getEndDate() == null || project.getNumWorkingDays() == 0) {
+                continue;
+            }
+            int from = Calendar.workingDayIndex(this.origin, project.getStartDate());
+            int to = Calendar.workingDayIndex(this.origin, project.getEndDate());
+            spendDelta[from] += project.getDailyCostRate();
+            spendDelta[to + 1] -= project.getDailyCostRate();
+            activeDelta[from]++;
+            activeDelta[to + 1]--;
+        }
+
+        this.monthlyActive = new int[Month.values().length];
+        for (Project project : projects) {
+            if (project.getStartDate() != null && project.getEndDate() != null) {
+                for (Month month : activeMonths(project.getStartDate(), project.getEndDate())) {
+                    this.monthlyActive[month.ordinal()]++;
+                }
+            }
+        }
+
+        this.cumulativeSpend = new long[this.numDays + 1];
+        this.cumulativeActive = new int[this.numDays + 1];
+        long dailySpend = 0;
+        int active = 0;
+        for (int day = 0; day < this.numDays; day++) {
+            dailySpend += spendDelta[day];
+            active += activeDelta[day];
+            this.cumulativeSpend[day + 1] = this.cumulativeSpend[day] + dailySpend;
+            this.cumulativeActive[day + 1] = this.cumulativeActive[day] + (active > 0 ? 1 : 0);
+        }
+    }
+
+    public LocalDate getFirstDay() {
+        return this.origin;
+    }
+
+    public int getNumWorkingDays() {
+        return this.numDays;
+    }
+
+    /**
+     * @return the total spend of all projects on all days
+     */
+    public long getTotalSpend() {
+        return this.cumulativeSpend[this.numDays];
+    }
+
+    /**
+     * calculates the total spend of all projects between from and to, both inclusive
+     * @param from
+     * @param to
+     * @return
+     */
+    public long getSpend(LocalDate from, LocalDate to) {
+        int[] range = this.clip(from, to);
+        return this.cumulativeSpend[range[1]] - this.cumulativeSpend[range[0]];
+    }
+
+    /**
+     * @param date
+     * @return the spend of all projects on the date, which is 0 for weekend days
+     */
+    public long getDailySpend(LocalDate date) {
+        return this.getSpend(date, date);
+    }
+
+    /**
+     * @param month
+     * @return the number of projects with any working day in the month, of any year
+     */
+    public int getNumActiveProjects(Month month) {
+        return this.monthlyActive[month.ordinal()];
+    }
+
+    /**
+     * calculates the spend per bucket of the granularity, for all buckets in which any project is active
+     * @param granularity
+     * @return the spend by the first date of each bucket
+     */
+    public SortedMap<LocalDate, Long> getSpends(Granularity granularity) {
+        SortedMap<LocalDate, Long> spends = new TreeMap<>();
+        if (this.numDays == 0) {
+            return spends;
+        }
+        LocalDate last = this.origin.plusDays(this.numDays / 5 * 7 + 7);
+        for (LocalDate bucket = granularity.bucketStart(this.origin); !bucket.isAfter(last); ) {
+            LocalDate next = granularity.nextBucket(bucket);
+            int[] range = this.clip(bucket, next.minusDays(1));
+            if (this.cumulativeActive[range[1]] > this.cumulativeActive[range[0]]) {
+                spends.put(bucket, this.cumulativeSpend[range[1]] - this.cumulativeSpend[range[0]]);
+            }
+            bucket = next;
+        }
+        return spends;
+    }
+
+    /**
+     * @return the months of the year with any working day between startDate and endDate, both inclusive
+     * visiting the period month by month, without expanding its working days
+     */
+    static Set<Month> activeMonths(LocalDate startDate, LocalDate endDate) {
+        Set<Month> months = EnumSet.noneOf(Month.class);
+        for (LocalDate monthStart = startDate.withDayOfMonth(1); !monthStart.isAfter(endDate);
+             monthStart = monthStart.plusMonths(1)) {
+            LocalDate from = (monthStart.isBefore(startDate) ? startDate : monthStart);
+            LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
+            LocalDate to = (monthEnd.isAfter(endDate) ? endDate : monthEnd);
+            if (Calendar.getNumWorkingDays(from, to) > 0) {
+                months.add(monthStart.getMonth());
+            }
+        }
+        return months;
+    }
+
+    /**
+     * @return the index range [from, to) of the working days within the timeline between from and to inclusive
+     */
+    private int[] clip(LocalDate from, LocalDate to) {
+        int first = Calendar.workingDayIndex(this.origin, Calendar.firstWorkingDayFrom(from));
+        int last = Calendar.workingDayIndex(this.origin, to);
+        first = Math.max(0, Math.min(first, this.numDays));
+        last = Math.max(first, Math.min(last + 1, this.numDays));
+        return new int[] { first, last };
+    }
+}
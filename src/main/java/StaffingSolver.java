@@ -0,0 +1,482 @@
+import utils.Calendar;
+import utils.SLF4J;
+import utils.SegmentTree;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Assigns commitments to employees to staff projects at minimal manpower budget
+ *
+ * Every demand asks for a number of hours per day on a project of the plan.
+ * Hours can be split across employees, but no employee may be committed to more than
+ * Calendar.WORKING_HOURS_PER_DAY hours on any working day, including the existing commitments of the plan.
+ * Since the budget of a commitment is hours * wage * working days of the project,
+ * the solver first staffs every demand greedily from the cheapest employees with spare capacity,
+ * starting with the demands that weigh most, and then improves that solution by local search
+ * on all cores until the time budget is spent:
+ *  - moving hours of a demand to a cheaper employee with spare capacity
+ *  - exchanging hours between a longer and a shorter demand,
+ *    such that the cheaper employee works on the longer project
+ *  - staffing hours that could not be staffed before
+ */
+public class StaffingSolver {
+
+    /**
+     * an assignment of hours per day on a project to an employee
+     */
+    public static class Assignment {
+        private final String projectCode;
+        private final int employeeNr;
+        private final int hoursPerDay;
+
+        Assignment(String projectCode, int employeeNr, int hoursPerDay) {
+            this.projectCode = projectCode;
+            this.employeeNr = employeeNr;
+            this.hoursPerDay = hoursPerDay;
+        }
+
+        public String getProjectCode() { return projectCode; }
+        public int getEmployeeNr() { return employeeNr; }
+        public int getHoursPerDay() { return hoursPerDay; }
+
+        @Override
+        public String toString() {
+            return String.format("%s:%d=%dh", this.projectCode, this.employeeNr, this.hoursPerDay);
+        }
+    }
+
+    /**
+     * the outcome of the solver
+     */
+    public static class StaffingPlan {
+        private final List<Assignment> assignments;
+        private final Map<String, Integer> shortfalls;
+        private final long assignedBudget;
+        private final long totalManpowerBudget;
+
+        StaffingPlan(List<Assignment> assignments, Map<String, Integer> shortfalls,
+                     long assignedBudget, long totalManpowerBudget) {
+            this.assignments = Collections.unmodifiableList(assignments);
+            this.shortfalls = Collections.unmodifiableMap(shortfalls);
+            this.assignedBudget = assignedBudget;
+            this.totalManpowerBudget = totalManpowerBudget;
+        }
+
+        public List<Assignment> getAssignments() { return assignments; }
+
+        /**
+         * @return the hours per day that could not be staffed, by project code
+         */
+        public Map<String, Integer> getShortfalls() { return shortfalls; }
+
+        /**
+         * @return the manpower budget of the new assignments
+         */
+        public long getAssignedBudget() { return assignedBudget; }
+
+        /**
+         * @return the total manpower budget of the plan after applying the assignments
+         */
+        public long getTotalManpowerBudget() { return totalManpowerBudget; }
+
+        /**
+         * commits all assignments to the plan through its single writer
+         * @param pps
+         * @return the snapshot that has been published after the assignments
+         */
+        public PPS applyTo(PPS pps) {
+            return pps.applyUpdate(builder -> this.assignments.forEach(assignment ->
+                    builder.addCommitment(assignment.projectCode, assignment.employeeNr, assignment.hoursPerDay)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("StaffingPlan(%d assignments, budget %d, shortfall %s)",
+                    this.assignments.size(), this.assignedBudget, this.shortfalls);
+        }
+    }
+
+    private final PPS pps;
+    private final List<Project> demandProjects = new ArrayList<>();
+    private final List<Integer> demandHours = new ArrayList<>();
+    private final Map<String, Project> projectsByCode = new HashMap<>();
+
+    public StaffingSolver(PPS pps) {
+        this.pps = pps;
+        pps.getProjects().forEach(project -> this.projectsByCode.put(project.getCode(), project));
+    }
+
+    /**
+     * requires hoursPerDay to be staffed on every working day of the project
+     * @param projectCode a project of the plan
+     * @param hoursPerDay
+     * @return
+     */
+    public StaffingSolver addDemand(String projectCode, int hoursPerDay) {
+        Project project = this.projectsByCode.get(projectCode);
+        if (project == null || project.getStartDate() == null) {
+            throw new IllegalArgumentException("Unknown project " + projectCode);
+        }
+        if (hoursPerDay > 0) {
+            this.demandProjects.add(project);
+            this.demandHours.add(hoursPerDay);
+        }
+        return this;
+    }
+
+    /**
+     * solves the staffing problem for all demands within the time budget
+     * @param timeBudget the time to be spent on local search after the greedy solution
+     * @return
+     */
+    public StaffingPlan solve(Duration timeBudget) {
+        Problem problem;
+        synchronized (this.pps) {
+            problem = new Problem(this.pps, this.demandProjects, this.demandHours);
+        }
+        Solution greedy = problem.greedy();
+        SLF4J.LOGGER.debug("Greedy staffing costs " + greedy.cost + " with shortfall " + greedy.shortfall);
+
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        SplittableRandom seeds = new SplittableRandom();
+        List<Future<Solution>> searches = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            SplittableRandom random = seeds.split();
+            // copied on this thread, since a copy takes over the loads of the greedy solution copy-on-write
+            Solution start = new Solution(greedy);
+            searches.add(executor.submit(() -> problem.improve(start, random, deadline)));
+        }
+        Solution best = greedy;
+        try {
+            for (Future<Solution> search : searches) {
+                Solution solution = search.get();
+                if (solution.isBetterThan(best)) {
+                    best = solution;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            SLF4J.logException("Local search failed", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        SLF4J.LOGGER.debug("Improved staffing costs " + best.cost + " with shortfall " + best.shortfall);
+        return problem.toPlan(best, this.pps.calculateTotalManpowerBudget());
+    }
+
+    /**
+     * the immutable description of the staffing problem, shared by all searches
+     */
+    private static class Problem {
+        final Employee[] employees;             // sorted by wage
+        final int[] wages;
+        final LocalDate origin;                 // the first working day of the calendar
+        final int numDays;                      // the number of working days in the calendar
+        final SegmentTree[] baseLoads;          // existing daily loads per employee, null without commitments
+        final String[] codes;
+        final int[] required;                   // hours per day per demand
+        final int[] firstDay, lastDay, days;    // working day range and number of working days per demand
+
+        Problem(PPS pps, List<Project> projects, List<Integer> hours) {
+            this.employees = pps.getEmployees().toArray(new Employee[0]);
+            Arrays.sort(this.employees, Comparator.comparingInt(Employee::getHourlyWage).thenComparing(Comparator.naturalOrder()));
+            this.wages = Arrays.stream(this.employees).mapToInt(Employee::getHourlyWage).toArray();
+
+            // the calendar spans the planning year and the periods of all projects, like the availability index
+            LocalDate first = LocalDate.of(pps.getPlanningYear(), 1, 1);
+            LocalDate last = LocalDate.of(pps.getPlanningYear(), 12, 31);
+            for (Project project : pps.getProjects()) {
+                if (project.getStartDate() != null && project.getStartDate().isBefore(first)) {
+                    first = project.getStartDate();
+                }
+                if (project.getEndDate() != null && project.getEndDate().isAfter(last)) {
+                    last = project.getEndDate();
+                }
+            }
+            this.origin = Calendar.firstWorkingDayFrom(first);
+            this.numDays = Math.max(1, Calendar.getNumWorkingDays(this.origin, last));
+
+            Map<Integer, Integer> indices = new HashMap<>();
+            for (int e = 0; e < this.employees.length; e++) {
+                indices.put(this.employees[e].getNumber(), e);
+            }
+            this.baseLoads = new SegmentTree[this.employees.length];
+            for (Project project : pps.getProjects()) {
+                int[] range = this.clip(project.getStartDate(), project.getEndDate());
+                if (range[0] > range[1]) {
+                    continue;
+                }
+                project.getCommittedHoursPerDay().forEach((employee, hoursPerDay) -> {
+                    Integer e = indices.get(employee.getNumber());
+                    if (e != null) {
+                        if (this.baseLoads[e] == null) {
+                            this.baseLoads[e] = new SegmentTree(this.numDays);
+                        }
+                        this.baseLoads[e].add(range[0], range[1], hoursPerDay);
+                    }
+                });
+            }
+
+            int n = projects.size();
+            this.codes = new String[n];
+            this.required = new int[n];
+            this.firstDay = new int[n];
+            this.lastDay = new int[n];
+            this.days = new int[n];
+            for (int d = 0; d < n; d++) {
+                Project project = projects.get(d);
+                int[] range = this.clip(project.getStartDate(), project.getEndDate());
+                this.codes[d] = project.getCode();
+                this.required[d] = hours.get(d);
+                this.firstDay[d] = range[0];
+                this.lastDay[d] = range[1];
+                this.days[d] = project.getNumWorkingDays();
+            }
+        }
+
+        /**
+         * @return the first and last working day index within the calendar of the period from..to
+         */
+        int[] clip(LocalDate from, LocalDate to) {
+            if (from == null || to == null) {
+                return new int[] { 0, -1 };
+            }
+            int first = Calendar.workingDayIndex(this.origin, Calendar.firstWorkingDayFrom(from));
+            int last = Calendar.workingDayIndex(this.origin, to);
+            return new int[] { Math.max(first, 0), Math.min(last, this.numDays - 1) };
+        }
+
+        int numDemands() {
+            return this.required.length;
+        }
+
+        /**
+         * @return the hours per day that employee e can still take on during demand d
+         */
+        int freeHours(Solution solution, int e, int d) {
+            SegmentTree load = solution.loads[e];
+            if (load == null || this.firstDay[d] > this.lastDay[d]) {
+                return Calendar.WORKING_HOURS_PER_DAY;
+            }
+            return Calendar.WORKING_HOURS_PER_DAY - load.max(this.firstDay[d], this.lastDay[d]);
+        }
+
+        Solution greedy() {
+            Solution solution = new Solution(this);
+            Integer[] order = new Integer[this.numDemands()];
+            for (int d = 0; d < order.length; d++) {
+                order[d] = d;
+            }
+            // the heaviest demands get the first pick of the cheapest employees
+            Arrays.sort(order, Comparator.comparingLong(d -> -(long) this.required[(int) d] * this.days[(int) d]));
+            for (int d : order) {
+                this.fill(solution, d);
+            }
+            return solution;
+        }
+
+        /**
+         * assigns the unstaffed hours of demand d to the cheapest employees with spare capacity
+         */
+        void fill(Solution solution, int d) {
+            int missing = this.required[d] - solution.assigned(d);
+            for (int e = 0; e < this.employees.length && missing > 0; e++) {
+                int hours = Math.min(missing, this.freeHours(solution, e, d));
+                if (hours > 0) {
+                    solution.assign(d, e, hours);
+                    missing -= hours;
+                }
+            }
+        }
+
+        Solution improve(Solution solution, SplittableRandom random, long deadline) {
+            if (this.numDemands() == 0 || this.employees.length < 2) {
+                return solution;
+            }
+            for (long iteration = 0; ; iteration++) {
+                if ((iteration & 1023) == 0 && System.nanoTime() > deadline) {
+                    return solution;
+                }
+                int d1 = random.nextInt(this.numDemands());
+                if (solution.size[d1] == 0) {
+                    if (solution.shortfall > 0) {
+                        this.fill(solution, d1);
+                    }
+                    continue;
+                }
+                int slot = random.nextInt(solution.size[d1]);
+                int e1 = solution.employee[d1][slot];
+                if (e1 == 0 || solution.hours[d1][slot] == 0) {
+                    continue;
+                }
+                // a random employee that is not more expensive
+                int e2 = random.nextInt(e1);
+                if (this.wages[e2] == this.wages[e1]) {
+                    continue;
+                }
+                int free = this.freeHours(solution, e2, d1);
+                if (free > 0) {
+                    solution.move(d1, e1, e2, Math.min(free, solution.hours[d1][slot]));
+                } else {
+                    this.tryExchange(solution, d1, e1, e2, random);
+                }
+                if (solution.shortfall > 0 && random.nextInt(16) == 0) {
+                    this.fill(solution, random.nextInt(this.numDemands()));
+                }
+            }
+        }
+
+        /**
+         * moves an hour per day of the shorter demand d2 of the cheaper employee e2 to the more expensive e1,
+         * to free capacity for e2 to take over an hour per day of the longer demand d1 of e1
+         */
+        void tryExchange(Solution solution, int d1, int e1, int e2, SplittableRandom random) {
+            int d2 = random.nextInt(this.numDemands());
+            if (d2 == d1 || this.days[d2] >= this.days[d1] || solution.hoursOf(d2, e2) == 0) {
+                return;
+            }
+            solution.move(d1, e1, e2, 1);
+            solution.move(d2, e2, e1, 1);
+            if (this.freeHours(solution, e1, d2) < 0 || this.freeHours(solution, e2, d1) < 0
+                    || this.freeHours(solution, e1, d1) < 0 || this.freeHours(solution, e2, d2) < 0) {
+                // infeasible, undo the exchange
+                solution.move(d2, e1, e2, 1);
+                solution.move(d1, e2, e1, 1);
+            }
+        }
+
+        StaffingPlan toPlan(Solution solution, long currentBudget) {
+            List<Assignment> assignments = new ArrayList<>();
+            Map<String, Integer> shortfalls = new TreeMap<>();
+            for (int d = 0; d < this.numDemands(); d++) {
+                for (int slot = 0; slot < solution.size[d]; slot++) {
+                    if (solution.hours[d][slot] > 0) {
+                        assignments.add(new Assignment(this.codes[d],
+                                this.employees[solution.employee[d][slot]].getNumber(), solution.hours[d][slot]));
+                    }
+                }
+                int missing = this.required[d] - solution.assigned(d);
+                if (missing > 0) {
+                    shortfalls.merge(this.codes[d], missing, Integer::sum);
+                }
+            }
+            return new StaffingPlan(assignments, shortfalls, solution.cost, currentBudget + solution.cost);
+        }
+    }
+
+    /**
+     * a mutable assignment of hours of every demand to employees, with the resulting daily loads
+     * The daily loads are shared with the problem and with copies of the solution, until a move changes them:
+     * only the loads of the employees that have been touched are copied.
+     */
+    private static class Solution {
+        final Problem problem;
+        final SegmentTree[] loads;              // per employee the daily load, null without any load
+        final boolean[] owned;                  // per employee whether the load may be changed in place
+        final int[][] employee;                 // per demand the assigned employees
+        final int[][] hours;                    // per demand the assigned hours per day
+        final int[] size;                       // per demand the number of assignment slots in use
+        long cost = 0;
+        int shortfall;
+
+        Solution(Problem problem) {
+            this.problem = problem;
+            this.loads = problem.baseLoads.clone();
+            this.owned = new boolean[this.loads.length];
+            int n = problem.numDemands();
+            this.employee = new int[n][2];
+            this.hours = new int[n][2];
+            this.size = new int[n];
+            this.shortfall = Arrays.stream(problem.required).sum();
+        }
+
+        /**
+         * copies another solution, which thereby shares all of its loads copy-on-write as well
+         * @param other
+         */
+        Solution(Solution other) {
+            this.problem = other.problem;
+            this.loads = other.loads.clone();
+            this.owned = new boolean[this.loads.length];
+            Arrays.fill(other.owned, false);
+            this.employee = new int[other.employee.length][];
+            this.hours = new int[other.hours.length][];
+            for (int d = 0; d < this.employee.length; d++) {
+                this.employee[d] = other.employee[d].clone();
+                this.hours[d] = other.hours[d].clone();
+            }
+            this.size = other.size.clone();
+            this.cost = other.cost;
+            this.shortfall = other.shortfall;
+        }
+
+        boolean isBetterThan(Solution other) {
+            return this.shortfall < other.shortfall || (this.shortfall == other.shortfall && this.cost < other.cost);
+        }
+
+        int assigned(int d) {
+            int total = 0;
+            for (int slot = 0; slot < this.size[d]; slot++) {
+                total += this.hours[d][slot];
+            }
+            return total;
+        }
+
+        /**
+         * @return the hours per day of employee e on demand d
+         */
+        int hoursOf(int d, int e) {
+            for (int slot = 0; slot < this.size[d]; slot++) {
+                if (this.employee[d][slot] == e) {
+                    return this.hours[d][slot];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * adds (or removes, if negative) hours per day of employee e on demand d
+         */
+        void assign(int d, int e, int hoursPerDay) {
+            int slot = 0;
+            while (slot < this.size[d] && this.employee[d][slot] != e) {
+                slot++;
+            }
+            if (slot == this.size[d]) {
+                if (slot == this.employee[d].length) {
+                    this.employee[d] = Arrays.copyOf(this.employee[d], 2 * slot);
+                    this.hours[d] = Arrays.copyOf(this.hours[d], 2 * slot);
+                }
+                this.employee[d][slot] = e;
+                this.size[d]++;
+            }
+            this.hours[d][slot] += hoursPerDay;
+            this.ownLoad(e).add(this.problem.firstDay[d], this.problem.lastDay[d], hoursPerDay);
+            this.cost += (long) hoursPerDay * this.problem.wages[e] * this.problem.days[d];
+            this.shortfall -= hoursPerDay;
+        }
+
+        void move(int d, int from, int to, int hoursPerDay) {
+            this.assign(d, from, -hoursPerDay);
+            this.assign(d, to, hoursPerDay);
+        }
+
+        /**
+         * @return the load of employee e that this solution may change, copied first if it is shared
+         */
+        private SegmentTree ownLoad(int e) {
+            if (!this.owned[e]) {
+                SegmentTree load = this.loads[e];
+                this.loads[e] = (load != null ? new SegmentTree(load) : new SegmentTree(this.problem.numDays));
+                this.owned[e] = true;
+            }
+            return this.loads[e];
+        }
+    }
+}
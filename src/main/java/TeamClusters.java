@@ -0,0 +1,288 @@
+import utils.UnionFind;
+
+import java.util.*;
+
+/**
+ * Analysis of the teams of a plan, as the connected components of the bipartite graph of employees and projects
+ *
+ * An employee is connected to a project if the employee is assigned to the project or has a commitment on it.
+ * The graph is built once from a snapshot of the plan into adjacency arrays in CSR layout by the dense ids of the plan,
+ * and the components are found with a union-find over all employees and projects in near-linear time.
+ * Different clusters share no staff, so they can be processed or reviewed independently.
+ */
+public class TeamClusters {
+
+    /**
+     * a connected group of employees and projects
+     */
+    public static class Cluster {
+        private final List<Employee> employees = new ArrayList<>();    // in order of number
+        private final List<Project> projects = new ArrayList<>();      // in order of code
+        private int numLinks;
+
+        public List<Employee> getEmployees() {
+            return Collections.unmodifiableList(employees);
+        }
+
+        public List<Project> getProjects() {
+            return Collections.unmodifiableList(projects);
+        }
+
+        /**
+         * @return the number of employees and projects in the cluster
+         */
+        public int size() {
+            return this.employees.size() + this.projects.size();
+        }
+
+        /**
+         * @return the number of links between the employees and projects of the cluster
+         */
+        public int getNumLinks() {
+            return numLinks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Cluster(%d employees, %d projects, %d links)",
+                    this.employees.size(), this.projects.size(), this.numLinks);
+        }
+    }
+
+    private final PPS pps;
+    private final int numEmployees;
+    private final int[] staffOffsets;       // the first staff entry of every project id, and the end
+    private final int[] staff;              // the employee ids of the staff of all projects
+    private final int[] projectOffsets;     // the first project entry of every employee id, and the end
+    private final int[] projects;           // the project ids of the projects of all employees
+    private final int[] clusterIndex;       // the index of the cluster of every employee id and numEmployees + project id
+    private final List<Cluster> clusters;   // by decreasing size
+
+    public TeamClusters(PPS pps) {
+        this.pps = pps.getSnapshot();
+        this.numEmployees = this.pps.getEmployees().size();
+        int numProjects = this.pps.getProjects().size();
+
+        // count an upper bound of the staff of every project, then fill and deduplicate the staff per project
+        int[] counts = new int[numProjects + 1];
+        for (Project project : this.pps.getProjects()) {
+            counts[this.pps.getProjectId(project.getCode())] += project.getCommittedHoursPerDay().size();
+        }
+        for (Employee employee : this.pps.getEmployees()) {
+            for (Project project : employee.getAssignedProjects()) {
+                int p = this.pps.getProjectId(project.getCode());
+                if (p >= 0) {
+                    counts[p]++;
+                }
+            }
+        }
+        int[] offsets = new int[numProjects + 1];
+        for (int p = 0; p < numProjects; p++) {
+            offsets[p + 1] = offsets[p] + counts[p];
+        }
+        int[] fill = Arrays.copyOf(offsets, numProjects);
+        int[] links = new int[offsets[numProjects]];
+        for (Project project : this.pps.getProjects()) {
+            int p = this.pps.getProjectId(project.getCode());
+            for (Employee employee : project.getCommittedHoursPerDay().keySet()) {
+                int e = this.pps.getEmployeeId(employee.getNumber());
+                if (e >= 0) {
+                    links[fill[p]++] = e;
+                }
+            }
+        }
+        for (Employee employee : this.pps.getEmployees()) {
+            int e = this.pps.getEmployeeId(employee.getNumber());
+            for (Project project : employee.getAssignedProjects()) {
+                int p = this.pps.getProjectId(project.getCode());
+                if (p >= 0) {
+                    links[fill[p]++] = e;
+                }
+            }
+        }
+        int[] lastProject = new int[this.numEmployees];
+        Arrays.fill(lastProject, -1);
+        this.staffOffsets = new int[numProjects + 1];
+        int numLinks = 0;
+        for (int p = 0; p < numProjects; p++) {
+            this.staffOffsets[p] = numLinks;
+            for (int i = offsets[p]; i < fill[p]; i++) {
+                if (lastProject[links[i]] != p) {
+                    lastProject[links[i]] = p;
+                    links[numLinks++] = links[i];
+                }
+            }
+        }
+        this.staffOffsets[numProjects] = numLinks;
+        this.staff = Arrays.copyOf(links, numLinks);
+
+        // transpose into the projects of every employee
+        this.projectOffsets = new int[this.numEmployees + 1];
+        for (int e : this.staff) {
+            this.projectOffsets[e + 1]++;
+        }
+        for (int e = 0; e < this.numEmployees; e++) {
+            this.projectOffsets[e + 1] += this.projectOffsets[e];
+        }
+        fill = Arrays.copyOf(this.projectOffsets, this.numEmployees);
+        this.projects = new int[numLinks];
+        for (int p = 0; p < numProjects; p++) {
+            for (int i = this.staffOffsets[p]; i < this.staffOffsets[p + 1]; i++) {
+                this.projects[fill[this.staff[i]]++] = p;
+            }
+        }
+
+        // find the components and collect their members in order
+        UnionFind components = new UnionFind(this.numEmployees + numProjects);
+        for (int p = 0; p < numProjects; p++) {
+            for (int i = this.staffOffsets[p]; i < this.staffOffsets[p + 1]; i++) {
+                components.union(this.numEmployees + p, this.staff[i]);
+            }
+        }
+        Map<Integer, Cluster> clustersByRoot = new HashMap<>();
+        for (Employee employee : this.pps.getEmployees()) {
+            int e = this.pps.getEmployeeId(employee.getNumber());
+            Cluster cluster = clustersByRoot.computeIfAbsent(components.find(e), root -> new Cluster());
+            cluster.employees.add(employee);
+            cluster.numLinks += this.projectOffsets[e + 1] - this.projectOffsets[e];
+        }
+        for (Project project : this.pps.getProjects()) {
+            int node = this.numEmployees + this.pps.getProjectId(project.getCode());
+            clustersByRoot.computeIfAbsent(components.find(node), root -> new Cluster()).projects.add(project);
+        }
+        this.clusters = new ArrayList<>(clustersByRoot.values());
+        this.clusters.sort(Comparator.comparingInt(Cluster::size).reversed()
+                .thenComparing(cluster -> cluster.projects.isEmpty() ? "" : cluster.projects.get(0).getCode())
+                .thenComparingInt(cluster -> cluster.employees.isEmpty() ? 0 : cluster.employees.get(0).getNumber()));
+        this.clusterIndex = new int[this.numEmployees + numProjects];
+        Map<Integer, Integer> indexByRoot = new HashMap<>();
+        for (int c = 0; c < this.clusters.size(); c++) {
+            Cluster cluster = this.clusters.get(c);
+            int member = (cluster.employees.isEmpty()
+                    ? this.numEmployees + this.pps.getProjectId(cluster.projects.get(0).getCode())
+                    : this.pps.getEmployeeId(cluster.employees.get(0).getNumber()));
+            indexByRoot.put(components.find(member), c);
+        }
+        for (int node = 0; node < this.clusterIndex.length; node++) {
+            this.clusterIndex[node] = indexByRoot.get(components.find(node));
+        }
+    }
+
+    /**
+     * @return all clusters of the plan, by decreasing size
+     */
+    public List<Cluster> getClusters() {
+        return Collections.unmodifiableList(this.clusters);
+    }
+
+    public int getNumClusters() {
+        return this.clusters.size();
+    }
+
+    /**
+     * @param project
+     * @return the cluster of the project, or null if the project is not in the plan
+     */
+    public Cluster clusterOf(Project project) {
+        int p = this.pps.getProjectId(project.getCode());
+        return (p >= 0 ? this.clusters.get(this.clusterIndex[this.numEmployees + p]) : null);
+    }
+
+    /**
+     * @param employee
+     * @return the cluster of the employee, or null if the employee is not in the plan
+     */
+    public Cluster clusterOf(Employee employee) {
+        int e = this.pps.getEmployeeId(employee.getNumber());
+        return (e >= 0 ? this.clusters.get(this.clusterIndex[e]) : null);
+    }
+
+    /**
+     * finds the projects that are coupled to a project through common staff
+     * @param project
+     * @return the number of shared employees by coupled project, in order of code
+     */
+    public Map<Project, Integer> getCoupledProjects(Project project) {
+        Map<Project, Integer> coupled = new TreeMap<>();
+        int p = this.pps.getProjectId(project.getCode());
+        if (p < 0) {
+            return coupled;
+        }
+        for (int i = this.staffOffsets[p]; i < this.staffOffsets[p + 1]; i++) {
+            int e = this.staff[i];
+            for (int j = this.projectOffsets[e]; j < this.projectOffsets[e + 1]; j++) {
+                if (this.projects[j] != p) {
+                    coupled.merge(this.pps.getProjectById(this.projects[j]), 1, Integer::sum);
+                }
+            }
+        }
+        return coupled;
+    }
+
+    /**
+     * finds the employees that couple the most projects
+     * @param k
+     * @return at most k employees with at least two projects, by decreasing number of projects and then by number
+     */
+    public List<Employee> getMostConnectedEmployees(int k) {
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.<Integer>comparingInt(this::getNumProjects)
+                .thenComparing(e -> -this.pps.getEmployeeById(e).getNumber()));
+        for (int e = 0; e < this.numEmployees; e++) {
+            if (this.getNumProjects(e) < 2) {
+                continue;
+            }
+            top.add(e);
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        LinkedList<Employee> employees = new LinkedList<>();
+        while (!top.isEmpty()) {
+            employees.addFirst(this.pps.getEmployeeById(top.poll()));
+        }
+        return employees;
+    }
+
+    private int getNumProjects(int e) {
+        return this.projectOffsets[e + 1] - this.projectOffsets[e];
+    }
+
+    /**
+     * distributes all clusters over a number of independent groups of about equal work,
+     * assigning the largest clusters first to the group with the fewest links
+     * @param numGroups
+     * @return the clusters of every group
+     */
+    public List<List<Cluster>> partition(int numGroups) {
+        if (numGroups <= 0) {
+            throw new IllegalArgumentException("Number of groups must be positive: " + numGroups);
+        }
+        List<List<Cluster>> groups = new ArrayList<>();
+        long[] work = new long[numGroups];
+        PriorityQueue<Integer> lightest = new PriorityQueue<>(Comparator.<Integer>comparingLong(g -> work[g])
+                .thenComparingInt(g -> g));
+        for (int g = 0; g < numGroups; g++) {
+            groups.add(new ArrayList<>());
+            lightest.add(g);
+        }
+        List<Cluster> byWork = new ArrayList<>(this.clusters);
+        byWork.sort(Comparator.comparingLong(TeamClusters::workOf).reversed());
+        for (Cluster cluster : byWork) {
+            int g = lightest.poll();
+            groups.get(g).add(cluster);
+            work[g] += workOf(cluster);
+            lightest.add(g);
+        }
+        return groups;
+    }
+
+    private static long workOf(Cluster cluster) {
+        return cluster.size() + (long) cluster.numLinks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TeamClusters(%s: %d clusters, largest %s)", this.pps.getName(), this.clusters.size(),
+                this.clusters.isEmpty() ? "none" : this.clusters.get(0));
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.*;
+
+/**
+ * Immutable index of employees sorted by hourly wage and by number of assigned projects
+ * Range queries locate the matching employees by binary search,
+ * such that they only touch the employees within the range
+ */
+public class WageIndex {
+    private final Employee[] byWage;
+    private final int[] wages;
+    private final Employee[] byAssignments;
+    private final int[] assignments;
+
+    public WageIndex(Collection<Employee> employees) {
+        this.byWage = employees.toArray(new Employee[0]);
+        Arrays.sort(this.byWage, Comparator.comparingInt(Employee::getHourlyWage).thenComparing(Comparator.naturalOrder()));
+        this.wages = Arrays.stream(this.byWage).mapToInt(Employee::getHourlyWage).toArray();
+
+        this.byAssignments = employees.toArray(new Employee[0]);
+        Arrays.sort(this.byAssignments,
+                Comparator.comparingInt(Employee::getAssignedProjectsLength).thenComparing(Comparator.naturalOrder()));
+        this.assignments = Arrays.stream(this.byAssignments).mapToInt(Employee::getAssignedProjectsLength).toArray();
+    }
+
+    public int size() {
+        return this.byWage.length;
+    }
+
+    /**
+     * finds all employees with minWage <= hourly wage <= maxWage, in order of wage
+     * @param minWage
+     * @param maxWage
+     * @return
+     */
+    public List<Employee> findByWage(int minWage, int maxWage) {
+        return range(this.byWage, this.wages, minWage, maxWage);
+    }
+
+    /**
+     * finds all employees that are assigned to at least minProjects and at most maxProjects projects
+     * @param minProjects
+     * @param maxProjects
+     * @return
+     */
+    public List<Employee> findByAssignments(int minProjects, int maxProjects) {
+        return range(this.byAssignments, this.assignments, minProjects, maxProjects);
+    }
+
+    /**
+     * finds all employees within both the wage range and the assignment count range
+     * only the employees within the most selective of both ranges are inspected
+     * @return
+     */
+    public List<Employee> find(int minWage, int maxWage, int minProjects, int maxProjects) {
+        List<Employee> wageRange = this.findByWage(minWage, maxWage);
+        List<Employee> assignmentRange = this.findByAssignments(minProjects, maxProjects);
+        List<Employee> matches = new ArrayList<>();
+        if (wageRange.size() <= assignmentRange.size()) {
+            for (Employee employee : wageRange) {
+                int count = employee.getAssignedProjectsLength();
+                if (count >= minProjects && count <= maxProjects) {
+                    matches.add(employee);
+                }
+            }
+        } else {
+            for (Employee employee : assignmentRange) {
+                int wage = employee.getHourlyWage();
+                if (wage >= minWage && wage <= maxWage) {
+                    matches.add(employee);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * calculates the wage at the given percentile by the nearest-rank method
+     * @param percentile between 0 and 100
+     * @return
+     */
+    public int getWagePercentile(double percentile) {
+        if (this.wages.length == 0) {
+            throw new NoSuchElementException("No employees");
+        }
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * this.wages.length);
+        return this.wages[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * calculates the median wage, being the mean of both middle wages for an even number of employees
+     * @return
+     */
+    public double getMedianWage() {
+        if (this.wages.length == 0) {
+            throw new NoSuchElementException("No employees");
+        }
+        int middle = this.wages.length / 2;
+        return (this.wages.length % 2 == 1 ? this.wages[middle] : (this.wages[middle - 1] + this.wages[middle]) / 2.0);
+    }
+
+    private static List<Employee> range(Employee[] sorted, int[] keys, int min, int max) {
+        if (min > max) {
+            return List.of();
+        }
+        int from = lowerBound(keys, min);
+        int to = (max == Integer.MAX_VALUE ? keys.length : lowerBound(keys, max + 1));
+        return Collections.unmodifiableList(Arrays.asList(sorted).subList(from, to));
+    }
+
+    /**
+     * @return the first index with keys[index] >= key
+     */
+    private static int lowerBound(int[] keys, int key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
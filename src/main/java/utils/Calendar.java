@@ -65,6 +65,24 @@ public class Calendar {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * calculate the position of the working day on or before date,
+     * counting the working days from the origin, which has position 0
+     * @param origin a working day
+     * @param date
+     * @return
+     */
+    public static int workingDayIndex(LocalDate origin, LocalDate date) {
+        if (date.isBefore(origin)) {
+            return -getNumWorkingDays(date, origin.minusDays(1)) - (isWorkingDay(date) ? 0 : 1);
+        }
+        return getNumWorkingDays(origin, date) - 1;
+    }
+
+    public static boolean isWorkingDay(LocalDate date) {
+        return date.getDayOfWeek().compareTo(DayOfWeek.FRIDAY) <= 0;
+    }
+
     public static LocalDate firstWorkingDayFrom(LocalDate date) {
         if (date.getDayOfWeek().compareTo(DayOfWeek.SATURDAY) == 0) return date.plusDays(2);
         else if (date.getDayOfWeek().compareTo(DayOfWeek.SUNDAY) == 0) return date.plusDays(1);
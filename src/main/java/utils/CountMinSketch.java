@@ -0,0 +1,85 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Count-min sketch of the counts of long keys in fixed memory
+ *
+ * Every key is counted in one cell of each of depth rows of width cells, chosen by independent hashes.
+ * The estimate of a key is the minimum of its cells, which is never below its true count,
+ * and exceeds it by at most e / width * total count with a probability of at least 1 - exp(-depth).
+ */
+public class CountMinSketch {
+    private final int width;
+    private final long[][] counts;
+    private final long[] seeds;     // the seed of the hash of every row
+    private long totalCount;
+
+    /**
+     * @param width the number of cells per row, a power of two
+     * @param depth the number of rows
+     * @param seed  the seed of the hashes
+     */
+    public CountMinSketch(int width, int depth, long seed) {
+        if (width < 1 || Integer.bitCount(width) != 1 || depth < 1) {
+            throw new IllegalArgumentException("Invalid dimensions " + width + " x " + depth);
+        }
+        this.width = width;
+        this.counts = new long[depth][width];
+        this.seeds = new long[depth];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int row = 0; row < depth; row++) {
+            this.seeds[row] = random.nextLong();
+        }
+    }
+
+    private int cellOf(int row, long key) {
+        // the finalizer of SplitMix64
+        long hash = key + this.seeds[row];
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash = hash ^ (hash >>> 31);
+        return (int) hash & (this.width - 1);
+    }
+
+    /**
+     * adds a count to a key
+     * @param key
+     * @param count a non-negative count
+     */
+    public void add(long key, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        for (int row = 0; row < this.counts.length; row++) {
+            this.counts[row][this.cellOf(row, key)] += count;
+        }
+        this.totalCount += count;
+    }
+
+    /**
+     * @param key
+     * @return the estimated count of the key, at least its true count
+     */
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.counts.length; row++) {
+            estimate = Math.min(estimate, this.counts[row][this.cellOf(row, key)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return the total count of all keys
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the maximum overestimate of any key, with a probability of at least 1 - exp(-depth)
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / this.width * this.totalCount);
+    }
+}
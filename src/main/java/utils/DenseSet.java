@@ -0,0 +1,317 @@
+package utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A set that interns its elements to dense int ids 0 .. size()-1
+ *
+ * The elements are kept in a single array by id, and are found by an open-addressing hash table
+ * of ids with linear probing, so the set allocates no node per element.
+ * Ids are assigned in the order of addition; removing an element moves the last element to its id.
+ * Elements are matched by their natural order, as in a TreeSet, so their hash codes must be consistent with it.
+ * Iteration is in natural order, from a sorted copy that is kept until the set changes,
+ * such that the set can replace a TreeSet. Elements that are added after the sorted copy was made
+ * are merged into it when the set is iterated again, without sorting all elements again.
+ *
+ * @param <T>
+ */
+public class DenseSet<T extends Comparable<? super T>> extends AbstractSet<T> {
+    private static final Object[] EMPTY = {};
+
+    private Object[] elements;          // the elements by id
+    private int size;
+    private int[] table;                // id + 1 of the element in every slot, 0 for an empty slot
+    private volatile Object[] sorted;   // the elements in natural order, null if not known
+    private Object[] added = EMPTY;     // the elements that have been added since the sorted copy was made
+    private int numAdded;
+    private int modCount;
+    private boolean frozen;             // a frozen set cannot be changed anymore
+
+    public DenseSet() {
+        this(8);
+    }
+
+    /**
+     * @param expectedSize the number of elements that can be added without resizing
+     */
+    public DenseSet(int expectedSize) {
+        this.elements = new Object[Math.max(expectedSize, 1)];
+        this.table = new int[tableSize(expectedSize)];
+    }
+
+    private static int tableSize(int size) {
+        return Integer.highestOneBit(Math.max(size, 2) * 2 - 1) * 2;
+    }
+
+    private int slotOf(int hashCode) {
+        int hash = hashCode * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (this.table.length - 1);
+    }
+
+    /**
+     * makes the set unmodifiable
+     */
+    public void freeze() {
+        this.frozen = true;
+    }
+
+    private void checkModifiable() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("Set is frozen");
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param id
+     * @return the element with the id
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int id) {
+        Objects.checkIndex(id, this.size);
+        return (T) this.elements[id];
+    }
+
+    /**
+     * @param element
+     * @return the id of the element that is equal to it in natural order, or -1 if there is none
+     * @throws ClassCastException if the element cannot be compared with the elements of the set
+     */
+    @SuppressWarnings("unchecked")
+    public int idOf(Object element) {
+        if (element == null) {
+            return -1;
+        }
+        for (int slot = this.slotOf(element.hashCode()); this.table[slot] != 0; slot = (slot + 1) & (this.table.length - 1)) {
+            int id = this.table[slot] - 1;
+            if (((Comparable<Object>) this.elements[id]).compareTo(element) == 0) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * finds an element by a key, without creating an element to compare with
+     * @param hashCode the hash code of the elements that match the key
+     * @param matches  whether an element matches the key, which must agree with the natural order of the elements
+     * @return the matching element, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T find(int hashCode, Predicate<? super T> matches) {
+        for (int slot = this.slotOf(hashCode); this.table[slot] != 0; slot = (slot + 1) & (this.table.length - 1)) {
+            T element = (T) this.elements[this.table[slot] - 1];
+            if (matches.test(element)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.idOf(o) >= 0;
+    }
+
+    @Override
+    public boolean add(T element) {
+        this.checkModifiable();
+        if (this.idOf(Objects.requireNonNull(element)) >= 0) {
+            return false;
+        }
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size * 2);
+        }
+        if (this.size * 4 >= this.table.length * 3) {
+            this.rehash(this.table.length * 2);
+        }
+        this.elements[this.size] = element;
+        this.insert(this.size);
+        this.size++;
+        this.added(element);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        this.checkModifiable();
+        int id = this.idOf(o);
+        if (id < 0) {
+            return false;
+        }
+        this.delete(this.slotOfId(id));
+        int last = this.size - 1;
+        if (id != last) {
+            // move the last element to the free id
+            this.table[this.slotOfId(last)] = id + 1;
+            this.elements[id] = this.elements[last];
+        }
+        this.elements[last] = null;
+        this.size--;
+        this.changed();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        this.checkModifiable();
+        Arrays.fill(this.elements, 0, this.size, null);
+        Arrays.fill(this.table, 0);
+        this.size = 0;
+        this.changed();
+    }
+
+    private void changed() {
+        this.sorted = null;
+        this.added = EMPTY;
+        this.numAdded = 0;
+        this.modCount++;
+    }
+
+    /**
+     * keeps the sorted copy, if any, and the added element to merge into it later
+     */
+    private void added(T element) {
+        if (this.sorted == null || this.numAdded >= this.size / 2) {
+            // sorting all elements again is about as cheap as merging this many
+            this.changed();
+            return;
+        }
+        if (this.numAdded == this.added.length) {
+            this.added = Arrays.copyOf(this.added, Math.max(8, this.numAdded * 2));
+        }
+        this.added[this.numAdded++] = element;
+        this.modCount++;
+    }
+
+    private void insert(int id) {
+        int slot = this.slotOf(this.elements[id].hashCode());
+        while (this.table[slot] != 0) {
+            slot = (slot + 1) & (this.table.length - 1);
+        }
+        this.table[slot] = id + 1;
+    }
+
+    private int slotOfId(int id) {
+        int slot = this.slotOf(this.elements[id].hashCode());
+        while (this.table[slot] != id + 1) {
+            slot = (slot + 1) & (this.table.length - 1);
+        }
+        return slot;
+    }
+
+    /**
+     * empties a slot, shifting back any later entries of the same probe sequence
+     */
+    private void delete(int slot) {
+        int mask = this.table.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (this.table[next] == 0) {
+                break;
+            }
+            int home = this.slotOf(this.elements[this.table[next] - 1].hashCode());
+            // move the entry if its home slot is not cyclically within (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                this.table[slot] = this.table[next];
+                slot = next;
+            }
+        }
+        this.table[slot] = 0;
+    }
+
+    private void rehash(int tableSize) {
+        this.table = new int[tableSize];
+        for (int id = 0; id < this.size; id++) {
+            this.insert(id);
+        }
+    }
+
+    /**
+     * @return the elements in natural order
+     */
+    private Object[] sorted() {
+        Object[] sorted = this.sorted;
+        if (sorted == null) {
+            sorted = (this.size == 0 ? EMPTY : Arrays.copyOf(this.elements, this.size));
+            Arrays.sort(sorted);
+            this.sorted = sorted;
+        } else if (this.numAdded > 0) {
+            Object[] added = Arrays.copyOf(this.added, this.numAdded);
+            Arrays.sort(added);
+            sorted = merge(sorted, added);
+            this.sorted = sorted;
+            this.added = EMPTY;
+            this.numAdded = 0;
+        }
+        return sorted;
+    }
+
+    /**
+     * @return the elements of both sorted arrays in natural order
+     */
+    @SuppressWarnings("unchecked")
+    private static Object[] merge(Object[] left, Object[] right) {
+        Object[] merged = new Object[left.length + right.length];
+        int l = 0, r = 0;
+        for (int m = 0; m < merged.length; m++) {
+            if (r == right.length || (l < left.length && ((Comparable<Object>) left[l]).compareTo(right[r]) <= 0)) {
+                merged[m] = left[l++];
+            } else {
+                merged[m] = right[r++];
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Object[] sorted = this.sorted();
+        return new Iterator<T>() {
+            private int next;
+            private boolean removable;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < sorted.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (this.next >= sorted.length) {
+                    throw new NoSuchElementException();
+                }
+                this.removable = true;
+                return (T) sorted[this.next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!this.removable || modCount != this.expectedModCount) {
+                    throw new IllegalStateException();
+                }
+                DenseSet.this.remove(sorted[this.next - 1]);
+                this.removable = false;
+                this.expectedModCount = modCount;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        Object[] sorted = this.sorted();
+        return Spliterators.spliterator(sorted, 0, sorted.length,
+                Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+}
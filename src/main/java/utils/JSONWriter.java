@@ -0,0 +1,154 @@
+package utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer that appends directly to any Appendable,
+ * so large documents never need to be built up in memory first
+ * separators between members and elements are inserted automatically
+ */
+public class JSONWriter {
+    private final Appendable out;
+    private final Deque<Boolean> firstInScope = new ArrayDeque<>();
+    private boolean afterName = false;
+
+    public JSONWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public JSONWriter beginObject() {
+        this.separate();
+        this.append('{');
+        this.firstInScope.push(true);
+        return this;
+    }
+
+    public JSONWriter endObject() {
+        this.firstInScope.pop();
+        this.append('}');
+        return this;
+    }
+
+    public JSONWriter beginArray() {
+        this.separate();
+        this.append('[');
+        this.firstInScope.push(true);
+        return this;
+    }
+
+    public JSONWriter endArray() {
+        this.firstInScope.pop();
+        this.append(']');
+        return this;
+    }
+
+    public JSONWriter name(String name) {
+        this.separate();
+        this.string(name);
+        this.append(':');
+        this.afterName = true;
+        return this;
+    }
+
+    public JSONWriter value(String value) {
+        this.separate();
+        if (value == null) {
+            this.append("null");
+        } else {
+            this.string(value);
+        }
+        return this;
+    }
+
+    public JSONWriter value(long value) {
+        this.separate();
+        this.append(Long.toString(value));
+        return this;
+    }
+
+    public JSONWriter value(double value) {
+        this.separate();
+        this.append(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JSONWriter value(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return this.value(value.doubleValue());
+        }
+        return (value == null ? this.value((String) null) : this.value(value.longValue()));
+    }
+
+    public JSONWriter value(boolean value) {
+        this.separate();
+        this.append(Boolean.toString(value));
+        return this;
+    }
+
+    public JSONWriter member(String name, String value) {
+        return this.name(name).value(value);
+    }
+
+    public JSONWriter member(String name, long value) {
+        return this.name(name).value(value);
+    }
+
+    public JSONWriter member(String name, double value) {
+        return this.name(name).value(value);
+    }
+
+    private void separate() {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (!this.firstInScope.isEmpty()) {
+            if (this.firstInScope.peek()) {
+                this.firstInScope.pop();
+                this.firstInScope.push(false);
+            } else {
+                this.append(',');
+            }
+        }
+    }
+
+    private void string(String value) {
+        this.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': this.append("\\\""); break;
+                case '\\': this.append("\\\\"); break;
+                case '\n': this.append("\\n"); break;
+                case '\r': this.append("\\r"); break;
+                case '\t': this.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        this.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        this.append(c);
+                    }
+            }
+        }
+        this.append('"');
+    }
+
+    private void append(CharSequence text) {
+        try {
+            this.out.append(text);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void append(char c) {
+        try {
+            this.out.append(c);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package utils;
+
+import java.util.*;
+
+/**
+ * A map from objects to primitive int values
+ *
+ * Keys and values are kept in two parallel arrays, as an open-addressing hash table with linear probing,
+ * such that the map allocates no entry node and no boxed value per key.
+ * The arrays are only allocated with the first key.
+ * Boxed values and entries are only created on access through the Map interface;
+ * getInt, putInt, addInt and the slot accessors avoid them.
+ * Iterators of the map do not support removal.
+ *
+ * @param <K>
+ */
+public class ObjectIntMap<K> extends AbstractMap<K, Integer> {
+    private static final int MIN_CAPACITY = 4;
+
+    private Object[] keys;      // the key in every slot, null for an empty slot
+    private int[] values;       // the value in every slot
+    private int size;
+    private int modCount;
+
+    public ObjectIntMap() {
+    }
+
+    /**
+     * @param expectedSize the number of keys that can be added without resizing
+     */
+    public ObjectIntMap(int expectedSize) {
+        if (expectedSize > 0) {
+            int capacity = MIN_CAPACITY;
+            while (capacity * 3 < expectedSize * 4) {
+                capacity *= 2;
+            }
+            this.allocate(capacity);
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new int[capacity];
+    }
+
+    private int home(Object key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (this.keys.length - 1);
+    }
+
+    /**
+     * @return the slot of the key, or -1 if the key is not in the map
+     */
+    private int slotOf(Object key) {
+        if (this.keys == null || key == null) {
+            return -1;
+        }
+        for (int slot = this.home(key); this.keys[slot] != null; slot = (slot + 1) & (this.keys.length - 1)) {
+            if (this.keys[slot].equals(key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.slotOf(key) >= 0;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        int slot = this.slotOf(key);
+        return (slot >= 0 ? this.values[slot] : null);
+    }
+
+    /**
+     * @param key
+     * @param defaultValue
+     * @return the value of the key, or the defaultValue if the key is not in the map
+     */
+    public int getInt(Object key, int defaultValue) {
+        int slot = this.slotOf(key);
+        return (slot >= 0 ? this.values[slot] : defaultValue);
+    }
+
+    /**
+     * @param key
+     * @return the key in the map that equals the given key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey(Object key) {
+        int slot = this.slotOf(key);
+        return (slot >= 0 ? (K) this.keys[slot] : null);
+    }
+
+    @Override
+    public Integer put(K key, Integer value) {
+        int slot = this.slotOf(key);
+        Integer previous = (slot >= 0 ? this.values[slot] : null);
+        this.putInt(key, value);
+        return previous;
+    }
+
+    /**
+     * sets the value of the key
+     * @param key
+     * @param value
+     */
+    public void putInt(K key, int value) {
+        int slot = this.slotOf(Objects.requireNonNull(key));
+        if (slot < 0) {
+            slot = this.insert(key);
+        }
+        this.values[slot] = value;
+    }
+
+    /**
+     * adds delta to the value of the key, which is 0 if the key is not in the map
+     * @param key
+     * @param delta
+     * @return the new value of the key
+     */
+    public int addInt(K key, int delta) {
+        int slot = this.slotOf(Objects.requireNonNull(key));
+        if (slot < 0) {
+            slot = this.insert(key);
+        }
+        return (this.values[slot] += delta);
+    }
+
+    /**
+     * @return the slot of a new key, with value 0
+     */
+    private int insert(K key) {
+        if (this.keys == null) {
+            this.allocate(MIN_CAPACITY);
+        } else if ((this.size + 1) * 4 > this.keys.length * 3) {
+            this.rehash(this.keys.length * 2);
+        }
+        int slot = this.home(key);
+        while (this.keys[slot] != null) {
+            slot = (slot + 1) & (this.keys.length - 1);
+        }
+        this.keys[slot] = key;
+        this.values[slot] = 0;
+        this.size++;
+        this.modCount++;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] != null) {
+                int slot = this.home(oldKeys[old]);
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                this.keys[slot] = oldKeys[old];
+                this.values[slot] = oldValues[old];
+            }
+        }
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        int slot = this.slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        int value = this.values[slot];
+        this.delete(slot);
+        this.size--;
+        this.modCount++;
+        return value;
+    }
+
+    /**
+     * empties a slot, shifting back any later entries of the same probe sequence
+     */
+    private void delete(int slot) {
+        int mask = this.keys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (this.keys[next] == null) {
+                break;
+            }
+            int home = this.home(this.keys[next]);
+            // move the entry if its home slot is not cyclically within (slot, next]
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                this.keys[slot] = this.keys[next];
+                this.values[slot] = this.values[next];
+                slot = next;
+            }
+        }
+        this.keys[slot] = null;
+    }
+
+    @Override
+    public void clear() {
+        if (this.keys != null) {
+            Arrays.fill(this.keys, null);
+        }
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * @return the number of slots, for iteration by keyAt and valueAt without any allocation
+     */
+    public int capacity() {
+        return (this.keys != null ? this.keys.length : 0);
+    }
+
+    /**
+     * @param slot
+     * @return the key in the slot, or null if the slot is empty
+     */
+    @SuppressWarnings("unchecked")
+    public K keyAt(int slot) {
+        return (K) this.keys[slot];
+    }
+
+    /**
+     * @param slot
+     * @return the value in the slot, if the slot is not empty
+     */
+    public int valueAt(int slot) {
+        return this.values[slot];
+    }
+
+    @Override
+    public Set<Entry<K, Integer>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return ObjectIntMap.this.size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                int slot = slotOf(((Entry<?, ?>) o).getKey());
+                return (slot >= 0 && Objects.equals(values[slot], ((Entry<?, ?>) o).getValue()));
+            }
+
+            @Override
+            public Iterator<Entry<K, Integer>> iterator() {
+                return new Iterator<>() {
+                    private int slot = this.advance(0);
+                    private final int expectedModCount = modCount;
+
+                    private int advance(int slot) {
+                        while (slot < capacity() && keys[slot] == null) {
+                            slot++;
+                        }
+                        return slot;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.slot < capacity();
+                    }
+
+                    @Override
+                    public Entry<K, Integer> next() {
+                        if (modCount != this.expectedModCount) {
+                            throw new ConcurrentModificationException();
+                        }
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = this.slot;
+                        this.slot = this.advance(current + 1);
+                        return new SimpleEntry<>(keyAt(current), values[current]) {
+                            @Override
+                            public Integer setValue(Integer value) {
+                                values[current] = value;
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable array that is changed by creating a new version, which shares all unchanged parts with the old version
+ *
+ * The elements are kept in the leaves of a trie of nodes with 32 slots each, indexed by 5 bits of the index per level.
+ * A new version copies only the nodes on the paths to the changed elements, so changing k elements
+ * of an array of n elements copies O(k log32 n) slots, whatever the size of the array.
+ * All changes of a new version are made through an editor, which copies every node at most once.
+ *
+ * @param <T>
+ */
+public final class PersistentArray<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentArray<?> EMPTY = new PersistentArray<>(null, 0, 0);
+
+    /**
+     * a node of the trie, which can only be changed in place by the editor that has created it
+     */
+    private static final class Node {
+        final Object editor;
+        final Object[] slots;
+
+        Node(Object editor, Object[] slots) {
+            this.editor = editor;
+            this.slots = slots;
+        }
+    }
+
+    private final Node root;        // null if all elements are null
+    private final int shift;        // the number of index bits below the root
+    private final int size;
+
+    private PersistentArray(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentArray<T> empty() {
+        return (PersistentArray<T>) EMPTY;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index
+     * @return the element at the index, which may be null
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, this.size);
+        Node node = this.root;
+        for (int level = this.shift; node != null && level > 0; level -= BITS) {
+            node = (Node) node.slots[(index >>> level) & MASK];
+        }
+        return (node != null ? (T) node.slots[index & MASK] : null);
+    }
+
+    /**
+     * @return an editor that creates a new version from this version
+     */
+    public Editor<T> edit() {
+        return new Editor<>(this);
+    }
+
+    /**
+     * Changes a private copy of a version, which becomes a new version when the editor is done
+     *
+     * @param <T>
+     */
+    public static final class Editor<T> {
+        private Object token = new Object();    // identifies the nodes that have been copied by this editor
+        private Node root;
+        private int shift;
+        private int size;
+
+        private Editor(PersistentArray<T> version) {
+            this.root = version.root;
+            this.shift = version.shift;
+            this.size = version.size;
+        }
+
+        private void checkEditing() {
+            if (this.token == null) {
+                throw new IllegalStateException("Editor is done");
+            }
+        }
+
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * changes the size, with null elements at new indices
+         * @param size
+         * @return
+         */
+        public Editor<T> resize(int size) {
+            this.checkEditing();
+            if (size < 0) {
+                throw new IllegalArgumentException("Negative size " + size);
+            }
+            // release the elements beyond the new size
+            for (int index = size; index < this.size; index++) {
+                this.store(index, null);
+            }
+            while (size > capacity(this.shift)) {
+                if (this.root != null) {
+                    Object[] slots = new Object[WIDTH];
+                    slots[0] = this.root;
+                    this.root = new Node(this.token, slots);
+                }
+                this.shift += BITS;
+            }
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * @param index
+         * @param element
+         * @return
+         */
+        public Editor<T> set(int index, T element) {
+            this.checkEditing();
+            Objects.checkIndex(index, this.size);
+            this.store(index, element);
+            return this;
+        }
+
+        private void store(int index, Object element) {
+            if (this.root == null && element == null) {
+                return;
+            }
+            this.root = this.editable(this.root);
+            Node node = this.root;
+            for (int level = this.shift; level > 0; level -= BITS) {
+                int slot = (index >>> level) & MASK;
+                Node child = this.editable((Node) node.slots[slot]);
+                node.slots[slot] = child;
+                node = child;
+            }
+            node.slots[index & MASK] = element;
+        }
+
+        /**
+         * @return the node itself if it has been created by this editor, or else a copy of it
+         */
+        private Node editable(Node node) {
+            if (node == null) {
+                return new Node(this.token, new Object[WIDTH]);
+            }
+            if (node.editor == this.token) {
+                return node;
+            }
+            return new Node(this.token, Arrays.copyOf(node.slots, WIDTH));
+        }
+
+        /**
+         * completes the new version, after which the editor cannot be used anymore
+         * @return
+         */
+        public PersistentArray<T> done() {
+            this.checkEditing();
+            this.token = null;
+            return new PersistentArray<>(this.root, this.shift, this.size);
+        }
+    }
+
+    /**
+     * @return the number of elements that fit in a trie with the number of index bits below its root
+     */
+    private static long capacity(int shift) {
+        return 1L << (shift + BITS);
+    }
+}
@@ -0,0 +1,125 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Streaming sketch of the quantiles of a sequence of values in bounded memory
+ *
+ * Values are collected in a hierarchy of compactors of k values each.
+ * A full compactor is sorted, and every other value, starting at a random offset, moves up to the next level
+ * with twice the weight, so the total weight stays equal to the number of values.
+ * The sketch holds at most k values per level, for at most 2^MAX_LEVELS * k values in total,
+ * and the rank of any quantile is off by at most about log2(n/k) / k * n.
+ */
+public class QuantileSketch {
+    private static final int MAX_LEVELS = 40;
+
+    private final int k;
+    private final SplittableRandom random;
+    private final double[][] levels = new double[MAX_LEVELS][];     // the compactor of every level, allocated on use
+    private final int[] sizes = new int[MAX_LEVELS];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * @param k    the capacity of every compactor, an even number
+     * @param seed the seed of the random offsets of compaction
+     */
+    public QuantileSketch(int k, long seed) {
+        if (k < 2 || k % 2 != 0) {
+            throw new IllegalArgumentException("Capacity must be an even number of at least 2: " + k);
+        }
+        this.k = k;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public void add(double value) {
+        this.count++;
+        this.min = (this.count == 1 || value < this.min ? value : this.min);
+        this.max = (this.count == 1 || value > this.max ? value : this.max);
+        this.insert(0, value);
+    }
+
+    private void insert(int level, double value) {
+        if (this.levels[level] == null) {
+            this.levels[level] = new double[this.k];
+        }
+        this.levels[level][this.sizes[level]++] = value;
+        if (this.sizes[level] == this.k) {
+            if (level + 1 == MAX_LEVELS) {
+                throw new IllegalStateException("Quantile sketch is full");
+            }
+            double[] compactor = this.levels[level];
+            Arrays.sort(compactor);
+            this.sizes[level] = 0;
+            for (int i = this.random.nextInt(2); i < this.k; i += 2) {
+                this.insert(level + 1, compactor[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of values that have been added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return the estimated value with about the fraction of all values at or below it, NaN if there are no values
+     */
+    public double getQuantile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction out of range: " + fraction);
+        }
+        if (this.count == 0) {
+            return Double.NaN;
+        }
+        int numRetained = Arrays.stream(this.sizes).sum();
+        double[] values = new double[numRetained];
+        long[] weights = new long[numRetained];
+        Integer[] order = new Integer[numRetained];
+        int n = 0;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            for (int i = 0; i < this.sizes[level]; i++) {
+                values[n] = this.levels[level][i];
+                weights[n] = 1L << level;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long totalWeight = Arrays.stream(weights).sum();
+        double rank = fraction * totalWeight;
+        long cumulative = 0;
+        for (int i : order) {
+            cumulative += weights[i];
+            if (cumulative >= rank) {
+                return values[i];
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * @return the maximum expected error of the rank of a quantile, as a fraction of all values
+     */
+    public double getRankErrorBound() {
+        if (this.count < this.k) {
+            // no compactor has been full yet, so all values are held exactly
+            return 0;
+        }
+        return Math.max(1, Math.log((double) this.count / this.k) / Math.log(2)) / this.k;
+    }
+}
@@ -0,0 +1,98 @@
+package utils;
+
+/**
+ * Segment tree over a fixed number of positions, supporting
+ * adding a value to a range of positions and querying the maximum over a range,
+ * both in O(log n) time, using lazy propagation of range additions
+ */
+public class SegmentTree {
+    private final int size;
+    private final int[] max;        // maximum of each node, including the additions of the node itself
+    private final int[] pending;    // additions that apply to the whole range of each node
+
+    public SegmentTree(int size) {
+        this.size = size;
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        this.max = new int[2 * capacity];
+        this.pending = new int[2 * capacity];
+    }
+
+    /**
+     * creates an independent copy of another segment tree
+     * @param other
+     */
+    public SegmentTree(SegmentTree other) {
+        this.size = other.size;
+        this.max = other.max.clone();
+        this.pending = other.pending.clone();
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * adds value to all positions from..to, both inclusive
+     * @param from
+     * @param to
+     * @param value
+     */
+    public void add(int from, int to, int value) {
+        if (from > to) {
+            return;
+        }
+        this.add(1, 0, this.size - 1, from, to, value);
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return the maximum value of all positions from..to, both inclusive
+     */
+    public int max(int from, int to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Empty range " + from + ".." + to);
+        }
+        return this.max(1, 0, this.size - 1, from, to);
+    }
+
+    /**
+     * @return the maximum value of all positions
+     */
+    public int max() {
+        return this.max[1];
+    }
+
+    private void add(int node, int low, int high, int from, int to, int value) {
+        if (to < low || high < from) {
+            return;
+        }
+        if (from <= low && high <= to) {
+            this.max[node] += value;
+            this.pending[node] += value;
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        this.add(2 * node, low, middle, from, to, value);
+        this.add(2 * node + 1, middle + 1, high, from, to, value);
+        this.max[node] = Math.max(this.max[2 * node], this.max[2 * node + 1]) + this.pending[node];
+    }
+
+    private int max(int node, int low, int high, int from, int to) {
+        if (from <= low && high <= to) {
+            return this.max[node];
+        }
+        int middle = (low + high) >>> 1;
+        int result = Integer.MIN_VALUE;
+        if (from <= middle) {
+            result = this.max(2 * node, low, middle, from, to);
+        }
+        if (to > middle) {
+            result = Math.max(result, this.max(2 * node + 1, middle + 1, high, from, to));
+        }
+        return result + this.pending[node];
+    }
+}
@@ -0,0 +1,83 @@
+package utils;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Collects the k greatest elements of a stream in a single pass, using a bounded min-heap of size k
+ * Elements that are equal to the k-th greatest element are all included, so the result may hold more than k elements
+ * Partial results of parallel streams are merged, so the collector can be used on parallel chunks
+ * Runs in O(n log k) time and O(k + ties) space
+ *
+ * @param <T>
+ */
+public class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<T> heap;     // the k greatest elements so far, least at the head
+    private final List<T> ties = new ArrayList<>();
+                                             // elements outside the heap that equal the least element of the heap
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024), comparator);
+    }
+
+    /**
+     * @param k
+     * @param comparator defines the order of the elements, greatest last
+     * @return a collector of the k greatest elements including ties, greatest first
+     */
+    public static <T> Collector<T, ?, List<T>> greatest(int k, Comparator<? super T> comparator) {
+        Supplier<TopK<T>> supplier = () -> new TopK<>(k, comparator);
+        BiConsumer<TopK<T>, T> accumulator = TopK::add;
+        BinaryOperator<TopK<T>> combiner = TopK::merge;
+        Function<TopK<T>, List<T>> finisher = TopK::toList;
+        return Collector.of(supplier, accumulator, combiner, finisher);
+    }
+
+    public void add(T element) {
+        if (this.heap.size() < this.k) {
+            this.heap.add(element);
+            return;
+        }
+        int order = this.comparator.compare(element, this.heap.peek());
+        if (order == 0) {
+            this.ties.add(element);
+        } else if (order > 0) {
+            T evicted = this.heap.poll();
+            this.heap.add(element);
+            if (this.comparator.compare(evicted, this.heap.peek()) == 0) {
+                this.ties.add(evicted);
+            } else {
+                // all former ties are less than the new k-th greatest element
+                this.ties.clear();
+            }
+        }
+    }
+
+    public TopK<T> merge(TopK<T> other) {
+        other.heap.forEach(this::add);
+        other.ties.forEach(this::add);
+        return this;
+    }
+
+    /**
+     * @return the collected elements, greatest first
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(this.heap.size() + this.ties.size());
+        result.addAll(this.heap);
+        result.addAll(this.ties);
+        result.sort(this.comparator.reversed());
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package utils;
+
+/**
+ * Disjoint sets over the elements 0 .. size-1, with union by size and path halving,
+ * such that any sequence of n operations takes near-linear time
+ */
+public class UnionFind {
+    private final int[] parent;     // the parent of every element, an element is its own parent at the root
+    private final int[] size;       // the number of elements in the set of every root
+    private int count;              // the number of disjoint sets
+
+    public UnionFind(int size) {
+        this.parent = new int[size];
+        this.size = new int[size];
+        for (int element = 0; element < size; element++) {
+            this.parent[element] = element;
+            this.size[element] = 1;
+        }
+        this.count = size;
+    }
+
+    /**
+     * @param element
+     * @return the root of the set of the element
+     */
+    public int find(int element) {
+        while (this.parent[element] != element) {
+            this.parent[element] = this.parent[this.parent[element]];
+            element = this.parent[element];
+        }
+        return element;
+    }
+
+    /**
+     * merges the sets of two elements
+     * @param a
+     * @param b
+     * @return whether the elements were in different sets
+     */
+    public boolean union(int a, int b) {
+        int rootA = this.find(a);
+        int rootB = this.find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (this.size[rootA] < this.size[rootB]) {
+            int root = rootA;
+            rootA = rootB;
+            rootB = root;
+        }
+        this.parent[rootB] = rootA;
+        this.size[rootA] += this.size[rootB];
+        this.count--;
+        return true;
+    }
+
+    public boolean connected(int a, int b) {
+        return this.find(a) == this.find(b);
+    }
+
+    /**
+     * @param element
+     * @return the number of elements in the set of the element
+     */
+    public int sizeOf(int element) {
+        return this.size[this.find(element)];
+    }
+
+    /**
+     * @return the number of disjoint sets
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return this.parent.length;
+    }
+}
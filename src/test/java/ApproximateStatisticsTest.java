@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import utils.CountMinSketch;
+import utils.QuantileSketch;
+
+import java.time.Month;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class ApproximateStatisticsTest {
+
+    private static final String PLAN = "HvA2019_e50_p100.xml";
+
+    @Test
+    void T01_checkQuantileSketch() {
+        QuantileSketch sketch = new QuantileSketch(64, 1);
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(15, 1));
+
+        // exact until the first compactor is full
+        QuantileSketch small = new QuantileSketch(16, 1);
+        for (int i = 1; i < 16; i++) {
+            small.add(i);
+        }
+        assertEquals(0, small.getRankErrorBound());
+        small.add(16);
+        assertTrue(small.getRankErrorBound() > 0);
+
+        int n = 100_000;
+        List<Integer> values = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(42));
+        values.forEach(sketch::add);
+        assertEquals(n, sketch.getCount());
+        assertEquals(1, sketch.getMin());
+        assertEquals(n, sketch.getMax());
+        assertTrue(sketch.getRankErrorBound() > 0);
+        for (double fraction : new double[] { 0.1, 0.25, 0.5, 0.75, 0.9 }) {
+            double rankError = Math.abs(sketch.getQuantile(fraction) / n - fraction);
+            assertTrue(rankError <= sketch.getRankErrorBound(), fraction + " off by " + rankError);
+        }
+    }
+
+    @Test
+    void T02_checkCountMinSketch() {
+        CountMinSketch sketch = new CountMinSketch(256, 4, 7);
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(100, 4, 7));
+        Map<Long, Long> counts = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextInt(1000);
+            sketch.add(key, 1 + key % 3);
+            counts.merge(key, 1 + key % 3, Long::sum);
+        }
+        assertEquals(counts.values().stream().mapToLong(Long::longValue).sum(), sketch.getTotalCount());
+        counts.forEach((key, count) -> {
+            assertTrue(sketch.estimate(key) >= count);
+            assertTrue(sketch.estimate(key) <= count + sketch.getErrorBound());
+        });
+    }
+
+    @Test
+    void T03_checkExactSmallPlan() {
+        PPS pps = PPS.importFromXML(PLAN);
+        ApproximateStatistics statistics = ApproximateStatistics.of(pps);
+        assertEquals(pps.getEmployees().size(), statistics.getNumEmployees());
+        assertEquals(pps.getProjects().size(), statistics.getNumProjects());
+        assertEquals(pps.calculateAverageHourlyWage(), statistics.getAverageHourlyWage(), 0.001);
+        assertEquals(pps.calculateTotalManpowerBudget(), statistics.getTotalManpowerBudget());
+
+        // all values fit in the sketches and the sample
+        assertEquals(0, statistics.getQuantileRankErrorBound());
+        int[] wages = pps.getEmployees().stream().mapToInt(Employee::getHourlyWage).sorted().toArray();
+        assertEquals(wages[0], statistics.getWageQuantile(0));
+        assertEquals(wages[wages.length - 1], statistics.getWageQuantile(1));
+        assertEquals(wages[wages.length / 2 - 1], statistics.getWageQuantile(0.5));
+        for (Employee employee : pps.getEmployees()) {
+            assertEquals(employee.getAssignedProjectsLength(),
+                    statistics.estimateAssignedProjects(employee.getNumber()).getValue());
+        }
+
+        Map<Month, ApproximateStatistics.Estimate> spends = statistics.estimateCumulativeMonthlySpends();
+        Map<Month, Integer> exact = pps.calculateCumulativeMonthlySpends();
+        exact.values().removeIf(spend -> spend == 0);
+        assertEquals(exact.keySet(), spends.keySet());
+        exact.forEach((month, spend) -> {
+            assertEquals(spend, spends.get(month).getValue(), 0.5);
+            assertEquals(0, spends.get(month).getErrorBound(), 0.001);
+        });
+    }
+
+    @Test
+    void T04_checkSampledMonthlySpends() {
+        PPS pps = PPS.importFromXML(PLAN);
+        ApproximateStatistics statistics = new ApproximateStatistics(8, 40, 11).addPlan(pps);
+        assertEquals(pps.calculateTotalManpowerBudget(), statistics.getTotalManpowerBudget());
+        assertTrue(statistics.getQuantileRankErrorBound() > 0);
+
+        Map<Month, ApproximateStatistics.Estimate> spends = statistics.estimateCumulativeMonthlySpends();
+        Map<Month, Integer> exact = pps.calculateCumulativeMonthlySpends();
+        assertFalse(spends.isEmpty());
+        double sampledTotal = 0;
+        for (Map.Entry<Month, ApproximateStatistics.Estimate> entry : spends.entrySet()) {
+            ApproximateStatistics.Estimate estimate = entry.getValue();
+            assertTrue(estimate.getErrorBound() > 0);
+            // allow for the 5% of months that may fall outside of their confidence interval
+            assertEquals(exact.get(entry.getKey()), estimate.getValue(), 2 * estimate.getErrorBound(),
+                    entry.getKey() + ": " + estimate);
+            sampledTotal += estimate.getValue();
+        }
+        assertEquals(pps.calculateTotalManpowerBudget(), sampledTotal, 0.3 * pps.calculateTotalManpowerBudget());
+    }
+
+    @Test
+    void T05_checkOffHeapPlan() {
+        PPS pps = PPS.importFromXML(PLAN);
+        ApproximateStatistics expected = ApproximateStatistics.of(pps);
+        try (OffHeapPlan plan = OffHeapPlan.importFromXML(PLAN, OffHeapPlan.Storage.DIRECT)) {
+            ApproximateStatistics statistics = ApproximateStatistics.of(plan);
+            assertEquals(expected.getNumEmployees(), statistics.getNumEmployees());
+            assertEquals(expected.getTotalManpowerBudget(), statistics.getTotalManpowerBudget());
+            assertEquals(expected.getWageQuantile(0.5), statistics.getWageQuantile(0.5));
+            assertEquals(expected.getBudgetQuantile(0.9), statistics.getBudgetQuantile(0.9));
+            assertEquals(expected.estimateCumulativeMonthlySpends().keySet(),
+                    statistics.estimateCumulativeMonthlySpends().keySet());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import utils.Calendar;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class AvailabilityIndexTest {
+
+    /**
+     * calculates the maximum committed hours per day of the employee between from and to, day by day
+     */
+    private static int bruteForceLoad(PPS pps, Employee employee, LocalDate from, LocalDate to) {
+        int maxLoad = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (!Calendar.isWorkingDay(day)) {
+                continue;
+            }
+            int load = 0;
+            for (Project project : pps.getProjects()) {
+                if (!day.isBefore(project.getStartDate()) && !day.isAfter(project.getEndDate())) {
+                    load += project.getCommittedHoursPerDay().getOrDefault(employee, 0);
+                }
+            }
+            maxLoad = Math.max(maxLoad, load);
+        }
+        return maxLoad;
+    }
+
+    @Test
+    void T01_checkFreeHoursAgainstCommitments() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        try (AvailabilityIndex index = new AvailabilityIndex(pps)) {
+            LocalDate[][] periods = {
+                    { LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31) },
+                    { LocalDate.of(2019, 3, 2), LocalDate.of(2019, 3, 17) },
+                    { LocalDate.of(2019, 6, 14), LocalDate.of(2019, 6, 14) } };
+            for (LocalDate[] period : periods) {
+                for (Employee employee : pps.getEmployees()) {
+                    assertEquals(Calendar.WORKING_HOURS_PER_DAY - bruteForceLoad(pps, employee, period[0], period[1]),
+                            index.getFreeHours(employee.getNumber(), period[0], period[1]),
+                            employee + " " + period[0]);
+                }
+                List<Employee> available = pps.getEmployees().stream()
+                        .filter(employee -> bruteForceLoad(pps, employee, period[0], period[1]) <= 4)
+                        .collect(Collectors.toList());
+                assertEquals(available, index.findAvailableEmployees(4, period[0], period[1]));
+            }
+        }
+    }
+
+    @Test
+    void T11_checkFollowsCommitments() {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        try (AvailabilityIndex index = new AvailabilityIndex(pps)) {
+            Map<Integer, Integer> before = pps.getEmployees().stream().collect(Collectors.toMap(
+                    Employee::getNumber, e -> index.getFreeHours(e.getNumber(), LocalDate.of(2012, 3, 1), LocalDate.of(2012, 3, 1))));
+            pps.applyUpdate(builder -> builder
+                    .addProject(new Project("P1001", "TestProject-1",
+                            LocalDate.of(2012, 3, 1), LocalDate.of(2012, 3, 9)), new Employee(60006, 20))
+                    .addCommitment("P1001", 60006, 6)
+                    .addCommitment("P1001", 100292, 3));
+            assertEquals(2, index.getFreeHours(60006, LocalDate.of(2012, 3, 1), LocalDate.of(2012, 3, 31)));
+            assertEquals(8, index.getFreeHours(60006, LocalDate.of(2012, 3, 10), LocalDate.of(2012, 3, 31)));
+            assertEquals(before.get(100292) - 3,
+                    index.getFreeHours(100292, LocalDate.of(2012, 3, 1), LocalDate.of(2012, 3, 1)));
+            assertTrue(index.findAvailableEmployees(2, LocalDate.of(2012, 3, 5), LocalDate.of(2012, 3, 5))
+                    .stream().anyMatch(employee -> employee.getNumber() == 60006));
+        }
+    }
+
+    @Test
+    void T12_checkFollowsDirectChanges() {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        try (AvailabilityIndex index = new AvailabilityIndex(pps)) {
+            pps.findProject("P100752").reschedule(LocalDate.of(2012, 4, 2), LocalDate.of(2012, 7, 31));
+            pps.findProject("P100670").addCommitment(pps.findEmployee(100298), 2);
+            Project project = new Project("P1001", "TestProject-1", LocalDate.of(2012, 3, 1), LocalDate.of(2012, 3, 9));
+            project.putCommitment(pps.findEmployee(100292), 3);
+            pps.applyUpdate(builder -> builder.addProject(project, pps.findEmployee(100292)));
+
+            for (Employee employee : pps.getEmployees()) {
+                for (int month = 1; month <= 12; month++) {
+                    LocalDate from = LocalDate.of(2012, month, 1);
+                    LocalDate to = from.plusMonths(1).minusDays(1);
+                    assertEquals(Calendar.WORKING_HOURS_PER_DAY - bruteForceLoad(pps, employee, from, to),
+                            index.getFreeHours(employee.getNumber(), from, to), employee + " " + from);
+                }
+            }
+
+            pps.getEmployees().remove(pps.findEmployee(100298));
+            assertTrue(index.findAvailableEmployees(0, LocalDate.of(2012, 1, 1), LocalDate.of(2012, 12, 31))
+                    .stream().noneMatch(employee -> employee.getNumber() == 100298));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Month;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class BudgetSimulationTest {
+
+    private static final String PLAN = "HvA2019_e50_p100.xml";
+
+    @Test
+    void T01_checkUnperturbedRunsReproducePlan() {
+        PPS pps = PPS.importFromXML(PLAN);
+        BudgetSimulation.Result result = new BudgetSimulation(pps).run(10, 1);
+
+        assertEquals(pps.calculateTotalManpowerBudget(), result.getTotalBudgetPercentile(0));
+        assertEquals(pps.calculateTotalManpowerBudget(), result.getTotalBudgetPercentile(100));
+        Map<Month, Double> expected = new TreeMap<>();
+        pps.calculateCumulativeMonthlySpends().forEach((month, spend) -> {
+            if (spend != 0) {
+                expected.put(month, (double) spend);
+            }
+        });
+        assertEquals(expected, result.getMonthlyBudgetPercentiles(50));
+    }
+
+    @Test
+    void T02_checkFixedDelay() {
+        PPS pps = PPS.importFromXML(PLAN);
+        long extraBudget = pps.getProjects().stream().mapToLong(p -> 5L * p.getDailyCostRate()).sum();
+        BudgetSimulation.Result result = new BudgetSimulation(pps)
+                .setEndDateDelay(BudgetSimulation.Perturbation.fixed(5))
+                .run(3, 1);
+        assertEquals(pps.calculateTotalManpowerBudget() + extraBudget, result.getTotalBudgetPercentile(50));
+    }
+
+    @Test
+    void T03_checkTriangularBounds() {
+        SplittableRandom random = new SplittableRandom(1);
+        assertEquals(3.0, BudgetSimulation.Perturbation.triangular(3, 3, 3).sample(random));
+        BudgetSimulation.Perturbation skewed = BudgetSimulation.Perturbation.triangular(0, 0, 10);
+        for (int i = 0; i < 1000; i++) {
+            double sample = skewed.sample(random);
+            assertTrue(sample >= 0 && sample <= 10, Double.toString(sample));
+        }
+        assertThrows(IllegalArgumentException.class, () -> BudgetSimulation.Perturbation.triangular(0, 11, 10));
+        assertThrows(IllegalArgumentException.class, () -> BudgetSimulation.Perturbation.triangular(10, 5, 0));
+        assertThrows(IllegalArgumentException.class, () -> BudgetSimulation.Perturbation.triangular(0, Double.NaN, 10));
+    }
+
+    @Test
+    void T11_checkPercentilesOfRandomRuns() {
+        PPS pps = PPS.importFromXML(PLAN);
+        BudgetSimulation simulation = new BudgetSimulation(pps)
+                .setEndDateDelay(BudgetSimulation.Perturbation.triangular(-5, 0, 20))
+                .setHoursFactor(BudgetSimulation.Perturbation.normal(1.0, 0.1));
+        BudgetSimulation.Result result = simulation.run(2000, 42);
+
+        assertEquals(2000, result.getRuns());
+        assertTrue(result.getTotalBudgetPercentile(10) < result.getTotalBudgetPercentile(50));
+        assertTrue(result.getTotalBudgetPercentile(50) < result.getTotalBudgetPercentile(90));
+        // the expected delay is 5 working days, which makes the plan more expensive on average
+        assertTrue(result.getMeanTotalBudget() > pps.calculateTotalManpowerBudget(), result.toString());
+        result.getMonthlyBudgetPercentiles(90).forEach((month, budget) ->
+                assertTrue(budget >= result.getMonthlyBudgetPercentiles(50).get(month), month.toString()));
+
+        // the same seed reproduces the same runs
+        BudgetSimulation.Result again = simulation.run(2000, 42);
+        assertEquals(result.getTotalBudgetPercentile(90), again.getTotalBudgetPercentile(90));
+        assertEquals(result.getMonthlyBudgetPercentiles(50), again.getMonthlyBudgetPercentiles(50));
+    }
+}
@@ -0,0 +1,144 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class CommitmentIngestorTest {
+    private static final int N_THREADS = 8;
+    private static final int N_ADDS = 20000;
+
+    private PPS pps;
+    private Project project1, project2;
+    private Employee employee1, employee2;
+
+    @BeforeEach
+    void setup() {
+        this.project1 = new Project("P1001", "TestProject-1",
+                LocalDate.of(2019,2,1), LocalDate.of(2019,4,30));
+        this.project2 = new Project("P2002", "TestProject-2",
+                LocalDate.of(2019,4,1), LocalDate.of(2019,5,31));
+        this.employee1 = new Employee(60006, 20);
+        this.employee2 = new Employee(77007, 25);
+        this.pps = new PPS.Builder()
+                .addProject(this.project1, this.employee1)
+                .addProject(this.project2, this.employee2)
+                .build();
+    }
+
+    @Test
+    void T01_checkIngestAndApply() {
+        CommitmentIngestor ingestor = new CommitmentIngestor();
+        assertEquals(3, ingestor.addCommitment("P1001", 60006, 3));
+        assertEquals(5, ingestor.addCommitment("P1001", 60006, 2));
+        ingestor.addCommitment("P9999", 60006, 2);
+
+        PPS snapshot = ingestor.applyTo(this.pps);
+        assertEquals(5*20*this.project1.getNumWorkingDays(), snapshot.calculateTotalManpowerBudget());
+
+        // a second application does not add the same hours again
+        snapshot = ingestor.applyTo(this.pps);
+        assertEquals(5*20*this.project1.getNumWorkingDays(), snapshot.calculateTotalManpowerBudget());
+        assertTrue(this.employee1.getAssignedProjects().contains(this.project1));
+    }
+
+    @Test
+    void T02_checkPendingLimits() {
+        CommitmentIngestor ingestor = new CommitmentIngestor(2, 3);
+        ingestor.addCommitment("P1001", 99999, 1);
+        ingestor.applyTo(this.pps);
+        ingestor.addCommitment("P9001", 60006, 1);
+        ingestor.addCommitment("P9002", 60006, 1);
+        ingestor.addCommitment("P1001", 60006, 4);
+        ingestor.applyTo(this.pps);
+        assertEquals(2, ingestor.getNumPending());
+        assertEquals(1, ingestor.getNumDropped(), "the oldest pending commitment beyond the maximum");
+        assertEquals(0, ingestor.getCommittedHours("P1001", 99999));
+        assertEquals(0, ingestor.getCommittedHours("P1001", 60006), "released once applied");
+        assertEquals(4, this.project1.getCommittedHoursPerDay().get(this.employee1));
+        assertEquals(1, ingestor.getCommittedHours("P9001", 60006), "pending");
+
+        // a commitment that becomes known in time is applied
+        this.pps.applyUpdate(builder -> builder.addProject(new Project("P9001"), this.employee2));
+        ingestor.applyTo(this.pps);
+        assertEquals(1, this.pps.findProject("P9001").getCommittedHoursPerDay().size());
+        assertEquals(1, ingestor.getNumPending());
+        ingestor.applyTo(this.pps);
+        assertEquals(0, ingestor.getNumPending(), "expired after 3 applications");
+        assertEquals(2, ingestor.getNumDropped());
+        assertThrows(IllegalArgumentException.class, () -> new CommitmentIngestor(10, 0));
+    }
+
+    @Test
+    void T11_stressConcurrentIngestion() throws Exception {
+        CommitmentIngestor ingestor = new CommitmentIngestor();
+        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> producers = new ArrayList<>();
+        for (int t = 0; t < N_THREADS; t++) {
+            int thread = t;
+            producers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < N_ADDS; i++) {
+                    ingestor.addCommitment((i + thread) % 2 == 0 ? "P1001" : "P2002",
+                            (i % 3 == 0 ? 77007 : 60006), 1);
+                }
+                return null;
+            }));
+        }
+        // keep applying batches while the producers are running
+        Future<?> applier = executor.submit(() -> {
+            start.await();
+            while (!producers.stream().allMatch(Future::isDone)) {
+                ingestor.applyTo(this.pps);
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> producer : producers) {
+            producer.get(30, TimeUnit.SECONDS);
+        }
+        applier.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        PPS snapshot = ingestor.applyTo(this.pps);
+
+        int totalHours = 0;
+        for (Project project : snapshot.getProjects()) {
+            for (int hours : project.getCommittedHoursPerDay().values()) {
+                totalHours += hours;
+            }
+        }
+        assertEquals(N_THREADS * N_ADDS, totalHours, "no hours lost or duplicated");
+        Map<String, Integer> expected = new HashMap<>();
+        for (int thread = 0; thread < N_THREADS; thread++) {
+            for (int i = 0; i < N_ADDS; i++) {
+                expected.merge(((i + thread) % 2 == 0 ? "P1001" : "P2002") + "/" + (i % 3 == 0 ? 77007 : 60006),
+                        1, Integer::sum);
+            }
+        }
+        for (String code : List.of("P1001", "P2002")) {
+            for (int number : List.of(60006, 77007)) {
+                Project project = snapshot.getProjects().stream()
+                        .filter(p -> p.getCode().equals(code)).findFirst().get();
+                int committed = project.getCommittedHoursPerDay().entrySet().stream()
+                        .filter(e -> e.getKey().getNumber() == number)
+                        .mapToInt(e -> e.getValue()).sum();
+                assertEquals(expected.get(code + "/" + number), committed, code + "/" + number);
+                assertEquals(0, ingestor.getCommittedHours(code, number), code + "/" + number);
+            }
+        }
+    }
+}
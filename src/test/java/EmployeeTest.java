@@ -50,4 +50,40 @@ class EmployeeTest {
         assertEquals(0,
                 this.employee2.calculateManagedBudget(),"managed budget");
     }
-}
\ No newline at end of file
+
+    @Test
+    void T21_checkBudgetInvalidation() {
+        int budget = this.employee1.calculateManagedBudget();
+        this.employee3.setHourlyWage(50);
+        assertEquals(budget + 8*10*this.project2.getNumWorkingDays(),
+                this.employee1.calculateManagedBudget(),"managed budget after wage change");
+
+        this.employee1.getManagedProjects().add(this.project3);
+        this.project3.addCommitment(this.employee2, 2);
+        assertEquals(budget + 8*10*this.project2.getNumWorkingDays() + 2*30*this.project3.getNumWorkingDays(),
+                this.employee1.calculateManagedBudget(),"managed budget after commitment");
+    }
+
+    @Test
+    void T22_checkBulkLoadedEmployees() {
+        Employee employee = new Employee(123456, "Bulk Loaded", 25);
+        assertEquals("Bulk Loaded(123456)", employee.toString());
+        assertEquals(25, employee.getHourlyWage());
+        assertEquals(0, employee.getAssignedProjectsLength());
+        assertEquals(0, employee.calculateManagedBudget());
+        this.project1.addCommitment(employee, 2);
+        assertEquals(Set.of(this.project1), employee.getAssignedProjects());
+
+        // all placeholders of the commitments are replaced by the imported employees
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        for (Project project : pps.getProjects()) {
+            for (Employee committed : project.getCommittedHoursPerDay().keySet()) {
+                assertSame(pps.findEmployee(committed.getNumber()), committed, committed + " in " + project);
+            }
+        }
+        for (Employee imported : pps.getEmployees()) {
+            assertTrue(imported.getAssignedProjects().stream().allMatch(pps.getProjects()::contains));
+            assertTrue(imported.getAssignedProjectsLength() > 0, imported.toString());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import utils.Calendar;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class OffHeapPlanTest {
+
+    private static final String[] PLANS = {
+            "HvA2011_e1_p1.xml", "HvA2012_e2_p2.xml", "HvA2015_e5_p5.xml",
+            "HvA2018_e10_p25.xml", "HvA2019_e50_p100.xml" };
+
+    private static void assertSameStatistics(PPS pps, OffHeapPlan plan) {
+        assertEquals(pps.getEmployees().size(), plan.getNumEmployees());
+        assertEquals(pps.getProjects().size(), plan.getNumProjects());
+        assertEquals(pps.getPlanningYear(), plan.getPlanningYear());
+        assertEquals(pps.calculateAverageHourlyWage(), plan.calculateAverageHourlyWage(), 1e-9);
+        assertEquals(pps.calculateLongestProject().getNumWorkingDays(), plan.calculateLongestProject().getNumWorkingDays());
+        assertEquals(pps.calculateTotalManpowerBudget(), plan.calculateTotalManpowerBudget());
+
+        Set<Integer> mostInvolved = pps.calculateMostInvolvedEmployees().stream()
+                .map(Employee::getNumber).collect(Collectors.toSet());
+        assertEquals(mostInvolved, plan.calculateMostInvolvedEmployees());
+
+        Map<Integer, Long> juniors = new TreeMap<>();
+        pps.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE).forEach((employee, budget) ->
+                juniors.put(employee.getNumber(), (long) budget));
+        assertEquals(juniors, plan.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE));
+
+        Map<Object, Long> spends = new TreeMap<>();
+        pps.calculateCumulativeMonthlySpends().forEach((month, spend) -> spends.put(month, (long) spend));
+        assertEquals(spends, plan.calculateCumulativeMonthlySpends());
+    }
+
+    @Test
+    void T01_checkDirectStorage() {
+        for (String resource : PLANS) {
+            try (OffHeapPlan plan = OffHeapPlan.importFromXML(resource, OffHeapPlan.Storage.DIRECT)) {
+                assertNotNull(plan, resource);
+                assertSameStatistics(PPS.importFromXML(resource), plan);
+            }
+        }
+    }
+
+    @Test
+    void T02_checkMappedStorage() {
+        for (String resource : PLANS) {
+            try (OffHeapPlan plan = OffHeapPlan.importFromXML(resource, OffHeapPlan.Storage.MAPPED)) {
+                assertNotNull(plan, resource);
+                assertSameStatistics(PPS.importFromXML(resource), plan);
+            }
+        }
+    }
+
+    @Test
+    void T03_checkViews() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        try (OffHeapPlan plan = OffHeapPlan.importFromXML("HvA2019_e50_p100.xml", OffHeapPlan.Storage.DIRECT)) {
+            for (Project project : pps.getProjects()) {
+                OffHeapPlan.ProjectView view = plan.findProject(project.getCode());
+                assertEquals(project.getTitle(), view.getTitle());
+                assertEquals(project.getStartDate(), view.getStartDate());
+                assertEquals(project.getEndDate(), view.getEndDate());
+                assertEquals(project.calculateManpowerBudget(), view.calculateManpowerBudget());
+                project.getCommittedHoursPerDay().forEach((employee, hours) ->
+                        assertEquals((int) hours, view.getCommittedHoursPerDay(employee.getNumber())));
+            }
+            for (Employee employee : pps.getEmployees()) {
+                OffHeapPlan.EmployeeView view = plan.findEmployee(employee.getNumber());
+                assertEquals(employee.getName(), view.getName());
+                assertEquals(employee.getHourlyWage(), view.getHourlyWage());
+                assertEquals(employee.calculateManagedBudget(), view.calculateManagedBudget());
+            }
+            long[] total = new long[1];
+            plan.forEachProject(view -> total[0] += view.calculateManpowerBudget());
+            assertEquals(pps.calculateTotalManpowerBudget(), total[0]);
+            assertNull(plan.findProject("unknown"));
+            assertNull(plan.findEmployee(-1));
+            assertTrue(plan.getOffHeapBytes() > 0);
+        }
+    }
+
+    @Test
+    void T04_checkUndatedProjectsAndRepeatedReferences() {
+        String xml = "<projectPlanning year=\"2019\"><projects>" +
+                "<project code=\"P1\"><title>Dated</title><startDate>2019-03-01</startDate><endDate>2019-04-30</endDate>" +
+                "<commitments><hoursPerDay employee=\"201\">4</hoursPerDay></commitments></project>" +
+                "<project code=\"P2\"><title>Undated</title>" +
+                "<commitments><hoursPerDay employee=\"202\">2</hoursPerDay></commitments></project>" +
+                "</projects><employees>" +
+                "<employee number=\"201\"><name>Twice</name><hourlyWage>20</hourlyWage>" +
+                "<managedProjects><project code=\"P1\"/><project code=\"P1\"/></managedProjects>" +
+                "<allocatedProjects><project code=\"P1\"/><project code=\"P1\"/></allocatedProjects></employee>" +
+                "<employee number=\"202\"><name>Once</name><hourlyWage>30</hourlyWage>" +
+                "<managedProjects><project code=\"P2\"/></managedProjects>" +
+                "<allocatedProjects><project code=\"P1\"/><project code=\"P2\"/></allocatedProjects></employee>" +
+                "</employees></projectPlanning>";
+        PPS pps = PPS.importFromXML("references", new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        try (OffHeapPlan plan = OffHeapPlan.importFromXML("references",
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                OffHeapPlan.Storage.DIRECT, Path.of(System.getProperty("java.io.tmpdir")))) {
+            assertNotNull(plan);
+            assertSameStatistics(pps, plan);
+            assertEquals(Set.of(202), plan.calculateMostInvolvedEmployees());
+            assertEquals(1, plan.findEmployee(201).getManagedProjectsLength());
+            assertEquals(1, plan.findEmployee(201).getAssignedProjectsLength());
+            assertEquals(pps.findProject("P1").calculateManpowerBudget(), plan.findEmployee(201).calculateManagedBudget());
+            OffHeapPlan.ProjectView undated = plan.findProject("P2");
+            assertEquals("Undated", undated.getTitle());
+            assertNull(undated.getStartDate());
+            assertNull(undated.getEndDate());
+            assertEquals(0, undated.calculateManpowerBudget());
+        }
+    }
+
+    @Test
+    void T11_checkLargeGeneratedPlan() throws Exception {
+        int numProjects = 3000, numEmployees = 5000;
+        Random random = new Random(11);
+        int[] wages = new int[numEmployees];
+        for (int e = 0; e < numEmployees; e++) {
+            wages[e] = 16 + random.nextInt(60);
+        }
+        StringBuilder xml = new StringBuilder("<projectPlanning year=\"2019\"><projects>");
+        long expectedBudget = 0;
+        for (int p = 0; p < numProjects; p++) {
+            LocalDate start = LocalDate.of(2019, 1, 7).plusDays(random.nextInt(300));
+            LocalDate end = start.plusDays(random.nextInt(60));
+            xml.append(String.format("<project code=\"P%d\"><title>Project %d</title><startDate>%s</startDate>" +
+                    "<endDate>%s</endDate><commitments>", 100000 + p, p, start, end));
+            long rate = 0;
+            for (int c = 0; c < 5; c++) {
+                int e = random.nextInt(numEmployees);
+                xml.append(String.format("<hoursPerDay employee=\"%d\">%d</hoursPerDay>", 200000 + e, 1 + c));
+                rate += (long) (1 + c) * wages[e];
+            }
+            xml.append("</commitments></project>");
+            expectedBudget += rate * Calendar.getNumWorkingDays(Calendar.firstWorkingDayFrom(start),
+                    Calendar.lastWorkingDayUntil(end));
+        }
+        xml.append("</projects><employees>");
+        for (int e = 0; e < numEmployees; e++) {
+            xml.append(String.format("<employee number=\"%d\"><name>Employee %d</name><hourlyWage>%d</hourlyWage>" +
+                    "<managedProjects><project code=\"P%d\"></project></managedProjects></employee>",
+                    200000 + e, e, wages[e], 100000 + e % numProjects));
+        }
+        xml.append("</employees></projectPlanning>");
+
+        try (OffHeapPlan plan = OffHeapPlan.importFromXML("generated",
+                new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)),
+                OffHeapPlan.Storage.MAPPED, Path.of(System.getProperty("java.io.tmpdir")))) {
+            assertEquals(numProjects, plan.getNumProjects());
+            assertEquals(numEmployees, plan.getNumEmployees());
+            assertEquals(5L * numProjects, plan.getNumCommitments());
+            assertEquals(expectedBudget, plan.calculateTotalManpowerBudget());
+            for (int e = 0; e < numEmployees; e += 97) {
+                assertEquals("Employee " + e, plan.findEmployee(200000 + e).getName());
+                assertEquals(plan.findProject("P" + (100000 + e % numProjects)).calculateManpowerBudget(),
+                        plan.findEmployee(200000 + e).calculateManagedBudget());
+            }
+        }
+    }
+}
@@ -4,8 +4,15 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import utils.DenseSet;
+import utils.PersistentArray;
+
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -146,4 +153,317 @@ class PPSTest {
         antwoordenMap.put(Month.MAY, 3120);
         assertEquals(antwoordenMap,  pps.calculateCumulativeMonthlySpends());
     }
+
+    @Test
+    void T41_checkSnapshotIsolation() {
+        PPS snapshot = this.pps.getSnapshot();
+        int budget = snapshot.calculateTotalManpowerBudget();
+        assertEquals(this.pps.calculateTotalManpowerBudget(), budget);
+
+        PPS updated = this.pps.applyUpdate(builder -> builder.addCommitment("P3003", 77007, 2));
+        assertEquals(budget, snapshot.calculateTotalManpowerBudget(), "published snapshot is unaffected");
+        assertEquals(budget + 2*25*this.project3.getNumWorkingDays(), updated.calculateTotalManpowerBudget());
+        assertSame(updated, this.pps.getSnapshot());
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.getEmployees().add(new Employee(99999)));
+        assertThrows(IllegalStateException.class,
+                () -> snapshot.applyUpdate(builder -> builder.addEmployee(new Employee(99999))));
+    }
+
+    @Test
+    void T42_checkWageIndex() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        assertEquals(pps.calculateManagedBudgetOverview(employee -> employee.getHourlyWage() <= Employee.MAX_JUNIOR_WAGE),
+                pps.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE));
+        assertEquals(pps.calculateManagedBudgetOverview(employee -> employee.getHourlyWage() >= 40 && employee.getHourlyWage() <= 50),
+                pps.calculateManagedBudgetOverview(40, 50));
+        assertEquals(pps.getEmployees().stream().filter(e -> e.getAssignedProjectsLength() >= 3).count(),
+                pps.getWageIndex().findByAssignments(3, Integer.MAX_VALUE).size());
+
+        int[] wages = pps.getEmployees().stream().mapToInt(Employee::getHourlyWage).sorted().toArray();
+        assertEquals((wages[24] + wages[25]) / 2.0, pps.calculateMedianHourlyWage());
+        assertEquals(wages[44], pps.calculateHourlyWagePercentile(90));
+        assertEquals(wages[0], pps.calculateHourlyWagePercentile(0));
+        assertEquals(wages[49], pps.calculateHourlyWagePercentile(100));
+    }
+
+    @Test
+    void T43_checkTopKRankings() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        List<Project> expensive = pps.calculateMostExpensiveProjects(20);
+        List<Project> sorted = new ArrayList<>(pps.getProjects());
+        sorted.sort(Comparator.comparingInt(Project::calculateManpowerBudget).reversed());
+        assertEquals(20, expensive.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(sorted.get(i).calculateManpowerBudget(), expensive.get(i).calculateManpowerBudget());
+        }
+
+        // all employees with as many projects as the 3rd busiest are included
+        List<Employee> busiest = pps.calculateBusiestEmployees(3);
+        int third = pps.getEmployees().stream().map(Employee::getAssignedProjectsLength)
+                .sorted(Comparator.reverseOrder()).skip(2).findFirst().get();
+        assertEquals(pps.getEmployees().stream().filter(e -> e.getAssignedProjectsLength() >= third).count(),
+                busiest.size());
+        assertEquals(pps.calculateMostInvolvedEmployees(), new HashSet<>(pps.calculateBusiestEmployees(1)));
+
+        assertEquals(pps.calculateLongestProject().getNumWorkingDays(),
+                pps.calculateLongestProjects(1).get(0).getNumWorkingDays());
+        assertEquals(pps.getEmployees().stream().mapToInt(Employee::calculateManagedBudget).max().getAsInt(),
+                pps.calculateLargestManagers(5).get(0).calculateManagedBudget());
+    }
+
+    @Test
+    void T44_checkSpendTimeline() {
+        for (String resource : List.of("HvA2010_e11_p25.xml", "HvA2018_e10_p25.xml", "HvA2019_e50_p100.xml")) {
+            PPS pps = PPS.importFromXML(resource);
+            SpendTimeline timeline = pps.getSpendTimeline();
+
+            // expand every working day of every project
+            Map<Month, Integer> monthlySpends = new TreeMap<>();
+            Map<LocalDate, Long> dailySpends = new TreeMap<>();
+            for (Project project : pps.getProjects()) {
+                for (LocalDate date : project.getWorkingDays()) {
+                    monthlySpends.merge(date.getMonth(), project.getDailyCostRate(), Integer::sum);
+                    dailySpends.merge(date, (long) project.getDailyCostRate(), Long::sum);
+                }
+            }
+            assertEquals(monthlySpends, pps.calculateCumulativeMonthlySpends(), resource);
+            assertEquals(pps.calculateTotalManpowerBudget(), timeline.getTotalSpend(), resource);
+
+            LocalDate from = LocalDate.of(pps.getPlanningYear(), 3, 9);
+            LocalDate to = LocalDate.of(pps.getPlanningYear(), 8, 17);
+            assertEquals(dailySpends.entrySet().stream()
+                            .filter(e -> !e.getKey().isBefore(from) && !e.getKey().isAfter(to))
+                            .mapToLong(Map.Entry::getValue).sum(),
+                    timeline.getSpend(from, to), resource);
+            for (SpendTimeline.Granularity granularity : SpendTimeline.Granularity.values()) {
+                assertEquals(timeline.getTotalSpend(),
+                        timeline.getSpends(granularity).values().stream().mapToLong(Long::longValue).sum(),
+                        resource + " " + granularity);
+            }
+        }
+    }
+
+    @Test
+    void T45_checkPlanCube() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        PlanCube cube = pps.getCube();
+        assertEquals(pps.calculateTotalManpowerBudget(), cube.query(null, null, -1, null).getBudget());
+        pps.calculateCumulativeMonthlySpends().forEach((month, spend) ->
+                assertEquals((long) spend, cube.query(null, null, -1, month).getBudget(), month.toString()));
+
+        for (Project project : pps.getProjects()) {
+            assertNotNull(project.getSubject(), project.toString());
+            assertTrue(project.getTitle().startsWith(project.getSubject() + " - " + project.getLocation() + "-0"));
+        }
+        String subject = "Surveillance cameras installation";
+        long cameraBudget = pps.getProjects().stream()
+                .filter(p -> subject.equals(p.getSubject()) && "KSH".equals(p.getLocation()))
+                .mapToLong(Project::calculateManpowerBudget).sum();
+        assertEquals(cameraBudget, cube.query(subject, "KSH", -1, null).getBudget());
+        assertEquals(cameraBudget, cube.queryByMonth(subject, "KSH", -1).values().stream()
+                .mapToLong(PlanCube.Cell::getBudget).sum());
+        assertEquals(pps.getProjects().stream().mapToLong(Project::getNumWorkingDays).sum(),
+                cube.query(null, null, -1, null).getWorkingDays());
+
+        // every active project counts its staff once, for all months and for each of its months
+        assertEquals(pps.getProjects().stream().filter(p -> p.getNumWorkingDays() > 0)
+                        .mapToLong(p -> p.getCommittedHoursPerDay().size()).sum(),
+                cube.query(null, null, -1, null).getHeadcount());
+        Project project = pps.getProjects().stream().filter(p -> p.getNumWorkingDays() > 0).findFirst().get();
+        assertTrue(cube.query(null, null, -1, project.getStartDate().getMonth()).getHeadcount()
+                <= pps.getProjects().stream().mapToLong(p -> p.getCommittedHoursPerDay().size()).sum());
+    }
+
+    @Test
+    void T46_checkDenseIds() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        Set<Integer> ids = new HashSet<>();
+        for (Employee employee : pps.getEmployees()) {
+            int id = pps.getEmployeeId(employee.getNumber());
+            assertTrue(id >= 0 && id < pps.getEmployees().size());
+            assertSame(employee, pps.getEmployeeById(id));
+            ids.add(id);
+        }
+        assertEquals(pps.getEmployees().size(), ids.size());
+        assertEquals(-1, pps.getEmployeeId(-1));
+        assertEquals(-1, pps.getProjectId("unknown"));
+
+        // removal keeps ids dense and iteration ordered like a TreeSet
+        Set<Project> expected = new TreeSet<>(pps.getProjects());
+        List<Project> projects = new ArrayList<>(pps.getProjects());
+        for (int i = 0; i < projects.size(); i += 3) {
+            assertTrue(pps.getProjects().remove(projects.get(i)));
+            expected.remove(projects.get(i));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(pps.getProjects()));
+        for (Project project : expected) {
+            assertSame(project, pps.getProjectById(pps.getProjectId(project.getCode())));
+            assertTrue(pps.getProjectId(project.getCode()) < expected.size());
+        }
+        pps.getProjects().removeIf(project -> project.getCode().endsWith("1"));
+        expected.removeIf(project -> project.getCode().endsWith("1"));
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(pps.getProjects()));
+    }
+
+    @Test
+    void T47_checkFootprint() {
+        PPS small = PPS.importFromXML("HvA2019_e50_p100.xml");
+        PlanFootprint footprint = small.getFootprint();
+        long total = 0;
+        for (PlanFootprint.Component component : PlanFootprint.Component.values()) {
+            assertTrue(footprint.getBytes(component) > 0, component.toString());
+            total += footprint.getBytes(component);
+        }
+        assertEquals(total, footprint.getTotalBytes());
+        assertEquals(footprint.getTotalBytes(), small.getSnapshot().getFootprint().getTotalBytes(), total / 10.0);
+        assertTrue(footprint.getBytesPerEmployee() > 0);
+        assertTrue(footprint.getBytesPerProject() > footprint.getBytesPerCommitment());
+        assertEquals(footprint.getTotalBytes(), PlanRegistry.estimateBytes(small));
+
+        // the footprint is calculated once per snapshot, and again after a change of the live plan
+        PPS snapshot = small.getSnapshot();
+        assertSame(snapshot.getFootprint(), snapshot.getFootprint());
+        assertSame(footprint, small.getFootprint());
+        small.applyUpdate(builder -> builder.addEmployee(new Employee(60006, 20)));
+        assertNotSame(footprint, small.getFootprint());
+        assertTrue(small.getFootprint().getTotalBytes() > footprint.getTotalBytes());
+        assertSame(snapshot.getFootprint(), snapshot.getFootprint());
+
+        // the footprint grows with the plan
+        PlanFootprint smaller = PPS.importFromXML("HvA2018_e10_p25.xml").getFootprint();
+        assertTrue(smaller.getTotalBytes() < footprint.getTotalBytes() / 2);
+        assertEquals(smaller.getTotalBytes(),
+                smaller.toMetrics().get("plan." + smaller.getPlanName() + ".footprint.totalBytes"));
+    }
+
+    @Test
+    void T48_checkDirectChangesArePublished() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        PPS first = pps.getSnapshot();
+        assertSame(first, pps.getSnapshot());
+        int budget = first.calculateTotalManpowerBudget();
+
+        Project project = pps.calculateMostExpensiveProjects(1).get(0);
+        Employee employee = project.getCommittedHoursPerDay().keySet().iterator().next();
+        employee.setHourlyWage(employee.getHourlyWage() + 10);
+        PPS second = pps.getSnapshot();
+        assertNotSame(first, second);
+        assertEquals(budget, first.calculateTotalManpowerBudget(), "published snapshot is unaffected");
+        assertEquals(pps.calculateTotalManpowerBudget(), second.calculateTotalManpowerBudget());
+        assertEquals(employee.getHourlyWage(), second.findEmployee(employee.getNumber()).getHourlyWage());
+        assertSame(second.findEmployee(employee.getNumber()),
+                second.findProject(project.getCode()).getCommittedHoursPerDay().keySet().stream()
+                        .filter(committed -> committed.getNumber() == employee.getNumber()).findAny().get());
+
+        project.reschedule(project.getStartDate().plusDays(7), project.getEndDate().plusDays(7));
+        new PPS.Builder(pps).addEmployee(new Employee(99999, 30));
+        assertEquals(project.getStartDate(), pps.getSnapshot().findProject(project.getCode()).getStartDate());
+        assertNotNull(pps.getSnapshot().findEmployee(99999));
+        assertNotEquals(project.getStartDate(), second.findProject(project.getCode()).getStartDate());
+
+        // a removed project remains referred to by its employees, as a frozen project outside of the plan
+        assertTrue(pps.getProjects().remove(project));
+        PPS third = pps.getSnapshot();
+        assertNull(third.findProject(project.getCode()));
+        assertEquals(pps.calculateTotalManpowerBudget(), third.calculateTotalManpowerBudget());
+        Employee assigned = third.findEmployee(employee.getNumber());
+        Project outsider = assigned.getAssignedProjects().stream()
+                .filter(p -> p.getCode().equals(project.getCode())).findAny().get();
+        assertEquals(project.getTitle(), outsider.getTitle());
+        assertThrows(UnsupportedOperationException.class, () -> outsider.reschedule(LocalDate.now(), LocalDate.now()));
+        assertThrows(UnsupportedOperationException.class, () -> assigned.getAssignedProjects().add(outsider));
+        for (Employee committed : second.findProject(project.getCode()).getCommittedHoursPerDay().keySet()) {
+            assertThrows(UnsupportedOperationException.class, () -> committed.setHourlyWage(1));
+        }
+    }
+
+    @Test
+    void T49_checkSnapshotOfCommittedOutsider() {
+        Employee outsider = new Employee(99999, 40);
+        this.project1.addCommitment(outsider, 3);
+        PPS snapshot = this.pps.getSnapshot();
+        Employee committed = snapshot.findProject("P1001").getCommittedHoursPerDay().keySet().stream()
+                .filter(employee -> employee.getNumber() == 99999).findAny().get();
+        assertNull(snapshot.findEmployee(99999));
+        assertEquals(40, committed.getHourlyWage());
+        assertEquals(0, committed.getAssignedProjectsLength());
+        assertThrows(UnsupportedOperationException.class, () -> committed.setHourlyWage(50));
+        assertThrows(UnsupportedOperationException.class, () -> committed.getAssignedProjects().add(this.project2));
+        assertEquals(this.pps.calculateTotalManpowerBudget(), snapshot.calculateTotalManpowerBudget());
+    }
+
+    @Test
+    void T50_checkPersistentArray() {
+        PersistentArray<Integer> empty = PersistentArray.empty();
+        PersistentArray.Editor<Integer> editor = empty.edit().resize(5000);
+        for (int i = 0; i < 5000; i++) {
+            editor.set(i, i);
+        }
+        PersistentArray<Integer> first = editor.done();
+        assertThrows(IllegalStateException.class, () -> editor.set(0, 1));
+        PersistentArray<Integer> second = first.edit().set(1234, -1).resize(6000).done();
+        PersistentArray<Integer> third = second.edit().resize(10).done();
+        assertEquals(0, empty.size());
+        assertEquals(5000, first.size());
+        assertEquals(6000, second.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, first.get(i));
+            assertEquals(i == 1234 ? -1 : i, second.get(i));
+        }
+        assertNull(second.get(5999));
+        assertEquals(10, third.size());
+        assertEquals(9, third.get(9));
+        assertThrows(IndexOutOfBoundsException.class, () -> third.get(10));
+        assertNull(third.edit().resize(20).done().get(15), "shrinking releases the elements");
+    }
+
+    @Test
+    void T51_checkBudgetVersionPerPlan() {
+        long version = this.pps.getBudgetVersion();
+        long version2011 = this.pps2011.getBudgetVersion();
+        new Project("P9999", "Unplanned", LocalDate.of(2019,1,1), LocalDate.of(2019,2,1));
+        assertEquals(version, this.pps.getBudgetVersion(), "constructing a project changes no plan");
+
+        int budget = this.employee1.calculateManagedBudget();
+        this.project1.addCommitment(this.employee3, 1);
+        assertTrue(this.pps.getBudgetVersion() > version);
+        assertEquals(version2011, this.pps2011.getBudgetVersion(), "other plans are unaffected");
+        assertEquals(budget + 30 * this.project1.getNumWorkingDays(), this.employee1.calculateManagedBudget());
+
+        // a wage change reaches the projects of other plans that commit the employee
+        int budget2011 = this.pps2011.calculateTotalManpowerBudget();
+        this.project2011.addCommitment(this.employee3, 2);
+        this.employee3.setHourlyWage(40);
+        assertTrue(this.pps2011.getBudgetVersion() > version2011);
+        assertEquals(budget2011 + 2 * 40 * this.project2011.getNumWorkingDays(),
+                this.pps2011.calculateTotalManpowerBudget());
+        assertEquals(this.pps2011.calculateTotalManpowerBudget(),
+                this.pps2011.getSnapshot().calculateTotalManpowerBudget());
+    }
+
+    @Test
+    void T52_checkDenseSetMatchesByOrder() {
+        // "Aa" and "BB" have the same hash code, which Project.equals compares only
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        DenseSet<Project> projects = new DenseSet<>();
+        assertTrue(projects.add(new Project("Aa")));
+        assertTrue(projects.add(new Project("BB")));
+        assertFalse(projects.add(new Project("BB")));
+        assertEquals(2, projects.size());
+        assertEquals(1, projects.idOf(new Project("BB")));
+
+        // iteration remains sorted while elements are added between iterations
+        TreeSet<Project> expected = new TreeSet<>(projects);
+        for (int i = 0; i < 100; i++) {
+            Project project = new Project("P" + ((i * 37) % 100));
+            assertEquals(expected.add(project), projects.add(project));
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(projects));
+        }
+        projects.remove(new Project("P37"));
+        expected.remove(new Project("P37"));
+        projects.add(new Project("P370"));
+        expected.add(new Project("P370"));
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(projects));
+    }
 }
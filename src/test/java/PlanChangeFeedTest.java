@@ -0,0 +1,189 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanChangeFeedTest {
+
+    private static class CollectingSubscriber implements Flow.Subscriber<PlanChangeBatch> {
+        final BlockingQueue<PlanChangeBatch> batches = new LinkedBlockingQueue<>();
+        final BlockingQueue<Object> terminals = new LinkedBlockingQueue<>();
+        final AtomicBoolean overlapping = new AtomicBoolean();
+        final AtomicBoolean signalling = new AtomicBoolean();
+        Flow.Subscription subscription;
+        volatile Thread signalThread;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(PlanChangeBatch batch) {
+            this.signal(() -> this.batches.add(batch));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.signal(() -> this.terminals.add(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            this.signal(() -> this.terminals.add("complete"));
+        }
+
+        private void signal(Runnable action) {
+            if (!this.signalling.compareAndSet(false, true)) {
+                this.overlapping.set(true);
+            }
+            this.signalThread = Thread.currentThread();
+            action.run();
+            this.signalling.set(false);
+        }
+    }
+
+    @Test
+    void T01_checkCoalescedBudgetDeltas() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        int budget = pps.calculateTotalManpowerBudget();
+        int mayBudget = pps.calculateCumulativeMonthlySpends().get(Month.MAY);
+
+        try (PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10))) {
+            CollectingSubscriber subscriber = new CollectingSubscriber();
+            feed.subscribe(subscriber);
+
+            pps.applyUpdate(builder -> builder.addCommitment("P100752", 100292, 2));
+            pps.applyUpdate(builder -> builder.addCommitment("P100752", 100292, 1)
+                    .addEmployee(new Employee(60006, 20)));
+            // nothing is delivered before it has been requested
+            assertNull(subscriber.batches.poll(50, TimeUnit.MILLISECONDS));
+
+            subscriber.subscription.request(1);
+            PlanChangeBatch batch = subscriber.batches.poll(2, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            assertEquals(3, batch.getNumChanges());
+            assertEquals(1, batch.getCommitmentChanges().size());
+            assertEquals(3, batch.getCommitmentChanges().get(0).getHoursPerDayDelta());
+            assertEquals(1, batch.getAddedEmployees().size());
+            assertEquals(pps.calculateTotalManpowerBudget() - budget, batch.getTotalBudgetDelta());
+            assertEquals(pps.calculateCumulativeMonthlySpends().get(Month.MAY) - mayBudget,
+                    batch.getMonthlyBudgetDeltas().get(Month.MAY));
+        }
+    }
+
+    @Test
+    void T02_checkTerminalSignals() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10));
+        CollectingSubscriber failing = new CollectingSubscriber();
+        feed.subscribe(failing);
+        failing.subscription.request(0);
+        assertTrue(failing.terminals.poll(2, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+        assertNotSame(Thread.currentThread(), failing.signalThread);
+
+        // the last changes are delivered before the subscription completes
+        CollectingSubscriber completing = new CollectingSubscriber();
+        feed.subscribe(completing);
+        completing.subscription.request(Long.MAX_VALUE);
+        pps.applyUpdate(builder -> builder.addCommitment("P100752", 100292, 2));
+        feed.close();
+        assertEquals("complete", completing.terminals.poll(2, TimeUnit.SECONDS));
+        int numChanges = 0;
+        for (PlanChangeBatch batch : completing.batches) {
+            numChanges += batch.getNumChanges();
+        }
+        assertEquals(1, numChanges);
+        assertFalse(completing.overlapping.get());
+        assertTrue(failing.batches.isEmpty());
+    }
+
+    @Test
+    void T03_checkDirectMutations() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        int budget = pps.calculateTotalManpowerBudget();
+        try (PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10))) {
+            CollectingSubscriber subscriber = new CollectingSubscriber();
+            feed.subscribe(subscriber);
+
+            // changes outside of applyUpdate, and a project that is added with its commitments
+            pps.findEmployee(100292).setHourlyWage(50);
+            pps.findProject("P100752").reschedule(LocalDate.of(2012, 3, 1), LocalDate.of(2012, 6, 30));
+            pps.findProject("P100670").addCommitment(pps.findEmployee(100298), 2);
+            Project project = new Project("P1001", "TestProject-1", LocalDate.of(2012, 2, 1), LocalDate.of(2012, 2, 29));
+            project.putCommitment(pps.findEmployee(100292), 3);
+            pps.applyUpdate(builder -> builder.addProject(project, pps.findEmployee(100298)));
+
+            subscriber.subscription.request(Long.MAX_VALUE);
+            long budgetDelta = 0;
+            int numAddedProjects = 0;
+            while (budgetDelta != pps.calculateTotalManpowerBudget() - budget) {
+                PlanChangeBatch batch = subscriber.batches.poll(2, TimeUnit.SECONDS);
+                assertNotNull(batch, "budget deltas are incomplete");
+                budgetDelta += batch.getTotalBudgetDelta();
+                numAddedProjects += batch.getAddedProjects().size();
+            }
+            assertEquals(1, numAddedProjects);
+        }
+    }
+
+    @Test
+    void T04_checkSubscribeAfterClose() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10));
+        feed.close();
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        feed.subscribe(subscriber);
+        assertNotNull(subscriber.subscription);
+        assertEquals("complete", subscriber.terminals.poll(0, TimeUnit.SECONDS));
+        feed.close();
+    }
+
+    @Test
+    void T11_checkOverflowOfLaggingSubscriber() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2015_e5_p5.xml");
+        int budget = pps.calculateTotalManpowerBudget();
+        try (PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10), 2)) {
+            CollectingSubscriber subscriber = new CollectingSubscriber();
+            feed.subscribe(subscriber);
+            pps.applyUpdate(builder -> pps.getProjects().forEach(project ->
+                    project.getCommittedHoursPerDay().keySet().forEach(employee ->
+                            builder.addCommitment(project.getCode(), employee.getNumber(), 1))));
+
+            subscriber.subscription.request(1);
+            PlanChangeBatch batch = subscriber.batches.poll(2, TimeUnit.SECONDS);
+            assertTrue(batch.isOverflow());
+            assertTrue(batch.getCommitmentChanges().isEmpty());
+            assertEquals(pps.calculateTotalManpowerBudget() - budget, batch.getTotalBudgetDelta());
+        }
+    }
+
+    @Test
+    void T12_checkOverflowOfAddedEntities() throws InterruptedException {
+        PPS pps = PPS.importFromXML("HvA2012_e2_p2.xml");
+        try (PlanChangeFeed feed = new PlanChangeFeed(pps, Duration.ofMillis(10), 2)) {
+            CollectingSubscriber subscriber = new CollectingSubscriber();
+            feed.subscribe(subscriber);
+            pps.applyUpdate(builder -> builder.addEmployee(new Employee(60006, 20))
+                    .addEmployee(new Employee(60007, 20))
+                    .addEmployee(new Employee(60008, 20)));
+
+            subscriber.subscription.request(1);
+            PlanChangeBatch batch = subscriber.batches.poll(2, TimeUnit.SECONDS);
+            assertTrue(batch.isOverflow());
+            assertEquals(3, batch.getNumChanges());
+            assertTrue(batch.getAddedEmployees().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.Month;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanDiffTest {
+
+    private static final String PLAN = "HvA2019_e50_p100.xml";
+
+    private static void assertDeltasMatch(PPS before, PPS after, PlanDiff diff) {
+        assertEquals((long) after.calculateTotalManpowerBudget() - before.calculateTotalManpowerBudget(),
+                diff.getTotalBudgetDelta());
+        assertEquals(diff.getTotalBudgetDelta(),
+                diff.getProjectBudgetDeltas().values().stream().mapToLong(Long::longValue).sum());
+        Map<Month, Long> monthly = new TreeMap<>();
+        before.calculateCumulativeMonthlySpends().forEach((month, spend) -> monthly.merge(month, (long) -spend, Long::sum));
+        after.calculateCumulativeMonthlySpends().forEach((month, spend) -> monthly.merge(month, (long) spend, Long::sum));
+        monthly.values().removeIf(delta -> delta == 0);
+        assertEquals(monthly, diff.getMonthlyBudgetDeltas());
+    }
+
+    @Test
+    void T01_checkDiffOfRevisions() {
+        PPS before = PPS.importFromXML(PLAN);
+        PPS after = PPS.importFromXML(PLAN);
+        PlanDiff same = new PlanDiff(before, after);
+        assertTrue(same.isEmpty());
+        assertEquals(0, same.getTotalBudgetDelta());
+        assertTrue(same.getMonthlyBudgetDeltas().isEmpty());
+
+        List<Project> projects = new ArrayList<>(after.getProjects());
+        Project removed = projects.get(0);
+        Project rescheduled = projects.get(1);
+        Project restaffed = projects.stream().skip(2)
+                .filter(project -> !project.getCommittedHoursPerDay().isEmpty()).findFirst().get();
+        Employee committed = restaffed.getCommittedHoursPerDay().keySet().iterator().next();
+        int hours = restaffed.getCommittedHoursPerDay().get(committed);
+        Employee raised = after.getEmployees().iterator().next();
+
+        after.applyUpdate(builder -> {
+            after.getProjects().remove(removed);
+            rescheduled.reschedule(rescheduled.getStartDate().plusMonths(1), rescheduled.getEndDate().plusMonths(1));
+            restaffed.putCommitment(committed, hours + 2);
+            raised.setHourlyWage(raised.getHourlyWage() + 5);
+        });
+
+        PlanDiff diff = new PlanDiff(before, after);
+        assertFalse(diff.isEmpty());
+        assertEquals(List.of(removed), diff.getRemovedProjects());
+        assertTrue(diff.getAddedProjects().isEmpty());
+        assertTrue(diff.getChangedProjects().stream()
+                .anyMatch(change -> change.getAfter().equals(rescheduled) && change.isRescheduled()));
+        PlanDiff.CommitmentChange commitment = diff.getCommitmentChanges().stream()
+                .filter(change -> change.getProjectCode().equals(restaffed.getCode())).findFirst().get();
+        assertEquals(committed.getNumber(), commitment.getEmployeeNumber());
+        assertEquals(hours, commitment.getHoursBefore());
+        assertEquals(hours + 2, commitment.getHoursAfter());
+        assertEquals(1, diff.getChangedEmployees().size());
+        assertEquals(5, diff.getChangedEmployees().get(0).getWageDelta());
+        assertFalse(diff.getChangedEmployees().get(0).isRenamed());
+        assertDeltasMatch(before, after, diff);
+    }
+
+    @Test
+    void T02_checkDiffOfYears() {
+        PPS before = PPS.importFromXML("HvA2018_e10_p25.xml");
+        PPS after = PPS.importFromXML(PLAN);
+        PlanDiff diff = new PlanDiff(before, after);
+
+        Set<String> beforeCodes = new TreeSet<>(), afterCodes = new TreeSet<>();
+        before.getProjects().forEach(project -> beforeCodes.add(project.getCode()));
+        after.getProjects().forEach(project -> afterCodes.add(project.getCode()));
+        assertEquals(beforeCodes.size() - diff.getRemovedProjects().size(),
+                afterCodes.size() - diff.getAddedProjects().size());
+        diff.getAddedProjects().forEach(project -> assertFalse(beforeCodes.contains(project.getCode())));
+        diff.getRemovedProjects().forEach(project -> assertFalse(afterCodes.contains(project.getCode())));
+        assertEquals(before.getEmployees().size() - diff.getRemovedEmployees().size(),
+                after.getEmployees().size() - diff.getAddedEmployees().size());
+        assertDeltasMatch(before, after, diff);
+
+        PlanDiff reverse = new PlanDiff(after, before);
+        assertEquals(-diff.getTotalBudgetDelta(), reverse.getTotalBudgetDelta());
+        assertEquals(diff.getAddedProjects(), reverse.getRemovedProjects());
+    }
+}
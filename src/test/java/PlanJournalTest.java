@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void T01_checkRecoveryAfterClose() throws IOException {
+        int budget;
+        try (PlanJournal journal = PlanJournal.open(this.directory, () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 1000)) {
+            PPS snapshot = journal.applyUpdate(builder -> builder
+                    .addEmployee(new Employee(60006, "Test E. MPLOYEE", 20))
+                    .addProject(new Project("P1001", "TestProject-1",
+                            LocalDate.of(2012, 2, 1), LocalDate.of(2012, 4, 30)), new Employee(60006, 20))
+                    .addCommitment("P1001", 60006, 4));
+            budget = snapshot.calculateTotalManpowerBudget();
+            assertEquals(23016 + 4*20*snapshot.getProjects().stream()
+                    .filter(p -> p.getCode().equals("P1001")).findFirst().get().getNumWorkingDays(), budget);
+        }
+
+        try (PlanJournal journal = PlanJournal.open(this.directory, () -> fail("base plan is not needed"), 1000)) {
+            PPS recovered = journal.getPlan().getSnapshot();
+            assertEquals("HvA2012_e2_p2.xml", recovered.getName());
+            assertEquals(3, recovered.getEmployees().size());
+            assertEquals(3, recovered.getProjects().size());
+            assertEquals(budget, recovered.calculateTotalManpowerBudget());
+            assertEquals(PPS.importFromXML("HvA2012_e2_p2.xml").calculateCumulativeMonthlySpends().get(java.time.Month.MAY),
+                    recovered.calculateCumulativeMonthlySpends().get(java.time.Month.MAY));
+        }
+    }
+
+    @Test
+    void T02_checkProjectRecords() throws IOException {
+        Path crashed = this.directory.resolve("crashed");
+        try (PlanJournal journal = PlanJournal.open(this.directory.resolve("live"),
+                () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 1000)) {
+            Project project = new Project("P1002", "Undated project", null, null);
+            project.putCommitment(journal.getPlan().findEmployee(100292), 3);
+            journal.applyUpdate(builder -> builder.addProject(project, new Employee(60007, 20)));
+            copyFiles(this.directory.resolve("live"), crashed);
+        }
+
+        try (PlanJournal recovered = PlanJournal.open(crashed, () -> fail("base plan is not needed"), 1000)) {
+            Project project = recovered.getPlan().findProject("P1002");
+            assertEquals("Undated project", project.getTitle());
+            assertNull(project.getStartDate());
+            assertNull(project.getEndDate());
+            assertEquals(3, project.getCommittedHoursPerDay().get(recovered.getPlan().findEmployee(100292)));
+        }
+    }
+
+    @Test
+    void T03_checkUnlistedEmployees() throws IOException {
+        // employee 77007 is committed to P1002, but is not listed, so it remains an unnamed placeholder
+        String xml = "<projectPlanning year=\"2012\"><projects>"
+                + "<project code=\"P1001\"><title>First</title><startDate>2012-01-02</startDate><endDate>2012-01-31</endDate>"
+                + "<commitments><hoursPerDay employee=\"60006\">2</hoursPerDay></commitments></project>"
+                + "<project code=\"P1002\"><title>Second</title><startDate>2012-02-01</startDate><endDate>2012-02-29</endDate>"
+                + "<commitments><hoursPerDay employee=\"77007\">3</hoursPerDay></commitments></project>"
+                + "<project code=\"P1003\"><title>Third</title></project>"
+                + "</projects><employees>"
+                + "<employee number=\"60006\"><name>Test E. MPLOYEE</name><hourlyWage>20</hourlyWage>"
+                + "<allocatedProjects><project code=\"P1001\"></project></allocatedProjects></employee>"
+                + "</employees></projectPlanning>";
+        PPS plan = PPS.importFromXML("unlisted.xml", new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertNull(plan.findProject("P1002").getCommittedHoursPerDay().keySet().iterator().next().getName());
+        int budget = plan.calculateTotalManpowerBudget();
+
+        try (PlanJournal journal = PlanJournal.open(this.directory, () -> plan, 1000)) {
+            journal.applyUpdate(builder -> builder.addProject(new Project("P1004", null, null, null), new Employee(60007, 20)));
+        }
+
+        try (PlanJournal recovered = PlanJournal.open(this.directory, () -> fail("base plan is not needed"), 1000)) {
+            PPS snapshot = recovered.getPlan().getSnapshot();
+            assertEquals(4, snapshot.getProjects().size());
+            assertEquals(budget, snapshot.calculateTotalManpowerBudget());
+            Employee unlisted = snapshot.findProject("P1002").getCommittedHoursPerDay().keySet().iterator().next();
+            assertEquals(77007, unlisted.getNumber());
+            assertNull(unlisted.getName());
+            assertNull(snapshot.findEmployee(77007));
+            assertNull(snapshot.findProject("P1004").getTitle());
+        }
+    }
+
+    @Test
+    void T04_checkDirectMutations() throws IOException {
+        Path live = this.directory.resolve("live");
+        Path crashed = this.directory.resolve("crashed");
+        PPS expected;
+        try (PlanJournal journal = PlanJournal.open(live, () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 1000)) {
+            // changes outside of applyUpdate
+            PPS pps = journal.getPlan();
+            pps.findEmployee(100292).setHourlyWage(50);
+            pps.findProject("P100752").reschedule(LocalDate.of(2012, 3, 1), LocalDate.of(2012, 6, 30));
+            pps.getEmployees().add(new Employee(60006, "Test E. MPLOYEE", 20));
+            pps.getProjects().add(new Project("P1001", "TestProject-1", LocalDate.of(2012, 2, 1), LocalDate.of(2012, 4, 30)));
+            pps.findProject("P1001").addCommitment(pps.findEmployee(60006), 2);
+            pps.findEmployee(100298).getManagedProjects().add(pps.findProject("P1001"));
+            pps.findProject("P100670").addCommitment(pps.findEmployee(100298), 2);
+            pps.getProjects().remove(pps.findProject("P100670"));
+            // an update only becomes durable after all changes before it
+            expected = journal.applyUpdate(builder -> { });
+            copyFiles(live, crashed);
+        }
+
+        try (PlanJournal recovered = PlanJournal.open(crashed, () -> fail("base plan is not needed"), 1000)) {
+            PPS snapshot = recovered.getPlan().getSnapshot();
+            assertEquals(expected.calculateTotalManpowerBudget(), snapshot.calculateTotalManpowerBudget());
+            assertEquals(expected.calculateCumulativeMonthlySpends(), snapshot.calculateCumulativeMonthlySpends());
+            assertEquals(50, snapshot.findEmployee(100292).getHourlyWage());
+            assertEquals(LocalDate.of(2012, 3, 1), snapshot.findProject("P100752").getStartDate());
+            assertNull(snapshot.findProject("P100670"));
+            assertEquals(2, snapshot.findProject("P1001").getCommittedHoursPerDay().get(snapshot.findEmployee(60006)));
+            assertEquals(codes(expected.findEmployee(100298).getManagedProjects()),
+                    codes(snapshot.findEmployee(100298).getManagedProjects()));
+            assertEquals(codes(expected.findEmployee(60006).getAssignedProjects()),
+                    codes(snapshot.findEmployee(60006).getAssignedProjects()));
+        }
+    }
+
+    @Test
+    void T11_checkReplayWithoutCheckpoint() throws IOException {
+        Path crashed = this.directory.resolve("crashed");
+        int budget;
+        try (PlanJournal journal = PlanJournal.open(this.directory.resolve("live"),
+                () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 3)) {
+            for (int i = 0; i < 10; i++) {
+                journal.applyUpdate(builder -> builder.addCommitment("P100752", 100292, 1));
+            }
+            budget = journal.getPlan().getSnapshot().calculateTotalManpowerBudget();
+            // recover from a copy of the files as they are, before closing writes a final snapshot
+            copyFiles(this.directory.resolve("live"), crashed);
+        }
+
+        try (PlanJournal recovered = PlanJournal.open(crashed, () -> fail("base plan is not needed"), 3)) {
+            assertEquals(budget, recovered.getPlan().getSnapshot().calculateTotalManpowerBudget());
+            recovered.checkpoint();
+            try (Stream<Path> files = Files.list(crashed)) {
+                assertEquals(2, files.count(), "only the snapshot and the active segment remain");
+            }
+        }
+    }
+
+    @Test
+    void T12_checkTornAndCorruptRecords() throws IOException {
+        Path live = this.directory.resolve("live");
+        int[] budgets = new int[4];
+        try (PlanJournal journal = PlanJournal.open(live, () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 1000)) {
+            budgets[0] = journal.getPlan().getSnapshot().calculateTotalManpowerBudget();
+            for (int i = 1; i < budgets.length; i++) {
+                budgets[i] = journal.applyUpdate(builder -> builder.addCommitment("P100752", 100292, 1))
+                        .calculateTotalManpowerBudget();
+            }
+            copyFiles(live, this.directory.resolve("torn"));
+            copyFiles(live, this.directory.resolve("corrupt"));
+            copyFiles(live, this.directory.resolve("negative"));
+            copyFiles(live, this.directory.resolve("oversized"));
+        }
+
+        // a torn last record is ignored
+        Path segment = onlySegment(this.directory.resolve("torn"));
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+        try (PlanJournal recovered = PlanJournal.open(this.directory.resolve("torn"), () -> fail("no base plan"), 1000)) {
+            assertEquals(budgets[2], recovered.getPlan().getSnapshot().calculateTotalManpowerBudget());
+        }
+
+        // the replay ends at a corrupt record, all records after it are ignored
+        segment = onlySegment(this.directory.resolve("corrupt"));
+        bytes = Files.readAllBytes(segment);
+        int recordLength = (bytes.length - 4) / 3;
+        bytes[4 + 2 * recordLength - 1] ^= 0x01;
+        Files.write(segment, bytes);
+        try (PlanJournal recovered = PlanJournal.open(this.directory.resolve("corrupt"), () -> fail("no base plan"), 1000)) {
+            assertEquals(budgets[1], recovered.getPlan().getSnapshot().calculateTotalManpowerBudget());
+        }
+
+        // a corrupt length of a record ends the replay as well, without reading beyond the segment
+        for (String copy : List.of("negative", "oversized")) {
+            segment = onlySegment(this.directory.resolve(copy));
+            bytes = Files.readAllBytes(segment);
+            ByteBuffer.wrap(bytes).putInt(4 + recordLength, copy.equals("negative") ? -2 : Integer.MAX_VALUE - 1);
+            Files.write(segment, bytes);
+            try (PlanJournal recovered = PlanJournal.open(this.directory.resolve(copy), () -> fail("no base plan"), 1000)) {
+                assertEquals(budgets[1], recovered.getPlan().getSnapshot().calculateTotalManpowerBudget(), copy);
+            }
+        }
+    }
+
+    @Test
+    void T13_checkClosedJournal() throws IOException {
+        PlanJournal journal = PlanJournal.open(this.directory, () -> PPS.importFromXML("HvA2012_e2_p2.xml"), 1000);
+        journal.close();
+        journal.close();
+        assertThrows(IllegalStateException.class, journal::checkpoint);
+        assertThrows(IllegalStateException.class,
+                () -> journal.applyUpdateAsync(builder -> builder.addCommitment("P100752", 100292, 1)));
+    }
+
+    private static Set<String> codes(Set<Project> projects) {
+        return projects.stream().map(Project::getCode).collect(Collectors.toSet());
+    }
+
+    private static void copyFiles(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static Path onlySegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(file -> file.getFileName().toString().startsWith("journal-"))
+                    .collect(Collectors.toList());
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+}
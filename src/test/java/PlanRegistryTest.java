@@ -0,0 +1,137 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanRegistryTest {
+
+    @Test
+    void T01_checkLoadAndHits() {
+        PlanRegistry registry = new PlanRegistry(Long.MAX_VALUE);
+        PPS pps = registry.get("HvA2012_e2_p2.xml");
+        assertEquals("HvA2012_e2_p2.xml", pps.getName());
+        assertSame(pps, registry.get("HvA2012_e2_p2.xml"));
+        assertNull(registry.get("unknown.xml"));
+
+        PlanRegistry.Statistics statistics = registry.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(1, statistics.getLoadFailures());
+        assertEquals(1, statistics.getNumPlans());
+    }
+
+    @Test
+    void T11_checkLRUEviction() {
+        // every plan weighs 100 bytes, so only two plans fit
+        PlanRegistry registry = new PlanRegistry(200, PPS::importFromXML, pps -> 100);
+        registry.get("HvA2011_e1_p1.xml");
+        registry.get("HvA2012_e2_p2.xml");
+        registry.get("HvA2011_e1_p1.xml");
+        registry.get("HvA2015_e5_p5.xml");
+
+        assertEquals(List.of("HvA2011_e1_p1.xml", "HvA2015_e5_p5.xml"), registry.getNames());
+        assertEquals(1, registry.getStatistics().getEvictions());
+        assertEquals(200, registry.getStatistics().getRetainedBytes());
+    }
+
+    @Test
+    void T12_checkRemovalListeners() {
+        PlanRegistry registry = new PlanRegistry(200, PPS::importFromXML, pps -> 100);
+        List<String> removed = new ArrayList<>();
+        registry.addRemovalListener(removed::add);
+        registry.get("HvA2011_e1_p1.xml");
+        registry.get("HvA2012_e2_p2.xml");
+        registry.get("HvA2015_e5_p5.xml");
+        assertEquals(List.of("HvA2011_e1_p1.xml"), removed);
+
+        registry.put(PPS.importFromXML("HvA2012_e2_p2.xml"));
+        assertTrue(registry.invalidate("HvA2015_e5_p5.xml"));
+        assertFalse(registry.invalidate("HvA2015_e5_p5.xml"));
+        assertEquals(List.of("HvA2011_e1_p1.xml", "HvA2012_e2_p2.xml", "HvA2015_e5_p5.xml"), removed);
+    }
+
+    @Test
+    void T13_checkFailedLoadsAreRemembered() {
+        AtomicInteger numLoads = new AtomicInteger();
+        PlanRegistry registry = new PlanRegistry(Long.MAX_VALUE, name -> {
+            numLoads.incrementAndGet();
+            return PlanRegistry.loadResource(name);
+        }, pps -> 100);
+        assertNull(registry.get("unknown.xml"));
+        assertNull(registry.get("unknown.xml"));
+        assertEquals(1, numLoads.get());
+        assertEquals(1, registry.getStatistics().getLoadFailures());
+        assertEquals(1, registry.getStatistics().getFailureHits());
+
+        // an invalidated name is loaded again
+        registry.invalidate("unknown.xml");
+        assertNull(registry.get("unknown.xml"));
+        assertEquals(2, numLoads.get());
+
+        // without a retry interval, every request loads again
+        PlanRegistry retrying = new PlanRegistry(Long.MAX_VALUE, name -> {
+            numLoads.incrementAndGet();
+            return null;
+        }, pps -> 100, 0);
+        retrying.get("unknown.xml");
+        retrying.get("unknown.xml");
+        assertEquals(4, numLoads.get());
+        assertEquals(0, retrying.getStatistics().getFailureHits());
+    }
+
+    @Test
+    void T14_checkChangedPlansAreReweighed() {
+        PlanRegistry registry = new PlanRegistry(Long.MAX_VALUE);
+        PPS pps = registry.get("HvA2012_e2_p2.xml");
+        long bytes = registry.getStatistics().getRetainedBytes();
+        assertEquals(PlanRegistry.estimateBytes(pps), bytes);
+
+        pps.applyUpdate(builder -> builder.addEmployee(new Employee(60006, 20))
+                .addEmployee(new Employee(60007, 20)));
+        // the plan is weighed again when it is requested
+        assertEquals(bytes, registry.getStatistics().getRetainedBytes());
+        assertSame(pps, registry.get("HvA2012_e2_p2.xml"));
+        assertEquals(PlanRegistry.estimateBytes(pps), registry.getStatistics().getRetainedBytes());
+        assertTrue(registry.getStatistics().getRetainedBytes() > bytes);
+    }
+
+    @Test
+    void T21_checkConcurrentLoadsAreShared() throws Exception {
+        AtomicInteger numLoads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        PlanRegistry registry = new PlanRegistry(Long.MAX_VALUE, name -> {
+            numLoads.incrementAndGet();
+            try {
+                loading.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return PPS.importFromXML(name);
+        }, PlanRegistry::estimateBytes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<PPS>> results = List.of(
+                executor.submit(() -> registry.get("HvA2015_e5_p5.xml")),
+                executor.submit(() -> registry.get("HvA2015_e5_p5.xml")),
+                executor.submit(() -> registry.get("HvA2015_e5_p5.xml")));
+        Thread.sleep(200);
+        loading.countDown();
+        PPS first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<PPS> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, numLoads.get());
+    }
+}
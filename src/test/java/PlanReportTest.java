@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanReportTest {
+
+    private static final String PLAN = "HvA2019_e50_p100.xml";
+
+    @Test
+    void T01_checkTextReport() {
+        PPS pps = PPS.importFromXML(PLAN);
+        String report = new PlanReport(pps).render();
+        assertTrue(report.contains(String.format("%d employees have been assigned to %d projects",
+                pps.getEmployees().size(), pps.getProjects().size())));
+        assertTrue(report.contains(String.format("is %d\n", pps.calculateTotalManpowerBudget())));
+        assertTrue(report.contains(pps.calculateCumulativeMonthlySpends().toString()));
+        String involved = pps.calculateMostInvolvedEmployees().stream().sorted()
+                .map(Employee::toString).collect(Collectors.joining(", ", "[", "]"));
+        assertTrue(report.contains(involved));
+
+        // the buffered stream receives the same report
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new PlanReport(pps).writeTo(bytes);
+        assertEquals(report, bytes.toString(StandardCharsets.UTF_8));
+
+        assertTrue(new PlanReport(PPS.newPlan("empty", 2019)).render().contains("No employees or projects"));
+    }
+
+    @Test
+    void T02_checkMachineFormats() {
+        PPS pps = PPS.importFromXML(PLAN);
+        StringWriter csv = new StringWriter();
+        new PlanReport(pps).setFormat(PlanReport.Format.CSV).render(csv);
+        List<String> rows = Arrays.asList(csv.toString().split("\n"));
+        assertEquals("statistic,key,value", rows.get(0));
+        assertTrue(rows.contains("totalManpowerBudget,," + pps.calculateTotalManpowerBudget()));
+        assertEquals(pps.calculateMostInvolvedEmployees().size(),
+                rows.stream().filter(row -> row.startsWith("mostInvolvedEmployee,")).count());
+        assertEquals(pps.calculateCumulativeMonthlySpends().size(),
+                rows.stream().filter(row -> row.startsWith("cumulativeMonthlySpend,")).count());
+        rows.forEach(row -> assertTrue(row.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)").length == 3, row));
+
+        String json = new PlanReport(pps).setFormat(PlanReport.Format.JSON).render();
+        assertTrue(json.startsWith("{\"name\":"));
+        assertTrue(json.contains("\"totalManpowerBudget\":" + pps.calculateTotalManpowerBudget()));
+        assertFalse(json.contains("\"page\""));
+    }
+
+    @Test
+    void T03_checkPagination() {
+        PPS pps = PPS.importFromXML(PLAN);
+        int numJuniors = pps.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE).size();
+        assertTrue(numJuniors > 2);
+
+        String csv = new PlanReport(pps).setFormat(PlanReport.Format.CSV).setPage(1, 2).render();
+        assertEquals(2, Arrays.stream(csv.split("\n")).filter(row -> row.startsWith("juniorManagedBudget,")).count());
+        String all = new PlanReport(pps).setFormat(PlanReport.Format.CSV).render();
+        List<String> juniors = Arrays.stream(all.split("\n"))
+                .filter(row -> row.startsWith("juniorManagedBudget,")).collect(Collectors.toList());
+        assertTrue(csv.contains(juniors.get(1) + "\n" + juniors.get(2) + "\n"));
+
+        String text = new PlanReport(pps).setPage(0, 1).render();
+        assertTrue(text.contains(String.format("} (1-1 of %d)", numJuniors)));
+        String json = new PlanReport(pps).setFormat(PlanReport.Format.JSON).setPage(numJuniors, 10).render();
+        assertTrue(json.contains("\"juniorManagedBudgets\":{}"));
+        assertThrows(IllegalArgumentException.class, () -> new PlanReport(pps).setPage(-1, 1));
+    }
+}
@@ -0,0 +1,165 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Period;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanScenarioTest {
+
+    private static final String PLAN = "HvA2019_e50_p100.xml";
+
+    private static Map<Month, Long> toLongs(Map<Month, Integer> spends) {
+        Map<Month, Long> longs = new TreeMap<>();
+        spends.forEach((month, spend) -> longs.put(month, (long) spend));
+        return longs;
+    }
+
+    @Test
+    void T01_checkScenarioMatchesChangedPlan() {
+        PPS pps = PPS.importFromXML(PLAN);
+        long baseBudget = pps.calculateTotalManpowerBudget();
+        Iterator<Project> projects = pps.getProjects().iterator();
+        Project shifted = projects.next();
+        Project restaffed = projects.next();
+        Employee employee = restaffed.getCommittedHoursPerDay().keySet().iterator().next();
+        Employee replacement = pps.getEmployees().stream()
+                .filter(e -> !e.equals(employee)).findFirst().get();
+        Employee raised = pps.getEmployees().stream()
+                .filter(e -> e.getAssignedProjectsLength() > 1 && !e.equals(employee) && !e.equals(replacement))
+                .findFirst().get();
+
+        PlanScenario scenario = new PlanScenario(pps, "what-if")
+                .shiftProject(shifted.getCode(), Period.ofMonths(2))
+                .swapEmployee(employee.getNumber(), replacement.getNumber())
+                .setHourlyWage(raised.getNumber(), raised.getHourlyWage() + 10);
+        PlanScenario.Outcome outcome = scenario.evaluate();
+
+        // the base plan has not been changed
+        assertEquals(baseBudget, pps.calculateTotalManpowerBudget());
+
+        // apply the same changes to the plan itself
+        shifted.reschedule(shifted.getStartDate().plusMonths(2), shifted.getEndDate().plusMonths(2));
+        for (Project project : pps.getProjects()) {
+            Integer hours = project.getCommittedHoursPerDay().get(employee);
+            if (hours != null) {
+                project.putCommitment(employee, 0);
+                project.putCommitment(replacement,
+                        project.getCommittedHoursPerDay().getOrDefault(replacement, 0) + hours);
+            }
+        }
+        raised.setHourlyWage(raised.getHourlyWage() + 10);
+
+        assertEquals(pps.calculateTotalManpowerBudget(), outcome.getTotalManpowerBudget());
+        assertEquals(pps.calculateTotalManpowerBudget() - baseBudget, outcome.getBudgetDelta());
+        assertEquals(toLongs(pps.calculateCumulativeMonthlySpends()), outcome.getMonthlySpends());
+        assertEquals(shifted.calculateManpowerBudget(), (long) outcome.getProjectBudgets().get(shifted.getCode()));
+    }
+
+    @Test
+    void T02_checkScenarioRemovesCommitments() {
+        PPS pps = PPS.importFromXML(PLAN);
+        Project project = pps.getProjects().iterator().next();
+        PlanScenario scenario = new PlanScenario(pps, "cancel");
+        project.getCommittedHoursPerDay().keySet().forEach(employee ->
+                scenario.setCommitment(project.getCode(), employee.getNumber(), 0));
+
+        PlanScenario.Outcome outcome = scenario.evaluate();
+        assertEquals(0L, (long) outcome.getProjectBudgets().get(project.getCode()));
+        assertEquals(-project.calculateManpowerBudget(), outcome.getBudgetDelta());
+        assertThrows(IllegalArgumentException.class, () -> scenario.shiftProject("P0", Period.ofDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> scenario.setHourlyWage(-1, 20));
+    }
+
+    @Test
+    void T03_checkUnassignedCommitmentsAndInactiveMonths() {
+        PPS pps = PPS.newPlan("scenario.xml", 2019);
+        Employee committed = new Employee(60001, 20);
+        Employee manager = new Employee(60002, 30);
+        Project march = new Project("P1001", "March project", LocalDate.of(2019, 3, 1), LocalDate.of(2019, 3, 29));
+        Project june = new Project("P1002", "June project", LocalDate.of(2019, 6, 3), LocalDate.of(2019, 6, 28));
+        // committed without being assigned to the project
+        march.putCommitment(committed, 4);
+        june.putCommitment(manager, 2);
+        pps.applyUpdate(builder -> builder.addEmployee(committed)
+                .addProject(march, manager).addProject(june, manager));
+        assertFalse(committed.getAssignedProjects().contains(march));
+
+        PlanScenario.Outcome outcome = new PlanScenario(pps, "raise")
+                .setHourlyWage(committed.getNumber(), 25)
+                .shiftProject(march.getCode(), Period.ofMonths(2))
+                .evaluate();
+
+        committed.setHourlyWage(25);
+        march.reschedule(march.getStartDate().plusMonths(2), march.getEndDate().plusMonths(2));
+        assertEquals(pps.calculateTotalManpowerBudget(), outcome.getTotalManpowerBudget());
+        assertEquals(toLongs(pps.calculateCumulativeMonthlySpends()), outcome.getMonthlySpends());
+        assertFalse(outcome.getMonthlySpends().containsKey(Month.MARCH));
+    }
+
+    @Test
+    void T04_checkCommitmentsOfOutsiders() {
+        PPS pps = PPS.newPlan("scenario.xml", 2019);
+        Employee committed = new Employee(60001, 20);
+        Employee manager = new Employee(60002, 30);
+        Employee outsider = new Employee(60003, 40);
+        Project april = new Project("P1001", "April project", LocalDate.of(2019, 4, 1), LocalDate.of(2019, 4, 30));
+        Project may = new Project("P1002", "May project", LocalDate.of(2019, 5, 1), LocalDate.of(2019, 5, 31));
+        // the outsider is committed to the project without being an employee of the plan
+        april.putCommitment(outsider, 3);
+        april.putCommitment(committed, 2);
+        may.putCommitment(committed, 1);
+        pps.applyUpdate(builder -> builder.addEmployee(committed)
+                .addProject(april, manager).addProject(may, manager));
+        assertNull(pps.findEmployee(outsider.getNumber()));
+
+        PlanScenario.Outcome outcome = new PlanScenario(pps, "swap")
+                .shiftProject(april.getCode(), Period.ofMonths(1))
+                .setHourlyWage(manager.getNumber(), 35)
+                .swapEmployee(committed.getNumber(), manager.getNumber())
+                .evaluate();
+
+        april.reschedule(april.getStartDate().plusMonths(1), april.getEndDate().plusMonths(1));
+        manager.setHourlyWage(35);
+        for (Project project : List.of(april, may)) {
+            int hours = project.getCommittedHoursPerDay().get(committed);
+            project.putCommitment(committed, 0);
+            project.putCommitment(manager, hours);
+        }
+        assertEquals(pps.calculateTotalManpowerBudget(), outcome.getTotalManpowerBudget());
+        assertEquals(toLongs(pps.calculateCumulativeMonthlySpends()), outcome.getMonthlySpends());
+        assertEquals(april.calculateManpowerBudget(), (long) outcome.getProjectBudgets().get(april.getCode()));
+    }
+
+    @Test
+    void T11_checkParallelEvaluation() {
+        PPS pps = PPS.importFromXML(PLAN);
+        List<Project> projects = new ArrayList<>(pps.getProjects());
+        List<Employee> employees = new ArrayList<>(pps.getEmployees());
+        List<PlanScenario> scenarios = new ArrayList<>();
+        for (int s = 0; s < 300; s++) {
+            scenarios.add(new PlanScenario(pps, "scenario-" + s)
+                    .shiftProject(projects.get(s % projects.size()).getCode(), Period.ofWeeks(s % 13))
+                    .swapEmployee(employees.get(s % employees.size()).getNumber(),
+                            employees.get((s * 7 + 1) % employees.size()).getNumber()));
+        }
+
+        List<PlanScenario.Outcome> outcomes = PlanScenario.evaluateAll(scenarios);
+        assertEquals(scenarios.size(), outcomes.size());
+        for (int s = 0; s < scenarios.size(); s++) {
+            PlanScenario.Outcome expected = scenarios.get(s).evaluate();
+            assertEquals(expected.getScenarioName(), outcomes.get(s).getScenarioName());
+            assertEquals(expected.getTotalManpowerBudget(), outcomes.get(s).getTotalManpowerBudget());
+            assertEquals(expected.getMonthlySpends(), outcomes.get(s).getMonthlySpends());
+            assertEquals(outcomes.get(s).getTotalManpowerBudget(),
+                    outcomes.get(s).getMonthlySpends().values().stream().mapToLong(Long::longValue).sum());
+        }
+        // all scenarios share the same base snapshot
+        assertSame(scenarios.get(0).getBase(), scenarios.get(299).getBase());
+    }
+}
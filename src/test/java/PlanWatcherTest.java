@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanWatcherTest {
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream input = PlanWatcherTest.class.getClassLoader().getResourceAsStream(name)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void T01_checkImportFromPath(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("plan.xml");
+        Files.write(file, resource("HvA2018_e10_p25.xml"));
+        PPS pps = PPS.importFromXML(file);
+        PPS expected = PPS.importFromXML("HvA2018_e10_p25.xml");
+        assertEquals("plan.xml", pps.getName());
+        assertEquals(expected.getPlanningYear(), pps.getPlanningYear());
+        assertEquals(expected.calculateTotalManpowerBudget(), pps.calculateTotalManpowerBudget());
+        assertNull(PPS.importFromXML(directory.resolve("missing.xml")));
+    }
+
+    @Test
+    void T02_checkHotReload(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("plan.xml");
+        Files.write(file, resource("HvA2018_e10_p25.xml"));
+        byte[] next = resource("HvA2019_e50_p100.xml");
+
+        try (PlanWatcher watcher = new PlanWatcher(directory, 300)) {
+            // notified from the background thread
+            List<PPS> reloaded = new CopyOnWriteArrayList<>();
+            watcher.addReloadListener(reloaded::add);
+            watcher.start();
+            PPS first = watcher.getPlan("plan.xml");
+            assertEquals(25, first.getProjects().size());
+            assertEquals(1, watcher.getReloads());
+
+            // a partial write followed by the complete file within the debounce period is imported once
+            Files.write(file, Arrays.copyOf(next, next.length / 2));
+            Files.write(file, next);
+            await(() -> watcher.getReloads() == 2);
+            PPS second = watcher.getPlan("plan.xml");
+            assertEquals(100, second.getProjects().size());
+            assertEquals(List.of(first, second), reloaded);
+
+            // an invalid file keeps the previous plan
+            Files.write(file, "<projectPlanning year=\"2019\"><projects><project".getBytes());
+            await(() -> watcher.getFailures() == 1);
+            assertSame(second, watcher.getPlan("plan.xml"));
+
+            // new files are picked up as well
+            Files.write(directory.resolve("other.xml"), resource("HvA2010_e11_p25.xml"));
+            await(() -> watcher.getPlan("other.xml") != null);
+            assertEquals(List.of("other.xml", "plan.xml"), new ArrayList<>(watcher.getNames()));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import utils.JSONWriter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class PlanningServerTest {
+    private static final String TITLE = "Say \"hi\" \\ to\n\tall\u0001";
+    private static final String ESCAPED_TITLE = "Say \\\"hi\\\" \\\\ to\\n\\tall\\u0001";
+
+    private PlanningServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        PPS pps = PPS.newPlan("quoted.xml", 2019);
+        Employee manager = new Employee(60006, "O'Neil \"Jr\"", 20);
+        pps.applyUpdate(builder -> builder
+                .addProject(new Project("P1001", TITLE, LocalDate.of(2019, 2, 1), LocalDate.of(2019, 4, 30)), manager)
+                .addCommitment("P1001", 60006, 4));
+        this.server = new PlanningServer(0);
+        this.server.addPlan(pps);
+        this.server.addPlan(PPS.importFromXML("HvA2012_e2_p2.xml"));
+        this.server.start();
+        this.client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void teardown() {
+        this.server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return this.send(HttpRequest.newBuilder(this.uri(path)).GET().build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return this.client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + this.server.getPort() + path);
+    }
+
+    @Test
+    void T01_checkJSONWriter() {
+        StringBuilder json = new StringBuilder();
+        new JSONWriter(json).beginObject()
+                .member("title", TITLE)
+                .member("count", 3)
+                .member("ratio", Double.NaN)
+                .name("codes").beginArray().value("P1").value((String) null).value(true).endArray()
+                .endObject();
+        assertEquals("{\"title\":\"" + ESCAPED_TITLE + "\",\"count\":3,\"ratio\":null,\"codes\":[\"P1\",null,true]}",
+                json.toString());
+    }
+
+    @Test
+    void T02_checkRoutes() throws Exception {
+        HttpResponse<String> response = this.get("/plans");
+        assertEquals(200, response.statusCode());
+        assertEquals("[\"HvA2012_e2_p2.xml\",\"quoted.xml\"]", response.body());
+        assertTrue(response.headers().firstValue("Content-Type").get().startsWith("application/json"));
+
+        assertEquals(200, this.get("/plans/quoted.xml/statistics").statusCode());
+        response = this.get("/plans/quoted.xml/projects/P1001");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"title\":\"" + ESCAPED_TITLE + "\""), response.body());
+        assertTrue(response.body().contains("\"name\":\"O'Neil \\\"Jr\\\"\""), response.body());
+        response = this.get("/plans/quoted.xml/employees/60006");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"managedProjects\":[\"P1001\"]"), response.body());
+
+        assertEquals(404, this.get("/plans/unknown.xml/statistics").statusCode());
+        assertEquals(404, this.get("/plans/quoted.xml/projects/P9999").statusCode());
+        assertEquals(404, this.get("/plans/quoted.xml/employees/someone").statusCode());
+        assertEquals(404, this.get("/plans/quoted.xml/budgets").statusCode());
+        assertEquals(404, this.get("/plansfoo").statusCode());
+        assertEquals(404, this.get("/plansfoo/quoted.xml/statistics").statusCode());
+        assertEquals(404, this.get("/metricsfoo").statusCode());
+        assertEquals(405, this.send(HttpRequest.newBuilder(this.uri("/plans"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build()).statusCode());
+        assertEquals(405, this.send(HttpRequest.newBuilder(this.uri("/metrics"))
+                .DELETE().build()).statusCode());
+    }
+
+    @Test
+    void T03_checkMetrics() throws Exception {
+        HttpResponse<String> response = this.get("/metrics");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"server.plans\":2,"), response.body());
+        assertTrue(response.body().contains("\"plan.quoted.xml.footprint.totalBytes\":"), response.body());
+        assertTrue(response.body().contains("\"plan.HvA2012_e2_p2.xml.footprint.employees\":"), response.body());
+    }
+}
@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -52,4 +55,41 @@ class ProjectTest {
         assertEquals(0,
                 this.project3.calculateManpowerBudget(),"manpower budget project3");
     }
-}
\ No newline at end of file
+
+    @Test
+    void T21_checkBudgetInvalidation() {
+        int days = this.project1.getNumWorkingDays();
+        assertEquals((3*20+4*30)*days, this.project1.calculateManpowerBudget());
+
+        this.project1.reschedule(LocalDate.of(2019,2,1), LocalDate.of(2019,5,31));
+        assertEquals(days + 23, this.project1.getNumWorkingDays());
+        assertEquals((3*20+4*30)*(days + 23), this.project1.calculateManpowerBudget());
+
+        this.employee2.setHourlyWage(35);
+        this.project1.addCommitment(this.employee3, 1);
+        assertEquals(3*20+4*35+1*40, this.project1.getDailyCostRate());
+    }
+
+    @Test
+    void T22_checkManyCommitments() {
+        Map<Employee, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        Project project = new Project("P4004", "TestProject-4",
+                LocalDate.of(2019,4,1), LocalDate.of(2019,5,31));
+        for (int i = 0; i < 5000; i++) {
+            Employee employee = new Employee(500000 + random.nextInt(2000), 20);
+            int hours = 1 + random.nextInt(3);
+            project.addCommitment(employee, hours);
+            expected.merge(employee, hours, Integer::sum);
+            if (i % 3 == 0) {
+                project.updateReferences(employee);
+            }
+        }
+        assertEquals(expected, project.getCommittedHoursPerDay());
+        assertEquals(expected.hashCode(), project.getCommittedHoursPerDay().hashCode());
+        assertEquals(expected.entrySet().stream().mapToInt(e -> e.getValue() * 20).sum(),
+                project.getDailyCostRate());
+        assertThrows(UnsupportedOperationException.class,
+                () -> project.getCommittedHoursPerDay().put(this.employee1, 1));
+    }
+}
@@ -0,0 +1,77 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class ShardedAggregationTest {
+
+    private static Path copyResource(String name, Path directory) throws IOException {
+        Path file = directory.resolve(name);
+        try (InputStream input = ShardedAggregationTest.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(input, file);
+        }
+        return file;
+    }
+
+    private static void assertSameStatistics(PPS pps, ShardedAggregation aggregation) {
+        assertEquals(pps.calculateAverageHourlyWage(), aggregation.calculateAverageHourlyWage());
+        assertEquals(pps.calculateLongestProject().getCode(), aggregation.calculateLongestProject().getCode());
+        assertEquals(pps.calculateLongestProject().getNumWorkingDays(),
+                aggregation.calculateLongestProject().getNumWorkingDays());
+        assertEquals(pps.calculateTotalManpowerBudget(), aggregation.calculateTotalManpowerBudget());
+        assertEquals(pps.calculateMostInvolvedEmployees(), aggregation.calculateMostInvolvedEmployees());
+        assertEquals(pps.calculateManagedBudgetOverview(0, Employee.MAX_JUNIOR_WAGE),
+                aggregation.calculateManagedBudgetOverview());
+        assertEquals(pps.calculateCumulativeMonthlySpends(), aggregation.calculateCumulativeMonthlySpends());
+    }
+
+    @Test
+    void T01_checkShardsReproduceStatistics(@TempDir Path directory) throws IOException {
+        for (String name : new String[] { "HvA2019_e50_p100.xml", "HvA2018_e10_p25.xml" }) {
+            Path file = copyResource(name, directory);
+            PPS pps = PPS.importFromXML(name);
+            ShardedAggregation aggregation = ShardedAggregation.aggregate(file, 3, 0, Employee.MAX_JUNIOR_WAGE);
+            assertEquals(3, aggregation.getNumShards());
+            assertSameStatistics(pps, aggregation);
+        }
+    }
+
+    @Test
+    void T02_checkSingleShardAndFailure(@TempDir Path directory) throws IOException {
+        Path file = copyResource("HvA2019_e50_p100.xml", directory);
+        assertSameStatistics(PPS.importFromXML("HvA2019_e50_p100.xml"),
+                ShardedAggregation.aggregate(file, 1, 0, Employee.MAX_JUNIOR_WAGE));
+
+        assertThrows(IOException.class, () ->
+                ShardedAggregation.aggregate(directory.resolve("missing.xml"), 2, 0, Employee.MAX_JUNIOR_WAGE));
+        assertThrows(IllegalArgumentException.class, () -> ShardedAggregation.aggregate(file, 0, 0, 30));
+    }
+
+    @Test
+    void T03_checkUndatedProjects(@TempDir Path directory) throws IOException {
+        // the codes fall into different shards, such that two shards only have an undated project
+        String xml = "<projectPlanning year=\"2012\"><projects>"
+                + "<project code=\"P1001\"><title>First</title><startDate>2012-01-02</startDate><endDate>2012-01-31</endDate>"
+                + "<commitments><hoursPerDay employee=\"60006\">2</hoursPerDay></commitments></project>"
+                + "<project code=\"P1002\"><title>Second</title></project>"
+                + "<project code=\"P1003\"></project>"
+                + "</projects><employees>"
+                + "<employee number=\"60006\"><name>Test E. MPLOYEE</name><hourlyWage>20</hourlyWage>"
+                + "<allocatedProjects><project code=\"P1001\"></project></allocatedProjects></employee>"
+                + "</employees></projectPlanning>";
+        Path file = directory.resolve("undated.xml");
+        Files.writeString(file, xml);
+        PPS pps = PPS.importFromXML("undated.xml", new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertSameStatistics(pps, ShardedAggregation.aggregate(file, 3, 0, Employee.MAX_JUNIOR_WAGE));
+    }
+}
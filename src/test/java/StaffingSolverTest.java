@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import utils.Calendar;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class StaffingSolverTest {
+
+    private static void assertNoOvertime(PPS pps) {
+        try (AvailabilityIndex index = new AvailabilityIndex(pps)) {
+            for (Employee employee : pps.getEmployees()) {
+                assertTrue(index.getFreeHours(employee.getNumber(), index.getFirstDay(),
+                        LocalDate.of(pps.getPlanningYear(), 12, 31)) >= 0, employee + " works overtime");
+            }
+        }
+    }
+
+    @Test
+    void T01_checkCheapestEmployeesFirst() {
+        Employee cheap = new Employee(60001, 20);
+        Employee expensive = new Employee(60002, 60);
+        PPS pps = new PPS.Builder()
+                .addEmployee(cheap)
+                .addEmployee(expensive)
+                .addProject(new Project("P1001", "Long", LocalDate.of(2019, 2, 4), LocalDate.of(2019, 3, 29)), cheap)
+                .addProject(new Project("P2002", "Short", LocalDate.of(2019, 3, 4), LocalDate.of(2019, 3, 8)), expensive)
+                .build();
+        StaffingSolver.StaffingPlan plan = new StaffingSolver(pps)
+                .addDemand("P2002", 8)
+                .addDemand("P1001", 6)
+                .solve(Duration.ofMillis(100));
+
+        assertTrue(plan.getShortfalls().isEmpty(), plan.toString());
+        // the cheap employee works 6 hours on the long project, and 2 hours on the short one
+        assertEquals(6*20*40 + 2*20*5 + 6*60*5, plan.getAssignedBudget());
+        PPS snapshot = plan.applyTo(pps);
+        assertEquals(plan.getTotalManpowerBudget(), snapshot.calculateTotalManpowerBudget());
+        assertNoOvertime(snapshot);
+    }
+
+    @Test
+    void T11_checkLargePlanWithinTimeBudget() {
+        Random random = new Random(42);
+        PPS.Builder builder = new PPS.Builder();
+        for (int e = 0; e < 1000; e++) {
+            builder.addEmployee(new Employee(100000 + e, "Employee " + e, 16 + random.nextInt(60)));
+        }
+        Employee manager = new Employee(100000, 20);
+        for (int p = 0; p < 1000; p++) {
+            LocalDate start = LocalDate.of(2019, 1, 1).plusDays(random.nextInt(300));
+            builder.addProject(new Project("P" + (200000 + p), "Project " + p,
+                    start, start.plusDays(5 + random.nextInt(60))), manager);
+        }
+        PPS pps = builder.build();
+        StaffingSolver solver = new StaffingSolver(pps);
+        for (Project project : pps.getProjects()) {
+            solver.addDemand(project.getCode(), 1 + random.nextInt(Calendar.WORKING_HOURS_PER_DAY));
+        }
+        long start = System.nanoTime();
+        StaffingSolver.StaffingPlan plan = solver.solve(Duration.ofMillis(500));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L, "solved within seconds");
+        assertTrue(plan.getShortfalls().isEmpty(), plan.toString());
+
+        PPS snapshot = plan.applyTo(pps);
+        assertEquals(plan.getTotalManpowerBudget(), snapshot.calculateTotalManpowerBudget());
+        assertNoOvertime(snapshot);
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.Alphanumeric.class)
+class TeamClustersTest {
+
+    private static Project project(String code) {
+        return new Project(code, "TestProject-" + code, LocalDate.of(2019, 2, 1), LocalDate.of(2019, 4, 30));
+    }
+
+    @Test
+    void T01_checkClusters() {
+        Employee e1 = new Employee(10001, 20), e2 = new Employee(10002, 20), e3 = new Employee(10003, 20);
+        Employee e4 = new Employee(10004, 20), e5 = new Employee(10005, 20);
+        PPS pps = new PPS.Builder()
+                .addEmployee(e1).addEmployee(e2).addEmployee(e3).addEmployee(e4).addEmployee(e5)
+                .addProject(project("PA"), e1)
+                .addProject(project("PB"), e2)
+                .addProject(project("PC"), e4)
+                .addProject(project("PD"), e4)
+                .addCommitment("PA", 10001, 4)
+                .addCommitment("PA", 10002, 4)
+                .addCommitment("PB", 10003, 2)
+                .addCommitment("PC", 10004, 8)
+                .build();
+        TeamClusters clusters = new TeamClusters(pps);
+
+        assertEquals(3, clusters.getNumClusters());
+        TeamClusters.Cluster largest = clusters.getClusters().get(0);
+        assertEquals(List.of(e1, e2, e3), largest.getEmployees());
+        assertEquals(List.of("PA", "PB"), List.of(largest.getProjects().get(0).getCode(), largest.getProjects().get(1).getCode()));
+        assertEquals(4, largest.getNumLinks());
+        assertEquals(List.of(e4), clusters.getClusters().get(1).getEmployees());
+        assertEquals(List.of(e5), clusters.getClusters().get(2).getEmployees());
+        assertTrue(clusters.getClusters().get(2).getProjects().isEmpty());
+        assertSame(largest, clusters.clusterOf(e3));
+        assertSame(clusters.getClusters().get(1), clusters.clusterOf(project("PD")));
+
+        Map<Project, Integer> coupled = clusters.getCoupledProjects(project("PA"));
+        assertEquals(Map.of(project("PB"), 1), coupled);
+        assertTrue(clusters.getCoupledProjects(project("PX")).isEmpty());
+        assertEquals(List.of(e2, e4), clusters.getMostConnectedEmployees(5));
+        assertEquals(List.of(e2), clusters.getMostConnectedEmployees(1));
+
+        List<List<TeamClusters.Cluster>> groups = clusters.partition(2);
+        assertEquals(List.of(largest), groups.get(0));
+        assertEquals(List.of(clusters.getClusters().get(1), clusters.getClusters().get(2)), groups.get(1));
+    }
+
+    @Test
+    void T02_checkClustersOfImportedPlan() {
+        PPS pps = PPS.importFromXML("HvA2019_e50_p100.xml");
+        TeamClusters clusters = new TeamClusters(pps);
+
+        int size = clusters.getClusters().stream().mapToInt(TeamClusters.Cluster::size).sum();
+        assertEquals(pps.getEmployees().size() + pps.getProjects().size(), size);
+        for (Project project : pps.getProjects()) {
+            TeamClusters.Cluster cluster = clusters.clusterOf(project);
+            assertTrue(cluster.getProjects().contains(project));
+            project.getCommittedHoursPerDay().keySet().forEach(employee -> assertSame(cluster, clusters.clusterOf(employee)));
+            clusters.getCoupledProjects(project).keySet().forEach(coupled -> assertSame(cluster, clusters.clusterOf(coupled)));
+        }
+        for (Employee employee : pps.getEmployees()) {
+            employee.getAssignedProjects().forEach(project -> assertSame(clusters.clusterOf(employee), clusters.clusterOf(project)));
+        }
+
+        List<List<TeamClusters.Cluster>> groups = clusters.partition(4);
+        assertEquals(4, groups.size());
+        assertEquals(clusters.getNumClusters(), groups.stream().mapToInt(List::size).sum());
+    }
+}